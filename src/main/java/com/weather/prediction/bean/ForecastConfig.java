@@ -0,0 +1,140 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+package com.weather.prediction.bean;
+
+/**
+ * Bean class for the settings of a forecast run along with getters and
+ * setters. The defaults are the five day forecast with eight windows of seven
+ * days of the algorithm.
+ *
+ * @author Irene Mathew
+ *
+ */
+
+import static com.weather.prediction.constants.WeatherConstants.ANALOG_SEARCH_SPAN_DAYS;
+import static com.weather.prediction.constants.WeatherConstants.FORECAST_HORIZON_DAYS;
+import static com.weather.prediction.constants.WeatherConstants.LAST_YEAR_LAG_DAYS;
+import static com.weather.prediction.constants.WeatherConstants.WINDOW_COUNT;
+import static com.weather.prediction.constants.WeatherConstants.WINDOW_SIZE;
+
+import com.weather.prediction.exception.WeatherException;
+
+public class ForecastConfig {
+	// days from a day of the present period to the same day of the first
+	// window, a year before
+	private static final int WINDOW_LAG_DAYS = LAST_YEAR_LAG_DAYS
+			- WINDOW_SIZE + 1;
+
+	private int horizonDays = FORECAST_HORIZON_DAYS;
+	private int windowSize = WINDOW_SIZE;
+	private int windowCount = WINDOW_COUNT;
+	private int spanDays = ANALOG_SEARCH_SPAN_DAYS;
+
+	/**
+	 * @return number of consecutive days forecast
+	 */
+	public int getHorizonDays() {
+		return horizonDays;
+	}
+
+	public void setHorizonDays(int horizonDays) {
+		this.horizonDays = horizonDays;
+	}
+
+	/**
+	 * @return number of days of the present period and of each window
+	 */
+	public int getWindowSize() {
+		return windowSize;
+	}
+
+	public void setWindowSize(int windowSize) {
+		this.windowSize = windowSize;
+	}
+
+	/**
+	 * @return number of fixed windows of last year's period, starting on
+	 *         consecutive days
+	 */
+	public int getWindowCount() {
+		return windowCount;
+	}
+
+	public void setWindowCount(int windowCount) {
+		this.windowCount = windowCount;
+	}
+
+	/**
+	 * @return number of days either side of a year before the present period
+	 *         at which windows may start, in ROLLING_SPAN and MULTI_YEAR mode
+	 */
+	public int getSpanDays() {
+		return spanDays;
+	}
+
+	public void setSpanDays(int spanDays) {
+		this.spanDays = spanDays;
+	}
+
+	/**
+	 * @return number of days of last year's period holding the fixed windows
+	 */
+	public int getLastYearDays() {
+		return windowSize + windowCount - 1;
+	}
+
+	/**
+	 * @return days from the first day of last year's period to the day before
+	 *         prediction
+	 */
+	public int getLastYearLagDays() {
+		return WINDOW_LAG_DAYS + windowSize - 1;
+	}
+
+	/**
+	 * This function validates the settings together.
+	 *
+	 * @throws WeatherException
+	 *             is thrown when a setting is out of range, or the last
+	 *             window or the last window of the search span would reach
+	 *             into the present period
+	 */
+	public void validate() throws WeatherException {
+		if (horizonDays < 1)
+			throw new WeatherException("Horizon(" + horizonDays
+					+ ") is less than 1 day");
+		// a variation needs a day before it
+		if (windowSize < 2)
+			throw new WeatherException("Window Size(" + windowSize
+					+ ") is less than 2 days");
+		if (windowCount < 1)
+			throw new WeatherException("Window count(" + windowCount
+					+ ") is less than 1");
+		if (spanDays < 0)
+			throw new WeatherException("Search span(" + spanDays
+					+ ") is less than 0 days");
+		// the last window of the span ends the span after a year before the
+		// last day of the present period
+		if (spanDays > getLastYearLagDays() - 2 * windowSize + 1)
+			throw new WeatherException("Search span(" + spanDays
+					+ ") reaches the present period");
+		if (getLastYearDays() > getLastYearLagDays() - windowSize + 1)
+			throw new WeatherException("Last year's period of "
+					+ getLastYearDays() + " days reaches the present period");
+	}
+
+	@Override
+	public String toString() {
+		return "ForecastConfig [horizonDays=" + horizonDays + ", windowSize="
+				+ windowSize + ", windowCount=" + windowCount + ", spanDays="
+				+ spanDays + "]";
+	}
+
+}
@@ -0,0 +1,74 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+package com.weather.prediction.bean;
+
+/**
+ * Bean class for weather station details from the look up file along with getters and setters.
+ *
+ * @author Irene Mathew
+ *
+ */
+
+import static com.weather.prediction.constants.WeatherConstants.COMMA_DELIMITER;
+
+public class Station {
+
+	private String location;
+	private String stationId;
+	private String lat;
+	private String longt;
+	private String elevtn;
+
+	public String getLocation() {
+		return location;
+	}
+
+	public void setLocation(String location) {
+		this.location = location;
+	}
+
+	public String getStationId() {
+		return stationId;
+	}
+
+	public void setStationId(String stationId) {
+		this.stationId = stationId;
+	}
+
+	public String getLat() {
+		return lat;
+	}
+
+	public void setLat(String lat) {
+		this.lat = lat;
+	}
+
+	public String getLongt() {
+		return longt;
+	}
+
+	public void setLongt(String longt) {
+		this.longt = longt;
+	}
+
+	public String getElevtn() {
+		return elevtn;
+	}
+
+	public void setElevtn(String elevtn) {
+		this.elevtn = elevtn;
+	}
+
+	public String getCoordinates() {
+		return this.lat + COMMA_DELIMITER + this.longt + COMMA_DELIMITER
+				+ this.elevtn;
+	}
+
+}
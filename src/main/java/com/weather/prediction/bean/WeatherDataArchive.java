@@ -1,7 +1,7 @@
 /******************************************************
  * Copyright (c) November 2017, Irene Mathew.
  * All Rights Reserved
- * 
+ *
  * This file can be redistributed and/or modified,
  * under the terms of the GNU General Public License
  * as published by the Free Software Foundation,
@@ -10,26 +10,355 @@
 package com.weather.prediction.bean;
 
 /**
- * Bean class for weather historical data object<Date,List<WeatherData>> along with getters and setters.
- * 
+ * Bean class for weather historical data indexed by epoch day (number of days
+ * since 1970-01-01). Days are kept in a dense array from the first to the
+ * last day, so a day or a range of days is found without searching, and the
+ * records of a day are kept in the order of their date and time. The
+ * historical data is still available as a map<Date,List<WeatherData>> view,
+ * and the records at the forecast times can be read as an observation view.
+ *
  * @author Irene Mathew
  *
  */
 
+import static com.weather.prediction.constants.WeatherConstants.DATE_TIME_DELIMITER;
+import static com.weather.prediction.constants.WeatherConstants.MORNING_FORECAST_TIMESTAMP;
+import static com.weather.prediction.constants.WeatherConstants.NOON_FORECAST_TIMESTAMP;
+import static com.weather.prediction.constants.WeatherConstants.NOON_SLOT;
+
+import java.text.ParseException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.weather.prediction.utils.ObservationView;
+import com.weather.prediction.utils.WeatherUtils;
+
+public class WeatherDataArchive implements ObservationView {
+	private static final String MORNING_TIME_SUFFIX = DATE_TIME_DELIMITER
+			+ MORNING_FORECAST_TIMESTAMP;
+	private static final String NOON_TIME_SUFFIX = DATE_TIME_DELIMITER
+			+ NOON_FORECAST_TIMESTAMP;
+
+	private final List<List<WeatherData>> days = new ArrayList<List<WeatherData>>();
+	private int firstEpochDay;
+	private int latestEpochDay = Integer.MIN_VALUE;
+	private int dayCount;
+	private final Map<String, List<WeatherData>> weatherArchive = new ArchiveView();
+
+	/**
+	 * This function adds a record to a day, keeping the records of the day in
+	 * the order of their date and time.
+	 *
+	 * @param epochDay
+	 *            epoch day of the record
+	 * @param weatherData
+	 *            record to add
+	 */
+	public void add(int epochDay, WeatherData weatherData) {
+		List<WeatherData> dayList = getOrCreate(epochDay);
+		int index = dayList.size();
+		while (index > 0
+				&& dayList.get(index - 1).getDateTime()
+						.compareTo(weatherData.getDateTime()) > 0)
+			index--;
+		dayList.add(index, weatherData);
+	}
+
+	/**
+	 * This function replaces the records of a day.
+	 *
+	 * @param epochDay
+	 *            epoch day of the records
+	 * @param weatherDataList
+	 *            records of the day
+	 * @return previous records of the day, or null if there were none
+	 */
+	public List<WeatherData> put(int epochDay,
+			List<WeatherData> weatherDataList) {
+		List<WeatherData> previous = get(epochDay);
+		if (previous != null)
+			days.set(epochDay - firstEpochDay, new ArrayList<WeatherData>(2));
+		for (WeatherData weatherData : weatherDataList) {
+			add(epochDay, weatherData);
+		}
+		if (weatherDataList.isEmpty())
+			getOrCreate(epochDay);
+		return previous;
+	}
+
+	/**
+	 * @return records of a day in time order, or null if the day is not in the
+	 *         archive
+	 */
+	public List<WeatherData> get(int epochDay) {
+		int index = epochDay - firstEpochDay;
+		if (dayCount == 0 || index < 0 || index >= days.size())
+			return null;
+		return days.get(index);
+	}
+
+	/**
+	 * This function gives the records of a range of days.
+	 *
+	 * @param fromEpochDay
+	 *            first day of the range
+	 * @param toEpochDay
+	 *            day after the last day of the range
+	 * @return records of the range in date and time order
+	 */
+	public List<WeatherData> getRecords(int fromEpochDay, int toEpochDay) {
+		List<WeatherData> records = new ArrayList<WeatherData>();
+		if (dayCount == 0)
+			return records;
+		int from = Math.max(fromEpochDay - firstEpochDay, 0);
+		int to = Math.min(toEpochDay - firstEpochDay, days.size());
+		for (int index = from; index < to; index++) {
+			if (days.get(index) != null)
+				records.addAll(days.get(index));
+		}
+		return records;
+	}
+
+	/**
+	 * This function copies the days up to a day into a new archive, so that
+	 * days added to the copy do not change this archive. The records are
+	 * shared, as a record is not changed once added.
+	 *
+	 * @param toEpochDay
+	 *            last day copied
+	 * @return archive of the days up to the given day
+	 */
+	public WeatherDataArchive copy(int toEpochDay) {
+		WeatherDataArchive copy = new WeatherDataArchive();
+		if (dayCount == 0)
+			return copy;
+		int lastEpochDay = Math.min(toEpochDay, latestEpochDay);
+		for (int epochDay = firstEpochDay; epochDay <= lastEpochDay; epochDay++) {
+			List<WeatherData> dayList = get(epochDay);
+			if (dayList != null)
+				copy.put(epochDay, dayList);
+		}
+		return copy;
+	}
+
+	/**
+	 * @return epoch day of the latest day in the archive
+	 * @throws NoSuchElementException
+	 *             is thrown when the archive is empty
+	 */
+	public int getLatestEpochDay() {
+		if (dayCount == 0)
+			throw new NoSuchElementException("Weather archive is empty");
+		return latestEpochDay;
+	}
+
+	/**
+	 * @return number of days in the archive
+	 */
+	public int getDayCount() {
+		return dayCount;
+	}
+
+	/**
+	 * This function counts the records of a range of days.
+	 *
+	 * @param fromEpochDay
+	 *            first day of the range
+	 * @param toEpochDay
+	 *            day after the last day of the range
+	 * @return number of records of the range
+	 */
+	public int countRecords(int fromEpochDay, int toEpochDay) {
+		int count = 0;
+		for (int epochDay = fromEpochDay; epochDay < toEpochDay; epochDay++) {
+			List<WeatherData> dayList = get(epochDay);
+			if (dayList != null)
+				count += dayList.size();
+		}
+		return count;
+	}
+
+	@Override
+	public int getFirstEpochDay() {
+		return firstEpochDay;
+	}
 
-public class WeatherDataArchive {
+	@Override
+	public int getLastEpochDay() {
+		return dayCount == 0 ? firstEpochDay - 1 : latestEpochDay;
+	}
+
+	@Override
+	public boolean hasObservation(int epochDay, int slot) {
+		return find(epochDay, slot) != null;
+	}
+
+	@Override
+	public float getTemp(int epochDay, int slot) {
+		WeatherData weatherData = find(epochDay, slot);
+		return weatherData == null ? Float.NaN : weatherData.getTemp();
+	}
+
+	@Override
+	public float getHumidity(int epochDay, int slot) {
+		WeatherData weatherData = find(epochDay, slot);
+		return weatherData == null ? Float.NaN : weatherData.getHumidity();
+	}
+
+	@Override
+	public float getPressure(int epochDay, int slot) {
+		WeatherData weatherData = find(epochDay, slot);
+		return weatherData == null ? Float.NaN : weatherData.getPressure();
+	}
 
-	private Map<String, List<WeatherData>> weatherArchive;
+	/**
+	 * This function finds the record of a day at a forecast time without
+	 * creating objects.
+	 */
+	private WeatherData find(int epochDay, int slot) {
+		List<WeatherData> dayList = get(epochDay);
+		if (dayList == null)
+			return null;
+		String time = slot == NOON_SLOT ? NOON_TIME_SUFFIX : MORNING_TIME_SUFFIX;
+		for (int index = 0; index < dayList.size(); index++) {
+			WeatherData weatherData = dayList.get(index);
+			if (weatherData.getDateTime() != null
+					&& weatherData.getDateTime().endsWith(time))
+				return weatherData;
+		}
+		return null;
+	}
+
+	private List<WeatherData> getOrCreate(int epochDay) {
+		if (dayCount == 0) {
+			firstEpochDay = epochDay;
+			days.clear();
+		} else if (epochDay < firstEpochDay) {
+			days.addAll(0, Collections.<List<WeatherData>> nCopies(
+					firstEpochDay - epochDay, null));
+			firstEpochDay = epochDay;
+		}
+		int index = epochDay - firstEpochDay;
+		while (days.size() <= index)
+			days.add(null);
+		List<WeatherData> dayList = days.get(index);
+		if (dayList == null) {
+			dayList = new ArrayList<WeatherData>(2);
+			days.set(index, dayList);
+			dayCount++;
+			latestEpochDay = Math.max(latestEpochDay, epochDay);
+		}
+		return dayList;
+	}
 
+	/**
+	 * @return historical data as a map from date in the format yyyy-MM-dd to
+	 *         the records of the date, backed by the archive
+	 */
 	public Map<String, List<WeatherData>> getWeatherArchive() {
 		return weatherArchive;
 	}
 
 	public void setWeatherArchive(
 			Map<String, List<WeatherData>> weatherArchiveMap) {
-		this.weatherArchive = weatherArchiveMap;
+		// the argument may be a view of this archive, so it is copied first
+		Map<String, List<WeatherData>> entries = new LinkedHashMap<String, List<WeatherData>>(
+				weatherArchiveMap);
+		days.clear();
+		dayCount = 0;
+		latestEpochDay = Integer.MIN_VALUE;
+		for (Map.Entry<String, List<WeatherData>> entry : entries.entrySet()) {
+			weatherArchive.put(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * Class for the map view of the archive, ordered by date.
+	 */
+	private class ArchiveView extends AbstractMap<String, List<WeatherData>> {
+
+		@Override
+		public List<WeatherData> get(Object date) {
+			Integer epochDay = toEpochDay(date);
+			return epochDay == null ? null : WeatherDataArchive.this
+					.get(epochDay);
+		}
+
+		@Override
+		public boolean containsKey(Object date) {
+			return get(date) != null;
+		}
+
+		@Override
+		public List<WeatherData> put(String date,
+				List<WeatherData> weatherDataList) {
+			Integer epochDay = toEpochDay(date);
+			if (epochDay == null)
+				throw new IllegalArgumentException("Invalid date " + date);
+			return WeatherDataArchive.this.put(epochDay, weatherDataList);
+		}
+
+		@Override
+		public int size() {
+			return dayCount;
+		}
+
+		@Override
+		public Set<Map.Entry<String, List<WeatherData>>> entrySet() {
+			return new AbstractSet<Map.Entry<String, List<WeatherData>>>() {
+				@Override
+				public int size() {
+					return dayCount;
+				}
+
+				@Override
+				public Iterator<Map.Entry<String, List<WeatherData>>> iterator() {
+					return new Iterator<Map.Entry<String, List<WeatherData>>>() {
+						private int index = nextDay(0);
+
+						@Override
+						public boolean hasNext() {
+							return index < days.size();
+						}
+
+						@Override
+						public Map.Entry<String, List<WeatherData>> next() {
+							if (!hasNext())
+								throw new NoSuchElementException();
+							Map.Entry<String, List<WeatherData>> entry = new SimpleImmutableEntry<String, List<WeatherData>>(
+									WeatherUtils.epochDayToString(firstEpochDay
+											+ index), days.get(index));
+							index = nextDay(index + 1);
+							return entry;
+						}
+					};
+				}
+			};
+		}
+
+		private int nextDay(int index) {
+			while (index < days.size() && days.get(index) == null)
+				index++;
+			return index;
+		}
+
+		private Integer toEpochDay(Object date) {
+			if (!(date instanceof String))
+				return null;
+			try {
+				return WeatherUtils.dateStringToEpochDay((String) date);
+			} catch (ParseException e) {
+				return null;
+			}
+		}
 	}
 
 }
@@ -30,18 +30,90 @@ public class WeatherConstants {
 	public static final String BASE_URL = "http://www.bom.gov.au/climate/dwo/#MONYR#/text/#STATIONID#.#MONYR#.csv";
 	public static final String STATION_URL_CONSTANT = "#STATIONID#";
 	public static final String MONTH_URL_CONSTANT = "#MONYR#";
+	public static final String MONTHLY_FILE_EXTENSION = ".csv";
+	public static final String HISTORY_URL_PROPERTY = "weather.history.url";
+	public static final String HISTORY_DIR_PROPERTY = "weather.history.dir";
+
+	//Constants related to HTTP requests for Historical Data Download
+	public static final int HTTP_CONNECT_TIMEOUT_MILLIS = 5000;
+	public static final int HTTP_READ_TIMEOUT_MILLIS = 10000;
+	public static final long HTTP_REQUEST_DEADLINE_MILLIS = 30000;
+	public static final int HTTP_MAX_ATTEMPTS = 3;
+	public static final long HTTP_BACKOFF_BASE_MILLIS = 250;
+	public static final long HTTP_BACKOFF_MAX_MILLIS = 4000;
+	public static final int HTTP_RETRY_BUDGET = 20;
+	public static final int HTTP_MAX_BODY_BYTES = 16 * 1024 * 1024;
+	public static final int DOWNLOAD_THREAD_COUNT = 5;
+
+	//Constants related to bulk ingestion of all stations
+	public static final String ALL_LOCATIONS = "ALL";
+	public static final int BULK_MAX_CONCURRENCY = 8;
+	public static final double BULK_REQUESTS_PER_SECOND_PER_HOST = 4;
+	public static final int BULK_BURST_PER_HOST = 4;
+	public static final int STORE_INITIAL_DAYS = 400;
+
+	//Constants related to the on-disk cache of downloaded monthly files
+	public static final String HISTORY_CACHE_DIR_PROPERTY = "weather.cache.dir";
+	public static final String DEFAULT_HISTORY_CACHE_DIR = "application/cache";
+	public static final String CACHE_METADATA_EXTENSION = ".meta";
+	public static final long HISTORY_CACHE_MAX_BYTES = 64L * 1024 * 1024;
+	public static final long HISTORY_CACHE_TTL_MILLIS = 60L * 60 * 1000;
+
+	//Constants related to the binary archive of station history
+	public static final String ARCHIVE_DIR_PROPERTY = "weather.archive.dir";
+	public static final String ARCHIVE_FILE_EXTENSION = ".wxa";
+	public static final int ARCHIVE_MAGIC = 0x57584152;
+	public static final int ARCHIVE_VERSION = 1;
+	public static final int MORNING_SLOT = 0;
+	public static final int NOON_SLOT = 1;
 
 	//Constants related to Date,Time and its format
 	public static final String DATE_KEYWORD = "\"Date\"";
 	public static final String DATE_FORMAT = "yyyy-MM-dd";
 	public static final String INPUT_DATETIME_FORMAT = "yyyy-MM-dd hh:mm";
 	public static final String DATE_TIME_FORMAT = "yyyy-MM-dd'T'HH:mm:ss'Z'";
+	public static final String HTTP_DATE_FORMAT = "EEE, dd MMM yyyy HH:mm:ss zzz";
 	public static final String MORNING_FORECAST_TIME = "09:00";
 	public static final String NOON_FORECAST_TIME = "15:00";
+	public static final String MORNING_FORECAST_TIMESTAMP = MORNING_FORECAST_TIME + ":00Z";
+	public static final String NOON_FORECAST_TIMESTAMP = NOON_FORECAST_TIME + ":00Z";
+
+	//Constants related to columns of the monthly file from API
+	public static final int DATE_COLUMN = 1;
+	public static final int MORNING_TEMP_COLUMN = 10;
+	public static final int MORNING_HUMIDITY_COLUMN = 11;
+	public static final int MORNING_PRESSURE_COLUMN = 15;
+	public static final int NOON_TEMP_COLUMN = 16;
+	public static final int NOON_HUMIDITY_COLUMN = 17;
+	public static final int NOON_PRESSURE_COLUMN = 21;
 	
 	//Constants related to windows
 	public static final int WINDOW_COUNT = 8;
 	public static final int WINDOW_SIZE=7;
+	public static final int ANALOG_SEARCH_SPAN_DAYS = 60;
+	// days from the first day of last year's period to the day before prediction
+	public static final int LAST_YEAR_LAG_DAYS = 371;
+	// days either side by which dynamic time warping may shift a day
+	public static final int DTW_BAND_DAYS = 1;
+
+	//Constants related to the settings of a forecast run
+	public static final int FORECAST_HORIZON_DAYS = 5;
+	public static final String HORIZON_DAYS_PROPERTY = "weather.horizon.days";
+	public static final String WINDOW_SIZE_PROPERTY = "weather.window.size";
+	public static final String WINDOW_COUNT_PROPERTY = "weather.window.count";
+	public static final String SEARCH_SPAN_PROPERTY = "weather.search.span";
+	public static final String SEARCH_MODE_PROPERTY = "weather.search.mode";
+	public static final String ANALOG_COUNT_PROPERTY = "weather.analog.count";
+	public static final String METRIC_PROPERTY = "weather.metric";
+
+	//Constants related to the long running forecast service
+	public static final String SERVE_MODE = "SERVE";
+	public static final String SERVICE_PORT_PROPERTY = "weather.service.port";
+	public static final int DEFAULT_SERVICE_PORT = 8080;
+	public static final int SERVICE_THREAD_COUNT = 4;
+	public static final long SERVICE_REFRESH_MILLIS = 60L * 60 * 1000;
+	public static final String FORECAST_CONTEXT = "/forecast";
+	public static final int FORECAST_CACHE_ENTRIES = 1024;
 
 	//Constants for weather conditions
 	public static final String SUNNY = "SUNNY";
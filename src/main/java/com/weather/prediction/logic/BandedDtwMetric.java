@@ -0,0 +1,208 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+package com.weather.prediction.logic;
+
+/**
+ * Class which measures a window by dynamic time warping against the present
+ * period, so a spell of weather arriving a day earlier or later than last
+ * year still matches. A day of the window may only be matched with days of
+ * the present period within a Sakoe-Chiba band of days either side, and the
+ * cost of matching two days is their squared Euclidean distance, so a band
+ * of zero days gives the Euclidean metric. A window is ruled out by two
+ * lower bounds before the days are warped: the cost of matching the first
+ * and the last days, which every warping matches, and the distance of each
+ * day of the window from the envelope of the present period within the band.
+ * Warping stops once every cell of a row of the table exceeds the limit. The
+ * rows of the table and the envelope are kept between calls, so a metric
+ * reused for present periods of the same length does not allocate, and a
+ * metric is used by one search at a time.
+ *
+ * @author Irene Mathew
+ *
+ */
+import static com.weather.prediction.constants.WeatherConstants.DTW_BAND_DAYS;
+import static com.weather.prediction.logic.DayFeatureMatrix.FEATURES_PER_DAY;
+
+import java.util.Arrays;
+
+public final class BandedDtwMetric implements SimilarityMetric {
+	private final int band;
+	private double[] previousRow = new double[0];
+	private double[] currentRow = new double[0];
+	// highest and lowest feature of the present period within the band
+	private float[] upper = new float[0];
+	private float[] lower = new float[0];
+	private DayFeatureMatrix envelopePresent;
+
+	public BandedDtwMetric() {
+		this(DTW_BAND_DAYS);
+	}
+
+	/**
+	 * @param band
+	 *            number of days either side by which a day may be warped
+	 */
+	public BandedDtwMetric(int band) {
+		if (band < 0)
+			throw new IllegalArgumentException("Band(" + band
+					+ ") is less than 0");
+		this.band = band;
+	}
+
+	/**
+	 * @return number of days either side by which a day may be warped
+	 */
+	public int getBand() {
+		return band;
+	}
+
+	@Override
+	public double squaredDistance(DayFeatureMatrix history, int fromDay,
+			DayFeatureMatrix present, double limit) {
+		int length = present.getDays();
+		if (length == 0)
+			return 0;
+		float[] a = history.getFeatures();
+		float[] b = present.getFeatures();
+		int offset = fromDay * FEATURES_PER_DAY;
+		double endsBound = cost(a, offset, b, 0);
+		if (length > 1)
+			endsBound += cost(a, offset + (length - 1) * FEATURES_PER_DAY, b,
+					(length - 1) * FEATURES_PER_DAY);
+		if (endsBound > limit)
+			return endsBound;
+		prepare(present);
+		double envelopeBound = envelopeBound(a, offset, length, limit);
+		if (envelopeBound > limit)
+			return envelopeBound;
+		return warp(a, offset, b, length, limit);
+	}
+
+	/**
+	 * @return squared Euclidean distance between a day of the window and a
+	 *         day of the present period, with the differences taken in float
+	 *         as by the Euclidean metric
+	 */
+	private static double cost(float[] a, int i, float[] b, int j) {
+		double humidity = a[i] - b[j];
+		double pressure = a[i + 1] - b[j + 1];
+		double temp = a[i + 2] - b[j + 2];
+		return humidity * humidity + pressure * pressure + temp * temp;
+	}
+
+	/**
+	 * This function sizes the rows of the table for the present period and
+	 * finds its envelope, unless it was found for the same present period by
+	 * the call before.
+	 */
+	private void prepare(DayFeatureMatrix present) {
+		int length = present.getDays();
+		if (previousRow.length != length) {
+			previousRow = new double[length];
+			currentRow = new double[length];
+			upper = new float[length * FEATURES_PER_DAY];
+			lower = new float[length * FEATURES_PER_DAY];
+			envelopePresent = null;
+		}
+		if (envelopePresent == present)
+			return;
+		float[] b = present.getFeatures();
+		for (int day = 0; day < length; day++) {
+			for (int feature = 0; feature < FEATURES_PER_DAY; feature++) {
+				float max = Float.NEGATIVE_INFINITY;
+				float min = Float.POSITIVE_INFINITY;
+				for (int other = Math.max(day - band, 0); other <= Math.min(
+						day + band, length - 1); other++) {
+					float value = b[other * FEATURES_PER_DAY + feature];
+					max = Math.max(max, value);
+					min = Math.min(min, value);
+				}
+				upper[day * FEATURES_PER_DAY + feature] = max;
+				lower[day * FEATURES_PER_DAY + feature] = min;
+			}
+		}
+		envelopePresent = present;
+	}
+
+	/**
+	 * This function adds the squared distance of each feature of each day of
+	 * the window from the range of the same feature of the present period
+	 * within the band. Every day of the window is matched with at least one
+	 * day in its band, whose cost is at least this distance.
+	 *
+	 * @return lower bound of the squared distance, or a partial bound above
+	 *         the limit
+	 */
+	private double envelopeBound(float[] a, int offset, int length,
+			double limit) {
+		double bound = 0;
+		for (int index = 0; index < length * FEATURES_PER_DAY
+				&& bound <= limit; index++) {
+			float value = a[offset + index];
+			double excess = 0;
+			if (value > upper[index])
+				excess = value - upper[index];
+			else if (value < lower[index])
+				excess = value - lower[index];
+			bound += excess * excess;
+		}
+		return bound;
+	}
+
+	/**
+	 * This function fills the table of dynamic time warping row by row, each
+	 * row being a day of the window and holding the days of the present
+	 * period within the band. Every warping passes through each row, so the
+	 * smallest cell of a row bounds the distance.
+	 *
+	 * @return squared distance, or the smallest cell of a row above the limit
+	 */
+	private double warp(float[] a, int offset, float[] b, int length,
+			double limit) {
+		double[] previous = previousRow;
+		double[] current = currentRow;
+		Arrays.fill(previous, Double.POSITIVE_INFINITY);
+		for (int i = 0; i < length; i++) {
+			Arrays.fill(current, Double.POSITIVE_INFINITY);
+			int from = Math.max(i - band, 0);
+			int to = Math.min(i + band, length - 1);
+			double rowMin = Double.POSITIVE_INFINITY;
+			for (int j = from; j <= to; j++) {
+				double best;
+				if (i == 0 && j == 0)
+					best = 0;
+				else {
+					best = previous[j];
+					if (j > 0) {
+						best = Math.min(best, current[j - 1]);
+						best = Math.min(best, previous[j - 1]);
+					}
+				}
+				double cell = cost(a, offset + i * FEATURES_PER_DAY, b, j
+						* FEATURES_PER_DAY)
+						+ best;
+				current[j] = cell;
+				rowMin = Math.min(rowMin, cell);
+			}
+			if (rowMin > limit)
+				return rowMin;
+			double[] swap = previous;
+			previous = current;
+			current = swap;
+		}
+		return previous[length - 1];
+	}
+
+	@Override
+	public String toString() {
+		return "BandedDtwMetric [band=" + band + "]";
+	}
+
+}
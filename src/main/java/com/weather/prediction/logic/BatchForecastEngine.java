@@ -0,0 +1,329 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+package com.weather.prediction.logic;
+
+/**
+ * Class which forecasts the day after the issue day of many jobs at once,
+ * each job being a station and an issue day. The present period and last
+ * year's period of every job are laid out in contiguous arrays, so the
+ * distances of all windows of all jobs are calculated by one call of the
+ * forecast kernel and the variations of consecutive days of all jobs by
+ * another. A job gives the same predicted variation as the sliding window
+ * search over the fixed windows of last year, with the later window taken
+ * when windows are at the same distance. Daily averages of a station are
+ * read once for all of its jobs.
+ *
+ * @author Irene Mathew
+ *
+ */
+import static com.weather.prediction.constants.WeatherConstants.LAST_YEAR_LAG_DAYS;
+import static com.weather.prediction.constants.WeatherConstants.MORNING_SLOT;
+import static com.weather.prediction.constants.WeatherConstants.NOON_SLOT;
+import static com.weather.prediction.constants.WeatherConstants.WINDOW_COUNT;
+import static com.weather.prediction.constants.WeatherConstants.WINDOW_SIZE;
+import static com.weather.prediction.logic.DayFeatureMatrix.FEATURES_PER_DAY;
+import static com.weather.prediction.logic.VariationEngine.HUMIDITY;
+import static com.weather.prediction.logic.VariationEngine.PRESSURE;
+import static com.weather.prediction.logic.VariationEngine.RESULT_SIZE;
+import static com.weather.prediction.logic.VariationEngine.TEMPERATURE;
+import static com.weather.prediction.logic.VariationEngine.VALUES_PER_SLOT;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import com.weather.prediction.utils.DailyAggregateCache;
+import com.weather.prediction.utils.ObservationView;
+import com.weather.prediction.utils.WeatherUtils;
+
+public final class BatchForecastEngine {
+	private static final int PRESENT_DAYS = WINDOW_SIZE;
+	private static final int HISTORY_DAYS = WINDOW_SIZE + WINDOW_COUNT - 1;
+
+	private final ForecastKernel kernel;
+	private final List<ObservationView> views = new ArrayList<ObservationView>();
+	private int[] issueDays = new int[16];
+	private int jobCount;
+	private int[] windowDays = new int[0];
+	private float[] variations = new float[0];
+	private float[] forecasts = new float[0];
+	private long runNanos;
+	final static Logger logger = Logger.getLogger(BatchForecastEngine.class);
+
+	public BatchForecastEngine() {
+		this(ForecastKernels.get());
+	}
+
+	/**
+	 * @param kernel
+	 *            kernel which calculates the distances and variations
+	 */
+	public BatchForecastEngine(ForecastKernel kernel) {
+		this.kernel = kernel;
+	}
+
+	/**
+	 * This function adds a job to the next run.
+	 *
+	 * @param view
+	 *            observations of the station
+	 * @param issueDay
+	 *            epoch day of the last observed day, the day after which is
+	 *            forecast
+	 * @return number of the job
+	 */
+	public int addJob(ObservationView view, int issueDay) {
+		if (jobCount == issueDays.length)
+			issueDays = Arrays.copyOf(issueDays, jobCount * 2);
+		views.add(view);
+		issueDays[jobCount] = issueDay;
+		return jobCount++;
+	}
+
+	/**
+	 * @return number of jobs added
+	 */
+	public int getJobCount() {
+		return jobCount;
+	}
+
+	/**
+	 * This function removes all jobs and their results.
+	 */
+	public void clear() {
+		views.clear();
+		jobCount = 0;
+		windowDays = new int[0];
+		variations = new float[0];
+		forecasts = new float[0];
+	}
+
+	/**
+	 * This function forecasts every job added. A job whose present period or
+	 * last year's period has a day without both forecast times gets no
+	 * forecast.
+	 */
+	public void run() {
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		boolean cpuTime = threadBean.isCurrentThreadCpuTimeSupported();
+		long start = cpuTime ? threadBean.getCurrentThreadCpuTime() : System
+				.nanoTime();
+		int jobs = jobCount;
+		float[] presentFeatures = new float[jobs * PRESENT_DAYS
+				* FEATURES_PER_DAY];
+		float[] historyFeatures = new float[jobs * HISTORY_DAYS
+				* FEATURES_PER_DAY];
+		// one column of consecutive days for each value of each slot
+		float[] presentValues = new float[jobs * RESULT_SIZE * PRESENT_DAYS];
+		float[] historyValues = new float[jobs * RESULT_SIZE * HISTORY_DAYS];
+		boolean[] complete = new boolean[jobs];
+		Map<ObservationView, DailyAggregateCache> aggregates = new IdentityHashMap<ObservationView, DailyAggregateCache>();
+		for (int job = 0; job < jobs; job++) {
+			ObservationView view = views.get(job);
+			DailyAggregateCache cache = aggregates.get(view);
+			if (cache == null) {
+				cache = new DailyAggregateCache(view);
+				aggregates.put(view, cache);
+			}
+			int presentFirstDay = issueDays[job] - PRESENT_DAYS + 1;
+			int historyFirstDay = issueDays[job] - LAST_YEAR_LAG_DAYS;
+			complete[job] = readFeatures(cache, presentFirstDay, PRESENT_DAYS,
+					presentFeatures, job)
+					& readFeatures(cache, historyFirstDay, HISTORY_DAYS,
+							historyFeatures, job);
+			readValues(view, presentFirstDay, PRESENT_DAYS, presentValues, job);
+			readValues(view, historyFirstDay, HISTORY_DAYS, historyValues, job);
+		}
+
+		// every window of every job against the present period of its job
+		int pairs = jobs * WINDOW_COUNT;
+		int[] windowOffsets = new int[pairs];
+		int[] presentOffsets = new int[pairs];
+		for (int job = 0; job < jobs; job++) {
+			for (int window = 0; window < WINDOW_COUNT; window++) {
+				windowOffsets[job * WINDOW_COUNT + window] = (job
+						* HISTORY_DAYS + window)
+						* FEATURES_PER_DAY;
+				presentOffsets[job * WINDOW_COUNT + window] = job
+						* PRESENT_DAYS * FEATURES_PER_DAY;
+			}
+		}
+		double[] sums = new double[pairs];
+		kernel.pairedSquaredDistances(historyFeatures, windowOffsets,
+				presentFeatures, presentOffsets, pairs, PRESENT_DAYS, sums);
+		// differences across the end of a column are never read
+		float[] presentDifferences = new float[presentValues.length];
+		kernel.differences(presentValues, presentValues.length,
+				presentDifferences);
+		float[] historyDifferences = new float[historyValues.length];
+		kernel.differences(historyValues, historyValues.length,
+				historyDifferences);
+
+		windowDays = new int[jobs];
+		variations = new float[jobs * RESULT_SIZE];
+		forecasts = new float[jobs * RESULT_SIZE];
+		for (int job = 0; job < jobs; job++) {
+			if (!complete[job]) {
+				windowDays[job] = -1;
+				Arrays.fill(variations, job * RESULT_SIZE, (job + 1)
+						* RESULT_SIZE, Float.NaN);
+				Arrays.fill(forecasts, job * RESULT_SIZE, (job + 1)
+						* RESULT_SIZE, Float.NaN);
+				continue;
+			}
+			int minWindow = findMinimumWindow(sums, job);
+			windowDays[job] = issueDays[job] - LAST_YEAR_LAG_DAYS + minWindow;
+			for (int column = 0; column < RESULT_SIZE; column++) {
+				int presentColumn = (job * RESULT_SIZE + column) * PRESENT_DAYS;
+				float previous = meanDifference(historyDifferences, (job
+						* RESULT_SIZE + column)
+						* HISTORY_DAYS + minWindow);
+				float present = meanDifference(presentDifferences,
+						presentColumn);
+				float variation = (0f + previous + present) / 2;
+				variations[job * RESULT_SIZE + column] = variation;
+				forecasts[job * RESULT_SIZE + column] = WeatherUtils
+						.roundDecimalPlaces(presentValues[presentColumn
+								+ PRESENT_DAYS - 1]
+								+ variation, 2);
+			}
+		}
+		runNanos = (cpuTime ? threadBean.getCurrentThreadCpuTime() : System
+				.nanoTime()) - start;
+		logger.debug("Batch of " + jobs + " forecasts: "
+				+ Math.round(getForecastsPerSecondPerCore())
+				+ " forecasts per second per core");
+	}
+
+	/**
+	 * This function reads the daily averages of a range of days of a job
+	 * into the part of an array which belongs to the job.
+	 *
+	 * @return true if every day of the range has both forecast times
+	 */
+	private static boolean readFeatures(DailyAggregateCache cache,
+			int firstDay, int days, float[] features, int job) {
+		boolean complete = true;
+		int index = job * days * FEATURES_PER_DAY;
+		for (int day = firstDay; day < firstDay + days; day++) {
+			features[index++] = cache.getHumidity(day);
+			features[index++] = cache.getPressure(day);
+			features[index++] = cache.getTemp(day);
+			complete &= cache.isComplete(day);
+		}
+		return complete;
+	}
+
+	/**
+	 * This function reads the observations of a range of days of a job into
+	 * one column for each value of each slot.
+	 */
+	private static void readValues(ObservationView view, int firstDay,
+			int days, float[] values, int job) {
+		for (int slot = MORNING_SLOT; slot <= NOON_SLOT; slot++) {
+			int column = (job * RESULT_SIZE + slot * VALUES_PER_SLOT) * days;
+			for (int day = 0; day < days; day++) {
+				values[column + TEMPERATURE * days + day] = view.getTemp(
+						firstDay + day, slot);
+				values[column + HUMIDITY * days + day] = view.getHumidity(
+						firstDay + day, slot);
+				values[column + PRESSURE * days + day] = view.getPressure(
+						firstDay + day, slot);
+			}
+		}
+	}
+
+	/**
+	 * @return window of a job with minimum rounded distance, the later
+	 *         window when windows are at the same distance
+	 */
+	private static int findMinimumWindow(double[] sums, int job) {
+		double minDistance = Double.MAX_VALUE;
+		int minWindow = 0;
+		for (int window = 0; window < WINDOW_COUNT; window++) {
+			double distance = DayFeatureMatrix.roundDistance(sums[job
+					* WINDOW_COUNT + window]);
+			if (distance <= minDistance) {
+				minDistance = distance;
+				minWindow = window;
+			}
+		}
+		return minWindow;
+	}
+
+	/**
+	 * @return mean of the differences of the days of a period, added in
+	 *         float in the order of the days
+	 */
+	private static float meanDifference(float[] differences, int from) {
+		float sum = 0;
+		for (int index = from; index < from + PRESENT_DAYS - 1; index++) {
+			sum += differences[index];
+		}
+		return sum / (PRESENT_DAYS - 1);
+	}
+
+	/**
+	 * @return true if the last run gave a forecast for the job
+	 */
+	public boolean hasForecast(int job) {
+		return windowDays[job] >= 0;
+	}
+
+	/**
+	 * @return epoch day of the first day of the window of last year closest
+	 *         to the present period of the job, or -1 without a forecast
+	 */
+	public int getWindowDay(int job) {
+		return windowDays[job];
+	}
+
+	/**
+	 * @param job
+	 *            number of the job
+	 * @param slot
+	 *            forecast time, MORNING_SLOT or NOON_SLOT
+	 * @param value
+	 *            TEMPERATURE, HUMIDITY or PRESSURE of VariationEngine
+	 * @return predicted variation of a value from the issue day
+	 */
+	public float getVariation(int job, int slot, int value) {
+		return variations[job * RESULT_SIZE + slot * VALUES_PER_SLOT + value];
+	}
+
+	/**
+	 * @param job
+	 *            number of the job
+	 * @param slot
+	 *            forecast time, MORNING_SLOT or NOON_SLOT
+	 * @param value
+	 *            TEMPERATURE, HUMIDITY or PRESSURE of VariationEngine
+	 * @return forecast of a value for the day after the issue day, rounded
+	 *         to two decimal places
+	 */
+	public float getForecast(int job, int slot, int value) {
+		return forecasts[job * RESULT_SIZE + slot * VALUES_PER_SLOT + value];
+	}
+
+	/**
+	 * @return forecasts of the last run per second of processor time of the
+	 *         thread which ran it
+	 */
+	public double getForecastsPerSecondPerCore() {
+		return runNanos == 0 ? 0 : windowDays.length * 1e9 / runNanos;
+	}
+
+}
@@ -0,0 +1,167 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+package com.weather.prediction.logic;
+
+/**
+ * Class which keeps the windows closest to the present period out of any
+ * number of windows offered, in a heap of fixed capacity held in primitive
+ * arrays. The root of the heap is the farthest window kept, so a window
+ * which is not closer is turned away with a single comparison. Of two
+ * windows at the same distance the later window is closer, as in the
+ * sliding window search.
+ *
+ * @author Irene Mathew
+ *
+ */
+public final class BoundedMaxHeap {
+	private final double[] distances;
+	private final int[] windows;
+	private int size;
+
+	/**
+	 * @param capacity
+	 *            number of windows kept
+	 */
+	public BoundedMaxHeap(int capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("Capacity(" + capacity
+					+ ") of heap is less than 1");
+		this.distances = new double[capacity];
+		this.windows = new int[capacity];
+	}
+
+	/**
+	 * This function offers a window to the heap. The window is kept if the
+	 * heap is not full or the window is closer than the farthest window kept,
+	 * which is then dropped.
+	 *
+	 * @param distance
+	 *            distance of the window
+	 * @param window
+	 *            number or first day of the window
+	 * @return true if the window is kept
+	 */
+	public boolean offer(double distance, int window) {
+		if (size < distances.length) {
+			distances[size] = distance;
+			windows[size] = window;
+			siftUp(size++);
+			return true;
+		}
+		if (!isCloser(distance, window, distances[0], windows[0]))
+			return false;
+		distances[0] = distance;
+		windows[0] = window;
+		siftDown(0, size);
+		return true;
+	}
+
+	/**
+	 * @return true if the heap holds as many windows as its capacity
+	 */
+	public boolean isFull() {
+		return size == distances.length;
+	}
+
+	/**
+	 * @return distance of the farthest window kept
+	 */
+	public double peekDistance() {
+		return distances[0];
+	}
+
+	/**
+	 * @return number of windows kept
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return number of windows the heap can keep
+	 */
+	public int capacity() {
+		return distances.length;
+	}
+
+	/**
+	 * This function removes all windows from the heap.
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * This function moves the windows kept to arrays, closest window first,
+	 * and empties the heap.
+	 *
+	 * @param distanceOut
+	 *            array to which distances are written
+	 * @param windowOut
+	 *            array to which windows are written
+	 * @return number of windows written
+	 */
+	public int drainAscending(double[] distanceOut, int[] windowOut) {
+		int count = size;
+		while (size > 0) {
+			distanceOut[size - 1] = distances[0];
+			windowOut[size - 1] = windows[0];
+			size--;
+			distances[0] = distances[size];
+			windows[0] = windows[size];
+			siftDown(0, size);
+		}
+		return count;
+	}
+
+	private static boolean isCloser(double distance, int window,
+			double otherDistance, int otherWindow) {
+		return distance < otherDistance
+				|| (distance == otherDistance && window > otherWindow);
+	}
+
+	private void siftUp(int index) {
+		while (index > 0) {
+			int parent = (index - 1) >> 1;
+			if (!isCloser(distances[parent], windows[parent],
+					distances[index], windows[index]))
+				return;
+			swap(index, parent);
+			index = parent;
+		}
+	}
+
+	private void siftDown(int index, int end) {
+		while (true) {
+			int child = 2 * index + 1;
+			if (child >= end)
+				return;
+			if (child + 1 < end
+					&& isCloser(distances[child], windows[child],
+							distances[child + 1], windows[child + 1]))
+				child++;
+			if (!isCloser(distances[index], windows[index], distances[child],
+					windows[child]))
+				return;
+			swap(index, child);
+			index = child;
+		}
+	}
+
+	private void swap(int first, int second) {
+		double distance = distances[first];
+		distances[first] = distances[second];
+		distances[second] = distance;
+		int window = windows[first];
+		windows[first] = windows[second];
+		windows[second] = window;
+	}
+
+}
@@ -0,0 +1,307 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+package com.weather.prediction.logic;
+
+/**
+ * Class which holds the daily averages of humidity, pressure and temperature
+ * of consecutive days in a single float array, three features per day in
+ * that order. The sliding window search compares days of two matrices with a
+ * primitive loop which does not create objects. Running sums of each feature
+ * and of its square over complete days give the mean and deviation of any
+ * range of days at once, which bound the distance between two ranges.
+ *
+ * @author Irene Mathew
+ *
+ */
+import static com.weather.prediction.constants.WeatherConstants.MORNING_SLOT;
+import static com.weather.prediction.constants.WeatherConstants.NOON_SLOT;
+
+import com.weather.prediction.utils.DailyAggregateCache;
+import com.weather.prediction.utils.ObservationView;
+
+public final class DayFeatureMatrix {
+	static final int FEATURES_PER_DAY = 3;
+	// distances are compared after rounding to four decimal places
+	static final double ROUNDING = 0.0001;
+
+	private final float[] features;
+	private final boolean[] complete;
+	// sums of features and squares of features before each day, taken from
+	// the feature of the first complete day to keep them small
+	private final double[] offsets = new double[FEATURES_PER_DAY];
+	private final double[] prefixSums;
+	private final double[] prefixSquares;
+	private final int firstEpochDay;
+	private final int days;
+
+	private DayFeatureMatrix(int firstEpochDay, int days) {
+		this.firstEpochDay = firstEpochDay;
+		this.days = days;
+		this.features = new float[days * FEATURES_PER_DAY];
+		this.complete = new boolean[days];
+		this.prefixSums = new double[(days + 1) * FEATURES_PER_DAY];
+		this.prefixSquares = new double[(days + 1) * FEATURES_PER_DAY];
+	}
+
+	/**
+	 * This function reads the daily averages of a range of days from a view.
+	 * The average of a day is the average of its two forecast times.
+	 *
+	 * @param view
+	 *            observations of a station
+	 * @param firstEpochDay
+	 *            epoch day of the first day of the range
+	 * @param days
+	 *            number of days of the range
+	 * @return daily averages of the range
+	 */
+	public static DayFeatureMatrix of(ObservationView view, int firstEpochDay,
+			int days) {
+		DayFeatureMatrix matrix = new DayFeatureMatrix(firstEpochDay,
+				Math.max(days, 0));
+		for (int day = 0; day < matrix.days; day++) {
+			int epochDay = firstEpochDay + day;
+			int index = day * FEATURES_PER_DAY;
+			matrix.features[index] = (view.getHumidity(epochDay, MORNING_SLOT) + view
+					.getHumidity(epochDay, NOON_SLOT)) / 2;
+			matrix.features[index + 1] = (view.getPressure(epochDay,
+					MORNING_SLOT) + view.getPressure(epochDay, NOON_SLOT)) / 2;
+			matrix.features[index + 2] = (view.getTemp(epochDay, MORNING_SLOT) + view
+					.getTemp(epochDay, NOON_SLOT)) / 2;
+			matrix.complete[day] = view.hasObservation(epochDay, MORNING_SLOT)
+					&& view.hasObservation(epochDay, NOON_SLOT);
+		}
+		matrix.sumFeatures();
+		return matrix;
+	}
+
+	/**
+	 * This function copies the daily averages of a range of days from a
+	 * cache of daily averages, which reads each day from its view once.
+	 *
+	 * @param aggregates
+	 *            daily averages of a station
+	 * @param firstEpochDay
+	 *            epoch day of the first day of the range
+	 * @param days
+	 *            number of days of the range
+	 * @return daily averages of the range
+	 */
+	public static DayFeatureMatrix of(DailyAggregateCache aggregates,
+			int firstEpochDay, int days) {
+		DayFeatureMatrix matrix = new DayFeatureMatrix(firstEpochDay,
+				Math.max(days, 0));
+		for (int day = 0; day < matrix.days; day++) {
+			int epochDay = firstEpochDay + day;
+			int index = day * FEATURES_PER_DAY;
+			matrix.features[index] = aggregates.getHumidity(epochDay);
+			matrix.features[index + 1] = aggregates.getPressure(epochDay);
+			matrix.features[index + 2] = aggregates.getTemp(epochDay);
+			matrix.complete[day] = aggregates.isComplete(epochDay);
+		}
+		matrix.sumFeatures();
+		return matrix;
+	}
+
+	private void sumFeatures() {
+		for (int day = 0; day < days; day++) {
+			if (complete[day]) {
+				for (int feature = 0; feature < FEATURES_PER_DAY; feature++) {
+					offsets[feature] = features[day * FEATURES_PER_DAY + feature];
+				}
+				break;
+			}
+		}
+		for (int day = 0; day < days; day++) {
+			for (int feature = 0; feature < FEATURES_PER_DAY; feature++) {
+				int index = day * FEATURES_PER_DAY + feature;
+				double value = complete[day] ? features[index]
+						- offsets[feature] : 0;
+				prefixSums[index + FEATURES_PER_DAY] = prefixSums[index] + value;
+				prefixSquares[index + FEATURES_PER_DAY] = prefixSquares[index]
+						+ value * value;
+			}
+		}
+	}
+
+	/**
+	 * @return mean of a feature over a range of complete days
+	 */
+	double mean(int feature, int fromDay, int count) {
+		return offsets[feature] + sum(prefixSums, feature, fromDay, count)
+				/ count;
+	}
+
+	/**
+	 * @return standard deviation of a feature over a range of complete days
+	 */
+	double deviation(int feature, int fromDay, int count) {
+		double mean = sum(prefixSums, feature, fromDay, count) / count;
+		double variance = sum(prefixSquares, feature, fromDay, count) / count
+				- mean * mean;
+		return Math.sqrt(Math.max(variance, 0));
+	}
+
+	private static double sum(double[] prefix, int feature, int fromDay,
+			int count) {
+		return prefix[(fromDay + count) * FEATURES_PER_DAY + feature]
+				- prefix[fromDay * FEATURES_PER_DAY + feature];
+	}
+
+	/**
+	 * @return epoch day of the first day of the matrix
+	 */
+	public int getFirstEpochDay() {
+		return firstEpochDay;
+	}
+
+	/**
+	 * @return number of days of the matrix
+	 */
+	public int getDays() {
+		return days;
+	}
+
+	/**
+	 * @return daily averages, three features per day
+	 */
+	float[] getFeatures() {
+		return features;
+	}
+
+	/**
+	 * @return true if a day has both forecast times
+	 */
+	boolean isComplete(int day) {
+		return complete[day];
+	}
+
+	/**
+	 * This function counts the days of a range having both forecast times.
+	 *
+	 * @param fromDay
+	 *            index of the first day of the range
+	 * @param count
+	 *            number of days of the range
+	 * @return number of complete days
+	 */
+	public int countCompleteDays(int fromDay, int count) {
+		int completeDays = 0;
+		for (int day = fromDay; day < fromDay + count; day++) {
+			if (day >= 0 && day < days && complete[day])
+				completeDays++;
+		}
+		return completeDays;
+	}
+
+	/**
+	 * This function calculates the sum of squared differences between the
+	 * daily averages of days of two matrices. Differences are taken in float
+	 * and squared in double, which gives the same result as squaring them
+	 * with Math.pow.
+	 *
+	 * @param first
+	 *            first matrix
+	 * @param firstDay
+	 *            index of the first day compared in the first matrix
+	 * @param second
+	 *            second matrix
+	 * @param secondDay
+	 *            index of the first day compared in the second matrix
+	 * @param count
+	 *            number of days compared
+	 * @return sum of squared differences
+	 */
+	public static double squaredDistance(DayFeatureMatrix first, int firstDay,
+			DayFeatureMatrix second, int secondDay, int count) {
+		float[] a = first.features;
+		float[] b = second.features;
+		int i = firstDay * FEATURES_PER_DAY;
+		int j = secondDay * FEATURES_PER_DAY;
+		double sum = 0;
+		for (int day = 0; day < count; day++) {
+			double humidity = a[i] - b[j];
+			double pressure = a[i + 1] - b[j + 1];
+			double temp = a[i + 2] - b[j + 2];
+			sum += humidity * humidity + pressure * pressure + temp * temp;
+			i += FEATURES_PER_DAY;
+			j += FEATURES_PER_DAY;
+		}
+		return sum;
+	}
+
+	/**
+	 * This function calculates the sum of squared differences between the
+	 * daily averages of days of two matrices like
+	 * {@link #squaredDistance(DayFeatureMatrix, int, DayFeatureMatrix, int, int)}
+	 * , but stops as soon as the sum exceeds a limit. The sum only grows day
+	 * by day, so a sum stopped early is already known to exceed the limit.
+	 *
+	 * @param limit
+	 *            sum above which the days left are not compared
+	 * @return sum of squared differences, or a partial sum above the limit
+	 */
+	public static double squaredDistance(DayFeatureMatrix first, int firstDay,
+			DayFeatureMatrix second, int secondDay, int count, double limit) {
+		return squaredDistance(first.features, firstDay * FEATURES_PER_DAY,
+				second.features, secondDay * FEATURES_PER_DAY, count, limit);
+	}
+
+	/**
+	 * This function calculates the sum of squared differences between two
+	 * ranges of daily averages laid out three features per day, stopping as
+	 * soon as the sum exceeds a limit.
+	 *
+	 * @param a
+	 *            daily averages of the first range
+	 * @param i
+	 *            index in a of the first feature of the first range
+	 * @param b
+	 *            daily averages of the second range
+	 * @param j
+	 *            index in b of the first feature of the second range
+	 * @param count
+	 *            number of days compared
+	 * @param limit
+	 *            sum above which the days left are not compared
+	 * @return sum of squared differences, or a partial sum above the limit
+	 */
+	static double squaredDistance(float[] a, int i, float[] b, int j,
+			int count, double limit) {
+		double sum = 0;
+		for (int day = 0; day < count && sum <= limit; day++) {
+			double humidity = a[i] - b[j];
+			double pressure = a[i + 1] - b[j + 1];
+			double temp = a[i + 2] - b[j + 2];
+			sum += humidity * humidity + pressure * pressure + temp * temp;
+			i += FEATURES_PER_DAY;
+			j += FEATURES_PER_DAY;
+		}
+		return sum;
+	}
+
+	/**
+	 * @return largest squared distance of a window whose rounded distance can
+	 *         be at most the given rounded distance
+	 */
+	static double keepLimit(double roundedDistance) {
+		double bound = roundedDistance + ROUNDING;
+		return bound * bound;
+	}
+
+	/**
+	 * @return Euclidean distance rounded to four decimal places, as compared
+	 *         by the sliding window search
+	 */
+	public static double roundDistance(double squaredDistance) {
+		return Math.round(Math.sqrt(squaredDistance) * 10000.0) / 10000.0;
+	}
+
+}
@@ -0,0 +1,49 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+package com.weather.prediction.logic;
+
+/**
+ * Class which measures a window by the Euclidean distance between the raw
+ * daily averages of its days and of the present period, the metric of the
+ * algorithm. The sliding window search measures this metric with its lower
+ * bounds and batches of the forecast kernel, and gives the same windows as
+ * measuring every window with this class.
+ *
+ * @author Irene Mathew
+ *
+ */
+public final class EuclideanMetric implements SimilarityMetric {
+	private final ForecastKernel kernel;
+
+	public EuclideanMetric() {
+		this(ForecastKernels.get());
+	}
+
+	/**
+	 * @param kernel
+	 *            kernel which calculates the distances
+	 */
+	public EuclideanMetric(ForecastKernel kernel) {
+		this.kernel = kernel;
+	}
+
+	@Override
+	public double squaredDistance(DayFeatureMatrix history, int fromDay,
+			DayFeatureMatrix present, double limit) {
+		return kernel.squaredDistance(history, fromDay, present, limit);
+	}
+
+	@Override
+	public String toString() {
+		return "EuclideanMetric [kernel="
+				+ kernel.getClass().getSimpleName() + "]";
+	}
+
+}
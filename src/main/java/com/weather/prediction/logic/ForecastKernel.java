@@ -0,0 +1,109 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+package com.weather.prediction.logic;
+
+/**
+ * Interface of the primitive loops of the algorithm, which measure windows
+ * against the present period and take the variation vectors of a period.
+ * The scalar kernel runs on every Java version, and a kernel using the
+ * Vector API is loaded instead on Java 17 and later by
+ * {@link ForecastKernels}. Every kernel gives the same results as the
+ * scalar kernel, to the last bit.
+ *
+ * @author Irene Mathew
+ *
+ */
+public interface ForecastKernel {
+
+	/**
+	 * This function calculates the sum of squared differences between the
+	 * daily averages of a window of the history and the present period,
+	 * stopping as soon as the sum exceeds a limit.
+	 *
+	 * @param history
+	 *            daily averages of the history
+	 * @param fromDay
+	 *            index in the history of the first day of the window
+	 * @param present
+	 *            daily averages of the present period
+	 * @param limit
+	 *            sum above which the days left are not compared
+	 * @return sum of squared differences, or a partial sum above the limit
+	 */
+	double squaredDistance(DayFeatureMatrix history, int fromDay,
+			DayFeatureMatrix present, double limit);
+
+	/**
+	 * This function calculates the sums of squared differences of a batch of
+	 * windows of the history like
+	 * {@link #squaredDistance(DayFeatureMatrix, int, DayFeatureMatrix, double)}
+	 * . A sum above the limit may be partial.
+	 *
+	 * @param history
+	 *            daily averages of the history
+	 * @param windows
+	 *            indices in the history of the first days of the windows
+	 * @param count
+	 *            number of windows
+	 * @param present
+	 *            daily averages of the present period
+	 * @param limit
+	 *            sum above which the days left are not compared
+	 * @param sumOut
+	 *            array to which the sum of each window is written
+	 * @param offsetScratch
+	 *            array of the caller of at least count elements, which the
+	 *            kernel may overwrite, so a batch allocates nothing
+	 */
+	void squaredDistances(DayFeatureMatrix history, int[] windows, int count,
+			DayFeatureMatrix present, double limit, double[] sumOut,
+			int[] offsetScratch);
+
+	/**
+	 * This function calculates the sums of squared differences of pairs of
+	 * ranges of daily averages laid out three features per day, each range
+	 * of the first array against its own range of the second array. Sums
+	 * are added day by day as by
+	 * {@link #squaredDistance(DayFeatureMatrix, int, DayFeatureMatrix, double)}
+	 * .
+	 *
+	 * @param first
+	 *            daily averages of the first ranges
+	 * @param firstOffsets
+	 *            indices in first of the first feature of each range
+	 * @param second
+	 *            daily averages of the second ranges
+	 * @param secondOffsets
+	 *            indices in second of the first feature of each range
+	 * @param count
+	 *            number of pairs
+	 * @param days
+	 *            number of days of each range
+	 * @param sumOut
+	 *            array to which the sum of each pair is written
+	 */
+	void pairedSquaredDistances(float[] first, int[] firstOffsets,
+			float[] second, int[] secondOffsets, int count, int days,
+			double[] sumOut);
+
+	/**
+	 * This function takes the difference between each value and the value
+	 * before it, which are the variations of consecutive days.
+	 *
+	 * @param values
+	 *            values of consecutive days
+	 * @param count
+	 *            number of values
+	 * @param differenceOut
+	 *            array to which the count - 1 differences are written
+	 */
+	void differences(float[] values, int count, float[] differenceOut);
+
+}
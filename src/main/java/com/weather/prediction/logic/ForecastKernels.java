@@ -0,0 +1,61 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+package com.weather.prediction.logic;
+
+/**
+ * Class which chooses the kernel of the algorithm once for the JVM. The
+ * kernel using the Vector API is only in the META-INF/versions/17 part of
+ * the multi-release jar and needs the JVM option --add-modules
+ * jdk.incubator.vector. When it cannot be loaded, the scalar kernel is
+ * used.
+ *
+ * @author Irene Mathew
+ *
+ */
+import org.apache.log4j.Logger;
+
+public final class ForecastKernels {
+	final static Logger logger = Logger.getLogger(ForecastKernels.class);
+	private static final String VECTOR_KERNEL = "com.weather.prediction.logic.VectorForecastKernel";
+	private static final ForecastKernel SCALAR = new ScalarForecastKernel();
+	private static final ForecastKernel KERNEL = load();
+
+	private ForecastKernels() {
+	}
+
+	/**
+	 * @return kernel used by the algorithm
+	 */
+	public static ForecastKernel get() {
+		return KERNEL;
+	}
+
+	/**
+	 * @return scalar kernel, which runs on every Java version
+	 */
+	public static ForecastKernel scalar() {
+		return SCALAR;
+	}
+
+	private static ForecastKernel load() {
+		ForecastKernel kernel = SCALAR;
+		try {
+			kernel = (ForecastKernel) Class.forName(VECTOR_KERNEL)
+					.getDeclaredConstructor().newInstance();
+		} catch (ClassNotFoundException e) {
+			// Java 8, or classes not loaded from the multi-release jar
+		} catch (LinkageError | ReflectiveOperationException e) {
+			// module jdk.incubator.vector not added, or no vector unit
+		}
+		logger.info("Forecast kernel: " + kernel.getClass().getSimpleName());
+		return kernel;
+	}
+
+}
@@ -0,0 +1,130 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+package com.weather.prediction.logic;
+
+/**
+ * Class which lays the days forecast by a run over a read only history. The
+ * history is read in place up to the issue day, and the forecast days after
+ * it are held in a small array of the horizon, so a forecast never copies or
+ * changes the history it reads.
+ *
+ * @author Irene Mathew
+ *
+ */
+import com.weather.prediction.utils.ObservationView;
+
+final class ForecastOverlay implements ObservationView {
+	private static final int SLOT_COUNT = 2;
+	private static final int FIELDS_PER_SLOT = 3;
+
+	private final ObservationView history;
+	private final int issueEpochDay;
+	private final float[] values;
+	private final boolean[] observed;
+	private int lastEpochDay;
+
+	/**
+	 * @param history
+	 *            observations of the location
+	 * @param issueEpochDay
+	 *            last day of the history which is read, or its last day if
+	 *            that is earlier
+	 * @param horizonDays
+	 *            number of days which are forecast
+	 */
+	ForecastOverlay(ObservationView history, int issueEpochDay,
+			int horizonDays) {
+		this.history = history;
+		this.issueEpochDay = Math.min(issueEpochDay, history.getLastEpochDay());
+		this.values = new float[horizonDays * SLOT_COUNT * FIELDS_PER_SLOT];
+		this.observed = new boolean[horizonDays * SLOT_COUNT];
+		this.lastEpochDay = this.issueEpochDay;
+	}
+
+	/**
+	 * This function adds a forecast day, which is then the last day of the
+	 * view even if nothing is forecast for it.
+	 *
+	 * @param epochDay
+	 *            day after the last day of the view
+	 */
+	void addDay(int epochDay) {
+		if (epochDay != lastEpochDay + 1
+				|| index(epochDay, 0) >= observed.length)
+			throw new IllegalArgumentException("Day " + epochDay
+					+ " does not follow " + lastEpochDay + " within the horizon");
+		lastEpochDay = epochDay;
+	}
+
+	/**
+	 * This function stores the forecast of a forecast day at one of the
+	 * forecast times.
+	 */
+	void put(int epochDay, int slot, float temp, float humidity,
+			float pressure) {
+		if (epochDay <= issueEpochDay || epochDay > lastEpochDay)
+			throw new IllegalArgumentException("Day " + epochDay
+					+ " is not a forecast day");
+		int index = index(epochDay, slot);
+		observed[index] = true;
+		values[index * FIELDS_PER_SLOT] = temp;
+		values[index * FIELDS_PER_SLOT + 1] = humidity;
+		values[index * FIELDS_PER_SLOT + 2] = pressure;
+	}
+
+	private int index(int epochDay, int slot) {
+		return (epochDay - issueEpochDay - 1) * SLOT_COUNT + slot;
+	}
+
+	@Override
+	public int getFirstEpochDay() {
+		return history.getFirstEpochDay();
+	}
+
+	@Override
+	public int getLastEpochDay() {
+		return lastEpochDay;
+	}
+
+	@Override
+	public boolean hasObservation(int epochDay, int slot) {
+		if (epochDay <= issueEpochDay)
+			return history.hasObservation(epochDay, slot);
+		return epochDay <= lastEpochDay && observed[index(epochDay, slot)];
+	}
+
+	@Override
+	public float getTemp(int epochDay, int slot) {
+		return getValue(epochDay, slot, 0);
+	}
+
+	@Override
+	public float getHumidity(int epochDay, int slot) {
+		return getValue(epochDay, slot, 1);
+	}
+
+	@Override
+	public float getPressure(int epochDay, int slot) {
+		return getValue(epochDay, slot, 2);
+	}
+
+	private float getValue(int epochDay, int slot, int field) {
+		if (epochDay <= issueEpochDay) {
+			if (field == 0)
+				return history.getTemp(epochDay, slot);
+			return field == 1 ? history.getHumidity(epochDay, slot) : history
+					.getPressure(epochDay, slot);
+		}
+		if (!hasObservation(epochDay, slot))
+			return Float.NaN;
+		return values[index(epochDay, slot) * FIELDS_PER_SLOT + field];
+	}
+
+}
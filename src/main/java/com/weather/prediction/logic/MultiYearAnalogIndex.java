@@ -0,0 +1,163 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+package com.weather.prediction.logic;
+
+/**
+ * Class which searches every year of an archive for the window closest to
+ * the present period. The daily averages of the whole archive are read once
+ * when the index is created. A search looks at the windows starting up to a
+ * span of days either side of the same date in each earlier year, using the
+ * rolling search over that part of the index, and keeps the closest windows
+ * of all years in one bounded heap.
+ *
+ * @author Irene Mathew
+ *
+ */
+import com.weather.prediction.exception.WeatherException;
+import com.weather.prediction.utils.ObservationView;
+import com.weather.prediction.utils.WeatherUtils;
+
+public class MultiYearAnalogIndex {
+	private final ObservationView view;
+	private final DayFeatureMatrix features;
+	private final int spanDays;
+
+	/**
+	 * @param view
+	 *            observations of a station
+	 * @param spanDays
+	 *            number of days either side of the same date of each year at
+	 *            which windows may start
+	 */
+	public MultiYearAnalogIndex(ObservationView view, int spanDays) {
+		this.view = view;
+		this.spanDays = spanDays;
+		this.features = DayFeatureMatrix.of(view, view.getFirstEpochDay(),
+				view.getLastEpochDay() - view.getFirstEpochDay() + 1);
+	}
+
+	/**
+	 * @return observations of the station indexed
+	 */
+	public ObservationView getView() {
+		return view;
+	}
+
+	/**
+	 * @return epoch day of the first day of the index
+	 */
+	public int getFirstEpochDay() {
+		return features.getFirstEpochDay();
+	}
+
+	/**
+	 * @return epoch day of the last day of the index
+	 */
+	public int getLastEpochDay() {
+		return features.getFirstEpochDay() + features.getDays() - 1;
+	}
+
+	/**
+	 * This function finds the window with minimum Euclidean distance to the
+	 * present period in all years of the index before the present period.
+	 * When windows are at the same distance, the later window is taken.
+	 *
+	 * @param presentView
+	 *            observations of the present period
+	 * @param presentFirstDay
+	 *            epoch day of the first day of the present period
+	 * @param presentDays
+	 *            number of days of the present period
+	 * @return epoch day of the first day of the window with minimum distance
+	 * @throws WeatherException
+	 *             is thrown when the present period is not complete or no
+	 *             year has a complete window
+	 */
+	public int findAnalogWindow(ObservationView presentView,
+			int presentFirstDay, int presentDays) throws WeatherException {
+		int[] windowDays = new int[1];
+		findAnalogWindows(presentView, presentFirstDay, presentDays,
+				new double[1], windowDays);
+		return windowDays[0];
+	}
+
+	/**
+	 * This function finds the windows closest to the present period in all
+	 * years of the index before the present period, as many as the length of
+	 * the output arrays.
+	 *
+	 * @param presentView
+	 *            observations of the present period
+	 * @param presentFirstDay
+	 *            epoch day of the first day of the present period
+	 * @param presentDays
+	 *            number of days of the present period
+	 * @param distanceOut
+	 *            array to which the distances of the windows are written,
+	 *            closest first
+	 * @param windowDayOut
+	 *            array to which the epoch days of the first days of the
+	 *            windows are written
+	 * @return number of windows found
+	 * @throws WeatherException
+	 *             is thrown when the present period is not complete or no
+	 *             year has a complete window
+	 */
+	public int findAnalogWindows(ObservationView presentView,
+			int presentFirstDay, int presentDays, double[] distanceOut,
+			int[] windowDayOut) throws WeatherException {
+		return findAnalogWindows(presentView, presentFirstDay, presentDays,
+				distanceOut, windowDayOut, new PruningStats());
+	}
+
+	/**
+	 * This function finds the windows closest to the present period like
+	 * {@link #findAnalogWindows(ObservationView, int, int, double[], int[])}
+	 * and counts the candidate windows ruled out at each stage.
+	 *
+	 * @param stats
+	 *            counts to which the candidate windows are added
+	 */
+	public int findAnalogWindows(ObservationView presentView,
+			int presentFirstDay, int presentDays, double[] distanceOut,
+			int[] windowDayOut, PruningStats stats) throws WeatherException {
+		DayFeatureMatrix present = DayFeatureMatrix.of(presentView,
+				presentFirstDay, presentDays);
+		if (present.countCompleteDays(0, presentDays) != presentDays)
+			throw new WeatherException("Present period of " + presentDays
+					+ " days is not complete");
+		WindowEvaluator evaluator = new WindowEvaluator(present, stats);
+		BoundedMaxHeap heap = new BoundedMaxHeap(windowDayOut.length);
+		int[] date = WeatherUtils.epochDayToYearMonthDay(presentFirstDay);
+		int firstYear = WeatherUtils.epochDayToYearMonthDay(getFirstEpochDay())[0];
+		for (int year = firstYear - 1; year < date[0]; year++) {
+			int sameDay = WeatherUtils.toEpochDay(year, date[1],
+					date[1] == 2 && date[2] == 29 ? 28 : date[2]);
+			int fromDay = Math.max(sameDay - spanDays, getFirstEpochDay());
+			// windows end before the present period
+			int toDay = Math.min(sameDay + spanDays + presentDays - 1,
+					Math.min(getLastEpochDay(), presentFirstDay - 1));
+			if (toDay - fromDay + 1 < presentDays)
+				continue;
+			RollingDistanceSearch.findNearestWindows(evaluator, features,
+					fromDay - getFirstEpochDay(), toDay - fromDay + 1, heap);
+		}
+		int count = heap.drainAscending(distanceOut, windowDayOut);
+		if (count == 0)
+			throw new WeatherException("No complete window of " + presentDays
+					+ " days near " + WeatherUtils.epochDayToString(presentFirstDay)
+					+ " in earlier years");
+		for (int index = 0; index < count; index++) {
+			windowDayOut[index] += getFirstEpochDay();
+		}
+		return count;
+	}
+
+}
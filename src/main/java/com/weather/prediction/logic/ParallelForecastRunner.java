@@ -0,0 +1,192 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+package com.weather.prediction.logic;
+
+/**
+ * Class which forecasts many stations in one process, running the pipeline
+ * of each station on a fork-join pool. A pipeline reads the history of its
+ * station in place from the shared observation store and owns its predictor,
+ * which keeps the forecast days, and its output directory. The store and the
+ * settings of the run are only read, so pipelines share no mutable state and
+ * a station is never waiting on another. The latency of each station and the
+ * wall time of the run are logged.
+ *
+ * @author Irene Mathew
+ *
+ */
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import org.apache.log4j.Logger;
+
+import com.weather.prediction.bean.ForecastConfig;
+import com.weather.prediction.bean.Station;
+import com.weather.prediction.exception.WeatherException;
+import com.weather.prediction.utils.ObservationStore;
+import com.weather.prediction.utils.ObservationView;
+import com.weather.prediction.utils.WeatherUtils;
+
+public class ParallelForecastRunner {
+	private final int parallelism;
+	private ForecastConfig config = new ForecastConfig();
+	private SearchMode searchMode = SearchMode.FIXED_WINDOWS;
+	private int analogCount = 1;
+	private Function<ObservationView, SimilarityMetric> similarityMetric = SimilarityMetricType.EUCLIDEAN::create;
+	private long wallMillis;
+	final static Logger logger = Logger.getLogger(ParallelForecastRunner.class);
+
+	/**
+	 * @param parallelism
+	 *            number of stations forecast at the same time
+	 */
+	public ParallelForecastRunner(int parallelism) {
+		if (parallelism < 1)
+			throw new IllegalArgumentException("Parallelism(" + parallelism
+					+ ") is less than 1");
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * @param config
+	 *            settings of the forecast of every station, which are only
+	 *            read
+	 */
+	public void setForecastConfig(ForecastConfig config) {
+		this.config = config;
+	}
+
+	/**
+	 * @param searchMode
+	 *            way in which last year's records of every station are
+	 *            searched, FIXED_WINDOWS by default
+	 */
+	public void setSearchMode(SearchMode searchMode) {
+		this.searchMode = searchMode;
+	}
+
+	/**
+	 * @param analogCount
+	 *            number of closest windows whose variations are combined for
+	 *            every station, 1 by default
+	 */
+	public void setAnalogCount(int analogCount) {
+		this.analogCount = analogCount;
+	}
+
+	/**
+	 * @param similarityMetric
+	 *            creates the measure of the distance between a window and the
+	 *            present period from the history of every station, as
+	 *            stations are forecast at the same time, the Euclidean metric
+	 *            by default
+	 */
+	public void setSimilarityMetric(
+			Function<ObservationView, SimilarityMetric> similarityMetric) {
+		this.similarityMetric = similarityMetric;
+	}
+
+	/**
+	 * @return wall time of the last run in milliseconds
+	 */
+	public long getWallMillis() {
+		return wallMillis;
+	}
+
+	/**
+	 * This function forecasts every station with records. The output of a
+	 * station is written to a directory named after it under the output
+	 * path. A station whose forecast fails is left out of the result and the
+	 * failure is logged, so that one failing station does not stop the
+	 * others.
+	 *
+	 * @param observationStore
+	 *            history of the locations, which must not be changed while
+	 *            the run reads it
+	 * @param locations
+	 *            locations to forecast
+	 * @param outputPath
+	 *            output directory path
+	 * @return latency in milliseconds of each station forecast, in the order
+	 *         of the locations
+	 * @throws WeatherException
+	 *             is thrown when the settings are not valid or the run is
+	 *             interrupted
+	 */
+	public Map<String, Long> predictAll(ObservationStore observationStore,
+			List<String> locations, String outputPath) throws WeatherException {
+		config.validate();
+		long startTime = System.nanoTime();
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		Map<String, Future<Long>> futures = new LinkedHashMap<String, Future<Long>>();
+		try {
+			for (String location : locations) {
+				ObservationView history = observationStore.getView(location);
+				if (history == null)
+					continue;
+				Station station = observationStore.getStation(location);
+				futures.put(location, pool.submit(() -> predictStation(
+						station, history, outputPath)));
+			}
+			Map<String, Long> latencies = new LinkedHashMap<String, Long>();
+			List<String> failures = new ArrayList<String>();
+			for (Map.Entry<String, Future<Long>> future : futures.entrySet()) {
+				try {
+					latencies.put(future.getKey(), future.getValue().get());
+				} catch (ExecutionException e) {
+					failures.add(future.getKey());
+					logger.error("Forecast of " + future.getKey() + " failed",
+							e.getCause());
+				}
+			}
+			wallMillis = (System.nanoTime() - startTime) / 1000000;
+			logger.info("Forecast of " + latencies.size() + " of "
+					+ futures.size() + " locations in " + wallMillis
+					+ " ms wall time on " + parallelism + " threads"
+					+ (failures.isEmpty() ? "" : ", failed: " + failures));
+			return latencies;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new WeatherException("Forecast of all locations interrupted");
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * This function runs the pipeline of one station.
+	 *
+	 * @return latency of the station in milliseconds
+	 */
+	private long predictStation(Station station, ObservationView history,
+			String outputPath) throws Exception {
+		long startTime = System.nanoTime();
+		String locationPath = outputPath + File.separator
+				+ station.getLocation();
+		WeatherUtils.createOutputPath(locationPath);
+		WeatherPredictor predictor = new WeatherPredictor(history, station);
+		predictor.setForecastConfig(config);
+		predictor.setSearchMode(searchMode);
+		predictor.setAnalogCount(analogCount);
+		predictor.setSimilarityMetric(similarityMetric.apply(history));
+		predictor.predictWeatherforFiveDays(locationPath);
+		long latency = (System.nanoTime() - startTime) / 1000000;
+		logger.info("Forecast of " + station.getLocation() + " in " + latency
+				+ " ms");
+		return latency;
+	}
+
+}
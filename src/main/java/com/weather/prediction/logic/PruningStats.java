@@ -0,0 +1,102 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+package com.weather.prediction.logic;
+
+/**
+ * Bean class for the counts of candidate windows of the window search and the
+ * stage at which each was ruled out. Stages are tried in order: the rolling
+ * estimate, the bound from the means of the window, the bound from the means
+ * and deviations of the window, and the day by day sum which is abandoned
+ * once it exceeds the distance of the windows kept. Candidates left are
+ * evaluated in full.
+ *
+ * @author Irene Mathew
+ *
+ */
+public class PruningStats {
+	private long candidates;
+	private long prunedByEstimate;
+	private long prunedByMeanBound;
+	private long prunedByShapeBound;
+	private long abandoned;
+	private long evaluated;
+
+	public long getCandidates() {
+		return candidates;
+	}
+
+	public long getPrunedByEstimate() {
+		return prunedByEstimate;
+	}
+
+	public long getPrunedByMeanBound() {
+		return prunedByMeanBound;
+	}
+
+	public long getPrunedByShapeBound() {
+		return prunedByShapeBound;
+	}
+
+	public long getAbandoned() {
+		return abandoned;
+	}
+
+	public long getEvaluated() {
+		return evaluated;
+	}
+
+	void addCandidate() {
+		candidates++;
+	}
+
+	void addPrunedByEstimate() {
+		prunedByEstimate++;
+	}
+
+	void addPrunedByMeanBound() {
+		prunedByMeanBound++;
+	}
+
+	void addPrunedByShapeBound() {
+		prunedByShapeBound++;
+	}
+
+	void addAbandoned() {
+		abandoned++;
+	}
+
+	void addEvaluated() {
+		evaluated++;
+	}
+
+	/**
+	 * This function adds the counts of another search to these counts.
+	 *
+	 * @param other
+	 *            counts of another search
+	 */
+	public void add(PruningStats other) {
+		candidates += other.candidates;
+		prunedByEstimate += other.prunedByEstimate;
+		prunedByMeanBound += other.prunedByMeanBound;
+		prunedByShapeBound += other.prunedByShapeBound;
+		abandoned += other.abandoned;
+		evaluated += other.evaluated;
+	}
+
+	@Override
+	public String toString() {
+		return "candidates=" + candidates + ", prunedByEstimate="
+				+ prunedByEstimate + ", prunedByMeanBound=" + prunedByMeanBound
+				+ ", prunedByShapeBound=" + prunedByShapeBound + ", abandoned="
+				+ abandoned + ", evaluated=" + evaluated;
+	}
+
+}
@@ -0,0 +1,308 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+package com.weather.prediction.logic;
+
+/**
+ * Class which finds the window of a long history closest to the present
+ * period without calculating the distance of every window from scratch. The
+ * squared distance of a window is split into the energy of the window, the
+ * energy of the present period and their cross correlation. The energy of
+ * each window is a rolling sum which adds the day entering the window and
+ * subtracts the day leaving it, and the cross correlation of all windows is
+ * found at once with a fast Fourier transform. A window is measured exactly
+ * only when its estimated distance can round to a distance still kept, so
+ * the windows found are the ones an exhaustive search would find.
+ *
+ * @author Irene Mathew
+ *
+ */
+import static com.weather.prediction.logic.DayFeatureMatrix.FEATURES_PER_DAY;
+
+import java.util.Arrays;
+
+import com.weather.prediction.exception.WeatherException;
+
+final class RollingDistanceSearch {
+	// bound of the error of the estimates, which includes the rounding of
+	// the float differences taken by the exact distance
+	private static final double RELATIVE_ERROR = 1e-6;
+
+	private RollingDistanceSearch() {
+	}
+
+	/**
+	 * This function finds the window of the history with minimum Euclidean
+	 * distance to the present period. Windows having a day without both
+	 * forecast times are skipped. When windows are at the same distance, the
+	 * later window is taken.
+	 *
+	 * @param present
+	 *            daily averages of the present period
+	 * @param history
+	 *            daily averages of the history searched
+	 * @return index in the history of the first day of the window
+	 * @throws WeatherException
+	 *             is thrown when the present period is not complete or no
+	 *             window of the history is complete
+	 */
+	static int findMinimumWindow(DayFeatureMatrix present,
+			DayFeatureMatrix history) throws WeatherException {
+		int window = findMinimumWindow(present, history, 0, history.getDays());
+		if (window < 0)
+			throw new WeatherException("No complete window of "
+					+ present.getDays() + " days in history of "
+					+ history.getDays() + " days");
+		return window;
+	}
+
+	/**
+	 * This function finds the window with minimum Euclidean distance to the
+	 * present period among the windows lying in a range of days of the
+	 * history.
+	 *
+	 * @param present
+	 *            daily averages of the present period
+	 * @param history
+	 *            daily averages of the history
+	 * @param fromDay
+	 *            index in the history of the first day of the range
+	 * @param days
+	 *            number of days of the range
+	 * @return index in the history of the first day of the window, or -1 if
+	 *         no window of the range is complete
+	 * @throws WeatherException
+	 *             is thrown when the present period is not complete or longer
+	 *             than the range
+	 */
+	static int findMinimumWindow(DayFeatureMatrix present,
+			DayFeatureMatrix history, int fromDay, int days)
+			throws WeatherException {
+		BoundedMaxHeap heap = new BoundedMaxHeap(1);
+		if (present.countCompleteDays(0, present.getDays()) != present
+				.getDays())
+			throw new WeatherException("Present period of "
+					+ present.getDays() + " days is not complete");
+		findNearestWindows(new WindowEvaluator(present, new PruningStats()),
+				history, fromDay, days, heap);
+		int[] window = new int[1];
+		return heap.drainAscending(new double[1], window) == 0 ? -1
+				: window[0];
+	}
+
+	/**
+	 * This function offers the complete windows lying in a range of days of
+	 * the history to a heap keeping the windows closest to the present
+	 * period. A window is given to the evaluator only when its estimated
+	 * distance can round to a distance which the heap keeps, in batches
+	 * measured together by the kernel. Windows are offered by their index in
+	 * the history with their rounded Euclidean distance, and the heap may
+	 * already hold windows of other ranges.
+	 *
+	 * @param evaluator
+	 *            evaluator of windows against a complete present period
+	 * @param history
+	 *            daily averages of the history
+	 * @param fromDay
+	 *            index in the history of the first day of the range
+	 * @param days
+	 *            number of days of the range
+	 * @param heap
+	 *            heap keeping the closest windows
+	 * @throws WeatherException
+	 *             is thrown when the present period is longer than the range
+	 */
+	static void findNearestWindows(WindowEvaluator evaluator,
+			DayFeatureMatrix history, int fromDay, int days,
+			BoundedMaxHeap heap) throws WeatherException {
+		DayFeatureMatrix present = evaluator.getPresent();
+		int length = present.getDays();
+		int windowCount = days - length + 1;
+		if (length == 0 || windowCount <= 0)
+			throw new WeatherException("History of " + days
+					+ " days is shorter than the present period of " + length
+					+ " days");
+		boolean[] valid = findCompleteWindows(history, fromDay, length,
+				windowCount);
+		double[] estimates = new double[windowCount];
+		double error = RELATIVE_ERROR
+				* estimateSquaredDistances(present, history, fromDay, days,
+						estimates);
+		int[] batch = new int[WindowEvaluator.BATCH_WINDOWS];
+		int batchSize = 0;
+		for (int window = 0; window < windowCount; window++) {
+			if (!valid[window])
+				continue;
+			if (heap.isFull()
+					&& estimates[window] > DayFeatureMatrix.keepLimit(heap
+							.peekDistance()) + error) {
+				evaluator.getStats().addCandidate();
+				evaluator.getStats().addPrunedByEstimate();
+				continue;
+			}
+			batch[batchSize++] = fromDay + window;
+			if (batchSize == batch.length) {
+				evaluator.offerAll(history, batch, batchSize, heap);
+				batchSize = 0;
+			}
+		}
+		evaluator.offerAll(history, batch, batchSize, heap);
+	}
+
+	/**
+	 * This function marks the windows having both forecast times on every
+	 * day, keeping a rolling count of incomplete days.
+	 */
+	private static boolean[] findCompleteWindows(DayFeatureMatrix history,
+			int fromDay, int length, int windowCount) {
+		boolean[] valid = new boolean[windowCount];
+		int incompleteDays = 0;
+		for (int day = fromDay; day < fromDay + length; day++) {
+			if (!history.isComplete(day))
+				incompleteDays++;
+		}
+		for (int window = 0; window < windowCount; window++) {
+			if (window > 0) {
+				if (!history.isComplete(fromDay + window - 1))
+					incompleteDays--;
+				if (!history.isComplete(fromDay + window + length - 1))
+					incompleteDays++;
+			}
+			valid[window] = incompleteDays == 0;
+		}
+		return valid;
+	}
+
+	/**
+	 * This function estimates the squared distance of every window. Features
+	 * are centred on the mean of the present period first, which keeps the
+	 * terms small and the estimates accurate.
+	 *
+	 * @return sum of the largest window energy and the present energy, which
+	 *         bounds the error of the estimates
+	 */
+	private static double estimateSquaredDistances(DayFeatureMatrix present,
+			DayFeatureMatrix history, int fromDay, int historyDays,
+			double[] estimates) {
+		int length = present.getDays();
+		float[] presentFeatures = present.getFeatures();
+		float[] historyFeatures = history.getFeatures();
+		int size = Integer.highestOneBit(Math.max(historyDays, 1));
+		if (size < historyDays)
+			size <<= 1;
+
+		double[] dayEnergy = new double[historyDays];
+		double presentEnergy = 0;
+		double[] crossRe = new double[size];
+		double[] crossIm = new double[size];
+		double[] historyRe = new double[size];
+		double[] historyIm = new double[size];
+		double[] presentRe = new double[size];
+		double[] presentIm = new double[size];
+		for (int feature = 0; feature < FEATURES_PER_DAY; feature++) {
+			double mean = 0;
+			for (int day = 0; day < length; day++) {
+				mean += presentFeatures[day * FEATURES_PER_DAY + feature];
+			}
+			mean /= length;
+			Arrays.fill(historyRe, 0);
+			Arrays.fill(historyIm, 0);
+			Arrays.fill(presentRe, 0);
+			Arrays.fill(presentIm, 0);
+			for (int day = 0; day < historyDays; day++) {
+				// incomplete days are left at zero, their windows are skipped
+				if (!history.isComplete(fromDay + day))
+					continue;
+				double value = historyFeatures[(fromDay + day)
+						* FEATURES_PER_DAY + feature]
+						- mean;
+				historyRe[day] = value;
+				dayEnergy[day] += value * value;
+			}
+			for (int day = 0; day < length; day++) {
+				double value = presentFeatures[day * FEATURES_PER_DAY + feature]
+						- mean;
+				presentRe[day] = value;
+				presentEnergy += value * value;
+			}
+			transform(historyRe, historyIm, false);
+			transform(presentRe, presentIm, false);
+			for (int index = 0; index < size; index++) {
+				// history multiplied by the conjugate of the present period
+				crossRe[index] += historyRe[index] * presentRe[index]
+						+ historyIm[index] * presentIm[index];
+				crossIm[index] += historyIm[index] * presentRe[index]
+						- historyRe[index] * presentIm[index];
+			}
+		}
+		transform(crossRe, crossIm, true);
+
+		double windowEnergy = 0;
+		for (int day = 0; day < length; day++) {
+			windowEnergy += dayEnergy[day];
+		}
+		double maxWindowEnergy = 0;
+		for (int window = 0; window < estimates.length; window++) {
+			if (window > 0)
+				windowEnergy += dayEnergy[window + length - 1]
+						- dayEnergy[window - 1];
+			maxWindowEnergy = Math.max(maxWindowEnergy, windowEnergy);
+			estimates[window] = windowEnergy - 2 * crossRe[window]
+					+ presentEnergy;
+		}
+		return maxWindowEnergy + presentEnergy;
+	}
+
+	/**
+	 * This function replaces a sequence whose length is a power of two by its
+	 * discrete Fourier transform, or by its inverse transform.
+	 */
+	private static void transform(double[] re, double[] im, boolean inverse) {
+		int size = re.length;
+		for (int i = 1, j = 0; i < size; i++) {
+			int bit = size >> 1;
+			for (; (j & bit) != 0; bit >>= 1)
+				j ^= bit;
+			j ^= bit;
+			if (i < j) {
+				double swap = re[i];
+				re[i] = re[j];
+				re[j] = swap;
+				swap = im[i];
+				im[i] = im[j];
+				im[j] = swap;
+			}
+		}
+		for (int length = 2; length <= size; length <<= 1) {
+			int half = length >> 1;
+			double angle = (inverse ? 2 : -2) * Math.PI / length;
+			for (int k = 0; k < half; k++) {
+				double wRe = Math.cos(angle * k);
+				double wIm = Math.sin(angle * k);
+				for (int start = 0; start < size; start += length) {
+					int a = start + k;
+					int b = a + half;
+					double tRe = re[b] * wRe - im[b] * wIm;
+					double tIm = re[b] * wIm + im[b] * wRe;
+					re[b] = re[a] - tRe;
+					im[b] = im[a] - tIm;
+					re[a] += tRe;
+					im[a] += tIm;
+				}
+			}
+		}
+		if (inverse) {
+			for (int index = 0; index < size; index++) {
+				re[index] /= size;
+				im[index] /= size;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,319 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+package com.weather.prediction.logic;
+
+/**
+ * Class which forecasts consecutive days of a station by sliding the state
+ * of the fixed windows search by one day per step, instead of building a
+ * search for each day. The present period and last year's period are kept
+ * in circular buffers of daily averages, observations and variations from
+ * the day before, indexed by epoch day modulo their length, so a step reads
+ * only the day entering each period. Window w is always compared with the
+ * present period at the same lag of days, so the cost of a pair of days is
+ * kept from the step which first compared them, and a step calculates one
+ * new cost per window. Sums are added in the order of the days as by the
+ * sliding window search, which gives the same windows and variations.
+ *
+ * @author Irene Mathew
+ *
+ */
+import static com.weather.prediction.constants.WeatherConstants.MORNING_FORECAST_TIMESTAMP;
+import static com.weather.prediction.constants.WeatherConstants.MORNING_SLOT;
+import static com.weather.prediction.constants.WeatherConstants.NOON_FORECAST_TIMESTAMP;
+import static com.weather.prediction.constants.WeatherConstants.NOON_SLOT;
+import static com.weather.prediction.logic.DayFeatureMatrix.FEATURES_PER_DAY;
+import static com.weather.prediction.logic.VariationEngine.HUMIDITY;
+import static com.weather.prediction.logic.VariationEngine.PRESSURE;
+import static com.weather.prediction.logic.VariationEngine.RESULT_SIZE;
+import static com.weather.prediction.logic.VariationEngine.TEMPERATURE;
+import static com.weather.prediction.logic.VariationEngine.VALUES_PER_SLOT;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import com.weather.prediction.bean.ForecastConfig;
+import com.weather.prediction.bean.VariationVector;
+import com.weather.prediction.exception.WeatherException;
+import com.weather.prediction.utils.DailyAggregateCache;
+import com.weather.prediction.utils.ObservationView;
+
+public final class RolloutEngine {
+	private final int presentDays;
+	private final int windowCount;
+	private final int lastYearLagDays;
+	// days from a day of the present period to the day of window 0 it is
+	// compared with
+	private final int windowLagDays;
+	private final DailyAggregateCache aggregates;
+	private final ObservationView view;
+	private final DayRing present;
+	private final DayRing history;
+	// squared difference of each day of the present period from the day of
+	// each window it is compared with
+	private final double[] costs;
+	private final float[] previousVariation = new float[RESULT_SIZE];
+	private final float[] presentVariation = new float[RESULT_SIZE];
+	private PruningStats pruningStats = new PruningStats();
+	private int issueDay;
+	private boolean started;
+	final static Logger logger = Logger.getLogger(RolloutEngine.class);
+
+	/**
+	 * @param aggregates
+	 *            daily averages of the station, which also give its
+	 *            observations
+	 */
+	public RolloutEngine(DailyAggregateCache aggregates) {
+		this(aggregates, new ForecastConfig());
+	}
+
+	/**
+	 * @param aggregates
+	 *            daily averages of the station, which also give its
+	 *            observations
+	 * @param config
+	 *            settings giving the size and number of the windows
+	 */
+	public RolloutEngine(DailyAggregateCache aggregates, ForecastConfig config) {
+		this.aggregates = aggregates;
+		this.view = aggregates.getView();
+		this.presentDays = config.getWindowSize();
+		this.windowCount = config.getWindowCount();
+		this.lastYearLagDays = config.getLastYearLagDays();
+		this.windowLagDays = lastYearLagDays - presentDays + 1;
+		this.present = new DayRing(presentDays);
+		this.history = new DayRing(config.getLastYearDays());
+		this.costs = new double[windowCount * presentDays];
+	}
+
+	/**
+	 * @param pruningStats
+	 *            counts to which the windows compared at each step are added
+	 */
+	public void setPruningStats(PruningStats pruningStats) {
+		this.pruningStats = pruningStats;
+	}
+
+	/**
+	 * This function reads the present period and last year's period of the
+	 * first forecast, and compares every day of the present period with
+	 * every window.
+	 *
+	 * @param issueDay
+	 *            epoch day of the last observed day, the day after which is
+	 *            forecast first
+	 */
+	public void start(int issueDay) {
+		this.issueDay = issueDay;
+		for (int day = issueDay - lastYearLagDays; day < issueDay
+				- lastYearLagDays + history.length; day++) {
+			history.read(day);
+		}
+		for (int day = issueDay - presentDays + 1; day <= issueDay; day++) {
+			present.read(day);
+			compareDay(day);
+		}
+		started = true;
+	}
+
+	/**
+	 * This function moves both periods on by one day, once the forecast of
+	 * the day after the issue day has been added to the observations. Only
+	 * the day entering each period is read, and its costs are the only ones
+	 * calculated.
+	 *
+	 * @throws WeatherException
+	 *             is thrown when the engine has not been started
+	 */
+	public void advance() throws WeatherException {
+		if (!started)
+			throw new WeatherException("Rollout is not started");
+		issueDay++;
+		history.read(issueDay - lastYearLagDays + history.length - 1);
+		present.read(issueDay);
+		compareDay(issueDay);
+	}
+
+	/**
+	 * @return epoch day of the last day of the present period
+	 */
+	public int getIssueDay() {
+		return issueDay;
+	}
+
+	/**
+	 * This function finds the predicted variation of the day after the issue
+	 * day from the window of last year's period closest to the present
+	 * period, as the sliding window search over the fixed windows does.
+	 *
+	 * @return predicted variation vector for 2 forecast times
+	 * @throws WeatherException
+	 *             is thrown when the engine has not been started, or a
+	 *             window or the present period is not complete
+	 */
+	public List<VariationVector> findVariationFactor() throws WeatherException {
+		if (!started)
+			throw new WeatherException("Rollout is not started");
+		int presentFirstDay = issueDay - presentDays + 1;
+		if (present.countCompleteDays(presentFirstDay, presentDays) != presentDays)
+			throw new WeatherException("Present period of " + presentDays
+					+ " days is not complete");
+		double minDistance = Double.MAX_VALUE;
+		int minWindow = 0;
+		for (int window = 0; window < windowCount; window++) {
+			int completeDays = history.countCompleteDays(presentFirstDay
+					- windowLagDays + window, presentDays);
+			if (completeDays != presentDays)
+				throw new WeatherException("Window Size(" + completeDays
+						+ ") is not same as expected");
+			double sum = 0;
+			for (int day = presentFirstDay; day <= issueDay; day++) {
+				sum += costs[window * presentDays + present.indexOf(day)];
+			}
+			pruningStats.addCandidate();
+			pruningStats.addEvaluated();
+			double distance = DayFeatureMatrix.roundDistance(sum);
+			// the later window is taken when windows are at the same distance
+			if (distance <= minDistance) {
+				minDistance = distance;
+				minWindow = window;
+			}
+		}
+		logger.debug("Minimum window number:" + minWindow);
+		history.findMeanVariation(presentFirstDay - windowLagDays
+				+ minWindow, previousVariation);
+		present.findMeanVariation(presentFirstDay, presentVariation);
+		List<VariationVector> avgVariationFactorList = new ArrayList<VariationVector>();
+		avgVariationFactorList.add(calculateMean(MORNING_SLOT,
+				MORNING_FORECAST_TIMESTAMP));
+		avgVariationFactorList.add(calculateMean(NOON_SLOT,
+				NOON_FORECAST_TIMESTAMP));
+		return avgVariationFactorList;
+	}
+
+	/**
+	 * This function compares a day of the present period with the day of
+	 * each window at the lag of the window.
+	 */
+	private void compareDay(int day) {
+		float[] b = present.features;
+		int j = present.indexOf(day) * FEATURES_PER_DAY;
+		for (int window = 0; window < windowCount; window++) {
+			float[] a = history.features;
+			int i = history.indexOf(day - windowLagDays + window)
+					* FEATURES_PER_DAY;
+			double humidity = a[i] - b[j];
+			double pressure = a[i + 1] - b[j + 1];
+			double temp = a[i + 2] - b[j + 2];
+			costs[window * presentDays + present.indexOf(day)] = humidity
+					* humidity + pressure * pressure + temp * temp;
+		}
+	}
+
+	/**
+	 * This function finds the mean of the previous and present variation at
+	 * one forecast time, as the variation calculator does.
+	 *
+	 * @return mean variation vector for one time
+	 */
+	private VariationVector calculateMean(int slot, String time) {
+		int offset = slot * VALUES_PER_SLOT;
+		VariationVector meanVariationVector = new VariationVector();
+		meanVariationVector.setTime(time);
+		meanVariationVector.setTemperature((0f
+				+ previousVariation[offset + TEMPERATURE] + presentVariation[offset
+				+ TEMPERATURE]) / 2);
+		meanVariationVector.setHumidity((0f
+				+ previousVariation[offset + HUMIDITY] + presentVariation[offset
+				+ HUMIDITY]) / 2);
+		meanVariationVector.setPressure((0f
+				+ previousVariation[offset + PRESSURE] + presentVariation[offset
+				+ PRESSURE]) / 2);
+		return meanVariationVector;
+	}
+
+	/**
+	 * Circular buffer of the consecutive days of a period. A day is kept at
+	 * its epoch day modulo the length, with its daily averages, its
+	 * observations and their variation from the day before.
+	 */
+	private final class DayRing {
+		private final int length;
+		private final float[] features;
+		private final float[] values;
+		private final float[] variations;
+		private final boolean[] complete;
+
+		DayRing(int length) {
+			this.length = length;
+			this.features = new float[length * FEATURES_PER_DAY];
+			this.values = new float[length * RESULT_SIZE];
+			this.variations = new float[length * RESULT_SIZE];
+			this.complete = new boolean[length];
+		}
+
+		int indexOf(int epochDay) {
+			return Math.floorMod(epochDay, length);
+		}
+
+		/**
+		 * This function reads a day into the place of the day a length
+		 * before it. Its variations are taken from the day before, which is
+		 * already in the ring unless the day is the first read.
+		 */
+		void read(int epochDay) {
+			int index = indexOf(epochDay);
+			int feature = index * FEATURES_PER_DAY;
+			features[feature] = aggregates.getHumidity(epochDay);
+			features[feature + 1] = aggregates.getPressure(epochDay);
+			features[feature + 2] = aggregates.getTemp(epochDay);
+			complete[index] = aggregates.isComplete(epochDay);
+			int previous = indexOf(epochDay - 1) * RESULT_SIZE;
+			int column = index * RESULT_SIZE;
+			for (int slot = MORNING_SLOT; slot <= NOON_SLOT; slot++) {
+				int value = column + slot * VALUES_PER_SLOT;
+				values[value + TEMPERATURE] = view.getTemp(epochDay, slot);
+				values[value + HUMIDITY] = view.getHumidity(epochDay, slot);
+				values[value + PRESSURE] = view.getPressure(epochDay, slot);
+			}
+			for (int offset = 0; offset < RESULT_SIZE; offset++) {
+				variations[column + offset] = values[column + offset]
+						- values[previous + offset];
+			}
+		}
+
+		int countCompleteDays(int firstDay, int days) {
+			int completeDays = 0;
+			for (int day = firstDay; day < firstDay + days; day++) {
+				if (complete[indexOf(day)])
+					completeDays++;
+			}
+			return completeDays;
+		}
+
+		/**
+		 * This function finds the mean variation of a range of days, adding
+		 * the variations of the days after the first in float in the order
+		 * of the days, as the variation engine does.
+		 */
+		void findMeanVariation(int firstDay, float[] resultOut) {
+			for (int offset = 0; offset < RESULT_SIZE; offset++) {
+				float sum = 0;
+				for (int day = firstDay + 1; day < firstDay + presentDays; day++) {
+					sum += variations[indexOf(day) * RESULT_SIZE + offset];
+				}
+				resultOut[offset] = sum / (presentDays - 1);
+			}
+		}
+	}
+
+}
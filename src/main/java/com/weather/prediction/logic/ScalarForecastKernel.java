@@ -0,0 +1,57 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+package com.weather.prediction.logic;
+
+/**
+ * Class which runs the kernels of the algorithm one window and one day at a
+ * time. It runs on every Java version and is the reference for the results
+ * of other kernels.
+ *
+ * @author Irene Mathew
+ *
+ */
+final class ScalarForecastKernel implements ForecastKernel {
+
+	@Override
+	public double squaredDistance(DayFeatureMatrix history, int fromDay,
+			DayFeatureMatrix present, double limit) {
+		return DayFeatureMatrix.squaredDistance(history, fromDay, present, 0,
+				present.getDays(), limit);
+	}
+
+	@Override
+	public void squaredDistances(DayFeatureMatrix history, int[] windows,
+			int count, DayFeatureMatrix present, double limit, double[] sumOut,
+			int[] offsetScratch) {
+		for (int window = 0; window < count; window++) {
+			sumOut[window] = DayFeatureMatrix.squaredDistance(history,
+					windows[window], present, 0, present.getDays(), limit);
+		}
+	}
+
+	@Override
+	public void pairedSquaredDistances(float[] first, int[] firstOffsets,
+			float[] second, int[] secondOffsets, int count, int days,
+			double[] sumOut) {
+		for (int pair = 0; pair < count; pair++) {
+			sumOut[pair] = DayFeatureMatrix.squaredDistance(first,
+					firstOffsets[pair], second, secondOffsets[pair], days,
+					Double.MAX_VALUE);
+		}
+	}
+
+	@Override
+	public void differences(float[] values, int count, float[] differenceOut) {
+		for (int index = 0; index < count - 1; index++) {
+			differenceOut[index] = values[index + 1] - values[index];
+		}
+	}
+
+}
@@ -0,0 +1,37 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+package com.weather.prediction.logic;
+
+/**
+ * Enum of the ways in which the sliding window algorithm searches last year's
+ * records for the window closest to the present period.
+ *
+ * @author Irene Mathew
+ *
+ */
+public enum SearchMode {
+	/**
+	 * Eight windows over the fourteen days starting a year before the present
+	 * period. Every window must be complete.
+	 */
+	FIXED_WINDOWS,
+	/**
+	 * Every window starting up to ANALOG_SEARCH_SPAN_DAYS days either side of
+	 * a year before the present period, searched with rolling sums. Windows
+	 * with missing observations are skipped.
+	 */
+	ROLLING_SPAN,
+	/**
+	 * Windows starting up to ANALOG_SEARCH_SPAN_DAYS days either side of the
+	 * same date in every earlier year of the archive, searched with a
+	 * {@link MultiYearAnalogIndex}.
+	 */
+	MULTI_YEAR
+}
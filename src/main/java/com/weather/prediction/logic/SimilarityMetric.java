@@ -0,0 +1,45 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+package com.weather.prediction.logic;
+
+/**
+ * Interface of the measures of how close a window of the history is to the
+ * present period. A metric gives a squared distance, whose square root is
+ * rounded to four decimal places and compared by the sliding window search
+ * like the Euclidean distance. A metric may stop measuring a window as soon
+ * as it knows the squared distance exceeds a limit, which the search sets
+ * from the farthest window it keeps.
+ *
+ * @author Irene Mathew
+ *
+ */
+public interface SimilarityMetric {
+
+	/**
+	 * This function measures a window of the history against the present
+	 * period.
+	 *
+	 * @param history
+	 *            daily averages of the history
+	 * @param fromDay
+	 *            index in the history of the first day of the window, which
+	 *            has as many days as the present period
+	 * @param present
+	 *            daily averages of the present period
+	 * @param limit
+	 *            squared distance above which the window need not be measured
+	 *            exactly
+	 * @return squared distance, or a value above the limit when the window
+	 *         is known to be farther
+	 */
+	double squaredDistance(DayFeatureMatrix history, int fromDay,
+			DayFeatureMatrix present, double limit);
+
+}
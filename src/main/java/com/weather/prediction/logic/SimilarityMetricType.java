@@ -0,0 +1,57 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+package com.weather.prediction.logic;
+
+/**
+ * Enum of the similarity metrics a forecast run may be configured with. A
+ * metric is created for the history of each station, as the z-score metric
+ * is scaled by the statistics of its station.
+ *
+ * @author Irene Mathew
+ *
+ */
+import com.weather.prediction.utils.ObservationView;
+
+public enum SimilarityMetricType {
+	/**
+	 * Euclidean distance between the raw daily averages, the metric of the
+	 * algorithm and the only one the MULTI_YEAR search supports.
+	 */
+	EUCLIDEAN,
+	/**
+	 * Euclidean distance between the z-scores of the daily averages, scaled
+	 * by the statistics of the whole history of the station.
+	 */
+	ZSCORE_EUCLIDEAN,
+	/**
+	 * Dynamic time warping within a band of DTW_BAND_DAYS days either side.
+	 */
+	BANDED_DTW;
+
+	/**
+	 * This function creates a metric of this type for the history of a
+	 * station. A metric is used by one search at a time.
+	 *
+	 * @param history
+	 *            observations of the station whose windows are measured
+	 * @return new metric
+	 */
+	public SimilarityMetric create(ObservationView history) {
+		switch (this) {
+		case ZSCORE_EUCLIDEAN:
+			return new ZScoreEuclideanMetric(StationStatistics.of(history));
+		case BANDED_DTW:
+			return new BandedDtwMetric();
+		default:
+			return new EuclideanMetric();
+		}
+	}
+
+}
@@ -34,21 +34,151 @@ import com.weather.prediction.bean.SlidingWindow;
 import com.weather.prediction.bean.VariationVector;
 import com.weather.prediction.bean.WeatherData;
 import com.weather.prediction.exception.WeatherException;
+import com.weather.prediction.utils.DailyAggregateCache;
+import com.weather.prediction.utils.ObservationView;
 import com.weather.prediction.utils.WeatherUtils;
 
 public class SlidingWindowImplementation {
 
-	private List<WeatherData> presentYearList;
-	private List<WeatherData> lastYearList;
+	private final ObservationView presentView;
+	private final int presentFirstDay;
+	private final int presentDays;
+	private final ObservationView lastYearView;
+	private final int lastYearFirstDay;
+	private final int lastYearDays;
+	private SearchMode searchMode = SearchMode.FIXED_WINDOWS;
+	private MultiYearAnalogIndex analogIndex;
+	private int analogCount = 1;
+	private int windowSize = WINDOW_SIZE;
+	private int windowCount = WINDOW_COUNT;
+	private PruningStats pruningStats = new PruningStats();
+	private final ForecastKernel kernel = ForecastKernels.get();
+	private SimilarityMetric similarityMetric = new EuclideanMetric();
+	private DailyAggregateCache dailyAggregates;
 	public List<SlidingWindow> slidingWindowList;
 	final static Logger logger = Logger
 			.getLogger(SlidingWindowImplementation.class);
 
 	public SlidingWindowImplementation(List<WeatherData> presentYearList,
 			List<WeatherData> lastYearList) {
+		this(new WeatherDataListView(presentYearList), 0,
+				presentYearList.size() / 2, new WeatherDataListView(
+						lastYearList), 0, lastYearList.size() / 2);
+	}
+
+	/**
+	 * @param presentView
+	 *            observations of the present period
+	 * @param presentFirstDay
+	 *            epoch day of the first day of the present period
+	 * @param presentDays
+	 *            number of days of the present period, which is the size of
+	 *            a window
+	 * @param lastYearView
+	 *            observations of last year's period
+	 * @param lastYearFirstDay
+	 *            epoch day of the first day of last year's period
+	 * @param lastYearDays
+	 *            number of days of last year's period
+	 */
+	public SlidingWindowImplementation(ObservationView presentView,
+			int presentFirstDay, int presentDays, ObservationView lastYearView,
+			int lastYearFirstDay, int lastYearDays) {
+		this.presentView = presentView;
+		this.presentFirstDay = presentFirstDay;
+		this.presentDays = presentDays;
+		this.lastYearView = lastYearView;
+		this.lastYearFirstDay = lastYearFirstDay;
+		this.lastYearDays = lastYearDays;
+	}
+
+	/**
+	 * @param presentView
+	 *            observations of the present period
+	 * @param presentFirstDay
+	 *            epoch day of the first day of the present period
+	 * @param presentDays
+	 *            number of days of the present period
+	 * @param analogIndex
+	 *            index of the earlier years searched for the closest window,
+	 *            in MULTI_YEAR mode
+	 */
+	public SlidingWindowImplementation(ObservationView presentView,
+			int presentFirstDay, int presentDays,
+			MultiYearAnalogIndex analogIndex) {
+		this(presentView, presentFirstDay, presentDays, analogIndex.getView(),
+				analogIndex.getFirstEpochDay(), analogIndex.getLastEpochDay()
+						- analogIndex.getFirstEpochDay() + 1);
+		this.analogIndex = analogIndex;
+		this.searchMode = SearchMode.MULTI_YEAR;
+	}
+
+	/**
+	 * @param searchMode
+	 *            way in which last year's period is searched, FIXED_WINDOWS
+	 *            by default, or MULTI_YEAR when created with an index
+	 */
+	public void setSearchMode(SearchMode searchMode) {
+		this.searchMode = searchMode;
+	}
+
+	/**
+	 * @param analogCount
+	 *            number of closest windows whose variations are combined, 1
+	 *            by default
+	 */
+	public void setAnalogCount(int analogCount) {
+		if (analogCount < 1)
+			throw new IllegalArgumentException("Analog count(" + analogCount
+					+ ") is less than 1");
+		this.analogCount = analogCount;
+	}
+
+	/**
+	 * @param windowSize
+	 *            number of days a window must have, WINDOW_SIZE by default
+	 * @param windowCount
+	 *            number of fixed windows last year's period must give,
+	 *            WINDOW_COUNT by default
+	 */
+	public void setExpectedWindows(int windowSize, int windowCount) {
+		this.windowSize = windowSize;
+		this.windowCount = windowCount;
+	}
+
+	/**
+	 * @param similarityMetric
+	 *            measure of the distance between a window and the present
+	 *            period, the Euclidean metric by default
+	 */
+	public void setSimilarityMetric(SimilarityMetric similarityMetric) {
+		this.similarityMetric = similarityMetric;
+	}
+
+	/**
+	 * @param pruningStats
+	 *            counts to which the candidate windows of the search are added
+	 */
+	public void setPruningStats(PruningStats pruningStats) {
+		this.pruningStats = pruningStats;
+	}
+
+	/**
+	 * @param dailyAggregates
+	 *            daily averages of the station, shared by the searches of
+	 *            consecutive forecasts and read instead of a view of the
+	 *            same observations
+	 */
+	public void setDailyAggregates(DailyAggregateCache dailyAggregates) {
+		this.dailyAggregates = dailyAggregates;
+	}
 
-		this.presentYearList = presentYearList;
-		this.lastYearList = lastYearList;
+	/**
+	 * @return counts of the candidate windows of the search, and the stage at
+	 *         which each was ruled out
+	 */
+	public PruningStats getPruningStats() {
+		return pruningStats;
 	}
 
 	/**
@@ -64,33 +194,167 @@ public class SlidingWindowImplementation {
 	 */
 	public List<VariationVector> implementSlidingWindow()
 			throws ParseException, WeatherException {
-		divideIntoWindows(this.lastYearList);
-		Map<String, List<WeatherData>> minDistanceWindowMap = findWindowWithMinimumEuclideanDistance();
-		List<WeatherData> minDistanceWindowList = new ArrayList<WeatherData>();
-		// adding all records of various times for each day to a single list
-		for (String date : minDistanceWindowMap.keySet()) {
-			minDistanceWindowList.addAll(minDistanceWindowMap.get(date));
-		}
-
-		VariationCalculator variationCalculator = new VariationCalculator(
-				this.presentYearList, minDistanceWindowList);
+		double[] distances = new double[analogCount];
+		int[] windowFirstDays = new int[analogCount];
+		int count = findNearestWindows(distances, windowFirstDays);
+		VariationCalculator variationCalculator;
+		if (count == 1)
+			variationCalculator = new VariationCalculator(presentView,
+					presentFirstDay, presentDays, lastYearView,
+					windowFirstDays[0], presentDays);
+		else
+			variationCalculator = new VariationCalculator(presentView,
+					presentFirstDay, presentDays, lastYearView,
+					windowFirstDays, distances, count);
 		List<VariationVector> variationFactor = variationCalculator
 				.findVariationFactor();
 		return variationFactor;
 	}
 
 	/**
-	 * This function calculates Euclidean distance between each window and
-	 * current year record and finds the window with minimum Euclidean distance.
+	 * This function slides a window of the size of the present period over
+	 * last year's period one day at a time and finds the windows with minimum
+	 * Euclidean distance to the present period, as many as the analog count.
+	 * Daily averages of both periods are read once into feature matrices, so
+	 * no window is copied, and the closest windows are kept in a bounded
+	 * heap, so neither the distance loop nor the selection creates objects.
+	 * Distances are calculated in batches by the forecast kernel. Once the
+	 * heap is full, windows are ruled out by cheap lower bounds or by
+	 * abandoning their distance early, and counted in the pruning stats.
+	 * When windows are at the same distance, the later window is taken. In
+	 * ROLLING_SPAN mode the windows are searched with rolling sums instead,
+	 * and in MULTI_YEAR mode every earlier year of the analog index is
+	 * searched. A similarity metric other than the Euclidean metric measures
+	 * every window itself, ruling windows out by its own bounds.
+	 * 
+	 * @param distanceOut
+	 *            array to which the distances of the windows are written,
+	 *            closest first
+	 * @param windowFirstDayOut
+	 *            array to which the epoch days of the first days of the
+	 *            windows are written
+	 * @return number of windows found
+	 * @throws WeatherException
+	 *             is thrown when the windows are not complete
+	 */
+	private int findNearestWindows(double[] distanceOut,
+			int[] windowFirstDayOut) throws WeatherException {
+		boolean euclidean = similarityMetric instanceof EuclideanMetric;
+		if (searchMode == SearchMode.MULTI_YEAR) {
+			if (analogIndex == null)
+				throw new WeatherException(
+						"Multi year search needs an analog index");
+			if (!euclidean)
+				throw new WeatherException(
+						"Multi year search supports only the Euclidean metric");
+			return analogIndex.findAnalogWindows(presentView, presentFirstDay,
+					presentDays, distanceOut, windowFirstDayOut, pruningStats);
+		}
+		DayFeatureMatrix present = readDays(presentView, presentFirstDay,
+				presentDays);
+		DayFeatureMatrix lastYear = readDays(lastYearView, lastYearFirstDay,
+				lastYearDays);
+		BoundedMaxHeap heap = new BoundedMaxHeap(windowFirstDayOut.length);
+		WindowEvaluator evaluator = new WindowEvaluator(present, pruningStats,
+				kernel);
+		if (searchMode == SearchMode.ROLLING_SPAN) {
+			if (present.countCompleteDays(0, presentDays) != presentDays)
+				throw new WeatherException("Present period of " + presentDays
+						+ " days is not complete");
+			if (euclidean)
+				RollingDistanceSearch.findNearestWindows(evaluator, lastYear,
+						0, lastYearDays, heap);
+			else
+				offerWindows(present, lastYear, heap, false);
+			if (heap.size() == 0)
+				throw new WeatherException("No complete window of "
+						+ presentDays + " days in history of " + lastYearDays
+						+ " days");
+		} else if (!euclidean) {
+			offerWindows(present, lastYear, heap, true);
+			validateNumberOfWindows(Math.max(lastYearDays - presentDays + 1, 0));
+		} else {
+			int windowCount = Math.max(lastYearDays - presentDays + 1, 0);
+			int[] windowNumbers = new int[windowCount];
+			for (int windowNumber = 0; windowNumber < windowCount; windowNumber++) {
+				validateWindowSize(lastYear.countCompleteDays(windowNumber,
+						presentDays));
+				windowNumbers[windowNumber] = windowNumber;
+			}
+			evaluator.offerAll(lastYear, windowNumbers, windowCount, heap);
+			validateNumberOfWindows(windowCount);
+		}
+		int count = heap.drainAscending(distanceOut, windowFirstDayOut);
+		logger.debug("Minimum window number:" + windowFirstDayOut[0]);
+		for (int index = 0; index < count; index++) {
+			windowFirstDayOut[index] += lastYearFirstDay;
+		}
+		return count;
+	}
+
+	/**
+	 * This function measures every window of last year's period with the
+	 * similarity metric and offers it to a heap. Once the heap is full, the
+	 * metric may stop measuring a window which cannot round to a distance
+	 * the heap keeps, which is counted as abandoned.
+	 *
+	 * @param validate
+	 *            true if every window must be complete, false if incomplete
+	 *            windows are skipped
+	 * @throws WeatherException
+	 *             is thrown when a window is not complete and must be
+	 */
+	private void offerWindows(DayFeatureMatrix present,
+			DayFeatureMatrix lastYear, BoundedMaxHeap heap, boolean validate)
+			throws WeatherException {
+		int windowCount = Math.max(lastYearDays - presentDays + 1, 0);
+		for (int windowNumber = 0; windowNumber < windowCount; windowNumber++) {
+			int completeDays = lastYear.countCompleteDays(windowNumber,
+					presentDays);
+			if (validate)
+				validateWindowSize(completeDays);
+			else if (completeDays != presentDays)
+				continue;
+			pruningStats.addCandidate();
+			double limit = heap.isFull() ? DayFeatureMatrix.keepLimit(heap
+					.peekDistance()) : Double.MAX_VALUE;
+			double sum = similarityMetric.squaredDistance(lastYear,
+					windowNumber, present, limit);
+			if (sum > limit) {
+				pruningStats.addAbandoned();
+				continue;
+			}
+			pruningStats.addEvaluated();
+			heap.offer(DayFeatureMatrix.roundDistance(sum), windowNumber);
+		}
+	}
+
+	/**
+	 * This function reads the daily averages of a range of days, from the
+	 * daily aggregate cache when it holds the observations of the view.
+	 */
+	private DayFeatureMatrix readDays(ObservationView view, int firstDay,
+			int days) {
+		if (dailyAggregates != null && dailyAggregates.getView() == view)
+			return DayFeatureMatrix.of(dailyAggregates, firstDay, days);
+		return DayFeatureMatrix.of(view, firstDay, days);
+	}
+
+	/**
+	 * This function calculates Euclidean distance between each window of
+	 * slidingWindowList and current year record and finds the window with
+	 * minimum Euclidean distance. It applies to the lists given to the
+	 * algorithm, after divideIntoWindows.
 	 * 
 	 * @return window with minimum Euclidean distance
+	 * @throws WeatherException
+	 *             is thrown when there is no window to compare
 	 */
-	public Map<String, List<WeatherData>> findWindowWithMinimumEuclideanDistance() {
-		SortedMap<Double, Integer> distanceMap = calculateMinimumEuclideanDistance();
+	public Map<String, List<WeatherData>> findWindowWithMinimumEuclideanDistance()
+			throws WeatherException {
+		int windowNumber = calculateMinimumEuclideanDistance();
 		Map<String, List<WeatherData>> minDistanceWindowMap = new HashMap<String, List<WeatherData>>();
-		double minDistanceKey = distanceMap.firstKey();
 		// getting window number with minimum distance
-		int windowNumber = distanceMap.get(minDistanceKey);
 		logger.debug("Minimum window number:" + windowNumber);
 		for (SlidingWindow slidingWindow : slidingWindowList) {
 			if (windowNumber == slidingWindow.getWindowNumber()) {
@@ -107,51 +371,41 @@ public class SlidingWindowImplementation {
 
 	/**
 	 * This function calculates Euclidean distance between each window and
-	 * current year record. The result is assigned to a
-	 * map<Distance,Window_Number> which will be sorted in ascending order based
-	 * on distance.
+	 * current year record and keeps the closest window in a heap of one
+	 * window. Of windows at the same distance the later window is kept. The
+	 * daily averages of the current year record are taken once for all
+	 * windows, and each window is read into a feature matrix and measured
+	 * like the windows of the search.
 	 * 
-	 * @return Sorted Map having distance as key and window_number as value.
+	 * @return number of the window with minimum distance
+	 * @throws WeatherException
+	 *             is thrown when there is no window to compare
 	 */
 
-	private SortedMap<Double, Integer> calculateMinimumEuclideanDistance() {
-		SortedMap<Double, Integer> distanceMap = new TreeMap<>();
+	private int calculateMinimumEuclideanDistance() throws WeatherException {
+		if (slidingWindowList == null || slidingWindowList.isEmpty())
+			throw new WeatherException(
+					"No window to compare with the present period");
+		BoundedMaxHeap heap = new BoundedMaxHeap(1);
+		DayFeatureMatrix present = readDays(presentView, presentFirstDay,
+				presentDays);
 		for (SlidingWindow slidingWindow : slidingWindowList) {
-			int windowNumber = slidingWindow.getWindowNumber();
-			Map<String, List<WeatherData>> dateBasedWindow = slidingWindow
-					.getSlidingWindowMap();
-			double sum = 0, distance = 0;
-			int count = 0;
-			for (String date : dateBasedWindow.keySet()) {
-				// average of each record is calculated because records are
-				// present for 2 forecast times a day
-				float avgHumidityPresent = (this.presentYearList.get(count)
-						.getHumidity() + this.presentYearList.get(count + 1)
-						.getHumidity()) / 2;
-				float avgPressurePresent = (this.presentYearList.get(count)
-						.getPressure() + this.presentYearList.get(count + 1)
-						.getPressure()) / 2;
-				float avgTempPresent = (this.presentYearList.get(count)
-						.getTemp() + this.presentYearList.get(count + 1)
-						.getTemp()) / 2;
-				float avgHumidityWindow = (dateBasedWindow.get(date).get(0)
-						.getHumidity() + dateBasedWindow.get(date).get(1)
-						.getHumidity()) / 2;
-				float avgPressureWindow = (dateBasedWindow.get(date).get(0)
-						.getPressure() + dateBasedWindow.get(date).get(1)
-						.getPressure()) / 2;
-				float avgTempWindow = (dateBasedWindow.get(date).get(0)
-						.getTemp() + dateBasedWindow.get(date).get(1).getTemp()) / 2;
-				sum += Math.pow((avgHumidityWindow - avgHumidityPresent), 2)
-						+ Math.pow((avgPressureWindow - avgPressurePresent), 2)
-						+ Math.pow((avgTempWindow - avgTempPresent), 2);
-				count = count + 2;
+			List<WeatherData> windowList = new ArrayList<WeatherData>();
+			for (List<WeatherData> dayList : slidingWindow
+					.getSlidingWindowMap().values()) {
+				windowList.addAll(dayList);
 			}
-
-			distance = Math.round(Math.sqrt(sum) * 10000.0) / 10000.0;
-			distanceMap.put(distance, windowNumber);
+			WeatherDataListView windowView = new WeatherDataListView(windowList);
+			DayFeatureMatrix window = DayFeatureMatrix.of(windowView, 0,
+					windowView.getDays());
+			double sum = DayFeatureMatrix.squaredDistance(window, 0, present,
+					0, window.getDays());
+			heap.offer(DayFeatureMatrix.roundDistance(sum),
+					slidingWindow.getWindowNumber());
 		}
-		return distanceMap;
+		int[] windowNumber = new int[1];
+		heap.drainAscending(new double[1], windowNumber);
+		return windowNumber[0];
 	}
 
 	/**
@@ -220,7 +474,7 @@ public class SlidingWindowImplementation {
 	 *             expected.
 	 */
 	public void validateWindowSize(int windowSize) throws WeatherException {
-		if (windowSize != WINDOW_SIZE)
+		if (windowSize != this.windowSize)
 			throw new WeatherException("Window Size(" + windowSize
 					+ ") is not same as expected");
 
@@ -228,7 +482,8 @@ public class SlidingWindowImplementation {
 
 	/**
 	 * This function validates whether the number of windows formed is equal to
-	 * 8. If not, an exception along with a custom message is thrown.
+	 * the expected number, 8 by default. If not, an exception along with a
+	 * custom message is thrown.
 	 * 
 	 * @param windowCount
 	 *            Number of windows created
@@ -237,7 +492,7 @@ public class SlidingWindowImplementation {
 	 */
 	public void validateNumberOfWindows(int windowCount)
 			throws WeatherException {
-		if (WINDOW_COUNT != windowCount)
+		if (this.windowCount != windowCount)
 			throw new WeatherException(
 					"Total number of windows is not equal to" + windowCount);
 
@@ -0,0 +1,113 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+package com.weather.prediction.logic;
+
+/**
+ * Class which holds the mean and standard deviation of the daily averages of
+ * humidity, pressure and temperature of a station, taken over the complete
+ * days of its history. They are calculated once per station and scale the
+ * features of the z-score metric.
+ *
+ * @author Irene Mathew
+ *
+ */
+import static com.weather.prediction.logic.DayFeatureMatrix.FEATURES_PER_DAY;
+
+import com.weather.prediction.utils.ObservationView;
+
+public final class StationStatistics {
+	private final double[] means = new double[FEATURES_PER_DAY];
+	private final double[] deviations = new double[FEATURES_PER_DAY];
+	private final int days;
+
+	private StationStatistics(int days) {
+		this.days = days;
+	}
+
+	/**
+	 * This function calculates the statistics of every day of a view.
+	 *
+	 * @param view
+	 *            observations of a station
+	 * @return statistics of the complete days of the view
+	 */
+	public static StationStatistics of(ObservationView view) {
+		return of(DayFeatureMatrix.of(view, view.getFirstEpochDay(),
+				view.getLastEpochDay() - view.getFirstEpochDay() + 1));
+	}
+
+	/**
+	 * This function calculates the statistics of the days of a matrix.
+	 * Features are added in double with Welford's method, so a long history
+	 * of hPa-scale pressure keeps its deviation accurate.
+	 *
+	 * @param matrix
+	 *            daily averages of a station
+	 * @return statistics of the complete days of the matrix
+	 */
+	public static StationStatistics of(DayFeatureMatrix matrix) {
+		StationStatistics statistics = new StationStatistics(
+				matrix.countCompleteDays(0, matrix.getDays()));
+		float[] features = matrix.getFeatures();
+		double[] squares = new double[FEATURES_PER_DAY];
+		int count = 0;
+		for (int day = 0; day < matrix.getDays(); day++) {
+			if (!matrix.isComplete(day))
+				continue;
+			count++;
+			for (int feature = 0; feature < FEATURES_PER_DAY; feature++) {
+				double value = features[day * FEATURES_PER_DAY + feature];
+				double delta = value - statistics.means[feature];
+				statistics.means[feature] += delta / count;
+				squares[feature] += delta
+						* (value - statistics.means[feature]);
+			}
+		}
+		for (int feature = 0; feature < FEATURES_PER_DAY; feature++) {
+			statistics.deviations[feature] = count == 0 ? 0 : Math
+					.sqrt(squares[feature] / count);
+		}
+		return statistics;
+	}
+
+	/**
+	 * @param feature
+	 *            index of the feature, humidity, pressure or temperature
+	 * @return mean of the feature
+	 */
+	public double getMean(int feature) {
+		return means[feature];
+	}
+
+	/**
+	 * @param feature
+	 *            index of the feature, humidity, pressure or temperature
+	 * @return standard deviation of the feature
+	 */
+	public double getDeviation(int feature) {
+		return deviations[feature];
+	}
+
+	/**
+	 * @return number of complete days the statistics were taken over
+	 */
+	public int getDays() {
+		return days;
+	}
+
+	@Override
+	public String toString() {
+		return "StationStatistics [days=" + days + ", humidity=" + means[0]
+				+ "+-" + deviations[0] + ", pressure=" + means[1] + "+-"
+				+ deviations[1] + ", temperature=" + means[2] + "+-"
+				+ deviations[2] + "]";
+	}
+
+}
@@ -15,178 +15,203 @@ package com.weather.prediction.logic;
  * @author Irene Mathew
  *
  */
+import static com.weather.prediction.constants.WeatherConstants.MORNING_FORECAST_TIMESTAMP;
+import static com.weather.prediction.constants.WeatherConstants.MORNING_SLOT;
+import static com.weather.prediction.constants.WeatherConstants.NOON_FORECAST_TIMESTAMP;
+import static com.weather.prediction.constants.WeatherConstants.NOON_SLOT;
+import static com.weather.prediction.logic.VariationEngine.HUMIDITY;
+import static com.weather.prediction.logic.VariationEngine.PRESSURE;
+import static com.weather.prediction.logic.VariationEngine.RESULT_SIZE;
+import static com.weather.prediction.logic.VariationEngine.TEMPERATURE;
+import static com.weather.prediction.logic.VariationEngine.VALUES_PER_SLOT;
+
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 import com.weather.prediction.bean.VariationVector;
 import com.weather.prediction.bean.WeatherData;
 import com.weather.prediction.exception.WeatherException;
-import com.weather.prediction.utils.WeatherUtils;
+import com.weather.prediction.utils.ObservationView;
 
 public class VariationCalculator {
-	private List<WeatherData> presentYearList;
-	private List<WeatherData> minDistanceWindowList;
+	private final ObservationView presentView;
+	private final int presentFirstDay;
+	private final int presentDays;
+	private final ObservationView windowView;
+	private final int[] windowFirstDays;
+	private final double[] windowDistances;
+	private final int windowCount;
+	private final int windowDays;
+	private final VariationEngine engine = new VariationEngine();
+	private final float[] previousVariation = new float[RESULT_SIZE];
+	private final float[] presentVariation = new float[RESULT_SIZE];
+	private final float[] windowVariation = new float[RESULT_SIZE];
 
 	public VariationCalculator(List<WeatherData> presentYearList,
 			List<WeatherData> minDistanceWindowList) {
-		this.presentYearList = presentYearList;
-		this.minDistanceWindowList = minDistanceWindowList;
+		this(new WeatherDataListView(presentYearList), 0, presentYearList
+				.size() / 2, new WeatherDataListView(minDistanceWindowList), 0,
+				minDistanceWindowList.size() / 2);
 	}
 
 	/**
-	 * This function mainly calls various functions to calculate mean variation
-	 * vector of previous and current year's record. Then predicted variation is
-	 * calculated by the finding average of these 2 mean variation vectors.
-	 * 
-	 * @return predicted variation
+	 * @param presentView
+	 *            observations of the present period
+	 * @param presentFirstDay
+	 *            epoch day of the first day of the present period
+	 * @param presentDays
+	 *            number of days of the present period
+	 * @param windowView
+	 *            observations of the window with minimum distance
+	 * @param windowFirstDay
+	 *            epoch day of the first day of the window
+	 * @param windowDays
+	 *            number of days of the window
 	 */
-	public List<VariationVector> findVariationFactor() throws WeatherException {
-		List<VariationVector> variationFactor = new ArrayList<VariationVector>();
-		List<VariationVector> meanPreviousVectorList = findMeanVariation(minDistanceWindowList);
-		List<VariationVector> meanPresentVectorList = findMeanVariation(this.presentYearList);
-		validateMeanVectorSize(meanPreviousVectorList, meanPresentVectorList);
-		variationFactor = findAvgVariationFactor(meanPreviousVectorList,
-				meanPresentVectorList);
-		return variationFactor;
+	public VariationCalculator(ObservationView presentView,
+			int presentFirstDay, int presentDays, ObservationView windowView,
+			int windowFirstDay, int windowDays) {
+		this(presentView, presentFirstDay, presentDays, windowView,
+				new int[] { windowFirstDay }, new double[] { 0 }, 1,
+				windowDays);
+	}
 
+	/**
+	 * @param presentView
+	 *            observations of the present period
+	 * @param presentFirstDay
+	 *            epoch day of the first day of the present period
+	 * @param presentDays
+	 *            number of days of the present period, which is also the
+	 *            number of days of each window
+	 * @param windowView
+	 *            observations of the windows closest to the present period
+	 * @param windowFirstDays
+	 *            epoch days of the first days of the windows
+	 * @param windowDistances
+	 *            Euclidean distances of the windows, closest first
+	 * @param windowCount
+	 *            number of windows
+	 */
+	public VariationCalculator(ObservationView presentView,
+			int presentFirstDay, int presentDays, ObservationView windowView,
+			int[] windowFirstDays, double[] windowDistances, int windowCount) {
+		this(presentView, presentFirstDay, presentDays, windowView,
+				windowFirstDays, windowDistances, windowCount, presentDays);
+	}
+
+	private VariationCalculator(ObservationView presentView,
+			int presentFirstDay, int presentDays, ObservationView windowView,
+			int[] windowFirstDays, double[] windowDistances, int windowCount,
+			int windowDays) {
+		this.presentView = presentView;
+		this.presentFirstDay = presentFirstDay;
+		this.presentDays = presentDays;
+		this.windowView = windowView;
+		this.windowFirstDays = windowFirstDays;
+		this.windowDistances = windowDistances;
+		this.windowCount = windowCount;
+		this.windowDays = windowDays;
 	}
 
 	/**
-	 * This function validates the mean vector size of last year's list with
-	 * current year's list.
-	 * 
-	 * @param meanPreviousVectorList
-	 *            mean vector of last year's list
-	 * @param meanPresentVectorList
-	 *            mean vector of current year's list
+	 * This function mainly calls various functions to calculate mean variation
+	 * vector of previous and current year's record. Then predicted variation is
+	 * calculated by the finding average of these 2 mean variation vectors.
+	 * Mean variations are calculated by the variation engine into buffers of
+	 * the calculator, so only the predicted variation creates objects.
 	 * 
-	 * @throws WeatherException
-	 *             is thrown when list size of present year and past year
-	 *             doesn't match.
+	 * @return predicted variation
 	 */
-	private void validateMeanVectorSize(
-			List<VariationVector> meanPreviousVectorList,
-			List<VariationVector> meanPresentVectorList)
-			throws WeatherException {
-		if (meanPreviousVectorList.size() != meanPresentVectorList.size())
-			throw new WeatherException(
-					"Vector list size of previous year is not equal to present year's list");
-
+	public List<VariationVector> findVariationFactor() throws WeatherException {
+		if (windowCount == 1)
+			engine.findMeanVariation(windowView, windowFirstDays[0],
+					windowDays, previousVariation);
+		else
+			findWeightedMeanVariation(previousVariation);
+		engine.findMeanVariation(presentView, presentFirstDay, presentDays,
+				presentVariation);
+		return findAvgVariationFactor(previousVariation, presentVariation);
 	}
 
 	/**
 	 * This function calculates predicted variation for 2 forecast times a day
 	 * by taking average of mean variation of present and last year.
 	 * 
-	 * @param meanPreviousVectorList
-	 *            mean predicted variation of previous year
-	 * @param meanPresentVectorList
-	 *            mean predicted variation of present year
+	 * @param meanPreviousVariation
+	 *            mean variation of previous year, as written by the variation
+	 *            engine
+	 * @param meanPresentVariation
+	 *            mean variation of present year
 	 * @return final predicted variation vector for 2 times
 	 */
 
 	private List<VariationVector> findAvgVariationFactor(
-			List<VariationVector> meanPreviousVectorList,
-			List<VariationVector> meanPresentVectorList) {
+			float[] meanPreviousVariation, float[] meanPresentVariation) {
 		List<VariationVector> avgVariationFactorList = new ArrayList<VariationVector>();
-		List<VariationVector> morningVectorList = Arrays.asList(
-				meanPreviousVectorList.get(0), meanPresentVectorList.get(0));
-		List<VariationVector> noonVectorList = Arrays.asList(
-				meanPreviousVectorList.get(1), meanPresentVectorList.get(1));
-
-		VariationVector morningFactor = calculateMean(morningVectorList);
-		VariationVector noonFactor = calculateMean(noonVectorList);
-		avgVariationFactorList.add(morningFactor);
-		avgVariationFactorList.add(noonFactor);
+		avgVariationFactorList.add(calculateMean(meanPreviousVariation,
+				meanPresentVariation, MORNING_SLOT, MORNING_FORECAST_TIMESTAMP));
+		avgVariationFactorList.add(calculateMean(meanPreviousVariation,
+				meanPresentVariation, NOON_SLOT, NOON_FORECAST_TIMESTAMP));
 		return avgVariationFactorList;
 	}
 
 	/**
-	 * This function calculates the mean of variation vector list for a day. In
-	 * this function, the mean calculation for morning and noon time has
-	 * calculated separately.
+	 * This function finds the mean of the previous and present variation at
+	 * one forecast time. Values are added to zero in float before they are
+	 * divided, as when variation vectors are added one by one.
 	 * 
-	 * @return mean of variation vector list containing 2 forecast times
+	 * @return mean variation vector for one time
 	 */
-	private List<VariationVector> findMeanVariation(List<WeatherData> dataList) {
-		List<VariationVector> meanVariation = new ArrayList<VariationVector>();
-		List<VariationVector> morningVectorList = findVariationVector(dataList,
-				0, 2);
-		List<VariationVector> noonVectorList = findVariationVector(dataList, 1,
-				3);
-		VariationVector meanMorningVariation = calculateMean(morningVectorList);
-		VariationVector meanNoonVariation = calculateMean(noonVectorList);
-		meanVariation.add(meanMorningVariation);
-		meanVariation.add(meanNoonVariation);
-		return meanVariation;
-	}
 
-	/**
-	 * This function finds the mean of variation vector list formed at a
-	 * particular time(morning/noon).
-	 * 
-	 * @param vectorList
-	 *            list of vector list
-	 * @return mean of variation vector list for one time
-	 */
-
-	private VariationVector calculateMean(List<VariationVector> vectorList) {
+	private VariationVector calculateMean(float[] meanPreviousVariation,
+			float[] meanPresentVariation, int slot, String time) {
+		int offset = slot * VALUES_PER_SLOT;
 		VariationVector meanVariationVector = new VariationVector();
-		String time = null;
-		for (VariationVector vector : vectorList) {
-			time = vector.getTime();
-			float temperature = meanVariationVector.getTemperature()
-					+ vector.getTemperature();
-			meanVariationVector.setTemperature(temperature);
-			float pressure = meanVariationVector.getPressure()
-					+ vector.getPressure();
-			meanVariationVector.setPressure(pressure);
-			float humidity = meanVariationVector.getHumidity()
-					+ vector.getHumidity();
-			meanVariationVector.setHumidity(humidity);
-		}
-		meanVariationVector.setTemperature(meanVariationVector.getTemperature()
-				/ vectorList.size());
-		meanVariationVector.setHumidity(meanVariationVector.getHumidity()
-				/ vectorList.size());
-		meanVariationVector.setPressure(meanVariationVector.getPressure()
-				/ vectorList.size());
 		meanVariationVector.setTime(time);
+		meanVariationVector.setTemperature((0f
+				+ meanPreviousVariation[offset + TEMPERATURE] + meanPresentVariation[offset
+				+ TEMPERATURE]) / 2);
+		meanVariationVector.setHumidity((0f
+				+ meanPreviousVariation[offset + HUMIDITY] + meanPresentVariation[offset
+				+ HUMIDITY]) / 2);
+		meanVariationVector.setPressure((0f
+				+ meanPreviousVariation[offset + PRESSURE] + meanPresentVariation[offset
+				+ PRESSURE]) / 2);
 		return meanVariationVector;
 	}
 
 	/**
-	 * This function finds variation vector for a set of records by providing
-	 * start and next positions. Since we have historical data twice a day in a
-	 * single list, iteration is done for every alternate positions of the list
-	 * based on given positions.
+	 * This function combines the mean variation of each window closest to the
+	 * present period, weighting each window by the inverse of its distance.
+	 * Windows at distance zero match the present period exactly and take all
+	 * the weight between them.
 	 * 
-	 * @param dataList
-	 *            list of weather records
-	 * @param startPosition
-	 *            start position of the record
-	 * @param nextPosition
-	 *            next position of the record
-	 * @return variation vector calculated from the list of weather records
+	 * @param resultOut
+	 *            array to which the weighted mean variation for 2 forecast
+	 *            times is written
 	 */
-	private List<VariationVector> findVariationVector(
-			List<WeatherData> dataList, int startPosition, int nextPosition) {
-		List<VariationVector> vectorList = new ArrayList<VariationVector>();
-		WeatherData firstItem = dataList.get(startPosition);
-		for (int i = nextPosition; i < dataList.size(); i = i + 2) {
-			WeatherData secondItem = dataList.get(i);
-			VariationVector vector = new VariationVector();
-			vector.setTime(WeatherUtils.extractTimefromDateTime(secondItem
-					.getDateTime()));
-			vector.setTemperature(secondItem.getTemp() - firstItem.getTemp());
-			vector.setPressure(secondItem.getPressure()
-					- firstItem.getPressure());
-			vector.setHumidity(secondItem.getHumidity()
-					- firstItem.getHumidity());
-			vectorList.add(vector);
-			firstItem = secondItem;
+	private void findWeightedMeanVariation(float[] resultOut) {
+		// sums of each value for each forecast time
+		double[] sums = new double[RESULT_SIZE];
+		double totalWeight = 0;
+		for (int window = 0; window < windowCount; window++) {
+			double weight;
+			if (windowDistances[0] == 0)
+				weight = windowDistances[window] == 0 ? 1 : 0;
+			else
+				weight = 1 / windowDistances[window];
+			if (weight == 0)
+				continue;
+			engine.findMeanVariation(windowView, windowFirstDays[window],
+					windowDays, windowVariation);
+			for (int index = 0; index < RESULT_SIZE; index++) {
+				sums[index] += weight * windowVariation[index];
+			}
+			totalWeight += weight;
+		}
+		for (int index = 0; index < RESULT_SIZE; index++) {
+			resultOut[index] = (float) (sums[index] / totalWeight);
 		}
-		return vectorList;
 	}
 }
@@ -0,0 +1,104 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+package com.weather.prediction.logic;
+
+/**
+ * Class which calculates the mean variation of a period at both forecast
+ * times without creating objects. The observations of the period are read in
+ * a single pass into primitive columns, one for each value at each forecast
+ * time, the forecast kernel takes the differences of consecutive days, and
+ * the differences are added in float in the order of the days, which gives
+ * the same means as adding variation vectors one by one. The columns and the
+ * differences are kept between calls, so an engine reused for periods of the
+ * same length does not allocate.
+ *
+ * @author Irene Mathew
+ *
+ */
+import static com.weather.prediction.constants.WeatherConstants.MORNING_SLOT;
+import static com.weather.prediction.constants.WeatherConstants.NOON_SLOT;
+
+import com.weather.prediction.utils.ObservationView;
+
+public final class VariationEngine {
+	// positions of the values of a forecast time in a result
+	public static final int TEMPERATURE = 0;
+	public static final int HUMIDITY = 1;
+	public static final int PRESSURE = 2;
+	public static final int VALUES_PER_SLOT = 3;
+	// a result holds the values of the morning and then of the noon slot
+	public static final int RESULT_SIZE = 2 * VALUES_PER_SLOT;
+
+	private final ForecastKernel kernel;
+	private final float[][] columns = new float[RESULT_SIZE][0];
+	private float[] differences = new float[0];
+
+	public VariationEngine() {
+		this(ForecastKernels.get());
+	}
+
+	/**
+	 * @param kernel
+	 *            kernel which takes the differences of consecutive days
+	 */
+	public VariationEngine(ForecastKernel kernel) {
+		this.kernel = kernel;
+	}
+
+	/**
+	 * This function calculates the mean variation of a period at both
+	 * forecast times. Each variation is the observation of a day minus the
+	 * observation of the day before.
+	 *
+	 * @param view
+	 *            observations of the period
+	 * @param firstDay
+	 *            epoch day of the first day of the period
+	 * @param days
+	 *            number of days of the period
+	 * @param resultOut
+	 *            array of RESULT_SIZE to which the mean variations are
+	 *            written, at slot * VALUES_PER_SLOT + TEMPERATURE, HUMIDITY or
+	 *            PRESSURE
+	 */
+	public void findMeanVariation(ObservationView view, int firstDay,
+			int days, float[] resultOut) {
+		ensureCapacity(days);
+		for (int day = 0; day < days; day++) {
+			readDay(view, firstDay + day, MORNING_SLOT, day);
+			readDay(view, firstDay + day, NOON_SLOT, day);
+		}
+		for (int column = 0; column < RESULT_SIZE; column++) {
+			kernel.differences(columns[column], days, differences);
+			float sum = 0;
+			for (int index = 0; index < days - 1; index++) {
+				sum += differences[index];
+			}
+			resultOut[column] = sum / (days - 1);
+		}
+	}
+
+	private void readDay(ObservationView view, int epochDay, int slot, int day) {
+		int column = slot * VALUES_PER_SLOT;
+		columns[column + TEMPERATURE][day] = view.getTemp(epochDay, slot);
+		columns[column + HUMIDITY][day] = view.getHumidity(epochDay, slot);
+		columns[column + PRESSURE][day] = view.getPressure(epochDay, slot);
+	}
+
+	private void ensureCapacity(int days) {
+		if (differences.length >= days)
+			return;
+		for (int column = 0; column < RESULT_SIZE; column++) {
+			columns[column] = new float[days];
+		}
+		differences = new float[days];
+	}
+
+}
@@ -0,0 +1,74 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+package com.weather.prediction.logic;
+
+/**
+ * Class which reads a list of weather records holding both forecast times of
+ * consecutive days, in date and time order, as an observation view. Days are
+ * numbered from 0, so the record of a day at a forecast time is found by its
+ * position in the list.
+ *
+ * @author Irene Mathew
+ *
+ */
+import java.util.List;
+
+import com.weather.prediction.bean.WeatherData;
+import com.weather.prediction.utils.ObservationView;
+
+class WeatherDataListView implements ObservationView {
+	private final List<WeatherData> weatherDataList;
+
+	WeatherDataListView(List<WeatherData> weatherDataList) {
+		this.weatherDataList = weatherDataList;
+	}
+
+	/**
+	 * @return number of days in the list
+	 */
+	int getDays() {
+		return weatherDataList.size() / 2;
+	}
+
+	@Override
+	public int getFirstEpochDay() {
+		return 0;
+	}
+
+	@Override
+	public int getLastEpochDay() {
+		return getDays() - 1;
+	}
+
+	@Override
+	public boolean hasObservation(int epochDay, int slot) {
+		int index = 2 * epochDay + slot;
+		return epochDay >= 0 && index < weatherDataList.size();
+	}
+
+	@Override
+	public float getTemp(int epochDay, int slot) {
+		return hasObservation(epochDay, slot) ? weatherDataList.get(
+				2 * epochDay + slot).getTemp() : Float.NaN;
+	}
+
+	@Override
+	public float getHumidity(int epochDay, int slot) {
+		return hasObservation(epochDay, slot) ? weatherDataList.get(
+				2 * epochDay + slot).getHumidity() : Float.NaN;
+	}
+
+	@Override
+	public float getPressure(int epochDay, int slot) {
+		return hasObservation(epochDay, slot) ? weatherDataList.get(
+				2 * epochDay + slot).getPressure() : Float.NaN;
+	}
+
+}
@@ -20,7 +20,11 @@ import static com.weather.prediction.constants.WeatherConstants.CLOUDY;
 import static com.weather.prediction.constants.WeatherConstants.COLD;
 import static com.weather.prediction.constants.WeatherConstants.DATE_FORMAT;
 import static com.weather.prediction.constants.WeatherConstants.DATE_TIME_DELIMITER;
+import static com.weather.prediction.constants.WeatherConstants.MORNING_FORECAST_TIMESTAMP;
+import static com.weather.prediction.constants.WeatherConstants.MORNING_SLOT;
 import static com.weather.prediction.constants.WeatherConstants.MOSTLY_SUNNY;
+import static com.weather.prediction.constants.WeatherConstants.NOON_FORECAST_TIMESTAMP;
+import static com.weather.prediction.constants.WeatherConstants.NOON_SLOT;
 import static com.weather.prediction.constants.WeatherConstants.NOT_FOUND;
 import static com.weather.prediction.constants.WeatherConstants.OUTPUT_FILE_NAME;
 import static com.weather.prediction.constants.WeatherConstants.RAINY;
@@ -32,36 +36,136 @@ import java.io.FileNotFoundException;
 import java.io.PrintWriter;
 import java.text.ParseException;
 import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.Collections;
-import java.util.Date;
 import java.util.List;
-import java.util.Set;
-import java.util.TreeSet;
 
 import org.apache.log4j.Logger;
 
+import com.weather.prediction.bean.ForecastConfig;
+import com.weather.prediction.bean.Station;
 import com.weather.prediction.bean.VariationVector;
 import com.weather.prediction.bean.WeatherData;
 import com.weather.prediction.bean.WeatherDataArchive;
 import com.weather.prediction.exception.WeatherException;
+import com.weather.prediction.utils.DailyAggregateCache;
+import com.weather.prediction.utils.ObservationView;
 import com.weather.prediction.utils.WeatherUtils;
 
 public class WeatherPredictor {
 	private WeatherDataArchive weatherDataArchive;
+	private final ObservationView history;
+	private final Station station;
+	private final int issueEpochDay;
+	private ObservationView view;
+	private ForecastOverlay overlay;
+	private SearchMode searchMode = SearchMode.FIXED_WINDOWS;
+	private int analogCount = 1;
+	private SimilarityMetric similarityMetric = new EuclideanMetric();
+	private ForecastConfig config = new ForecastConfig();
+	private final PruningStats pruningStats = new PruningStats();
+	private DailyAggregateCache dailyAggregates;
 
 	final static Logger logger = Logger.getLogger(WeatherPredictor.class);
 
+	/**
+	 * This constructor creates a predictor which adds every forecast day to
+	 * the given archive.
+	 * 
+	 * @param weatherDataArchive
+	 *            history of the location
+	 */
 	public WeatherPredictor(final WeatherDataArchive weatherDataArchive) {
 		this.weatherDataArchive = weatherDataArchive;
+		this.history = null;
+		this.station = null;
+		this.issueEpochDay = Integer.MAX_VALUE;
+	}
+
+	/**
+	 * This constructor creates a predictor which forecasts the days after the
+	 * last day of a history.
+	 * 
+	 * @param history
+	 *            observations of the location
+	 * @param station
+	 *            station details written with the forecast
+	 */
+	public WeatherPredictor(ObservationView history, Station station) {
+		this(history, station, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * This constructor creates a predictor which reads a history in place up
+	 * to the issue day. The forecast days are laid over the history instead
+	 * of being added to it, so the history is never copied or changed and
+	 * may be read by several predictors at once.
+	 * 
+	 * @param history
+	 *            observations of the location
+	 * @param station
+	 *            station details written with the forecast
+	 * @param issueEpochDay
+	 *            last observed day read by the forecast
+	 */
+	public WeatherPredictor(ObservationView history, Station station,
+			int issueEpochDay) {
+		this.history = history;
+		this.station = station;
+		this.issueEpochDay = issueEpochDay;
+	}
+
+	/**
+	 * @param searchMode
+	 *            way in which last year's records are searched, FIXED_WINDOWS
+	 *            by default
+	 */
+	public void setSearchMode(SearchMode searchMode) {
+		this.searchMode = searchMode;
+	}
+
+	/**
+	 * @param analogCount
+	 *            number of closest windows whose variations are combined with
+	 *            inverse distance weighting, 1 by default
+	 */
+	public void setAnalogCount(int analogCount) {
+		this.analogCount = analogCount;
+	}
+
+	/**
+	 * @param config
+	 *            horizon, window size and window count of the run, the five
+	 *            day forecast with eight windows of seven days by default
+	 */
+	public void setForecastConfig(ForecastConfig config) {
+		this.config = config;
+	}
+
+	/**
+	 * @param similarityMetric
+	 *            measure of the distance between a window and the present
+	 *            period, the Euclidean metric by default
+	 */
+	public void setSimilarityMetric(SimilarityMetric similarityMetric) {
+		this.similarityMetric = similarityMetric;
 	}
 
 	/**
-	 * This function triggers forecasting for consecutive five days. It selects
-	 * a list of input records from the historical data and gives it to the
-	 * algorithm. Forecast data corresponding to each day is written to an
-	 * output file and also fed to the archiveMap so that next day prediction
-	 * makes use of this data.
+	 * @return counts of the candidate windows searched for all predictions of
+	 *         the predictor, and the stage at which each was ruled out
+	 */
+	public PruningStats getPruningStats() {
+		return pruningStats;
+	}
+
+	/**
+	 * This function triggers forecasting for consecutive days, five by
+	 * default or the horizon of the forecast config. It selects a list of
+	 * input records from the historical data and gives it to the algorithm.
+	 * Forecast data corresponding to each day is written to an output file
+	 * and also fed to the archiveMap, or laid over the history read in place,
+	 * so that next day prediction makes use of this data. The work of each
+	 * day does not depend on the horizon, as the archive is indexed by day
+	 * and the default search slides on by one day.
 	 * 
 	 * @param outputPath
 	 *            output directory
@@ -75,62 +179,224 @@ public class WeatherPredictor {
 	 */
 	public void predictWeatherforFiveDays(String outputPath)
 			throws ParseException, WeatherException, FileNotFoundException {
+		config.validate();
 		PrintWriter writer = new PrintWriter(new File(outputPath
 				+ OUTPUT_FILE_NAME));
 		logger.info("Predicted output is written to " + outputPath
 				+ OUTPUT_FILE_NAME);
-		for (int i = 0; i < 5; i++) {
-			List<WeatherData> presentYearList = new ArrayList<WeatherData>();
-			List<WeatherData> lastYearList = new ArrayList<WeatherData>();
-			String dayBeforePrediction = getLatestDateFromArchive();
+		try {
+			predictWeatherforFiveDays(writer);
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * This function forecasts consecutive days in the same way as
+	 * {@link #predictWeatherforFiveDays(String)}, writing the forecast of
+	 * each day to the given writer, which is left open.
+	 * 
+	 * @param writer
+	 *            writer to which the forecast is written
+	 * 
+	 * @throws ParseException
+	 *             is thrown when date is not correctly parsed
+	 * @throws WeatherException
+	 *             is thrown when algorithm specific conditions are not met
+	 */
+	public void predictWeatherforFiveDays(PrintWriter writer)
+			throws ParseException, WeatherException {
+		config.validate();
+		int windowSize = config.getWindowSize();
+		if (history != null) {
+			overlay = new ForecastOverlay(history, issueEpochDay,
+					config.getHorizonDays());
+			view = overlay;
+		} else {
+			view = this.weatherDataArchive;
+		}
+		// daily averages of the archive are read once for all days
+		dailyAggregates = new DailyAggregateCache(view);
+		MultiYearAnalogIndex analogIndex = searchMode == SearchMode.MULTI_YEAR ? new MultiYearAnalogIndex(
+				view, config.getSpanDays()) : null;
+		// the fixed windows of the default search slide on by a day per
+		// forecast instead of being searched again
+		RolloutEngine rollout = searchMode == SearchMode.FIXED_WINDOWS
+				&& analogCount == 1
+				&& similarityMetric instanceof EuclideanMetric ? new RolloutEngine(
+				dailyAggregates, config) : null;
+		if (rollout != null)
+			rollout.setPruningStats(pruningStats);
+		for (int i = 0; i < config.getHorizonDays(); i++) {
+			int dayBeforePrediction = overlay != null ? overlay
+					.getLastEpochDay() : this.weatherDataArchive
+					.getLatestEpochDay();
 			logger.debug("Previous Day before Prediction date"
-					+ dayBeforePrediction);
-			presentYearList.addAll(getRecordsFromArchive(dayBeforePrediction,
-					0, 7));
-			lastYearList.addAll(getRecordsFromArchive(dayBeforePrediction, 358,
-					372));
-			// sorting based on date and time
-			Collections.sort(presentYearList, (o1, o2) -> o1.getDateTime()
-					.compareTo(o2.getDateTime()));
-			Collections.sort(lastYearList, (o1, o2) -> o1.getDateTime()
-					.compareTo(o2.getDateTime()));
-			validateNumberOfInputRecordsToAlgorithm(presentYearList, 7);
-			validateNumberOfInputRecordsToAlgorithm(lastYearList, 14);
-			SlidingWindowImplementation algorithm = new SlidingWindowImplementation(
-					presentYearList, lastYearList);
-			// calling algorithm to find predicted variation
-			List<VariationVector> predictedVariation = algorithm
-					.implementSlidingWindow();
+					+ WeatherUtils.epochDayToString(dayBeforePrediction));
+			// the algorithm reads the archive through its observation view
+			validateNumberOfInputRecordsToAlgorithm(dayBeforePrediction, 0,
+					windowSize);
+			List<VariationVector> predictedVariation;
+			if (rollout != null) {
+				validateLastYearRecords(dayBeforePrediction);
+				if (i > 0 && rollout.getIssueDay() + 1 == dayBeforePrediction)
+					rollout.advance();
+				else
+					rollout.start(dayBeforePrediction);
+				predictedVariation = rollout.findVariationFactor();
+			} else {
+				predictedVariation = searchWindows(dayBeforePrediction,
+						analogIndex);
+			}
 			logger.info("Started Prediction");
 			// adding predicted variation to previous day in order to get result
 			findResultWithVariation(predictedVariation, dayBeforePrediction,
 					writer);
 		}
 		logger.info("Completed Prediction");
-		writer.close();
+		logger.debug("Window search: " + pruningStats);
+		writer.flush();
+
+	}
+
+	/**
+	 * This function searches last year's records for the windows closest to
+	 * the present period of one forecast.
+	 * 
+	 * @param dayBeforePrediction
+	 *            epoch day of the day before forecast date
+	 * @param analogIndex
+	 *            index of the earlier years, in MULTI_YEAR mode
+	 * @return predicted variation vector for 2 forecast times
+	 * @throws ParseException
+	 *             is thrown when date is not correctly parsed
+	 * @throws WeatherException
+	 *             is thrown when algorithm specific conditions are not met
+	 */
+	private List<VariationVector> searchWindows(int dayBeforePrediction,
+			MultiYearAnalogIndex analogIndex) throws ParseException,
+			WeatherException {
+		int windowSize = config.getWindowSize();
+		int presentFirstDay = dayBeforePrediction - windowSize + 1;
+		SlidingWindowImplementation algorithm;
+		if (searchMode == SearchMode.MULTI_YEAR) {
+			algorithm = new SlidingWindowImplementation(view, presentFirstDay,
+					windowSize, analogIndex);
+		} else if (searchMode == SearchMode.ROLLING_SPAN) {
+			// windows start up to the span either side of a year before
+			int spanDays = config.getSpanDays();
+			algorithm = new SlidingWindowImplementation(view, presentFirstDay,
+					windowSize, view, dayBeforePrediction
+							- config.getLastYearLagDays() - spanDays,
+					windowSize + 2 * spanDays);
+		} else {
+			validateLastYearRecords(dayBeforePrediction);
+			algorithm = new SlidingWindowImplementation(view, presentFirstDay,
+					windowSize, view, dayBeforePrediction
+							- config.getLastYearLagDays(),
+					config.getLastYearDays());
+		}
+		algorithm.setExpectedWindows(windowSize, config.getWindowCount());
+		algorithm.setSearchMode(searchMode);
+		algorithm.setAnalogCount(analogCount);
+		algorithm.setSimilarityMetric(similarityMetric);
+		algorithm.setPruningStats(pruningStats);
+		algorithm.setDailyAggregates(dailyAggregates);
+		// calling algorithm to find predicted variation
+		return algorithm.implementSlidingWindow();
+	}
 
+	/**
+	 * This function checks the number of records of last year's period of the
+	 * fixed windows, which ends 358 days before the day before prediction
+	 * with the default windows.
+	 * 
+	 * @param dayBeforePrediction
+	 *            epoch day of the day before forecast date
+	 * @throws WeatherException
+	 *             is thrown when the expected number is not met
+	 */
+	private void validateLastYearRecords(int dayBeforePrediction)
+			throws WeatherException {
+		int endRange = config.getLastYearLagDays() + 1;
+		validateNumberOfInputRecordsToAlgorithm(dayBeforePrediction, endRange
+				- config.getLastYearDays(), endRange);
 	}
 
 	/**
 	 * This function checks the number of input records given to the algorithm.
+	 * All dates between start and end day differences are counted.
 	 * 
-	 * @param recordList
-	 *            List of weather records to the algorithm
-	 * @param expectedNumber
-	 *            Expected number of records
+	 * @param startPredictionDate
+	 *            epoch day of the start date of prediction
+	 * @param beginRange
+	 *            Start day difference
+	 * @param endRange
+	 *            End day difference, which is also the expected number of
+	 *            days
 	 * @throws WeatherException
 	 *             is thrown when the expected number is not met
 	 */
 	private void validateNumberOfInputRecordsToAlgorithm(
-			List<WeatherData> recordList, int expectedNumber)
+			int startPredictionDate, int beginRange, int endRange)
 			throws WeatherException {
-		int inputNumber = recordList.size() / 2;
+		int expectedNumber = endRange - beginRange;
+		int inputNumber = countRecords(startPredictionDate - endRange + 1,
+				startPredictionDate - beginRange + 1) / 2;
 		if (inputNumber != expectedNumber)
 			throw new WeatherException("Input list size(" + inputNumber
 					+ ") is not same as expected(" + expectedNumber + ")");
 
 	}
 
+	/**
+	 * This function counts the records of a range of days, the day after the
+	 * last day of the range excluded.
+	 */
+	private int countRecords(int fromEpochDay, int toEpochDay) {
+		if (overlay == null)
+			return this.weatherDataArchive.countRecords(fromEpochDay,
+					toEpochDay);
+		int count = 0;
+		for (int epochDay = fromEpochDay; epochDay < toEpochDay; epochDay++) {
+			for (int slot = MORNING_SLOT; slot <= NOON_SLOT; slot++) {
+				if (overlay.hasObservation(epochDay, slot))
+					count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * This function gives the records of a day of the observation view, with
+	 * the details of the station.
+	 * 
+	 * @param epochDay
+	 *            epoch day of the records
+	 * @return records of the day in time order
+	 */
+	private List<WeatherData> getDayRecords(int epochDay) {
+		List<WeatherData> dayList = new ArrayList<WeatherData>(2);
+		String date = WeatherUtils.epochDayToString(epochDay);
+		for (int slot = MORNING_SLOT; slot <= NOON_SLOT; slot++) {
+			if (!overlay.hasObservation(epochDay, slot))
+				continue;
+			WeatherData weatherData = new WeatherData();
+			weatherData.setLocation(station.getLocation());
+			weatherData.setLat(station.getLat());
+			weatherData.setLongt(station.getLongt());
+			weatherData.setElevtn(station.getElevtn());
+			weatherData.setDateTime(date + DATE_TIME_DELIMITER
+					+ (slot == MORNING_SLOT ? MORNING_FORECAST_TIMESTAMP
+							: NOON_FORECAST_TIMESTAMP));
+			weatherData.setTemp(overlay.getTemp(epochDay, slot));
+			weatherData.setHumidity(overlay.getHumidity(epochDay, slot));
+			weatherData.setPressure(overlay.getPressure(epochDay, slot));
+			dayList.add(weatherData);
+		}
+		return dayList;
+	}
+
 	/**
 	 * This function gives output of each day forecast based on the prediction
 	 * variation got from algorithm and writes it to an output file. Prediction
@@ -140,21 +406,28 @@ public class WeatherPredictor {
 	 * @param predictedVariation
 	 *            Predicted variation calculated from algorithm
 	 * @param dayBeforePrediction
-	 *            Day before forecast date
+	 *            epoch day of the day before forecast date
 	 * @param writer
 	 *            Printwriter object for the output file
 	 * @throws ParseException
 	 *             is thrown when date is not correctly parsed
 	 */
 	private void findResultWithVariation(
-			List<VariationVector> predictedVariation,
-			String dayBeforePrediction, PrintWriter writer)
-			throws ParseException {
-		String predicitonDate = findPredictionDate(dayBeforePrediction);
+			List<VariationVector> predictedVariation, int dayBeforePrediction,
+			PrintWriter writer) throws ParseException {
+		String predicitonDate = WeatherUtils
+				.epochDayToString(dayBeforePrediction + 1);
 		logger.info("Prediction Date: " + predicitonDate);
 		List<WeatherData> predictionDayList = new ArrayList<WeatherData>();
-		List<WeatherData> previousDayDataList = this.weatherDataArchive
-				.getWeatherArchive().get(dayBeforePrediction);
+		List<WeatherData> previousDayDataList;
+		if (overlay != null) {
+			previousDayDataList = getDayRecords(dayBeforePrediction);
+			// forecast days are laid over a read only history
+			overlay.addDay(dayBeforePrediction + 1);
+		} else {
+			previousDayDataList = this.weatherDataArchive
+					.get(dayBeforePrediction);
+		}
 		for (WeatherData previousDayData : previousDayDataList) {
 			logger.debug("Previous Day Data:" + previousDayData.toString());
 			String time = WeatherUtils.extractTimefromDateTime(previousDayData
@@ -184,6 +457,14 @@ public class WeatherPredictor {
 							predictionData.getPressure(),
 							predictionData.getHumidity()));
 					predictionDayList.add(predictionData);
+					if (overlay != null) {
+						int slot = MORNING_FORECAST_TIMESTAMP.equals(time) ? MORNING_SLOT
+								: NOON_SLOT;
+						overlay.put(dayBeforePrediction + 1, slot,
+								predictionData.getTemp(),
+								predictionData.getHumidity(),
+								predictionData.getPressure());
+					}
 					writer.write(predictionData.toString() + "\n");
 					logger.info("Predicted Data: " + predictionData.toString());
 				}
@@ -191,8 +472,12 @@ public class WeatherPredictor {
 
 		}
 
-		this.weatherDataArchive.getWeatherArchive().put(predicitonDate,
-				predictionDayList);
+		if (overlay == null)
+			this.weatherDataArchive.put(dayBeforePrediction + 1,
+					predictionDayList);
+		// the predicted day is read again by the next forecast
+		if (dailyAggregates != null)
+			dailyAggregates.invalidate(dayBeforePrediction + 1);
 
 	}
 
@@ -231,73 +516,4 @@ public class WeatherPredictor {
 		return condition;
 	}
 
-	/**
-	 * This function filters a certain number of records from historical data
-	 * which is further fed to algorithm. All dates between start and end day
-	 * differences are fetched.
-	 * 
-	 * @param startPredictionDate
-	 *            start date of prediction
-	 * @param beginRange
-	 *            Start day difference
-	 * @param endRange
-	 *            End day difference
-	 * 
-	 * @return list of weather records filtered from historical data
-	 */
-	private List<WeatherData> getRecordsFromArchive(String startPredictionDate,
-			int beginRange, int endRange) throws ParseException {
-		Set<String> dateSet = this.weatherDataArchive.getWeatherArchive()
-				.keySet();
-		List<WeatherData> filteredItems = new ArrayList<WeatherData>();
-		Date startDate = WeatherUtils.stringToDate(startPredictionDate,
-				DATE_FORMAT);
-		for (String date : dateSet) {
-			Date formattedDate = WeatherUtils.stringToDate(date, DATE_FORMAT);
-			long diff = startDate.getTime() - formattedDate.getTime();
-			long dayDiff = diff / (1000 * 60 * 60 * 24);
-			if (dayDiff >= beginRange && dayDiff < endRange) {
-				filteredItems.addAll(this.weatherDataArchive
-						.getWeatherArchive().get(date));
-			}
-		}
-		return filteredItems;
-	}
-
-	/**
-	 * This function finds the prediction date for each iteration.
-	 * 
-	 * @param dayBeforePrediction
-	 *            day before prediction day
-	 * 
-	 * @return prediction date
-	 * 
-	 * @throws ParseException
-	 *             is thrown when date is not correctly parsed
-	 */
-	private String findPredictionDate(String dayBeforePrediction)
-			throws ParseException {
-		Calendar calendar = Calendar.getInstance();
-		calendar.setTime(WeatherUtils.stringToDate(dayBeforePrediction,
-				DATE_FORMAT));
-		calendar.add(Calendar.DATE, 1);
-		Date date = calendar.getTime();
-		return WeatherUtils.dateToString(date, DATE_FORMAT);
-
-	}
-
-	/**
-	 * This function finds maximum date from the historical data. Prediction
-	 * variation from algorithm is added to weather record corresponding to this
-	 * date since prediction date is always the day following the maximum/latest
-	 * date.
-	 * 
-	 * @return maximum date from historical data
-	 */
-	private String getLatestDateFromArchive() {
-		TreeSet<String> dateSet = new TreeSet<String>();
-		dateSet.addAll(this.weatherDataArchive.getWeatherArchive().keySet());
-		return dateSet.last();
-	}
-
 }
@@ -0,0 +1,199 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+package com.weather.prediction.logic;
+
+/**
+ * Class which measures candidate windows against the present period and
+ * offers them to a heap of the closest windows, ruling a window out as early
+ * as possible once the heap is full. The squared distance of a window is at
+ * least the number of days times the squared difference of the means of
+ * each feature, and at least that plus the squared difference of the
+ * deviations, so both bounds are tried before the days are compared. The
+ * comparison of days stops once the sum exceeds the distance of the farthest
+ * window kept. A window is ruled out only when it cannot round to a distance
+ * the heap keeps, so the windows kept are the same as without pruning.
+ * Windows may also be offered in batches, whose distances the kernel
+ * calculates together once the bounds have been tried.
+ *
+ * @author Irene Mathew
+ *
+ */
+import static com.weather.prediction.logic.DayFeatureMatrix.FEATURES_PER_DAY;
+
+final class WindowEvaluator {
+	// margin for the rounding of the running sums behind the bounds
+	private static final double BOUND_MARGIN = 1e-6;
+	// windows measured together, after which the heap limits the next batch
+	static final int BATCH_WINDOWS = 32;
+
+	private final DayFeatureMatrix present;
+	private final int length;
+	private final double[] presentMeans = new double[FEATURES_PER_DAY];
+	private final double[] presentDeviations = new double[FEATURES_PER_DAY];
+	private final PruningStats stats;
+	private final ForecastKernel kernel;
+	private final int[] batch = new int[BATCH_WINDOWS];
+	private final double[] sums = new double[BATCH_WINDOWS];
+	private final int[] offsets = new int[BATCH_WINDOWS];
+
+	/**
+	 * @param present
+	 *            daily averages of a complete present period
+	 * @param stats
+	 *            counts to which the candidates evaluated are added
+	 */
+	WindowEvaluator(DayFeatureMatrix present, PruningStats stats) {
+		this(present, stats, ForecastKernels.get());
+	}
+
+	/**
+	 * @param present
+	 *            daily averages of a complete present period
+	 * @param stats
+	 *            counts to which the candidates evaluated are added
+	 * @param kernel
+	 *            kernel which calculates the distances
+	 */
+	WindowEvaluator(DayFeatureMatrix present, PruningStats stats,
+			ForecastKernel kernel) {
+		this.kernel = kernel;
+		this.present = present;
+		this.length = present.getDays();
+		this.stats = stats;
+		for (int feature = 0; feature < FEATURES_PER_DAY; feature++) {
+			presentMeans[feature] = present.mean(feature, 0, length);
+			presentDeviations[feature] = present.deviation(feature, 0, length);
+		}
+	}
+
+	/**
+	 * @return daily averages of the present period
+	 */
+	DayFeatureMatrix getPresent() {
+		return present;
+	}
+
+	/**
+	 * @return counts of the candidates evaluated
+	 */
+	PruningStats getStats() {
+		return stats;
+	}
+
+	/**
+	 * This function offers a complete window of the history to a heap.
+	 *
+	 * @param history
+	 *            daily averages of the history
+	 * @param fromDay
+	 *            index in the history of the first day of the window, which
+	 *            is also the window offered to the heap
+	 * @param heap
+	 *            heap keeping the closest windows
+	 */
+	void offer(DayFeatureMatrix history, int fromDay, BoundedMaxHeap heap) {
+		stats.addCandidate();
+		double limit = findLimit(heap);
+		if (heap.isFull() && isRuledOut(history, fromDay, limit))
+			return;
+		offerSum(kernel.squaredDistance(history, fromDay, present, limit),
+				limit, fromDay, heap);
+	}
+
+	/**
+	 * This function offers complete windows of the history to a heap in
+	 * batches. The windows of a batch are tried against the bounds of the
+	 * heap as it was before the batch, and the distances of the windows left
+	 * are calculated together by the kernel.
+	 *
+	 * @param history
+	 *            daily averages of the history
+	 * @param windows
+	 *            indices in the history of the first days of the windows,
+	 *            which are also the windows offered to the heap
+	 * @param count
+	 *            number of windows
+	 * @param heap
+	 *            heap keeping the closest windows
+	 */
+	void offerAll(DayFeatureMatrix history, int[] windows, int count,
+			BoundedMaxHeap heap) {
+		for (int from = 0; from < count; from += BATCH_WINDOWS) {
+			double limit = findLimit(heap);
+			int batchSize = 0;
+			for (int index = from; index < Math.min(from + BATCH_WINDOWS,
+					count); index++) {
+				stats.addCandidate();
+				if (heap.isFull() && isRuledOut(history, windows[index], limit))
+					continue;
+				batch[batchSize++] = windows[index];
+			}
+			kernel.squaredDistances(history, batch, batchSize, present, limit,
+					sums, offsets);
+			for (int index = 0; index < batchSize; index++) {
+				offerSum(sums[index], limit, batch[index], heap);
+			}
+		}
+	}
+
+	/**
+	 * @return largest squared distance of a window the heap can keep
+	 */
+	private static double findLimit(BoundedMaxHeap heap) {
+		return heap.isFull() ? DayFeatureMatrix.keepLimit(heap.peekDistance())
+				: Double.MAX_VALUE;
+	}
+
+	/**
+	 * This function tries the bounds of a window against the limit of a full
+	 * heap.
+	 *
+	 * @return true if a bound shows the window cannot be kept
+	 */
+	private boolean isRuledOut(DayFeatureMatrix history, int fromDay,
+			double limit) {
+		double meanBound = 0;
+		double deviationBound = 0;
+		for (int feature = 0; feature < FEATURES_PER_DAY; feature++) {
+			double mean = history.mean(feature, fromDay, length)
+					- presentMeans[feature];
+			meanBound += mean * mean;
+		}
+		if (isAbove(length * meanBound, limit)) {
+			stats.addPrunedByMeanBound();
+			return true;
+		}
+		for (int feature = 0; feature < FEATURES_PER_DAY; feature++) {
+			double deviation = history.deviation(feature, fromDay, length)
+					- presentDeviations[feature];
+			deviationBound += deviation * deviation;
+		}
+		if (isAbove(length * (meanBound + deviationBound), limit)) {
+			stats.addPrunedByShapeBound();
+			return true;
+		}
+		return false;
+	}
+
+	private void offerSum(double sum, double limit, int fromDay,
+			BoundedMaxHeap heap) {
+		if (sum > limit) {
+			stats.addAbandoned();
+			return;
+		}
+		stats.addEvaluated();
+		heap.offer(DayFeatureMatrix.roundDistance(sum), fromDay);
+	}
+
+	private static boolean isAbove(double bound, double limit) {
+		return bound * (1 - BOUND_MARGIN) - BOUND_MARGIN > limit;
+	}
+
+}
@@ -0,0 +1,74 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+package com.weather.prediction.logic;
+
+/**
+ * Class which measures a window by the Euclidean distance between the
+ * z-scores of the daily averages of its days and of the present period. Each
+ * feature is scaled by the standard deviation of the station, so a day's
+ * change of pressure in hPa weighs no more than the same change of
+ * temperature relative to how much each varies. The mean of a feature cancels
+ * out of the difference of two z-scores, so only the deviations are used.
+ *
+ * @author Irene Mathew
+ *
+ */
+import static com.weather.prediction.logic.DayFeatureMatrix.FEATURES_PER_DAY;
+
+public final class ZScoreEuclideanMetric implements SimilarityMetric {
+	private final double humidityScale;
+	private final double pressureScale;
+	private final double temperatureScale;
+
+	/**
+	 * @param statistics
+	 *            statistics of the station whose windows are measured
+	 */
+	public ZScoreEuclideanMetric(StationStatistics statistics) {
+		this.humidityScale = scale(statistics.getDeviation(0));
+		this.pressureScale = scale(statistics.getDeviation(1));
+		this.temperatureScale = scale(statistics.getDeviation(2));
+	}
+
+	/**
+	 * @return factor which turns a difference of a feature into a difference
+	 *         of z-scores, or 1 for a feature which does not vary
+	 */
+	private static double scale(double deviation) {
+		return deviation > 0 ? 1 / deviation : 1;
+	}
+
+	@Override
+	public double squaredDistance(DayFeatureMatrix history, int fromDay,
+			DayFeatureMatrix present, double limit) {
+		float[] a = history.getFeatures();
+		float[] b = present.getFeatures();
+		int i = fromDay * FEATURES_PER_DAY;
+		int j = 0;
+		double sum = 0;
+		for (int day = 0; day < present.getDays() && sum <= limit; day++) {
+			double humidity = (a[i] - b[j]) * humidityScale;
+			double pressure = (a[i + 1] - b[j + 1]) * pressureScale;
+			double temp = (a[i + 2] - b[j + 2]) * temperatureScale;
+			sum += humidity * humidity + pressure * pressure + temp * temp;
+			i += FEATURES_PER_DAY;
+			j += FEATURES_PER_DAY;
+		}
+		return sum;
+	}
+
+	@Override
+	public String toString() {
+		return "ZScoreEuclideanMetric [humidityScale=" + humidityScale
+				+ ", pressureScale=" + pressureScale + ", temperatureScale="
+				+ temperatureScale + "]";
+	}
+
+}
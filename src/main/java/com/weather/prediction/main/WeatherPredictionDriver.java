@@ -16,22 +16,60 @@ package com.weather.prediction.main;
  *
  */
 
-import static com.weather.prediction.constants.WeatherConstants.COMMA_DELIMITER;
-import static com.weather.prediction.constants.WeatherConstants.DATE_FORMAT;
+import static com.weather.prediction.constants.WeatherConstants.ALL_LOCATIONS;
+import static com.weather.prediction.constants.WeatherConstants.ANALOG_COUNT_PROPERTY;
+import static com.weather.prediction.constants.WeatherConstants.ARCHIVE_DIR_PROPERTY;
+import static com.weather.prediction.constants.WeatherConstants.ARCHIVE_FILE_EXTENSION;
+import static com.weather.prediction.constants.WeatherConstants.BASE_URL;
+import static com.weather.prediction.constants.WeatherConstants.BULK_BURST_PER_HOST;
+import static com.weather.prediction.constants.WeatherConstants.BULK_MAX_CONCURRENCY;
+import static com.weather.prediction.constants.WeatherConstants.BULK_REQUESTS_PER_SECOND_PER_HOST;
+import static com.weather.prediction.constants.WeatherConstants.DEFAULT_SERVICE_PORT;
+import static com.weather.prediction.constants.WeatherConstants.DOWNLOAD_THREAD_COUNT;
+import static com.weather.prediction.constants.WeatherConstants.HORIZON_DAYS_PROPERTY;
+import static com.weather.prediction.constants.WeatherConstants.HISTORY_DIR_PROPERTY;
+import static com.weather.prediction.constants.WeatherConstants.HISTORY_URL_PROPERTY;
+import static com.weather.prediction.constants.WeatherConstants.HTTP_RETRY_BUDGET;
+import static com.weather.prediction.constants.WeatherConstants.METRIC_PROPERTY;
+import static com.weather.prediction.constants.WeatherConstants.SEARCH_MODE_PROPERTY;
+import static com.weather.prediction.constants.WeatherConstants.SEARCH_SPAN_PROPERTY;
+import static com.weather.prediction.constants.WeatherConstants.SERVE_MODE;
+import static com.weather.prediction.constants.WeatherConstants.SERVICE_PORT_PROPERTY;
+import static com.weather.prediction.constants.WeatherConstants.SERVICE_REFRESH_MILLIS;
+import static com.weather.prediction.constants.WeatherConstants.SERVICE_THREAD_COUNT;
+import static com.weather.prediction.constants.WeatherConstants.STORE_INITIAL_DAYS;
+import static com.weather.prediction.constants.WeatherConstants.WINDOW_COUNT_PROPERTY;
+import static com.weather.prediction.constants.WeatherConstants.WINDOW_SIZE_PROPERTY;
 
+import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.text.ParseException;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
+import java.util.Locale;
 
 import org.apache.log4j.Logger;
 
-import com.weather.prediction.bean.WeatherData;
-import com.weather.prediction.bean.WeatherDataArchive;
+import com.weather.prediction.bean.ForecastConfig;
+import com.weather.prediction.bean.Station;
 import com.weather.prediction.exception.WeatherException;
+import com.weather.prediction.logic.ParallelForecastRunner;
+import com.weather.prediction.logic.SearchMode;
+import com.weather.prediction.logic.SimilarityMetricType;
 import com.weather.prediction.logic.WeatherPredictor;
+import com.weather.prediction.service.ForecastService;
+import com.weather.prediction.utils.BinaryArchiveReader;
+import com.weather.prediction.utils.BinaryArchiveWriter;
+import com.weather.prediction.utils.BulkIngestionScheduler;
+import com.weather.prediction.utils.HistoryCache;
+import com.weather.prediction.utils.HistorySource;
+import com.weather.prediction.utils.HttpHistorySource;
+import com.weather.prediction.utils.HttpTransport;
+import com.weather.prediction.utils.LocalDirectoryHistorySource;
+import com.weather.prediction.utils.ObservationStore;
+import com.weather.prediction.utils.ObservationView;
+import com.weather.prediction.utils.RetryBudget;
 import com.weather.prediction.utils.WeatherHistoryDownloader;
 import com.weather.prediction.utils.WeatherUtils;
 
@@ -47,25 +85,45 @@ public class WeatherPredictionDriver {
 	 * calls another function to load historical data into weather data object.
 	 * 
 	 * @param args
-	 *            [0] Location name for which prediction is to be made
+	 *            [0] Location name for which prediction is to be made, ALL
+	 *            to predict every location of the lookup file, or SERVE to
+	 *            run the forecast service
 	 * @param args
-	 *            [1] Directory to which output should be written
+	 *            [1] Directory to which output should be written, not needed
+	 *            by the forecast service
 	 * 
 	 */
 	public static void main(String[] args) {
 		WeatherPredictionDriver predictor = new WeatherPredictionDriver();
-		List<String> historyData = new ArrayList<String>();
 		try {
 			String location = args[0].toUpperCase();
+			if (SERVE_MODE.equals(location)) {
+				predictor.serveForecasts();
+				return;
+			}
 			String outputPath = args[1];
 			// creates output directory
 			WeatherUtils.createOutputPath(outputPath);
+			if (ALL_LOCATIONS.equals(location)) {
+				predictor.predictAllLocations(outputPath);
+				return;
+			}
 			WeatherHistoryDownloader downloader = new WeatherHistoryDownloader(
-					location);
-			// downloading historical data from real time API
-			historyData = downloader.downloadHistoryFromAPI();
-			if (historyData.size() > 0) {
-				predictor.loadHistoricalData(historyData, outputPath);
+					location, createHistorySource());
+			// downloading historical data from the history source straight
+			// into the observation store
+			logger.info("Historical Weather Data :Started loading to application");
+			long startTime = System.nanoTime();
+			Station station = downloader.getStationFromLookUp();
+			ObservationView history = predictor.loadHistory(downloader,
+					station);
+			if (history != null
+					&& history.getLastEpochDay() >= history.getFirstEpochDay()) {
+				logger.info("Historical Weather Data :Successfully loaded until "
+						+ WeatherUtils.epochDayToString(history
+								.getLastEpochDay()) + " in "
+						+ (System.nanoTime() - startTime) / 1000000 + " ms");
+				predictor.predictFromHistory(history, station, outputPath);
 			}
 		} catch (Exception e) {
 			logger.error(e);
@@ -73,74 +131,284 @@ public class WeatherPredictionDriver {
 	}
 
 	/**
-	 * This function loads historical data to archiveMap which is used through
-	 * out the application for prediction and triggers prediction engine.
+	 * This function loads the historical data of a location. The history is
+	 * downloaded into an observation store, which keeps it off the heap. When
+	 * the system property weather.archive.dir is set, the binary archive of
+	 * the location in that directory is read in place if it is up to date
+	 * with yesterday. Otherwise only the months after the archive or missing
+	 * from it are downloaded and appended to the binary archive for the next
+	 * runs.
+	 * 
+	 * @param downloader
+	 *            downloader of the location
+	 * @param station
+	 *            station details of the location, null if the location is
+	 *            not in the lookup file
+	 * @return observations of the location, or null if there are none
+	 * @throws IOException
+	 *             is thrown when look up file is not found or the binary
+	 *             archive cannot be written
+	 * @throws WeatherException
+	 *             is thrown when given input location is invalid/ API URL is
+	 *             unavailable
+	 */
+	private ObservationView loadHistory(WeatherHistoryDownloader downloader,
+			Station station) throws IOException, WeatherException {
+		if (station == null)
+			throw new WeatherException(
+					"Given input location is not in the lookup file, no history can be loaded");
+		String archiveDir = System.getProperty(ARCHIVE_DIR_PROPERTY);
+		if (archiveDir == null) {
+			ObservationStore observationStore = new ObservationStore(
+					STORE_INITIAL_DAYS);
+			downloader.downloadHistory(downloader.findHistoricalDataMonths(),
+					DOWNLOAD_THREAD_COUNT, observationStore);
+			return observationStore.getView(station.getLocation());
+		}
+		File archiveFile = new File(archiveDir, station.getLocation()
+				+ ARCHIVE_FILE_EXTENSION);
+		List<String> monthList = downloader.findHistoricalDataMonths();
+		BinaryArchiveWriter writer = new BinaryArchiveWriter(station);
+		if (archiveFile.isFile()) {
+			BinaryArchiveReader reader = BinaryArchiveReader.open(archiveFile);
+			if (reader.getLastEpochDay() >= WeatherUtils.getTodayEpochDay() - 1) {
+				logger.info("Historical Weather Data :Opened binary archive "
+						+ archiveFile);
+				return reader;
+			}
+			// only the months missing from the archive are downloaded
+			reader.replay(writer);
+			monthList = reader.findMonthsToUpdate(monthList);
+		}
+		downloader.downloadHistory(monthList, DOWNLOAD_THREAD_COUNT, writer);
+		writer.write(archiveFile);
+		logger.info("Historical Weather Data :Wrote binary archive "
+				+ archiveFile + " with " + monthList.size()
+				+ " downloaded months");
+		return BinaryArchiveReader.open(archiveFile);
+	}
+
+	/**
+	 * This function ingests the historical data of every location in the
+	 * lookup file into one observation store with the bulk ingestion
+	 * scheduler and forecasts the locations in parallel, each with its own
+	 * predictor reading the store in place. The output of a location is
+	 * written to a directory named after it under the output path.
 	 * 
-	 * @param historyData
-	 *            List of historical weather records from real time API
 	 * @param outputPath
 	 *            output directory path
+	 * @throws IOException
+	 *             is thrown when look up file is not found
 	 * @throws WeatherException
 	 *             is thrown when error occurs in forecasting for next five days
 	 * @throws ParseException
 	 *             is thrown when date is not correctly parsed
-	 * @throws FileNotFoundException
-	 *             is thrown if the output path doesn't exist
 	 */
-	private void loadHistoricalData(List<String> historyData, String outputPath)
-			throws ParseException, WeatherException, FileNotFoundException {
-		WeatherDataArchive weatherDataArchive = new WeatherDataArchive();
-		Map<String, List<WeatherData>> weatherArchiveMap = new HashMap<String, List<WeatherData>>();
-		logger.info("Historical Weather Data :Started loading to application");
-		for (String line : historyData) {
-			WeatherData weatherData = new WeatherData();
-			String lineSplit[] = line.split(COMMA_DELIMITER, -1);
-			weatherData.setLocation(lineSplit[0]);
-			weatherData.setLat(lineSplit[1]);
-			weatherData.setLongt(lineSplit[2]);
-			weatherData.setElevtn(lineSplit[3]);
-			String date = WeatherUtils.extractDatefromDateTime(lineSplit[4]);
-			weatherData.setDateTime(lineSplit[4]);
-			weatherData.setDate(WeatherUtils.stringToDate(date, DATE_FORMAT));
-			weatherData.setTemp(Float.parseFloat(lineSplit[5]));
-			weatherData.setHumidity(Float.parseFloat(lineSplit[6]));
-			weatherData.setPressure(Float.parseFloat(lineSplit[7]));
-			putToArchiveMap(weatherData, weatherArchiveMap);
-		}
-		logger.info("Historical Weather Data :Successfully loaded");
+	private void predictAllLocations(String outputPath) throws IOException,
+			WeatherException, ParseException {
+		List<Station> stations = WeatherHistoryDownloader.getStationCatalog();
+		BulkIngestionScheduler scheduler = new BulkIngestionScheduler(
+				createHistorySource(), BULK_MAX_CONCURRENCY,
+				BULK_REQUESTS_PER_SECOND_PER_HOST, BULK_BURST_PER_HOST);
+		ObservationStore observationStore = new ObservationStore(
+				STORE_INITIAL_DAYS);
+		List<String> locations = scheduler.ingest(stations,
+				new WeatherHistoryDownloader(ALL_LOCATIONS)
+						.findHistoricalDataMonths(), observationStore);
+		logger.info("Historical Weather Data :" + locations.size()
+				+ " locations resident in "
+				+ observationStore.getOffHeapBytes() / 1024 + " KB off heap");
+		ParallelForecastRunner runner = new ParallelForecastRunner(Runtime
+				.getRuntime().availableProcessors());
+		runner.setForecastConfig(createForecastConfig());
+		runner.setSearchMode(createSearchMode());
+		runner.setAnalogCount(createAnalogCount());
+		runner.setSimilarityMetric(createMetricType()::create);
+		runner.predictAll(observationStore, locations, outputPath);
+	}
 
-		weatherDataArchive.setWeatherArchive(weatherArchiveMap);
-		WeatherPredictor predictionDriver = new WeatherPredictor(
-				weatherDataArchive);
-		// triggering prediction engine
-		predictionDriver.predictWeatherforFiveDays(outputPath);
+	/**
+	 * This function ingests the historical data of every location in the
+	 * lookup file and keeps it resident in the forecast service, which serves
+	 * forecasts on the port given by the system property weather.service.port
+	 * and refreshes the history every hour until the process is stopped.
+	 * 
+	 * @throws IOException
+	 *             is thrown when look up file is not found or the server
+	 *             cannot be started
+	 * @throws WeatherException
+	 *             is thrown when the settings of the forecast are not valid
+	 */
+	private void serveForecasts() throws IOException, WeatherException {
+		ForecastConfig config = createForecastConfig();
+		config.validate();
+		// the retries of the process are refilled with every refresh
+		HistorySource historySource = createHistorySource(new RetryBudget(
+				HTTP_RETRY_BUDGET, SERVICE_REFRESH_MILLIS));
+		List<String> monthList = new WeatherHistoryDownloader(ALL_LOCATIONS)
+				.findHistoricalDataMonths();
+		BulkIngestionScheduler scheduler = new BulkIngestionScheduler(
+				historySource, BULK_MAX_CONCURRENCY,
+				BULK_REQUESTS_PER_SECOND_PER_HOST, BULK_BURST_PER_HOST);
+		ForecastService service = new ForecastService(historySource, config);
+		service.setSearchMode(createSearchMode());
+		service.setAnalogCount(createAnalogCount());
+		service.setSimilarityMetric(createMetricType()::create);
+		service.loadAll(scheduler, WeatherHistoryDownloader.getStationCatalog(),
+				monthList);
+		service.start(Integer.getInteger(SERVICE_PORT_PROPERTY,
+				DEFAULT_SERVICE_PORT), SERVICE_THREAD_COUNT,
+				SERVICE_REFRESH_MILLIS);
+	}
 
+	/**
+	 * This function creates the source of historical data. Captured monthly
+	 * files are read from the directory given by the system property
+	 * weather.history.dir when it is set. Otherwise files are downloaded from
+	 * the URL template given by weather.history.url, by default the real time
+	 * API, and kept in the history cache.
+	 * 
+	 * @return source of historical data
+	 */
+	static HistorySource createHistorySource() {
+		return createHistorySource(new RetryBudget(HTTP_RETRY_BUDGET));
 	}
 
 	/**
-	 * This function adds historical data to a map which is finally set to
-	 * archiveMap
+	 * This function creates the source of historical data, whose downloads
+	 * share the given retry budget.
 	 * 
-	 * @param weatherData
-	 *            object corresponding to each weather record
-	 * @param weatherArchiveMap
-	 *            contains historical weather data
+	 * @param retryBudget
+	 *            retries of the downloads
+	 * @return source of historical data
+	 */
+	static HistorySource createHistorySource(RetryBudget retryBudget) {
+		String historyDir = System.getProperty(HISTORY_DIR_PROPERTY);
+		if (historyDir != null)
+			return new LocalDirectoryHistorySource(new File(historyDir));
+		return new HttpHistorySource(System.getProperty(HISTORY_URL_PROPERTY,
+				BASE_URL), HistoryCache.createDefault(), new HttpTransport(
+				retryBudget));
+	}
+
+	/**
+	 * This function creates the settings of the forecast run. The horizon,
+	 * window size, window count and search span may be given by the system
+	 * properties weather.horizon.days, weather.window.size,
+	 * weather.window.count and weather.search.span, for example a 30 day
+	 * outlook with windows of 10 days.
 	 * 
+	 * @return settings of the forecast run
 	 */
-	private void putToArchiveMap(WeatherData weatherData,
-			Map<String, List<WeatherData>> weatherArchiveMap) {
-
-		if (!weatherArchiveMap.containsKey(WeatherUtils.dateToString(
-				weatherData.getDate(), DATE_FORMAT))) {
-			List<WeatherData> list = new ArrayList<WeatherData>();
-			list.add(weatherData);
-			weatherArchiveMap.put(WeatherUtils.dateToString(
-					weatherData.getDate(), DATE_FORMAT), list);
-		} else {
-			weatherArchiveMap.get(
-					WeatherUtils.dateToString(weatherData.getDate(),
-							DATE_FORMAT)).add(weatherData);
+	static ForecastConfig createForecastConfig() {
+		ForecastConfig config = new ForecastConfig();
+		config.setHorizonDays(Integer.getInteger(HORIZON_DAYS_PROPERTY,
+				config.getHorizonDays()));
+		config.setWindowSize(Integer.getInteger(WINDOW_SIZE_PROPERTY,
+				config.getWindowSize()));
+		config.setWindowCount(Integer.getInteger(WINDOW_COUNT_PROPERTY,
+				config.getWindowCount()));
+		config.setSpanDays(Integer.getInteger(SEARCH_SPAN_PROPERTY,
+				config.getSpanDays()));
+		return config;
+	}
+
+	/**
+	 * This function reads the way in which last year's records are searched
+	 * from the system property weather.search.mode, FIXED_WINDOWS by default.
+	 * The search span only applies to ROLLING_SPAN and MULTI_YEAR.
+	 * 
+	 * @return search mode of the forecast run
+	 * @throws WeatherException
+	 *             is thrown when the property is not a search mode
+	 */
+	static SearchMode createSearchMode() throws WeatherException {
+		String searchMode = System.getProperty(SEARCH_MODE_PROPERTY);
+		if (searchMode == null)
+			return SearchMode.FIXED_WINDOWS;
+		try {
+			return SearchMode.valueOf(searchMode.trim().toUpperCase(
+					Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			throw new WeatherException(e, "Search mode(" + searchMode
+					+ ") is not one of " + Arrays.toString(SearchMode.values()));
+		}
+	}
+
+	/**
+	 * This function reads the number of closest windows whose variations are
+	 * combined from the system property weather.analog.count, 1 by default.
+	 * 
+	 * @return analog count of the forecast run
+	 * @throws WeatherException
+	 *             is thrown when the count is less than 1
+	 */
+	static int createAnalogCount() throws WeatherException {
+		int analogCount = Integer.getInteger(ANALOG_COUNT_PROPERTY, 1);
+		if (analogCount < 1)
+			throw new WeatherException("Analog count(" + analogCount
+					+ ") is less than 1");
+		return analogCount;
+	}
+
+	/**
+	 * This function reads the similarity metric from the system property
+	 * weather.metric, EUCLIDEAN by default. The multi year search only
+	 * supports the Euclidean metric.
+	 * 
+	 * @return type of the metric created for every station
+	 * @throws WeatherException
+	 *             is thrown when the property is not a metric type, or is not
+	 *             the Euclidean metric in MULTI_YEAR mode
+	 */
+	static SimilarityMetricType createMetricType() throws WeatherException {
+		String metricType = System.getProperty(METRIC_PROPERTY);
+		if (metricType == null)
+			return SimilarityMetricType.EUCLIDEAN;
+		SimilarityMetricType type;
+		try {
+			type = SimilarityMetricType.valueOf(metricType.trim().toUpperCase(
+					Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			throw new WeatherException(e, "Metric(" + metricType
+					+ ") is not one of "
+					+ Arrays.toString(SimilarityMetricType.values()));
 		}
+		if (type != SimilarityMetricType.EUCLIDEAN
+				&& createSearchMode() == SearchMode.MULTI_YEAR)
+			throw new WeatherException(
+					"Multi year search supports only the Euclidean metric");
+		return type;
+	}
+
+	/**
+	 * This function triggers prediction engine on the historical data of the
+	 * location, which is read in place.
+	 * 
+	 * @param history
+	 *            historical observations of the location
+	 * @param station
+	 *            station details of the location
+	 * @param outputPath
+	 *            output directory path
+	 * @throws WeatherException
+	 *             is thrown when error occurs in forecasting for next five days
+	 * @throws ParseException
+	 *             is thrown when date is not correctly parsed
+	 * @throws FileNotFoundException
+	 *             is thrown if the output path doesn't exist
+	 */
+	private void predictFromHistory(ObservationView history,
+			Station station, String outputPath) throws ParseException,
+			WeatherException, FileNotFoundException {
+		WeatherPredictor predictionDriver = new WeatherPredictor(history,
+				station);
+		predictionDriver.setForecastConfig(createForecastConfig());
+		predictionDriver.setSearchMode(createSearchMode());
+		predictionDriver.setAnalogCount(createAnalogCount());
+		predictionDriver.setSimilarityMetric(createMetricType().create(history));
+		// triggering prediction engine
+		predictionDriver.predictWeatherforFiveDays(outputPath);
 
 	}
 
@@ -0,0 +1,243 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+package com.weather.prediction.service;
+
+/**
+ * Class which keeps the results of recent forecasts, evicting the least
+ * recently used once it holds its maximum number of entries. A result is
+ * kept for a location and issue day with a fingerprint of the records and
+ * settings the forecast reads, so it is used again until a refresh changes
+ * one of those records, and a new day of records which the forecast does not
+ * read leaves it in place. A new result of the same location and issue day
+ * replaces the superseded one. The cache counts its hits, misses and
+ * evictions.
+ *
+ * @author Irene Mathew
+ *
+ */
+import static com.weather.prediction.constants.WeatherConstants.MORNING_SLOT;
+import static com.weather.prediction.constants.WeatherConstants.NOON_SLOT;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.weather.prediction.bean.ForecastConfig;
+import com.weather.prediction.bean.Station;
+import com.weather.prediction.logic.SearchMode;
+import com.weather.prediction.logic.SimilarityMetric;
+import com.weather.prediction.utils.ObservationView;
+
+public class ForecastResultCache {
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private final int maxEntries;
+	private final Map<String, Result> results;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * @param maxEntries
+	 *            number of results kept
+	 */
+	public ForecastResultCache(int maxEntries) {
+		if (maxEntries < 1)
+			throw new IllegalArgumentException("Maximum entries("
+					+ maxEntries + ") is less than 1");
+		this.maxEntries = maxEntries;
+		this.results = new LinkedHashMap<String, Result>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Result> eldest) {
+				if (size() <= ForecastResultCache.this.maxEntries)
+					return false;
+				evictions++;
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * This function gives the result of a forecast, if it is kept and was
+	 * made from the same records and settings.
+	 *
+	 * @param location
+	 *            location of the forecast
+	 * @param issueEpochDay
+	 *            epoch day of the last observed day
+	 * @param fingerprint
+	 *            fingerprint of the records and settings read by the forecast
+	 * @return lines of the forecast, or null if it is not kept
+	 */
+	public synchronized String get(String location, int issueEpochDay,
+			long fingerprint) {
+		Result result = results.get(createKey(location, issueEpochDay));
+		if (result == null || result.fingerprint != fingerprint) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return result.lines;
+	}
+
+	/**
+	 * This function keeps the result of a forecast in place of any earlier
+	 * result of the location and issue day, evicting the least recently used
+	 * result if the cache is full.
+	 *
+	 * @param location
+	 *            location of the forecast
+	 * @param issueEpochDay
+	 *            epoch day of the last observed day
+	 * @param fingerprint
+	 *            fingerprint of the records and settings read by the forecast
+	 * @param result
+	 *            lines of the forecast
+	 */
+	public synchronized void put(String location, int issueEpochDay,
+			long fingerprint, String result) {
+		results.put(createKey(location, issueEpochDay), new Result(
+				fingerprint, result));
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	public synchronized int size() {
+		return results.size();
+	}
+
+	/**
+	 * This function finds the fingerprint of the records and settings read by
+	 * a forecast issued on a day. The fixed windows search reads the records
+	 * of the present period up to the issue day and of last year's period as
+	 * it slides over the horizon, and the other searches every record up to
+	 * the issue day. Every field which reaches the output is taken. The issue
+	 * day and the station are part of the fingerprint, as they give the dates
+	 * and the station details of the output, and so are the settings of the
+	 * run, the search mode, the number of analogs and the similarity metric.
+	 *
+	 * @param history
+	 *            observations of the location
+	 * @param station
+	 *            station of the location
+	 * @param issueEpochDay
+	 *            epoch day of the last observed day
+	 * @param config
+	 *            settings of the forecast
+	 * @param searchMode
+	 *            way in which earlier records are searched
+	 * @param analogCount
+	 *            number of closest windows combined
+	 * @param similarityMetric
+	 *            measure of the distance between windows, told apart by its
+	 *            description
+	 * @return 64 bit FNV-1a hash of the records and settings
+	 */
+	public static long fingerprint(ObservationView history, Station station,
+			int issueEpochDay, ForecastConfig config, SearchMode searchMode,
+			int analogCount, SimilarityMetric similarityMetric) {
+		long hash = mix(FNV_OFFSET_BASIS, issueEpochDay);
+		hash = mix(hash, station.getLocation());
+		hash = mix(hash, station.getLat());
+		hash = mix(hash, station.getLongt());
+		hash = mix(hash, station.getElevtn());
+		hash = mix(hash, config.getHorizonDays());
+		hash = mix(hash, config.getWindowSize());
+		hash = mix(hash, config.getWindowCount());
+		hash = mix(hash, config.getSpanDays());
+		hash = mix(hash, searchMode.name());
+		hash = mix(hash, analogCount);
+		hash = mix(hash, similarityMetric.toString());
+		if (searchMode != SearchMode.FIXED_WINDOWS)
+			return mixDays(hash, history, history.getFirstEpochDay(),
+					issueEpochDay);
+		int lastYearFirstDay = issueEpochDay - config.getLastYearLagDays();
+		// days forecast within the horizon are not observations
+		int lastYearLastDay = Math.min(issueEpochDay, lastYearFirstDay
+				+ config.getLastYearDays() + config.getHorizonDays() - 2);
+		hash = mixDays(hash, history, lastYearFirstDay, lastYearLastDay);
+		return mixDays(hash, history, Math.max(lastYearLastDay + 1,
+				issueEpochDay - config.getWindowSize() + 1), issueEpochDay);
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "ForecastResultCache [size=" + results.size() + ", hits="
+				+ hits + ", misses=" + misses + ", evictions=" + evictions
+				+ "]";
+	}
+
+	private static String createKey(String location, int issueEpochDay) {
+		return location + "|" + issueEpochDay;
+	}
+
+	private static long mixDays(long hash, ObservationView history,
+			int fromEpochDay, int toEpochDay) {
+		for (int epochDay = fromEpochDay; epochDay <= toEpochDay; epochDay++) {
+			for (int slot = MORNING_SLOT; slot <= NOON_SLOT; slot++) {
+				if (!history.hasObservation(epochDay, slot)) {
+					hash = mix(hash, -1);
+					continue;
+				}
+				hash = mix(hash, slot);
+				hash = mix(hash,
+						Float.floatToIntBits(history.getTemp(epochDay, slot)));
+				hash = mix(hash, Float.floatToIntBits(history.getHumidity(
+						epochDay, slot)));
+				hash = mix(hash, Float.floatToIntBits(history.getPressure(
+						epochDay, slot)));
+			}
+		}
+		return hash;
+	}
+
+	private static long mix(long hash, int value) {
+		for (int shift = 0; shift < 32; shift += 8) {
+			hash = (hash ^ ((value >>> shift) & 0xff)) * FNV_PRIME;
+		}
+		return hash;
+	}
+
+	private static long mix(long hash, String value) {
+		if (value == null)
+			return mix(hash, -1);
+		hash = mix(hash, value.length());
+		for (int index = 0; index < value.length(); index++) {
+			hash = mix(hash, value.charAt(index));
+		}
+		return hash;
+	}
+
+	/**
+	 * Lines of a forecast with the fingerprint they were made from.
+	 */
+	private static final class Result {
+		private final long fingerprint;
+		private final String lines;
+
+		Result(long fingerprint, String lines) {
+			this.fingerprint = fingerprint;
+			this.lines = lines;
+		}
+	}
+
+}
@@ -0,0 +1,516 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+package com.weather.prediction.service;
+
+/**
+ * Class which serves forecasts from a long running process. The history of
+ * each station is loaded once into a resident observation store, so a request
+ * pays only for the forecast itself. A request gives the location and the
+ * issue date, the last observed day, and the forecast reads the resident
+ * history in place up to that day, laying its forecast days over it, so no
+ * history is copied and a forecast never changes it. Requests read under a
+ * shared lock. History is refreshed in the background by downloading again
+ * only the current month and the months not loaded yet into a staging store,
+ * and the staged days are written into the resident store under the
+ * exclusive lock. Recent results are kept until a refresh changes the records
+ * they were made from.
+ *
+ * GET /forecast?location=SYDNEY&date=yyyy-MM-dd answers with the lines of
+ * the output file, the date being the latest day of the archive if not given.
+ *
+ * @author Irene Mathew
+ *
+ */
+import static com.weather.prediction.constants.WeatherConstants.DOWNLOAD_THREAD_COUNT;
+import static com.weather.prediction.constants.WeatherConstants.FORECAST_CACHE_ENTRIES;
+import static com.weather.prediction.constants.WeatherConstants.FORECAST_CONTEXT;
+import static com.weather.prediction.constants.WeatherConstants.MORNING_SLOT;
+import static com.weather.prediction.constants.WeatherConstants.NOON_SLOT;
+import static com.weather.prediction.constants.WeatherConstants.STORE_INITIAL_DAYS;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+import org.apache.log4j.Logger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.weather.prediction.bean.ForecastConfig;
+import com.weather.prediction.bean.Station;
+import com.weather.prediction.exception.WeatherException;
+import com.weather.prediction.logic.SearchMode;
+import com.weather.prediction.logic.SimilarityMetric;
+import com.weather.prediction.logic.SimilarityMetricType;
+import com.weather.prediction.logic.WeatherPredictor;
+import com.weather.prediction.utils.BulkIngestionScheduler;
+import com.weather.prediction.utils.HistorySource;
+import com.weather.prediction.utils.ObservationStore;
+import com.weather.prediction.utils.ObservationView;
+import com.weather.prediction.utils.WeatherHistoryDownloader;
+import com.weather.prediction.utils.WeatherUtils;
+
+public class ForecastService {
+	private final HistorySource historySource;
+	private final ForecastConfig config;
+	private final ObservationStore observationStore = new ObservationStore(
+			STORE_INITIAL_DAYS);
+	private final ReadWriteLock storeLock = new ReentrantReadWriteLock();
+	private final Map<String, List<String>> residentMonths = new ConcurrentHashMap<String, List<String>>();
+	private final ForecastResultCache resultCache = new ForecastResultCache(
+			FORECAST_CACHE_ENTRIES);
+	private SearchMode searchMode = SearchMode.FIXED_WINDOWS;
+	private int analogCount = 1;
+	private Function<ObservationView, SimilarityMetric> similarityMetric = SimilarityMetricType.EUCLIDEAN::create;
+	private HttpServer server;
+	private ExecutorService executor;
+	private ScheduledExecutorService refresher;
+
+	final static Logger logger = Logger.getLogger(ForecastService.class);
+
+	/**
+	 * @param historySource
+	 *            source from which the history of the stations is read
+	 * @param config
+	 *            settings of every forecast, which are only read
+	 */
+	public ForecastService(HistorySource historySource, ForecastConfig config) {
+		this.historySource = historySource;
+		this.config = config;
+	}
+
+	/**
+	 * @param searchMode
+	 *            way in which last year's records are searched, FIXED_WINDOWS
+	 *            by default
+	 */
+	public void setSearchMode(SearchMode searchMode) {
+		this.searchMode = searchMode;
+	}
+
+	/**
+	 * @param analogCount
+	 *            number of closest windows whose variations are combined with
+	 *            inverse distance weighting, 1 by default
+	 */
+	public void setAnalogCount(int analogCount) {
+		this.analogCount = analogCount;
+	}
+
+	/**
+	 * @param similarityMetric
+	 *            creates the measure of the distance between a window and the
+	 *            present period from the history of the location for every
+	 *            forecast, as requests are served at the same time, the
+	 *            Euclidean metric by default
+	 */
+	public void setSimilarityMetric(
+			Function<ObservationView, SimilarityMetric> similarityMetric) {
+		this.similarityMetric = similarityMetric;
+	}
+
+	/**
+	 * This function ingests the history of the given stations with the bulk
+	 * ingestion scheduler and makes every location resident whose months were
+	 * all read.
+	 *
+	 * @param scheduler
+	 *            scheduler which downloads the history of the stations
+	 * @param stations
+	 *            stations to ingest
+	 * @param monthList
+	 *            months in the format yyyyMM
+	 * @return locations which were made resident
+	 * @throws WeatherException
+	 *             is thrown when the ingestion is interrupted
+	 */
+	public List<String> loadAll(BulkIngestionScheduler scheduler,
+			List<Station> stations, List<String> monthList)
+			throws WeatherException {
+		long startTime = System.nanoTime();
+		ObservationStore staging = new ObservationStore(STORE_INITIAL_DAYS);
+		List<String> locations = scheduler.ingest(stations, monthList, staging);
+		for (Station station : stations) {
+			if (locations.contains(station.getLocation()))
+				makeResident(station, staging, monthList);
+		}
+		logger.info("Loaded history of " + locations.size() + " locations in "
+				+ (System.nanoTime() - startTime) / 1000000 + " ms, "
+				+ observationStore.getOffHeapBytes() / 1024 + " KB resident");
+		return locations;
+	}
+
+	/**
+	 * This function downloads the history of a location from the given
+	 * months and makes it resident.
+	 *
+	 * @param location
+	 *            location name of the lookup file
+	 * @param monthList
+	 *            months in the format yyyyMM
+	 * @throws IOException
+	 *             is thrown when look up file is not found
+	 * @throws WeatherException
+	 *             is thrown when given input location is invalid/ a month is
+	 *             unavailable
+	 */
+	public void load(String location, List<String> monthList)
+			throws IOException, WeatherException {
+		long startTime = System.nanoTime();
+		WeatherHistoryDownloader downloader = new WeatherHistoryDownloader(
+				location, historySource);
+		ObservationStore staging = new ObservationStore(STORE_INITIAL_DAYS);
+		downloader.downloadHistory(monthList, DOWNLOAD_THREAD_COUNT, staging);
+		makeResident(downloader.getStationFromLookUp(), staging, monthList);
+		logger.info("Loaded history of " + location + " in "
+				+ (System.nanoTime() - startTime) / 1000000 + " ms");
+	}
+
+	/**
+	 * This function downloads the given months of a resident location again
+	 * and writes the days read into the resident store. Months which have
+	 * left the historical period are no longer counted as loaded, so the
+	 * months of a location stay bounded however often it is refreshed.
+	 *
+	 * @param location
+	 *            resident location
+	 * @param monthList
+	 *            months in the format yyyyMM to download again
+	 * @throws IOException
+	 *             is thrown when look up file is not found
+	 * @throws WeatherException
+	 *             is thrown when the location is not resident/ a month is
+	 *             unavailable
+	 */
+	public synchronized void refresh(String location, List<String> monthList)
+			throws IOException, WeatherException {
+		List<String> loadedMonths = getResidentMonths(location);
+		WeatherHistoryDownloader downloader = new WeatherHistoryDownloader(
+				location, historySource);
+		ObservationStore staging = new ObservationStore(STORE_INITIAL_DAYS);
+		int dayCount = downloader.downloadHistory(monthList,
+				DOWNLOAD_THREAD_COUNT, staging);
+		Set<String> months = new LinkedHashSet<String>(loadedMonths);
+		months.retainAll(downloader.findHistoricalDataMonths());
+		months.addAll(monthList);
+		makeResident(downloader.getStationFromLookUp(), staging,
+				new ArrayList<String>(months));
+		logger.info("Refreshed " + monthList + " of " + location + ", "
+				+ dayCount + " days read");
+	}
+
+	/**
+	 * This function refreshes every resident location with the current month
+	 * and the months of the historical period which are not loaded yet. A
+	 * location which fails keeps its history and is tried again at the next
+	 * refresh.
+	 */
+	public void refreshAll() {
+		String currentMonth = WeatherHistoryDownloader.getYearMonth(0, 0);
+		for (Map.Entry<String, List<String>> resident : residentMonths
+				.entrySet()) {
+			String location = resident.getKey();
+			List<String> monthList = new ArrayList<String>();
+			for (String monthYear : new WeatherHistoryDownloader(location,
+					historySource).findHistoricalDataMonths()) {
+				if (monthYear.equals(currentMonth)
+						|| !resident.getValue().contains(monthYear))
+					monthList.add(monthYear);
+			}
+			try {
+				refresh(location, monthList);
+			} catch (IOException | WeatherException e) {
+				logger.error("History of " + location
+						+ " could not be refreshed", e);
+			}
+		}
+	}
+
+	/**
+	 * @return cache of recent forecast results with its counters
+	 */
+	public ForecastResultCache getResultCache() {
+		return resultCache;
+	}
+
+	/**
+	 * @return resident locations
+	 */
+	public Set<String> getLocations() {
+		return Collections.unmodifiableSet(residentMonths.keySet());
+	}
+
+	/**
+	 * @return months in the format yyyyMM from which the history of a
+	 *         resident location was read
+	 * @throws WeatherException
+	 *             is thrown when the location is not resident
+	 */
+	public List<String> getMonths(String location) throws WeatherException {
+		return getResidentMonths(location);
+	}
+
+	/**
+	 * @return epoch day of the latest day of a resident location
+	 * @throws WeatherException
+	 *             is thrown when the location is not resident or has no
+	 *             history
+	 */
+	public int getLatestEpochDay(String location) throws WeatherException {
+		getResidentMonths(location);
+		storeLock.readLock().lock();
+		try {
+			ObservationView history = observationStore.getView(location);
+			if (history == null)
+				throw new WeatherException("No history of " + location
+						+ " is loaded");
+			return history.getLastEpochDay();
+		} finally {
+			storeLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * This function forecasts the days after the issue day of a location
+	 * from its records up to the issue day. The result of an earlier forecast
+	 * is given again while the records and settings it read are unchanged.
+	 *
+	 * @param location
+	 *            resident location
+	 * @param issueEpochDay
+	 *            epoch day of the last observed day
+	 * @return lines of the forecast in the format of the output file
+	 * @throws ParseException
+	 *             is thrown when date is not correctly parsed
+	 * @throws WeatherException
+	 *             is thrown when the location is not resident or its records
+	 *             do not meet the conditions of the algorithm
+	 */
+	public String forecast(String location, int issueEpochDay)
+			throws ParseException, WeatherException {
+		long startTime = System.nanoTime();
+		getResidentMonths(location);
+		long fingerprint;
+		String result;
+		storeLock.readLock().lock();
+		try {
+			ObservationView history = observationStore.getView(location);
+			Station station = observationStore.getStation(location);
+			if (history == null
+					|| (!history.hasObservation(issueEpochDay, MORNING_SLOT) && !history
+							.hasObservation(issueEpochDay, NOON_SLOT)))
+				throw new WeatherException("No records of "
+						+ WeatherUtils.epochDayToString(issueEpochDay)
+						+ " for " + location);
+			SimilarityMetric metric = similarityMetric.apply(history);
+			fingerprint = ForecastResultCache.fingerprint(history, station,
+					issueEpochDay, config, searchMode, analogCount, metric);
+			result = resultCache.get(location, issueEpochDay, fingerprint);
+			if (result != null) {
+				logger.debug("Cached forecast of " + location + " issued "
+						+ WeatherUtils.epochDayToString(issueEpochDay) + ", "
+						+ resultCache);
+				return result;
+			}
+			StringWriter output = new StringWriter();
+			WeatherPredictor predictor = new WeatherPredictor(history,
+					station, issueEpochDay);
+			predictor.setForecastConfig(config);
+			predictor.setSearchMode(searchMode);
+			predictor.setAnalogCount(analogCount);
+			predictor.setSimilarityMetric(metric);
+			predictor.predictWeatherforFiveDays(new PrintWriter(output));
+			result = output.toString();
+		} finally {
+			storeLock.readLock().unlock();
+		}
+		resultCache.put(location, issueEpochDay, fingerprint, result);
+		logger.info("Forecast of " + location + " issued "
+				+ WeatherUtils.epochDayToString(issueEpochDay) + " in "
+				+ (System.nanoTime() - startTime) / 1000000 + " ms");
+		return result;
+	}
+
+	/**
+	 * This function starts serving forecasts on the loopback interface and
+	 * refreshing the history in the background.
+	 *
+	 * @param port
+	 *            port of the server, 0 for a free port
+	 * @param threadCount
+	 *            number of requests served at the same time
+	 * @param refreshMillis
+	 *            time between refreshes of the history, 0 for none
+	 * @throws IOException
+	 *             is thrown when the server cannot be started
+	 */
+	public void start(int port, int threadCount, long refreshMillis)
+			throws IOException {
+		server = HttpServer.create(new InetSocketAddress(
+				InetAddress.getLoopbackAddress(), port), 0);
+		executor = Executors.newFixedThreadPool(threadCount);
+		server.setExecutor(executor);
+		server.createContext(FORECAST_CONTEXT, exchange -> serve(exchange));
+		server.start();
+		refresher = Executors.newSingleThreadScheduledExecutor();
+		if (refreshMillis > 0)
+			refresher.scheduleWithFixedDelay(() -> refreshAll(),
+					refreshMillis, refreshMillis, TimeUnit.MILLISECONDS);
+		logger.info("Forecast service started at http://"
+				+ server.getAddress().getHostString() + ":" + getPort()
+				+ FORECAST_CONTEXT + " for " + residentMonths.keySet());
+	}
+
+	/**
+	 * @return port on which forecasts are served
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * This function stops serving forecasts and refreshing the history.
+	 */
+	public void stop() {
+		if (server == null)
+			return;
+		server.stop(0);
+		executor.shutdownNow();
+		refresher.shutdownNow();
+	}
+
+	/**
+	 * This function answers a forecast request. A location which is not
+	 * resident is answered with status 404, a missing location or invalid
+	 * date with 400, and records which do not meet the conditions of the
+	 * algorithm with 422.
+	 *
+	 * @param exchange
+	 *            request and response
+	 * @throws IOException
+	 *             is thrown when the response cannot be sent
+	 */
+	private void serve(HttpExchange exchange) throws IOException {
+		try {
+			if (!"GET".equals(exchange.getRequestMethod())) {
+				send(exchange, 405, "Only GET is supported");
+				return;
+			}
+			Map<String, String> query = parseQuery(exchange.getRequestURI()
+					.getRawQuery());
+			String location = query.get("location");
+			if (location == null) {
+				send(exchange, 400, "Parameter location is missing");
+				return;
+			}
+			location = location.toUpperCase();
+			if (!residentMonths.containsKey(location)) {
+				send(exchange, 404, "Location " + location + " is not loaded");
+				return;
+			}
+			String date = query.get("date");
+			int issueEpochDay;
+			try {
+				issueEpochDay = date == null ? getLatestEpochDay(location)
+						: WeatherUtils.dateStringToEpochDay(date);
+			} catch (ParseException e) {
+				send(exchange, 400, "Date " + date
+						+ " is not in the format yyyy-MM-dd");
+				return;
+			}
+			send(exchange, 200, forecast(location, issueEpochDay));
+		} catch (WeatherException e) {
+			send(exchange, 422, e.getMessage());
+		} catch (Exception e) {
+			logger.error("Forecast request failed", e);
+			send(exchange, 500, "Forecast failed");
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private static void send(HttpExchange exchange, int status, String body)
+			throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type",
+				"text/plain; charset=UTF-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		OutputStream out = exchange.getResponseBody();
+		out.write(bytes);
+		out.close();
+	}
+
+	private static Map<String, String> parseQuery(String rawQuery)
+			throws UnsupportedEncodingException {
+		Map<String, String> query = new HashMap<String, String>();
+		if (rawQuery == null)
+			return query;
+		for (String parameter : rawQuery.split("&")) {
+			int equals = parameter.indexOf('=');
+			if (equals > 0)
+				query.put(URLDecoder.decode(parameter.substring(0, equals),
+						"UTF-8"), URLDecoder.decode(
+						parameter.substring(equals + 1), "UTF-8"));
+		}
+		return query;
+	}
+
+	/**
+	 * This function writes the staged history of a station into the resident
+	 * store under the exclusive lock, replacing the observations of the same
+	 * days, and records the months it was read from.
+	 */
+	private void makeResident(Station station, ObservationStore staging,
+			List<String> monthList) {
+		ObservationView staged = staging.getView(station.getLocation());
+		storeLock.writeLock().lock();
+		try {
+			observationStore.registerStation(station);
+			if (staged != null)
+				observationStore.putAll(station, staged);
+		} finally {
+			storeLock.writeLock().unlock();
+		}
+		residentMonths.put(station.getLocation(), Collections
+				.unmodifiableList(new ArrayList<String>(monthList)));
+	}
+
+	private List<String> getResidentMonths(String location)
+			throws WeatherException {
+		List<String> monthList = residentMonths.get(location);
+		if (monthList == null)
+			throw new WeatherException("Location " + location
+					+ " is not loaded");
+		return monthList;
+	}
+
+}
@@ -0,0 +1,267 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+package com.weather.prediction.utils;
+
+/**
+ * Class which reads a binary archive written by {@link BinaryArchiveWriter}.
+ * The file is memory mapped read only, so opening it only reads the header
+ * whatever the length of the history, and observations are read from the
+ * page cache on demand. Several processes mapping the same file share its
+ * pages. Reads use absolute positions only, so a reader may be shared by
+ * threads.
+ *
+ * @author Irene Mathew
+ *
+ */
+import static com.weather.prediction.constants.WeatherConstants.ARCHIVE_MAGIC;
+import static com.weather.prediction.constants.WeatherConstants.ARCHIVE_VERSION;
+import static com.weather.prediction.constants.WeatherConstants.MORNING_FORECAST_TIMESTAMP;
+import static com.weather.prediction.constants.WeatherConstants.MORNING_SLOT;
+import static com.weather.prediction.constants.WeatherConstants.NOON_FORECAST_TIMESTAMP;
+import static com.weather.prediction.constants.WeatherConstants.NOON_SLOT;
+import static com.weather.prediction.utils.BinaryArchiveWriter.COLUMN_COUNT;
+import static com.weather.prediction.utils.BinaryArchiveWriter.FIELDS_PER_SLOT;
+import static com.weather.prediction.utils.BinaryArchiveWriter.FIXED_HEADER_BYTES;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.weather.prediction.bean.Station;
+import com.weather.prediction.bean.WeatherDataArchive;
+import com.weather.prediction.exception.WeatherException;
+
+public class BinaryArchiveReader implements ObservationView {
+	private final MappedByteBuffer buffer;
+	private final Station station;
+	private final int firstEpochDay;
+	private final int dayCount;
+	private final int columnsOffset;
+	private final int slotsOffset;
+
+	private BinaryArchiveReader(MappedByteBuffer buffer, Station station,
+			int firstEpochDay, int dayCount, int columnsOffset) {
+		this.buffer = buffer;
+		this.station = station;
+		this.firstEpochDay = firstEpochDay;
+		this.dayCount = dayCount;
+		this.columnsOffset = columnsOffset;
+		this.slotsOffset = columnsOffset + COLUMN_COUNT * 4 * dayCount;
+	}
+
+	/**
+	 * This function maps an archive file and reads its header.
+	 *
+	 * @param archiveFile
+	 *            archive file to open
+	 * @return reader of the archive
+	 * @throws IOException
+	 *             is thrown when the file cannot be read
+	 * @throws WeatherException
+	 *             is thrown when the file is not a weather archive of this
+	 *             version
+	 */
+	public static BinaryArchiveReader open(File archiveFile)
+			throws IOException, WeatherException {
+		MappedByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(archiveFile.toPath(),
+				StandardOpenOption.READ)) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size());
+		}
+		if (buffer.capacity() < FIXED_HEADER_BYTES
+				|| buffer.getInt(0) != ARCHIVE_MAGIC)
+			throw new WeatherException(archiveFile
+					+ " is not a weather archive");
+		if (buffer.getInt(4) != ARCHIVE_VERSION)
+			throw new WeatherException("Weather archive " + archiveFile
+					+ " has version " + buffer.getInt(4) + " instead of "
+					+ ARCHIVE_VERSION);
+		int columnsOffset = buffer.getInt(8);
+		int firstEpochDay = buffer.getInt(12);
+		int dayCount = buffer.getInt(16);
+		if (dayCount < 0
+				|| columnsOffset < FIXED_HEADER_BYTES
+				|| columnsOffset + (long) dayCount * (COLUMN_COUNT * 4 + 1) > buffer
+						.capacity())
+			throw new WeatherException("Weather archive " + archiveFile
+					+ " is truncated");
+		ByteBuffer header = buffer.duplicate();
+		header.position(FIXED_HEADER_BYTES);
+		Station station = new Station();
+		station.setLocation(readString(header));
+		station.setStationId(readString(header));
+		station.setLat(readString(header));
+		station.setLongt(readString(header));
+		station.setElevtn(readString(header));
+		return new BinaryArchiveReader(buffer, station, firstEpochDay,
+				dayCount, columnsOffset);
+	}
+
+	private static String readString(ByteBuffer header) {
+		byte[] value = new byte[header.getShort()];
+		header.get(value);
+		return new String(value, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @return station of the archive
+	 */
+	public Station getStation() {
+		return station;
+	}
+
+	/**
+	 * @return epoch day of the first day of the archive
+	 */
+	public int getFirstEpochDay() {
+		return firstEpochDay;
+	}
+
+	/**
+	 * @return epoch day of the last day of the archive, or one less than the
+	 *         first day if the archive is empty
+	 */
+	public int getLastEpochDay() {
+		return firstEpochDay + dayCount - 1;
+	}
+
+	/**
+	 * @return number of days between the first and last day of the archive
+	 */
+	public int getDayCount() {
+		return dayCount;
+	}
+
+	/**
+	 * This function checks whether an observation was made on a day at a
+	 * forecast time.
+	 *
+	 * @param epochDay
+	 *            epoch day of the observation
+	 * @param slot
+	 *            forecast time, MORNING_SLOT or NOON_SLOT
+	 * @return true if the observation is in the archive
+	 */
+	public boolean hasObservation(int epochDay, int slot) {
+		int day = epochDay - firstEpochDay;
+		if (day < 0 || day >= dayCount)
+			return false;
+		return (buffer.get(slotsOffset + day) & (1 << slot)) != 0;
+	}
+
+	/**
+	 * @return temperature of a day at a forecast time, NaN if not observed
+	 */
+	public float getTemp(int epochDay, int slot) {
+		return getValue(epochDay, slot * FIELDS_PER_SLOT);
+	}
+
+	/**
+	 * @return humidity of a day at a forecast time, NaN if not observed
+	 */
+	public float getHumidity(int epochDay, int slot) {
+		return getValue(epochDay, slot * FIELDS_PER_SLOT + 1);
+	}
+
+	/**
+	 * @return pressure of a day at a forecast time, NaN if not observed
+	 */
+	public float getPressure(int epochDay, int slot) {
+		return getValue(epochDay, slot * FIELDS_PER_SLOT + 2);
+	}
+
+	private float getValue(int epochDay, int column) {
+		int day = epochDay - firstEpochDay;
+		if (day < 0 || day >= dayCount)
+			return Float.NaN;
+		return buffer.getFloat(columnsOffset + (column * dayCount + day) * 4);
+	}
+
+	/**
+	 * This function pushes every observation of the archive to a consumer in
+	 * the order of days and forecast times.
+	 *
+	 * @param consumer
+	 *            consumer to which observations are pushed
+	 */
+	public void replay(ObservationConsumer consumer) {
+		for (int epochDay = firstEpochDay; epochDay <= getLastEpochDay(); epochDay++) {
+			if (!hasObservation(epochDay, MORNING_SLOT)
+					&& !hasObservation(epochDay, NOON_SLOT))
+				continue;
+			int[] date = WeatherUtils.epochDayToYearMonthDay(epochDay);
+			if (hasObservation(epochDay, MORNING_SLOT))
+				consumer.addObservation(station, date[0], date[1], date[2],
+						MORNING_FORECAST_TIMESTAMP,
+						getTemp(epochDay, MORNING_SLOT),
+						getHumidity(epochDay, MORNING_SLOT),
+						getPressure(epochDay, MORNING_SLOT));
+			if (hasObservation(epochDay, NOON_SLOT))
+				consumer.addObservation(station, date[0], date[1], date[2],
+						NOON_FORECAST_TIMESTAMP, getTemp(epochDay, NOON_SLOT),
+						getHumidity(epochDay, NOON_SLOT),
+						getPressure(epochDay, NOON_SLOT));
+		}
+	}
+
+	/**
+	 * This function finds the months of a list which have to be downloaded to
+	 * bring the archive up to date. These are the months with days after the
+	 * last day of the archive and the months of which the archive holds no
+	 * observation, so the months already written are not downloaded again.
+	 *
+	 * @param monthList
+	 *            list of months in the format yyyyMM
+	 * @return months to download, in the order of the list
+	 */
+	public List<String> findMonthsToUpdate(List<String> monthList) {
+		List<String> updateList = new ArrayList<String>();
+		for (String monthYear : monthList) {
+			int year = Integer.parseInt(monthYear.substring(0, 4));
+			int month = Integer.parseInt(monthYear.substring(4));
+			int firstDay = WeatherUtils.toEpochDay(year, month, 1);
+			int lastDay = (month == 12 ? WeatherUtils.toEpochDay(year + 1, 1, 1)
+					: WeatherUtils.toEpochDay(year, month + 1, 1)) - 1;
+			if (lastDay > getLastEpochDay()
+					|| !hasObservations(firstDay, lastDay))
+				updateList.add(monthYear);
+		}
+		return updateList;
+	}
+
+	private boolean hasObservations(int fromEpochDay, int toEpochDay) {
+		for (int epochDay = fromEpochDay; epochDay <= toEpochDay; epochDay++) {
+			if (hasObservation(epochDay, MORNING_SLOT)
+					|| hasObservation(epochDay, NOON_SLOT))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * This function creates the weather archive used by the predictor from
+	 * the binary archive.
+	 *
+	 * @return weather archive of the station
+	 */
+	public WeatherDataArchive toWeatherDataArchive() {
+		WeatherArchiveBuilder builder = new WeatherArchiveBuilder();
+		replay(builder);
+		return builder.build();
+	}
+
+}
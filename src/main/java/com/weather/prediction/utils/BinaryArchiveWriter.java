@@ -0,0 +1,186 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+package com.weather.prediction.utils;
+
+/**
+ * Class which writes the history of a station to the binary archive format
+ * read by {@link BinaryArchiveReader}. It is an observation consumer, so the
+ * monthly CSV files are converted while they are tokenized. The file consists
+ * of
+ * <ul>
+ * <li>a header with the magic number, format version, offset of the columns,
+ * first epoch day and number of days, followed by the location, station ID,
+ * latitude, longitude and elevation of the station,</li>
+ * <li>six float columns with one value per day since the first epoch day:
+ * temperature, humidity and pressure at 9am followed by the same at 3pm,
+ * where a missing day is NaN,</li>
+ * <li>one byte per day marking which forecast times were observed.</li>
+ * </ul>
+ * The epoch day of a record is its index in the columns plus the first epoch
+ * day, so no separate index has to be searched. The file is written to a
+ * temporary file first and then renamed, so readers mapping it never see a
+ * partially written archive.
+ *
+ * @author Irene Mathew
+ *
+ */
+import static com.weather.prediction.constants.WeatherConstants.ARCHIVE_FILE_EXTENSION;
+import static com.weather.prediction.constants.WeatherConstants.ARCHIVE_MAGIC;
+import static com.weather.prediction.constants.WeatherConstants.ARCHIVE_VERSION;
+import static com.weather.prediction.constants.WeatherConstants.MORNING_FORECAST_TIMESTAMP;
+import static com.weather.prediction.constants.WeatherConstants.MORNING_SLOT;
+import static com.weather.prediction.constants.WeatherConstants.NOON_FORECAST_TIMESTAMP;
+import static com.weather.prediction.constants.WeatherConstants.NOON_SLOT;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.weather.prediction.bean.Station;
+
+public class BinaryArchiveWriter implements ObservationConsumer {
+	static final int COLUMN_COUNT = 6;
+	static final int FIELDS_PER_SLOT = 3;
+	static final int FIXED_HEADER_BYTES = 20;
+
+	private final Station station;
+	private final Map<Integer, DayRecord> dayRecords = new HashMap<Integer, DayRecord>();
+
+	/**
+	 * @param station
+	 *            station of which the history is written
+	 */
+	public BinaryArchiveWriter(Station station) {
+		this.station = station;
+	}
+
+	/**
+	 * This function keeps an observation until the archive is written.
+	 * Observations at other than the forecast times are ignored.
+	 */
+	@Override
+	public synchronized void addObservation(Station observedStation,
+			int year, int month, int day, String time, float temp,
+			float humidity, float pressure) {
+		int slot;
+		if (MORNING_FORECAST_TIMESTAMP.equals(time))
+			slot = MORNING_SLOT;
+		else if (NOON_FORECAST_TIMESTAMP.equals(time))
+			slot = NOON_SLOT;
+		else
+			return;
+		int epochDay = WeatherUtils.toEpochDay(year, month, day);
+		DayRecord dayRecord = dayRecords.get(epochDay);
+		if (dayRecord == null) {
+			dayRecord = new DayRecord();
+			dayRecords.put(epochDay, dayRecord);
+		}
+		dayRecord.values[slot * FIELDS_PER_SLOT] = temp;
+		dayRecord.values[slot * FIELDS_PER_SLOT + 1] = humidity;
+		dayRecord.values[slot * FIELDS_PER_SLOT + 2] = pressure;
+		dayRecord.slots |= 1 << slot;
+	}
+
+	/**
+	 * This function writes all observations received so far to the archive
+	 * file, replacing it if it exists.
+	 *
+	 * @param archiveFile
+	 *            file to write
+	 * @throws IOException
+	 *             is thrown when the file cannot be written
+	 */
+	public synchronized void write(File archiveFile) throws IOException {
+		int firstEpochDay = 0;
+		int dayCount = 0;
+		if (!dayRecords.isEmpty()) {
+			firstEpochDay = Integer.MAX_VALUE;
+			int lastEpochDay = Integer.MIN_VALUE;
+			for (int epochDay : dayRecords.keySet()) {
+				firstEpochDay = Math.min(firstEpochDay, epochDay);
+				lastEpochDay = Math.max(lastEpochDay, epochDay);
+			}
+			dayCount = lastEpochDay - firstEpochDay + 1;
+		}
+		byte[][] stationFields = {
+				encode(station.getLocation()), encode(station.getStationId()),
+				encode(station.getLat()), encode(station.getLongt()),
+				encode(station.getElevtn()) };
+		int headerLength = FIXED_HEADER_BYTES;
+		for (byte[] stationField : stationFields) {
+			headerLength += 2 + stationField.length;
+		}
+		// columns start on an 8 byte boundary
+		headerLength = (headerLength + 7) & ~7;
+		ByteBuffer buffer = ByteBuffer.allocate(headerLength + dayCount
+				* (COLUMN_COUNT * 4 + 1));
+		buffer.putInt(ARCHIVE_MAGIC).putInt(ARCHIVE_VERSION)
+				.putInt(headerLength).putInt(firstEpochDay).putInt(dayCount);
+		for (byte[] stationField : stationFields) {
+			buffer.putShort((short) stationField.length).put(stationField);
+		}
+		buffer.position(headerLength);
+		for (int column = 0; column < COLUMN_COUNT; column++) {
+			for (int day = 0; day < dayCount; day++) {
+				DayRecord dayRecord = dayRecords.get(firstEpochDay + day);
+				buffer.putFloat(dayRecord == null ? Float.NaN
+						: dayRecord.values[column]);
+			}
+		}
+		for (int day = 0; day < dayCount; day++) {
+			DayRecord dayRecord = dayRecords.get(firstEpochDay + day);
+			buffer.put((byte) (dayRecord == null ? 0 : dayRecord.slots));
+		}
+		buffer.flip();
+		File directory = archiveFile.getAbsoluteFile().getParentFile();
+		directory.mkdirs();
+		File tempFile = File.createTempFile(archiveFile.getName(),
+				ARCHIVE_FILE_EXTENSION, directory);
+		try {
+			try (FileChannel channel = FileChannel.open(tempFile.toPath(),
+					StandardOpenOption.WRITE)) {
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+				channel.force(true);
+			}
+			Files.move(tempFile.toPath(), archiveFile.toPath(),
+					StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tempFile.toPath());
+		}
+	}
+
+	private byte[] encode(String value) {
+		return (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Class for the observations of a single day.
+	 */
+	private static class DayRecord {
+		private final float[] values = new float[COLUMN_COUNT];
+		private int slots;
+
+		DayRecord() {
+			Arrays.fill(values, Float.NaN);
+		}
+	}
+
+}
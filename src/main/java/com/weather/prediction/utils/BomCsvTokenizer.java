@@ -0,0 +1,277 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+package com.weather.prediction.utils;
+
+/**
+ * Class which tokenizes monthly files from the API directly from their bytes.
+ * Lines and fields are located by offset in a reusable buffer, and dates and
+ * numbers are parsed in place, so no String is created per line or field.
+ * Parsed observations are pushed straight to an observation consumer. An
+ * instance keeps its buffers between files and must not be shared by threads.
+ *
+ * @author Irene Mathew
+ *
+ */
+import static com.weather.prediction.constants.WeatherConstants.DATE_COLUMN;
+import static com.weather.prediction.constants.WeatherConstants.INPUT_DATETIME_FORMAT;
+import static com.weather.prediction.constants.WeatherConstants.MORNING_FORECAST_TIMESTAMP;
+import static com.weather.prediction.constants.WeatherConstants.MORNING_HUMIDITY_COLUMN;
+import static com.weather.prediction.constants.WeatherConstants.MORNING_PRESSURE_COLUMN;
+import static com.weather.prediction.constants.WeatherConstants.MORNING_TEMP_COLUMN;
+import static com.weather.prediction.constants.WeatherConstants.NOON_FORECAST_TIMESTAMP;
+import static com.weather.prediction.constants.WeatherConstants.NOON_HUMIDITY_COLUMN;
+import static com.weather.prediction.constants.WeatherConstants.NOON_PRESSURE_COLUMN;
+import static com.weather.prediction.constants.WeatherConstants.NOON_TEMP_COLUMN;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.weather.prediction.bean.Station;
+import com.weather.prediction.exception.WeatherException;
+
+public class BomCsvTokenizer {
+	private static final int MAX_COLUMNS = 32;
+	private static final byte[] DATE_HEADER = "\"Date\""
+			.getBytes(StandardCharsets.US_ASCII);
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4,
+			1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+			1e17, 1e18 };
+
+	private byte[] buffer = new byte[8192];
+	private final int[] fieldStart = new int[MAX_COLUMNS];
+	private final int[] fieldEnd = new int[MAX_COLUMNS];
+	private int year;
+	private int month;
+	private int day;
+
+	/**
+	 * This function reads a monthly file and adds the morning and noon
+	 * observations of every day before today to the consumer. Header
+	 * lines and records of today and future dates are skipped.
+	 *
+	 * @param in
+	 *            stream of the monthly file
+	 * @param todayEpochDay
+	 *            epoch day of today's date
+	 * @param station
+	 *            station to which the file belongs
+	 * @param consumer
+	 *            consumer to which observations are pushed
+	 * @return number of days pushed to the consumer
+	 * @throws IOException
+	 *             is thrown when the stream cannot be read
+	 * @throws WeatherException
+	 *             is thrown when the format of the file has changed
+	 */
+	public int tokenize(InputStream in, int todayEpochDay, Station station,
+			ObservationConsumer consumer) throws IOException,
+			WeatherException {
+		int length = 0;
+		int lineStart = 0;
+		int dayCount = 0;
+		int read;
+		while ((read = in.read(buffer, length, buffer.length - length)) != -1) {
+			int scanFrom = length;
+			length += read;
+			for (int i = scanFrom; i < length; i++) {
+				if (buffer[i] == '\n') {
+					dayCount += tokenizeLine(lineStart, i, todayEpochDay,
+							station, consumer);
+					lineStart = i + 1;
+				}
+			}
+			if (lineStart > 0) {
+				// moving the incomplete last line to the start of the buffer
+				System.arraycopy(buffer, lineStart, buffer, 0, length
+						- lineStart);
+				length -= lineStart;
+				lineStart = 0;
+			} else if (length == buffer.length) {
+				buffer = Arrays.copyOf(buffer, buffer.length * 2);
+			}
+		}
+		if (length > lineStart)
+			dayCount += tokenizeLine(lineStart, length, todayEpochDay,
+					station, consumer);
+		return dayCount;
+	}
+
+	/**
+	 * This function tokenizes a single line between the given offsets. Only
+	 * lines starting with a comma contain daily records.
+	 *
+	 * @return 1 if the line was pushed to the consumer, otherwise 0
+	 */
+	private int tokenizeLine(int start, int end, int todayEpochDay,
+			Station station, ObservationConsumer consumer)
+			throws WeatherException {
+		if (end > start && buffer[end - 1] == '\r')
+			end--;
+		if (start == end || buffer[start] != ',')
+			return 0;
+		int columnCount = splitFields(start, end);
+		if (columnCount <= DATE_COLUMN || isDateHeader())
+			return 0;
+		parseDate(fieldStart[DATE_COLUMN], fieldEnd[DATE_COLUMN]);
+		// skipping today's and future record because we are predicting
+		// today + 4 days
+		if (WeatherUtils.toEpochDay(year, month, day) >= todayEpochDay)
+			return 0;
+		if (columnCount <= NOON_PRESSURE_COLUMN)
+			throw new WeatherException("Record of "
+					+ WeatherUtils.toDateString(year, month, day) + " has "
+					+ columnCount + " columns instead of at least "
+					+ (NOON_PRESSURE_COLUMN + 1));
+		consumer.addObservation(station, year, month, day,
+				MORNING_FORECAST_TIMESTAMP,
+				parseField(MORNING_TEMP_COLUMN),
+				parseField(MORNING_HUMIDITY_COLUMN),
+				parseField(MORNING_PRESSURE_COLUMN));
+		consumer.addObservation(station, year, month, day,
+				NOON_FORECAST_TIMESTAMP, parseField(NOON_TEMP_COLUMN),
+				parseField(NOON_HUMIDITY_COLUMN),
+				parseField(NOON_PRESSURE_COLUMN));
+		return 1;
+	}
+
+	/**
+	 * This function records the start and end offsets of every field of a
+	 * line.
+	 *
+	 * @return number of fields found, at most the number of columns tracked
+	 */
+	private int splitFields(int start, int end) {
+		int column = 0;
+		fieldStart[0] = start;
+		for (int i = start; i < end && column < MAX_COLUMNS; i++) {
+			if (buffer[i] == ',') {
+				fieldEnd[column] = i;
+				column++;
+				if (column < MAX_COLUMNS)
+					fieldStart[column] = i + 1;
+			}
+		}
+		if (column < MAX_COLUMNS) {
+			fieldEnd[column] = end;
+			column++;
+		}
+		return column;
+	}
+
+	private boolean isDateHeader() {
+		int start = fieldStart[DATE_COLUMN];
+		if (fieldEnd[DATE_COLUMN] - start != DATE_HEADER.length)
+			return false;
+		for (int i = 0; i < DATE_HEADER.length; i++) {
+			if (buffer[start + i] != DATE_HEADER[i])
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * This function parses a date of the format yyyy-M-d, where month and day
+	 * may or may not be padded with zero, into the year, month and day fields.
+	 *
+	 * @throws WeatherException
+	 *             is thrown when the field is not a valid date
+	 */
+	private void parseDate(int start, int end) throws WeatherException {
+		int part = 0;
+		int value = 0;
+		int digits = 0;
+		for (int i = start; i < end; i++) {
+			byte b = buffer[i];
+			if (b >= '0' && b <= '9') {
+				value = value * 10 + (b - '0');
+				digits++;
+			} else if (b == '-' && part < 2 && digits > 0) {
+				if (part == 0)
+					year = value;
+				else
+					month = value;
+				part++;
+				value = 0;
+				digits = 0;
+			} else {
+				throw dateFormatChanged();
+			}
+		}
+		if (part != 2 || digits == 0 || month < 1 || month > 12 || value < 1
+				|| value > 31)
+			throw dateFormatChanged();
+		day = value;
+	}
+
+	private WeatherException dateFormatChanged() {
+		return new WeatherException(
+				"Date format in the source API has been changed. Expected Input Date Format is: "
+						+ INPUT_DATETIME_FORMAT);
+	}
+
+	/**
+	 * This function parses a decimal number of a column in place. The value
+	 * is the same as the one given by Float.parseFloat for plain decimal
+	 * numbers.
+	 *
+	 * @param column
+	 *            column index of the field
+	 * @return value of the field
+	 * @throws WeatherException
+	 *             is thrown when the field is empty or not a number
+	 */
+	private float parseField(int column) throws WeatherException {
+		int start = fieldStart[column];
+		int end = fieldEnd[column];
+		while (start < end && buffer[start] == ' ')
+			start++;
+		while (end > start && buffer[end - 1] == ' ')
+			end--;
+		boolean negative = false;
+		if (start < end && (buffer[start] == '-' || buffer[start] == '+')) {
+			negative = buffer[start] == '-';
+			start++;
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int fractionDigits = 0;
+		boolean fraction = false;
+		for (int i = start; i < end; i++) {
+			byte b = buffer[i];
+			if (b >= '0' && b <= '9') {
+				if (digits == 18)
+					throw invalidNumber(column, start, end);
+				mantissa = mantissa * 10 + (b - '0');
+				digits++;
+				if (fraction)
+					fractionDigits++;
+			} else if (b == '.' && !fraction) {
+				fraction = true;
+			} else {
+				throw invalidNumber(column, start, end);
+			}
+		}
+		if (digits == 0)
+			throw invalidNumber(column, start, end);
+		float value = (float) (mantissa / POWERS_OF_TEN[fractionDigits]);
+		return negative ? -value : value;
+	}
+
+	private WeatherException invalidNumber(int column, int start, int end) {
+		return new WeatherException("Column " + column + " of "
+				+ WeatherUtils.toDateString(year, month, day)
+				+ " is not a valid number: '"
+				+ new String(buffer, start, end - start,
+						StandardCharsets.US_ASCII) + "'");
+	}
+
+}
@@ -0,0 +1,309 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+package com.weather.prediction.utils;
+
+/**
+ * Class which ingests the historical data of many stations at once. The fetch
+ * plan is the cross product of the stations and the months, with requests for
+ * the same station ID made only once and shared by every location using that
+ * station. The plan runs on a pool capped at a global number of requests in
+ * flight, and requests to each host are limited by a token bucket. Progress
+ * and throughput are logged while the plan runs.
+ *
+ * @author Irene Mathew
+ *
+ */
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import com.weather.prediction.bean.Station;
+import com.weather.prediction.bean.WeatherDataArchive;
+import com.weather.prediction.exception.WeatherException;
+
+public class BulkIngestionScheduler {
+	private final HistorySource historySource;
+	private final int maxConcurrency;
+	private final double requestsPerSecondPerHost;
+	private final int burstPerHost;
+	private final Map<String, TokenBucket> hostBuckets = new ConcurrentHashMap<String, TokenBucket>();
+	private final AtomicInteger completedRequests = new AtomicInteger();
+	private final AtomicLong downloadedBytes = new AtomicLong();
+
+	private Logger logger = Logger.getLogger(BulkIngestionScheduler.class);
+
+	/**
+	 * @param historySource
+	 *            source of the monthly files
+	 * @param maxConcurrency
+	 *            maximum number of requests in flight across all hosts
+	 * @param requestsPerSecondPerHost
+	 *            average rate of requests sent to a single host
+	 * @param burstPerHost
+	 *            largest burst of requests sent to a single host
+	 */
+	public BulkIngestionScheduler(HistorySource historySource,
+			int maxConcurrency, double requestsPerSecondPerHost,
+			int burstPerHost) {
+		this.historySource = historySource;
+		this.maxConcurrency = maxConcurrency;
+		this.requestsPerSecondPerHost = requestsPerSecondPerHost;
+		this.burstPerHost = burstPerHost;
+	}
+
+	/**
+	 * This function builds the fetch plan of the given stations and months,
+	 * grouping the stations by station ID so that every monthly file is
+	 * requested once.
+	 *
+	 * @param stations
+	 *            stations to ingest
+	 * @return stations of each distinct station ID, in the order given
+	 */
+	public static Map<String, List<Station>> groupByStationId(
+			List<Station> stations) {
+		Map<String, List<Station>> stationGroups = new LinkedHashMap<String, List<Station>>();
+		for (Station station : stations) {
+			List<Station> group = stationGroups.get(station.getStationId());
+			if (group == null) {
+				group = new ArrayList<Station>();
+				stationGroups.put(station.getStationId(), group);
+			}
+			group.add(station);
+		}
+		return stationGroups;
+	}
+
+	/**
+	 * This function ingests the given months of every station. A location
+	 * whose months could not all be read is left out of the result and the
+	 * failure is logged, so that one failing station does not stop the
+	 * others.
+	 *
+	 * @param stations
+	 *            stations to ingest
+	 * @param monthList
+	 *            list of months in the format yyyyMM
+	 * @return weather archive of each location, in the order of the stations
+	 * @throws WeatherException
+	 *             is thrown when the ingestion is interrupted
+	 */
+	public Map<String, WeatherDataArchive> ingest(List<Station> stations,
+			List<String> monthList) throws WeatherException {
+		Map<String, WeatherArchiveBuilder> builders = new LinkedHashMap<String, WeatherArchiveBuilder>();
+		for (Station station : stations) {
+			builders.put(station.getLocation(), new WeatherArchiveBuilder());
+		}
+		Map<String, WeatherDataArchive> archives = new LinkedHashMap<String, WeatherDataArchive>();
+		for (String location : ingest(stations, monthList, builders)) {
+			archives.put(location, builders.get(location).build());
+		}
+		return archives;
+	}
+
+	/**
+	 * This function ingests the given months of every station into an
+	 * observation store, which keeps the history of every location off the
+	 * heap. A location whose months could not all be read is left out of the
+	 * result and the failure is logged.
+	 *
+	 * @param stations
+	 *            stations to ingest
+	 * @param monthList
+	 *            list of months in the format yyyyMM
+	 * @param observationStore
+	 *            store to which the observations are added
+	 * @return locations whose months were all read, in the order of the
+	 *         stations
+	 * @throws WeatherException
+	 *             is thrown when the ingestion is interrupted
+	 */
+	public List<String> ingest(List<Station> stations, List<String> monthList,
+			ObservationStore observationStore) throws WeatherException {
+		Map<String, ObservationConsumer> consumers = new LinkedHashMap<String, ObservationConsumer>();
+		for (Station station : stations) {
+			consumers.put(station.getLocation(), observationStore);
+		}
+		return ingest(stations, monthList, consumers);
+	}
+
+	/**
+	 * This function ingests the given months of every station into the
+	 * consumer of its location.
+	 *
+	 * @return locations whose months were all read, in the order of the
+	 *         stations
+	 */
+	private List<String> ingest(List<Station> stations,
+			List<String> monthList,
+			Map<String, ? extends ObservationConsumer> consumers)
+			throws WeatherException {
+		Map<String, List<Station>> stationGroups = groupByStationId(stations);
+		int todayEpochDay = WeatherUtils.getTodayEpochDay();
+		int plannedRequests = stationGroups.size() * monthList.size();
+		logger.info("Bulk ingestion of " + stations.size() + " locations: "
+				+ plannedRequests + " requests for " + stationGroups.size()
+				+ " distinct stations and " + monthList.size() + " months");
+		completedRequests.set(0);
+		downloadedBytes.set(0);
+		long startTime = System.nanoTime();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1,
+				Math.min(maxConcurrency, plannedRequests)));
+		Map<String, List<Future<Integer>>> stationFutures = new LinkedHashMap<String, List<Future<Integer>>>();
+		try {
+			for (Map.Entry<String, List<Station>> group : stationGroups
+					.entrySet()) {
+				List<Future<Integer>> monthFutures = new ArrayList<Future<Integer>>();
+				for (String monthYear : monthList) {
+					monthFutures.add(executor.submit(() -> fetchMonth(
+							group.getKey(), monthYear, group.getValue(),
+							todayEpochDay, consumers, plannedRequests,
+							startTime)));
+				}
+				stationFutures.put(group.getKey(), monthFutures);
+			}
+			List<String> completeLocations = new ArrayList<String>();
+			for (Map.Entry<String, List<Station>> group : stationGroups
+					.entrySet()) {
+				if (awaitStation(group.getKey(),
+						stationFutures.get(group.getKey()))) {
+					for (Station station : group.getValue()) {
+						completeLocations.add(station.getLocation());
+					}
+				}
+			}
+			logThroughput(plannedRequests, startTime);
+			return completeLocations;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * This function fetches one monthly file and tokenizes it into the
+	 * consumer of every location using the station.
+	 *
+	 * @return number of days read into all of those consumers
+	 */
+	private int fetchMonth(String stationId, String monthYear,
+			List<Station> stations, int todayEpochDay,
+			Map<String, ? extends ObservationConsumer> consumers,
+			int plannedRequests, long startTime) throws IOException, WeatherException {
+		byte[] body;
+		try (InputStream in = historySource.openMonth(stationId, monthYear,
+				this::acquirePermit)) {
+			body = readFully(in);
+		}
+		int days = 0;
+		for (Station station : stations) {
+			days += new BomCsvTokenizer().tokenize(new ByteArrayInputStream(
+					body), todayEpochDay, station, consumers.get(station
+					.getLocation()));
+		}
+		downloadedBytes.addAndGet(body.length);
+		int completed = completedRequests.incrementAndGet();
+		// progress is reported about every tenth of the plan
+		if (completed % Math.max(1, plannedRequests / 10) == 0)
+			logThroughput(plannedRequests, startTime);
+		return days;
+	}
+
+	/**
+	 * This function waits for all months of a station.
+	 *
+	 * @return true if every month was read
+	 * @throws WeatherException
+	 *             is thrown when the ingestion is interrupted
+	 */
+	private boolean awaitStation(String stationId,
+			List<Future<Integer>> monthFutures) throws WeatherException {
+		boolean complete = true;
+		for (Future<Integer> monthFuture : monthFutures) {
+			try {
+				monthFuture.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new WeatherException(e,
+						"Bulk historical data ingestion was interrupted");
+			} catch (ExecutionException e) {
+				complete = false;
+				logger.error("Historical data of station " + stationId
+						+ " could not be ingested: " + e.getCause());
+			}
+		}
+		return complete;
+	}
+
+	/**
+	 * This function takes a token of the host of a URL before a request is
+	 * sent to it. Files served from the cache take no token.
+	 */
+	private void acquirePermit(String urlPath) throws InterruptedIOException {
+		TokenBucket bucket = getHostBucket(urlPath);
+		if (bucket != null)
+			bucket.acquire();
+	}
+
+	/**
+	 * This function gives the token bucket of the host of a URL, or null when
+	 * the monthly files are not read over HTTP.
+	 */
+	private TokenBucket getHostBucket(String urlPath) {
+		String host;
+		try {
+			host = new URI(urlPath).getHost();
+		} catch (URISyntaxException e) {
+			host = null;
+		}
+		if (host == null)
+			return null;
+		return hostBuckets.computeIfAbsent(host, key -> new TokenBucket(
+				requestsPerSecondPerHost, burstPerHost));
+	}
+
+	private void logThroughput(int plannedRequests, long startTime) {
+		double seconds = Math.max(1, System.nanoTime() - startTime) / 1e9;
+		logger.info(String.format(
+				"Bulk ingestion progress: %d/%d requests, %d KB in %.2f s"
+						+ " (%.1f requests/s, %.1f KB/s)",
+				completedRequests.get(), plannedRequests,
+				downloadedBytes.get() / 1024, seconds,
+				completedRequests.get() / seconds,
+				downloadedBytes.get() / 1024.0 / seconds));
+	}
+
+	private byte[] readFully(InputStream in) throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			body.write(buffer, 0, read);
+		}
+		return body.toByteArray();
+	}
+
+}
@@ -0,0 +1,159 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+package com.weather.prediction.utils;
+
+/**
+ * Class which keeps the daily averages of temperature, humidity and pressure
+ * of a station by epoch day. The average of a day is the average of its two
+ * forecast times, read from the observation view the first time the day is
+ * asked for and kept until the day is invalidated. Consecutive forecasts
+ * search windows which share all but one of their days, so each day is read
+ * from the view once for all of them.
+ *
+ * @author Irene Mathew
+ *
+ */
+import static com.weather.prediction.constants.WeatherConstants.MORNING_SLOT;
+import static com.weather.prediction.constants.WeatherConstants.NOON_SLOT;
+
+public class DailyAggregateCache {
+	private static final byte UNKNOWN = 0;
+	private static final byte COMPLETE = 1;
+	private static final byte INCOMPLETE = 2;
+
+	private final ObservationView view;
+	private int firstEpochDay;
+	private float[] temps = new float[0];
+	private float[] humidities = new float[0];
+	private float[] pressures = new float[0];
+	private byte[] states = new byte[0];
+
+	/**
+	 * @param view
+	 *            observations of a station
+	 */
+	public DailyAggregateCache(ObservationView view) {
+		this.view = view;
+		this.firstEpochDay = view.getFirstEpochDay();
+	}
+
+	/**
+	 * @return observations of the station
+	 */
+	public ObservationView getView() {
+		return view;
+	}
+
+	/**
+	 * @return true if a day has both forecast times
+	 */
+	public boolean isComplete(int epochDay) {
+		return fill(epochDay) == COMPLETE;
+	}
+
+	/**
+	 * @return average temperature of a day, NaN if a forecast time is missing
+	 */
+	public float getTemp(int epochDay) {
+		fill(epochDay);
+		return temps[epochDay - firstEpochDay];
+	}
+
+	/**
+	 * @return average humidity of a day, NaN if a forecast time is missing
+	 */
+	public float getHumidity(int epochDay) {
+		fill(epochDay);
+		return humidities[epochDay - firstEpochDay];
+	}
+
+	/**
+	 * @return average pressure of a day, NaN if a forecast time is missing
+	 */
+	public float getPressure(int epochDay) {
+		fill(epochDay);
+		return pressures[epochDay - firstEpochDay];
+	}
+
+	/**
+	 * This function drops the averages of a day whose observations have
+	 * changed, so they are read again when the day is next asked for.
+	 *
+	 * @param epochDay
+	 *            epoch day whose observations have changed
+	 */
+	public void invalidate(int epochDay) {
+		int index = epochDay - firstEpochDay;
+		if (index >= 0 && index < states.length)
+			states[index] = UNKNOWN;
+	}
+
+	/**
+	 * @return number of days whose averages are kept
+	 */
+	public int getCachedDays() {
+		int count = 0;
+		for (byte state : states) {
+			if (state != UNKNOWN)
+				count++;
+		}
+		return count;
+	}
+
+	private byte fill(int epochDay) {
+		ensureCapacity(epochDay);
+		int index = epochDay - firstEpochDay;
+		if (states[index] != UNKNOWN)
+			return states[index];
+		temps[index] = (view.getTemp(epochDay, MORNING_SLOT) + view.getTemp(
+				epochDay, NOON_SLOT)) / 2;
+		humidities[index] = (view.getHumidity(epochDay, MORNING_SLOT) + view
+				.getHumidity(epochDay, NOON_SLOT)) / 2;
+		pressures[index] = (view.getPressure(epochDay, MORNING_SLOT) + view
+				.getPressure(epochDay, NOON_SLOT)) / 2;
+		states[index] = view.hasObservation(epochDay, MORNING_SLOT)
+				&& view.hasObservation(epochDay, NOON_SLOT) ? COMPLETE
+				: INCOMPLETE;
+		return states[index];
+	}
+
+	/**
+	 * This function grows the arrays to hold a day, at least doubling their
+	 * length in the direction of the day.
+	 */
+	private void ensureCapacity(int epochDay) {
+		int index = epochDay - firstEpochDay;
+		if (index >= 0 && index < states.length)
+			return;
+		int length = Math.max(states.length, 16);
+		int shift = 0;
+		if (index < 0) {
+			shift = Math.max(length, -index);
+			length = states.length + shift;
+		} else {
+			while (length <= index)
+				length <<= 1;
+		}
+		temps = grow(temps, length, shift);
+		humidities = grow(humidities, length, shift);
+		pressures = grow(pressures, length, shift);
+		byte[] grownStates = new byte[length];
+		System.arraycopy(states, 0, grownStates, shift, states.length);
+		states = grownStates;
+		firstEpochDay -= shift;
+	}
+
+	private static float[] grow(float[] values, int length, int shift) {
+		float[] grown = new float[length];
+		System.arraycopy(values, 0, grown, shift, values.length);
+		return grown;
+	}
+
+}
@@ -0,0 +1,308 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+package com.weather.prediction.utils;
+
+/**
+ * Class which keeps downloaded monthly station files on disk. Files are keyed
+ * by station ID and month(yyyyMM). A month that was already closed when it was
+ * downloaded never changes and is always served from disk, while the current
+ * month is revalidated once its time to live has expired. The total size of
+ * the cache is bounded and the least recently used files are evicted first.
+ * Every access to the files of the cache holds the lock of the cache, so an
+ * eviction never deletes a file while it is being read or committed.
+ *
+ * @author Irene Mathew
+ *
+ */
+import static com.weather.prediction.constants.WeatherConstants.MONTHLY_FILE_EXTENSION;
+import static com.weather.prediction.constants.WeatherConstants.CACHE_METADATA_EXTENSION;
+import static com.weather.prediction.constants.WeatherConstants.DEFAULT_HISTORY_CACHE_DIR;
+import static com.weather.prediction.constants.WeatherConstants.HISTORY_CACHE_DIR_PROPERTY;
+import static com.weather.prediction.constants.WeatherConstants.HISTORY_CACHE_MAX_BYTES;
+import static com.weather.prediction.constants.WeatherConstants.HISTORY_CACHE_TTL_MILLIS;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.log4j.Logger;
+
+public class HistoryCache {
+	private static final String ETAG = "etag";
+	private static final String LAST_MODIFIED = "lastModified";
+	private static final String FETCHED_AT = "fetchedAt";
+	private static final String CLOSED = "closed";
+
+	private final File cacheDir;
+	private final long maxCacheBytes;
+	private final long timeToLiveMillis;
+
+	private Logger logger = Logger.getLogger(HistoryCache.class);
+
+	public HistoryCache(File cacheDir, long maxCacheBytes, long timeToLiveMillis) {
+		this.cacheDir = cacheDir;
+		this.maxCacheBytes = maxCacheBytes;
+		this.timeToLiveMillis = timeToLiveMillis;
+	}
+
+	/**
+	 * This function creates a cache in the directory given by the system
+	 * property weather.cache.dir, or in the default directory when the
+	 * property is not set.
+	 *
+	 * @return cache with the default size limit and time to live
+	 */
+	public static HistoryCache createDefault() {
+		String cacheDir = System.getProperty(HISTORY_CACHE_DIR_PROPERTY,
+				DEFAULT_HISTORY_CACHE_DIR);
+		return new HistoryCache(new File(cacheDir), HISTORY_CACHE_MAX_BYTES,
+				HISTORY_CACHE_TTL_MILLIS);
+	}
+
+	/**
+	 * This function finds the cached file of a station for a month.
+	 *
+	 * @param stationId
+	 *            station ID
+	 * @param monthYear
+	 *            month in the format yyyyMM
+	 * @return cached file, which may not exist yet
+	 */
+	public File getCacheFile(String stationId, String monthYear) {
+		return new File(cacheDir, stationId + "." + monthYear
+				+ MONTHLY_FILE_EXTENSION);
+	}
+
+	/**
+	 * This function checks whether a cached file can be served without any
+	 * network call. Months which were closed when downloaded are always
+	 * fresh, the current month only until its time to live expires.
+	 *
+	 * @param stationId
+	 *            station ID
+	 * @param monthYear
+	 *            month in the format yyyyMM
+	 * @return true if the cached file can be used as it is
+	 */
+	public synchronized boolean isFresh(String stationId, String monthYear) {
+		if (!getCacheFile(stationId, monthYear).exists())
+			return false;
+		Properties metadata = readMetadata(stationId, monthYear);
+		if (Boolean.parseBoolean(metadata.getProperty(CLOSED)))
+			return true;
+		long fetchedAt = Long.parseLong(metadata.getProperty(FETCHED_AT, "0"));
+		return System.currentTimeMillis() - fetchedAt < timeToLiveMillis;
+	}
+
+	/**
+	 * This function checks whether the given month is already over.
+	 *
+	 * @param monthYear
+	 *            month in the format yyyyMM
+	 * @return true if the month is before the current month
+	 */
+	public boolean isClosedMonth(String monthYear) {
+		return monthYear.compareTo(WeatherHistoryDownloader
+				.getYearMonth(0, 0)) < 0;
+	}
+
+	/**
+	 * This function gives the entity tag of a cached file to be sent with a
+	 * conditional request.
+	 *
+	 * @return entity tag or null if the server did not send one
+	 */
+	public synchronized String getETag(String stationId, String monthYear) {
+		if (!getCacheFile(stationId, monthYear).exists())
+			return null;
+		return readMetadata(stationId, monthYear).getProperty(ETAG);
+	}
+
+	/**
+	 * This function gives the last modified time of a cached file to be sent
+	 * with a conditional request.
+	 *
+	 * @return last modified time in milliseconds or 0 if unknown
+	 */
+	public synchronized long getLastModified(String stationId, String monthYear) {
+		if (!getCacheFile(stationId, monthYear).exists())
+			return 0;
+		return Long.parseLong(readMetadata(stationId, monthYear).getProperty(
+				LAST_MODIFIED, "0"));
+	}
+
+	/**
+	 * This function reads a cached file and marks it as recently used. The
+	 * file is read completely, so a later eviction does not affect the
+	 * returned stream.
+	 *
+	 * @return stream of the cached file, or null if it is no longer cached
+	 * @throws IOException
+	 *             is thrown when the cached file cannot be read
+	 */
+	public synchronized InputStream open(String stationId, String monthYear)
+			throws IOException {
+		File cacheFile = getCacheFile(stationId, monthYear);
+		if (!cacheFile.exists())
+			return null;
+		cacheFile.setLastModified(System.currentTimeMillis());
+		logger.debug("Serving " + cacheFile.getName() + " from cache");
+		return new ByteArrayInputStream(Files.readAllBytes(cacheFile.toPath()));
+	}
+
+	/**
+	 * This function records that the server confirmed a cached file is still
+	 * valid, which restarts its time to live.
+	 */
+	public synchronized void markRevalidated(String stationId,
+			String monthYear) {
+		if (!getCacheFile(stationId, monthYear).exists())
+			return;
+		Properties metadata = readMetadata(stationId, monthYear);
+		metadata.setProperty(FETCHED_AT,
+				String.valueOf(System.currentTimeMillis()));
+		metadata.setProperty(CLOSED, String.valueOf(isClosedMonth(monthYear)));
+		writeMetadata(stationId, monthYear, metadata);
+	}
+
+	/**
+	 * This function creates a temporary file into which a download is
+	 * written. The file is only visible in the cache once it is committed.
+	 *
+	 * @return temporary file in the cache directory
+	 * @throws IOException
+	 *             is thrown when the cache directory cannot be written
+	 */
+	public File createTempFile(String stationId, String monthYear)
+			throws IOException {
+		if (!cacheDir.exists())
+			cacheDir.mkdirs();
+		return File.createTempFile(stationId + "." + monthYear, ".part",
+				cacheDir);
+	}
+
+	/**
+	 * This function moves a completely downloaded file into the cache, stores
+	 * its validators and evicts old files if the cache is over its size limit.
+	 *
+	 * @param tempFile
+	 *            completely written temporary file
+	 * @param eTag
+	 *            entity tag sent by the server, may be null
+	 * @param lastModified
+	 *            last modified time sent by the server, 0 if unknown
+	 * @throws IOException
+	 *             is thrown when the file cannot be moved into the cache
+	 */
+	public synchronized void commit(File tempFile, String stationId, String monthYear,
+			String eTag, long lastModified) throws IOException {
+		Files.move(tempFile.toPath(), getCacheFile(stationId, monthYear)
+				.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		Properties metadata = new Properties();
+		if (eTag != null)
+			metadata.setProperty(ETAG, eTag);
+		metadata.setProperty(LAST_MODIFIED, String.valueOf(lastModified));
+		metadata.setProperty(FETCHED_AT,
+				String.valueOf(System.currentTimeMillis()));
+		metadata.setProperty(CLOSED, String.valueOf(isClosedMonth(monthYear)));
+		writeMetadata(stationId, monthYear, metadata);
+		evict();
+	}
+
+	/**
+	 * This function writes a completely downloaded file into the cache.
+	 *
+	 * @param body
+	 *            content of the file
+	 * @param eTag
+	 *            entity tag sent by the server, may be null
+	 * @param lastModified
+	 *            last modified time sent by the server, 0 if unknown
+	 * @throws IOException
+	 *             is thrown when the file cannot be written
+	 */
+	public void store(byte[] body, String stationId, String monthYear,
+			String eTag, long lastModified) throws IOException {
+		File tempFile = createTempFile(stationId, monthYear);
+		try {
+			Files.write(tempFile.toPath(), body);
+			commit(tempFile, stationId, monthYear, eTag, lastModified);
+		} finally {
+			tempFile.delete();
+		}
+	}
+
+	/**
+	 * This function deletes the least recently used files until the cache is
+	 * within its size limit.
+	 */
+	public synchronized void evict() {
+		File[] files = cacheDir.listFiles((dir, name) -> name
+				.endsWith(MONTHLY_FILE_EXTENSION));
+		if (files == null)
+			return;
+		long totalBytes = 0;
+		for (File file : files) {
+			totalBytes += file.length();
+		}
+		List<File> cachedFiles = new ArrayList<File>(Arrays.asList(files));
+		Collections.sort(cachedFiles,
+				(o1, o2) -> Long.compare(o1.lastModified(), o2.lastModified()));
+		for (File file : cachedFiles) {
+			if (totalBytes <= maxCacheBytes)
+				break;
+			totalBytes -= file.length();
+			logger.debug("Evicting " + file.getName() + " from cache");
+			file.delete();
+			getMetadataFile(file).delete();
+		}
+	}
+
+	private File getMetadataFile(File cacheFile) {
+		return new File(cacheFile.getPath() + CACHE_METADATA_EXTENSION);
+	}
+
+	private Properties readMetadata(String stationId, String monthYear) {
+		Properties metadata = new Properties();
+		File metadataFile = getMetadataFile(getCacheFile(stationId, monthYear));
+		if (metadataFile.exists()) {
+			try (InputStream in = new FileInputStream(metadataFile)) {
+				metadata.load(in);
+			} catch (IOException e) {
+				logger.warn("Ignoring unreadable cache metadata "
+						+ metadataFile.getName());
+			}
+		}
+		return metadata;
+	}
+
+	private void writeMetadata(String stationId, String monthYear,
+			Properties metadata) {
+		File metadataFile = getMetadataFile(getCacheFile(stationId, monthYear));
+		try (OutputStream out = new FileOutputStream(metadataFile)) {
+			metadata.store(out, null);
+		} catch (IOException e) {
+			logger.warn("Could not write cache metadata "
+					+ metadataFile.getName());
+		}
+	}
+
+}
@@ -0,0 +1,71 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+package com.weather.prediction.utils;
+
+/**
+ * Interface for the sources from which monthly station files are read. The
+ * live API, a directory of captured files and an in-process replay server are
+ * all used through this interface.
+ *
+ * @author Irene Mathew
+ *
+ */
+import java.io.IOException;
+import java.io.InputStream;
+
+public interface HistorySource {
+
+	/**
+	 * This function opens the monthly file of a station.
+	 *
+	 * @param stationId
+	 *            station ID
+	 * @param monthYear
+	 *            month in the format yyyyMM
+	 * @return stream of the monthly file in the format of the API
+	 * @throws IOException
+	 *             is thrown when the file is unavailable
+	 */
+	InputStream openMonth(String stationId, String monthYear)
+			throws IOException;
+
+	/**
+	 * This function opens the monthly file of a station, taking a permit of
+	 * the throttle before every request sent over the network. Sources which
+	 * do not use the network ignore the throttle.
+	 *
+	 * @param stationId
+	 *            station ID
+	 * @param monthYear
+	 *            month in the format yyyyMM
+	 * @param throttle
+	 *            limits on the requests sent over the network
+	 * @return stream of the monthly file in the format of the API
+	 * @throws IOException
+	 *             is thrown when the file is unavailable
+	 */
+	default InputStream openMonth(String stationId, String monthYear,
+			RequestThrottle throttle) throws IOException {
+		return openMonth(stationId, monthYear);
+	}
+
+	/**
+	 * This function describes where the monthly file of a station is read
+	 * from, for logging and error messages.
+	 *
+	 * @param stationId
+	 *            station ID
+	 * @param monthYear
+	 *            month in the format yyyyMM
+	 * @return URL or path of the monthly file
+	 */
+	String describe(String stationId, String monthYear);
+
+}
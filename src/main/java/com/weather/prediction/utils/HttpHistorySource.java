@@ -0,0 +1,157 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+package com.weather.prediction.utils;
+
+/**
+ * Class which reads monthly station files over HTTP from a URL template, by
+ * default the real time API. Downloaded files are kept in the history cache
+ * when one is given.
+ *
+ * @author Irene Mathew
+ *
+ */
+import static com.weather.prediction.constants.WeatherConstants.HTTP_DATE_FORMAT;
+import static com.weather.prediction.constants.WeatherConstants.MONTH_URL_CONSTANT;
+import static com.weather.prediction.constants.WeatherConstants.STATION_URL_CONSTANT;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+import org.apache.log4j.Logger;
+
+public class HttpHistorySource implements HistorySource {
+	private final String urlTemplate;
+	private final HistoryCache historyCache;
+	private final HttpTransport transport;
+
+	private Logger logger = Logger.getLogger(HttpHistorySource.class);
+
+	/**
+	 * @param urlTemplate
+	 *            URL template containing <#STATIONID#> and <#MONYR#>
+	 * @param historyCache
+	 *            cache of downloaded files, null to always download
+	 */
+	public HttpHistorySource(String urlTemplate, HistoryCache historyCache) {
+		this(urlTemplate, historyCache, HttpTransport.createDefault());
+	}
+
+	/**
+	 * @param urlTemplate
+	 *            URL template containing <#STATIONID#> and <#MONYR#>
+	 * @param historyCache
+	 *            cache of downloaded files, null to always download
+	 * @param transport
+	 *            transport used for the requests
+	 */
+	public HttpHistorySource(String urlTemplate, HistoryCache historyCache,
+			HttpTransport transport) {
+		this.urlTemplate = urlTemplate;
+		this.historyCache = historyCache;
+		this.transport = transport;
+	}
+
+	/**
+	 * This function creates API URL based on month and stationId. Parts of the
+	 * base URL(<#STATIONID#>,<#MONYR#>) are replaced with arguments passed to
+	 * the function.
+	 *
+	 * @param baseUrl
+	 *            URL template
+	 * @param stationId
+	 *            station ID
+	 * @param monthYear
+	 *            month in the format yyyyMM
+	 *
+	 * @return URL created
+	 *
+	 */
+	public static String createUrl(String baseUrl, String stationId,
+			String monthYear) {
+		baseUrl = baseUrl.replaceAll(STATION_URL_CONSTANT, stationId);
+		return baseUrl.replaceAll(MONTH_URL_CONSTANT, monthYear);
+	}
+
+	@Override
+	public String describe(String stationId, String monthYear) {
+		return createUrl(urlTemplate, stationId, monthYear);
+	}
+
+	/**
+	 * This function opens the monthly file of a station. A cached file which
+	 * is still fresh is opened without any network call. Otherwise the URL is
+	 * requested through the transport, conditionally if a stale copy is
+	 * cached, and the downloaded file is stored in the cache. A cached file
+	 * evicted in the meantime is downloaded again.
+	 */
+	@Override
+	public InputStream openMonth(String stationId, String monthYear)
+			throws IOException {
+		return openMonth(stationId, monthYear, null);
+	}
+
+	/**
+	 * This function opens the monthly file of a station like
+	 * {@link #openMonth(String, String)}, taking a permit of the throttle
+	 * before every attempt of a request.
+	 */
+	@Override
+	public InputStream openMonth(String stationId, String monthYear,
+			RequestThrottle throttle) throws IOException {
+		String urlPath = describe(stationId, monthYear);
+		logger.debug("API URL to hit: " + urlPath);
+		if (historyCache == null)
+			return new ByteArrayInputStream(transport.get(urlPath, null,
+					throttle).getBody());
+		if (historyCache.isFresh(stationId, monthYear)) {
+			InputStream in = historyCache.open(stationId, monthYear);
+			if (in != null)
+				return in;
+		}
+		Map<String, String> requestHeaders = new HashMap<String, String>();
+		String eTag = historyCache.getETag(stationId, monthYear);
+		if (eTag != null)
+			requestHeaders.put("If-None-Match", eTag);
+		long lastModified = historyCache.getLastModified(stationId, monthYear);
+		if (lastModified > 0)
+			requestHeaders.put("If-Modified-Since",
+					formatHttpDate(lastModified));
+		HttpTransport.Response response = transport.get(urlPath,
+				requestHeaders, throttle);
+		if (response.getStatus() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+			logger.debug("Cached file of " + stationId + "." + monthYear
+					+ " is still valid");
+			historyCache.markRevalidated(stationId, monthYear);
+			InputStream in = historyCache.open(stationId, monthYear);
+			if (in != null)
+				return in;
+			response = transport.get(urlPath, null, throttle);
+		}
+		historyCache.store(response.getBody(), stationId, monthYear,
+				response.getETag(), response.getLastModified());
+		return new ByteArrayInputStream(response.getBody());
+	}
+
+	private String formatHttpDate(long millis) {
+		SimpleDateFormat httpDateFormat = new SimpleDateFormat(
+				HTTP_DATE_FORMAT, Locale.US);
+		httpDateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+		return httpDateFormat.format(new Date(millis));
+	}
+
+}
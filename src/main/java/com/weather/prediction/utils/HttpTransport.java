@@ -0,0 +1,326 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+package com.weather.prediction.utils;
+
+/**
+ * Class which performs HTTP GET requests for the history sources. Every
+ * request has connect and read timeouts and an overall deadline covering all
+ * of its attempts. Failed attempts (I/O errors, 429 and 5xx responses) are
+ * retried a bounded number of times with jittered exponential backoff, as long
+ * as the retry budget shared by the run allows it. Responses may be gzip or
+ * deflate compressed. Bodies are always read completely and closed so that the
+ * underlying keep-alive connection is returned to the pool of the JDK and
+ * reused by the next request to the same host. A body is returned only once
+ * it has been read completely, so a retry never replays part of a file.
+ *
+ * @author Irene Mathew
+ *
+ */
+import static com.weather.prediction.constants.WeatherConstants.HTTP_BACKOFF_BASE_MILLIS;
+import static com.weather.prediction.constants.WeatherConstants.HTTP_BACKOFF_MAX_MILLIS;
+import static com.weather.prediction.constants.WeatherConstants.HTTP_CONNECT_TIMEOUT_MILLIS;
+import static com.weather.prediction.constants.WeatherConstants.HTTP_MAX_ATTEMPTS;
+import static com.weather.prediction.constants.WeatherConstants.HTTP_MAX_BODY_BYTES;
+import static com.weather.prediction.constants.WeatherConstants.HTTP_READ_TIMEOUT_MILLIS;
+import static com.weather.prediction.constants.WeatherConstants.HTTP_REQUEST_DEADLINE_MILLIS;
+import static com.weather.prediction.constants.WeatherConstants.HTTP_RETRY_BUDGET;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.log4j.Logger;
+
+public class HttpTransport {
+	private static final ScheduledExecutorService DEADLINE_TIMER = Executors
+			.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "http-deadline-timer");
+				thread.setDaemon(true);
+				return thread;
+			});
+
+	private final int connectTimeoutMillis;
+	private final int readTimeoutMillis;
+	private final long deadlineMillis;
+	private final int maxAttempts;
+	private final RetryBudget retryBudget;
+
+	private Logger logger = Logger.getLogger(HttpTransport.class);
+
+	/**
+	 * This constructor creates a transport with the default timeouts and
+	 * retries, sharing the given retry budget.
+	 *
+	 * @param retryBudget
+	 *            retry budget of the run
+	 */
+	public HttpTransport(RetryBudget retryBudget) {
+		this(HTTP_CONNECT_TIMEOUT_MILLIS, HTTP_READ_TIMEOUT_MILLIS,
+				HTTP_REQUEST_DEADLINE_MILLIS, HTTP_MAX_ATTEMPTS, retryBudget);
+	}
+
+	/**
+	 * @param connectTimeoutMillis
+	 *            timeout for opening a connection
+	 * @param readTimeoutMillis
+	 *            timeout for each read from a connection
+	 * @param deadlineMillis
+	 *            time after which a request is given up, including all of
+	 *            its attempts and backoffs
+	 * @param maxAttempts
+	 *            maximum number of attempts of a request
+	 * @param retryBudget
+	 *            retry budget of the run
+	 */
+	public HttpTransport(int connectTimeoutMillis, int readTimeoutMillis,
+			long deadlineMillis, int maxAttempts, RetryBudget retryBudget) {
+		this.connectTimeoutMillis = connectTimeoutMillis;
+		this.readTimeoutMillis = readTimeoutMillis;
+		this.deadlineMillis = deadlineMillis;
+		this.maxAttempts = maxAttempts;
+		this.retryBudget = retryBudget;
+	}
+
+	/**
+	 * This function creates a transport with the default timeouts, retries
+	 * and retry budget.
+	 *
+	 * @return transport with default settings
+	 */
+	public static HttpTransport createDefault() {
+		return new HttpTransport(new RetryBudget(HTTP_RETRY_BUDGET));
+	}
+
+	/**
+	 * This function performs a GET request, retrying failed attempts.
+	 *
+	 * @param urlPath
+	 *            URL to request
+	 * @param requestHeaders
+	 *            additional request headers, for example for conditional
+	 *            requests
+	 * @return response with status 2xx or 304
+	 * @throws IOException
+	 *             is thrown when the request fails with a status which is not
+	 *             retried, or when it still fails after its attempts, its
+	 *             deadline or the retry budget are used up
+	 */
+	public Response get(String urlPath, Map<String, String> requestHeaders)
+			throws IOException {
+		return get(urlPath, requestHeaders, null);
+	}
+
+	/**
+	 * This function performs a GET request like
+	 * {@link #get(String, Map)}, taking a permit of the throttle before every
+	 * attempt.
+	 *
+	 * @param throttle
+	 *            limits on the requests sent, null for none
+	 */
+	public Response get(String urlPath, Map<String, String> requestHeaders,
+			RequestThrottle throttle) throws IOException {
+		URL url = new URL(urlPath);
+		long deadline = System.currentTimeMillis() + deadlineMillis;
+		IOException lastFailure = null;
+		for (int attempt = 1;; attempt++) {
+			if (throttle != null)
+				throttle.acquire(urlPath);
+			try {
+				Response response = attempt(url, requestHeaders, deadline);
+				if (!isRetryable(response.getStatus()))
+					return checkStatus(urlPath, response);
+				lastFailure = new IOException("Requested API Url:" + urlPath
+						+ " answered with status " + response.getStatus());
+			} catch (InterruptedIOException e) {
+				if (Thread.currentThread().isInterrupted())
+					throw e;
+				lastFailure = e;
+			} catch (StatusException e) {
+				throw e;
+			} catch (IOException e) {
+				lastFailure = e;
+			}
+			long backoff = backoffMillis(attempt);
+			if (attempt >= maxAttempts
+					|| System.currentTimeMillis() + backoff >= deadline
+					|| !retryBudget.tryAcquire()) {
+				throw new IOException("Requested API Url:" + urlPath
+						+ " failed after " + attempt + " attempt(s)",
+						lastFailure);
+			}
+			logger.warn("Attempt " + attempt + " of " + urlPath + " failed ("
+					+ lastFailure.getMessage() + "), retrying in " + backoff
+					+ " ms");
+			sleep(backoff);
+		}
+	}
+
+	/**
+	 * This function performs a single attempt of a request. The connection is
+	 * disconnected by a timer if the attempt is still running at the deadline.
+	 */
+	private Response attempt(URL url, Map<String, String> requestHeaders,
+			long deadline) throws IOException {
+		long remaining = deadline - System.currentTimeMillis();
+		if (remaining <= 0)
+			throw new IOException("Deadline of " + url + " has expired");
+		final HttpURLConnection connection = (HttpURLConnection) url
+				.openConnection();
+		connection.setConnectTimeout((int) Math.min(connectTimeoutMillis,
+				remaining));
+		connection.setReadTimeout((int) Math.min(readTimeoutMillis, remaining));
+		connection.setRequestProperty("Accept-Encoding", "gzip, deflate");
+		if (requestHeaders != null) {
+			for (Map.Entry<String, String> header : requestHeaders.entrySet()) {
+				connection.setRequestProperty(header.getKey(),
+						header.getValue());
+			}
+		}
+		ScheduledFuture<?> deadlineTimer = DEADLINE_TIMER.schedule(
+				connection::disconnect, remaining, TimeUnit.MILLISECONDS);
+		try {
+			int status = connection.getResponseCode();
+			InputStream in = status >= 400 ? connection.getErrorStream()
+					: connection.getInputStream();
+			String contentEncoding = connection.getContentEncoding();
+			byte[] body = readBody(decode(in, contentEncoding));
+			long contentLength = connection.getContentLengthLong();
+			if (contentEncoding == null && contentLength >= 0
+					&& body.length != contentLength)
+				throw new IOException("Response of " + url + " ended after "
+						+ body.length + " of " + contentLength + " bytes");
+			Response response = new Response();
+			response.status = status;
+			response.body = body;
+			response.eTag = connection.getHeaderField("ETag");
+			response.lastModified = connection.getLastModified();
+			return response;
+		} finally {
+			deadlineTimer.cancel(false);
+		}
+	}
+
+	private InputStream decode(InputStream in, String contentEncoding)
+			throws IOException {
+		if (in == null || contentEncoding == null)
+			return in;
+		if (contentEncoding.equalsIgnoreCase("gzip"))
+			return new GZIPInputStream(in);
+		if (contentEncoding.equalsIgnoreCase("deflate"))
+			return new InflaterInputStream(in);
+		return in;
+	}
+
+	/**
+	 * This function reads a body completely and closes it, which allows the
+	 * connection to be kept alive.
+	 */
+	private byte[] readBody(InputStream in) throws IOException {
+		if (in == null)
+			return new byte[0];
+		try {
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				body.write(buffer, 0, read);
+				if (body.size() > HTTP_MAX_BODY_BYTES)
+					throw new StatusException("Response is larger than "
+							+ HTTP_MAX_BODY_BYTES + " bytes");
+			}
+			return body.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+
+	private boolean isRetryable(int status) {
+		return status == 429 || status >= 500;
+	}
+
+	private Response checkStatus(String urlPath, Response response)
+			throws StatusException {
+		int status = response.getStatus();
+		if ((status >= 200 && status < 300)
+				|| status == HttpURLConnection.HTTP_NOT_MODIFIED)
+			return response;
+		throw new StatusException("Requested API Url:" + urlPath
+				+ " answered with status " + status);
+	}
+
+	/**
+	 * This function gives the backoff before the next attempt, a random time
+	 * of up to the base backoff doubled for every previous attempt.
+	 */
+	private long backoffMillis(int attempt) {
+		long ceiling = Math.min(HTTP_BACKOFF_MAX_MILLIS,
+				HTTP_BACKOFF_BASE_MILLIS << Math.min(attempt - 1, 16));
+		return ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+	}
+
+	private void sleep(long millis) throws InterruptedIOException {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while backing off");
+		}
+	}
+
+	/**
+	 * Class for a failure which is not retried.
+	 */
+	private static class StatusException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		StatusException(String message) {
+			super(message);
+		}
+	}
+
+	/**
+	 * Class for a completely read response.
+	 */
+	public static class Response {
+		private int status;
+		private byte[] body;
+		private String eTag;
+		private long lastModified;
+
+		public int getStatus() {
+			return status;
+		}
+
+		public byte[] getBody() {
+			return body;
+		}
+
+		public String getETag() {
+			return eTag;
+		}
+
+		public long getLastModified() {
+			return lastModified;
+		}
+	}
+
+}
@@ -0,0 +1,51 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+package com.weather.prediction.utils;
+
+/**
+ * Class which reads captured monthly station files(<STATIONID>.<yyyyMM>.csv)
+ * from a local directory, so that ingestion can run without the network.
+ *
+ * @author Irene Mathew
+ *
+ */
+import static com.weather.prediction.constants.WeatherConstants.MONTHLY_FILE_EXTENSION;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+public class LocalDirectoryHistorySource implements HistorySource {
+	private final File directory;
+
+	public LocalDirectoryHistorySource(File directory) {
+		this.directory = directory;
+	}
+
+	@Override
+	public InputStream openMonth(String stationId, String monthYear)
+			throws IOException {
+		return new BufferedInputStream(new FileInputStream(getFile(stationId,
+				monthYear)));
+	}
+
+	@Override
+	public String describe(String stationId, String monthYear) {
+		return getFile(stationId, monthYear).getPath();
+	}
+
+	private File getFile(String stationId, String monthYear) {
+		return new File(directory, stationId + "." + monthYear
+				+ MONTHLY_FILE_EXTENSION);
+	}
+
+}
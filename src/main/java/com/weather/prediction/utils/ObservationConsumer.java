@@ -0,0 +1,48 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+package com.weather.prediction.utils;
+
+/**
+ * Interface of the receivers of typed observations. Observations are pushed
+ * to the consumer as soon as they are tokenized from a monthly file, so no
+ * intermediate copy of the history is kept. Months are tokenized on several
+ * download threads, so implementations must be thread safe.
+ *
+ * @author Irene Mathew
+ *
+ */
+import com.weather.prediction.bean.Station;
+
+public interface ObservationConsumer {
+
+	/**
+	 * This function receives a single observation.
+	 *
+	 * @param station
+	 *            station at which the observation was made
+	 * @param year
+	 *            year of the observation
+	 * @param month
+	 *            month of the observation, 1 for January
+	 * @param day
+	 *            day of the month of the observation
+	 * @param time
+	 *            forecast time of the observation in the format HH:mm:ss'Z'
+	 * @param temp
+	 *            temperature
+	 * @param humidity
+	 *            humidity
+	 * @param pressure
+	 *            pressure
+	 */
+	void addObservation(Station station, int year, int month, int day,
+			String time, float temp, float humidity, float pressure);
+
+}
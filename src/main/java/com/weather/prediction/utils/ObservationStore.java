@@ -0,0 +1,299 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+package com.weather.prediction.utils;
+
+/**
+ * Class which keeps the observations of many stations outside of the Java
+ * heap. Every station has a series of direct memory columns laid out as in
+ * the binary archive: temperature, humidity and pressure at 9am and 3pm with
+ * one float per day, followed by one byte per day marking the observed
+ * forecast times. A record costs 25 bytes per day instead of two beans with
+ * their own strings and dates, and the garbage collector never scans it.
+ * Station details are kept once per location and shared by every series and
+ * caller as a flyweight.
+ *
+ * Observations may be added from several download threads. Views are meant to
+ * be read once the observations of interest have been added.
+ *
+ * @author Irene Mathew
+ *
+ */
+import static com.weather.prediction.constants.WeatherConstants.MORNING_FORECAST_TIMESTAMP;
+import static com.weather.prediction.constants.WeatherConstants.MORNING_SLOT;
+import static com.weather.prediction.constants.WeatherConstants.NOON_FORECAST_TIMESTAMP;
+import static com.weather.prediction.constants.WeatherConstants.NOON_SLOT;
+import static com.weather.prediction.utils.BinaryArchiveWriter.COLUMN_COUNT;
+import static com.weather.prediction.utils.BinaryArchiveWriter.FIELDS_PER_SLOT;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.weather.prediction.bean.Station;
+
+public class ObservationStore implements ObservationConsumer {
+	private static final int BYTES_PER_DAY = COLUMN_COUNT * 4 + 1;
+
+	private final int initialDayCapacity;
+	private final Map<String, Station> stations = new LinkedHashMap<String, Station>();
+	private final Map<String, StationSeries> stationSeries = new HashMap<String, StationSeries>();
+
+	/**
+	 * @param initialDayCapacity
+	 *            number of days for which memory is reserved when the first
+	 *            observation of a station is added
+	 */
+	public ObservationStore(int initialDayCapacity) {
+		this.initialDayCapacity = Math.max(1, initialDayCapacity);
+	}
+
+	/**
+	 * This function registers a station, keeping the first instance seen for
+	 * each location.
+	 *
+	 * @param station
+	 *            station details
+	 * @return shared instance of the station details of the location
+	 */
+	public synchronized Station registerStation(Station station) {
+		Station shared = stations.get(station.getLocation());
+		if (shared == null) {
+			shared = station;
+			stations.put(station.getLocation(), station);
+		}
+		return shared;
+	}
+
+	/**
+	 * This function adds an observation at one of the forecast times.
+	 * Observations at other times are ignored.
+	 */
+	@Override
+	public void addObservation(Station station, int year, int month, int day,
+			String time, float temp, float humidity, float pressure) {
+		int slot;
+		if (MORNING_FORECAST_TIMESTAMP.equals(time))
+			slot = MORNING_SLOT;
+		else if (NOON_FORECAST_TIMESTAMP.equals(time))
+			slot = NOON_SLOT;
+		else
+			return;
+		putObservation(station, WeatherUtils.toEpochDay(year, month, day),
+				slot, temp, humidity, pressure);
+	}
+
+	/**
+	 * This function stores an observation, replacing any observation of the
+	 * same station, day and forecast time.
+	 *
+	 * @param station
+	 *            station at which the observation was made
+	 * @param epochDay
+	 *            epoch day of the observation
+	 * @param slot
+	 *            forecast time, MORNING_SLOT or NOON_SLOT
+	 * @param temp
+	 *            temperature
+	 * @param humidity
+	 *            humidity
+	 * @param pressure
+	 *            pressure
+	 */
+	public synchronized void putObservation(Station station, int epochDay,
+			int slot, float temp, float humidity, float pressure) {
+		Station shared = registerStation(station);
+		StationSeries series = stationSeries.get(shared.getLocation());
+		if (series == null) {
+			series = new StationSeries(shared, epochDay, initialDayCapacity);
+			stationSeries.put(shared.getLocation(), series);
+		}
+		series.put(epochDay, slot, temp, humidity, pressure);
+	}
+
+	/**
+	 * This function stores every observation of a view, replacing any
+	 * observation of the same station, day and forecast time.
+	 *
+	 * @param station
+	 *            station at which the observations were made
+	 * @param view
+	 *            observations to store
+	 */
+	public synchronized void putAll(Station station, ObservationView view) {
+		for (int epochDay = view.getFirstEpochDay(); epochDay <= view
+				.getLastEpochDay(); epochDay++) {
+			for (int slot = MORNING_SLOT; slot <= NOON_SLOT; slot++) {
+				if (view.hasObservation(epochDay, slot))
+					putObservation(station, epochDay, slot,
+							view.getTemp(epochDay, slot),
+							view.getHumidity(epochDay, slot),
+							view.getPressure(epochDay, slot));
+			}
+		}
+	}
+
+	/**
+	 * @return shared station details of a location, or null if unknown
+	 */
+	public synchronized Station getStation(String location) {
+		return stations.get(location);
+	}
+
+	/**
+	 * @return shared station details of every location, in registration order
+	 */
+	public synchronized List<Station> getStations() {
+		return new ArrayList<Station>(stations.values());
+	}
+
+	/**
+	 * @return view of the observations of a location, or null if nothing was
+	 *         observed at the location
+	 */
+	public synchronized ObservationView getView(String location) {
+		return stationSeries.get(location);
+	}
+
+	/**
+	 * @return number of bytes of direct memory reserved by the store
+	 */
+	public synchronized long getOffHeapBytes() {
+		long bytes = 0;
+		for (StationSeries series : stationSeries.values()) {
+			bytes += series.buffer.capacity();
+		}
+		return bytes;
+	}
+
+	/**
+	 * Class for the observation columns of a single station.
+	 */
+	private static class StationSeries implements ObservationView {
+		private final Station station;
+		private ByteBuffer buffer;
+		private int firstEpochDay;
+		private int capacity;
+		private int lastEpochDay;
+
+		StationSeries(Station station, int epochDay, int capacity) {
+			this.station = station;
+			this.firstEpochDay = epochDay;
+			this.lastEpochDay = epochDay - 1;
+			this.capacity = capacity;
+			this.buffer = allocate(capacity);
+		}
+
+		private static ByteBuffer allocate(int capacity) {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(capacity
+					* BYTES_PER_DAY);
+			for (int index = 0; index < COLUMN_COUNT * capacity; index++) {
+				buffer.putFloat(index * 4, Float.NaN);
+			}
+			return buffer;
+		}
+
+		void put(int epochDay, int slot, float temp, float humidity,
+				float pressure) {
+			if (epochDay < firstEpochDay
+					|| epochDay >= firstEpochDay + capacity)
+				grow(epochDay);
+			int day = epochDay - firstEpochDay;
+			buffer.putFloat(offset(slot * FIELDS_PER_SLOT, day), temp);
+			buffer.putFloat(offset(slot * FIELDS_PER_SLOT + 1, day), humidity);
+			buffer.putFloat(offset(slot * FIELDS_PER_SLOT + 2, day), pressure);
+			int slotsOffset = COLUMN_COUNT * capacity * 4 + day;
+			buffer.put(slotsOffset, (byte) (buffer.get(slotsOffset) | 1 << slot));
+			lastEpochDay = Math.max(lastEpochDay, epochDay);
+		}
+
+		/**
+		 * This function at least doubles the days held, keeping the new free
+		 * days on the side on which the series grows.
+		 */
+		private void grow(int epochDay) {
+			int lastHeldDay = firstEpochDay + capacity - 1;
+			int span = Math.max(lastHeldDay, epochDay)
+					- Math.min(firstEpochDay, epochDay) + 1;
+			int newCapacity = Math.max(capacity * 2, span);
+			int newFirstEpochDay = epochDay < firstEpochDay ? lastHeldDay
+					- newCapacity + 1 : firstEpochDay;
+			ByteBuffer newBuffer = allocate(newCapacity);
+			int shift = firstEpochDay - newFirstEpochDay;
+			for (int column = 0; column < COLUMN_COUNT; column++) {
+				for (int day = 0; day < capacity; day++) {
+					newBuffer.putFloat((column * newCapacity + shift + day) * 4,
+							buffer.getFloat(offset(column, day)));
+				}
+			}
+			for (int day = 0; day < capacity; day++) {
+				newBuffer.put(COLUMN_COUNT * newCapacity * 4 + shift + day,
+						buffer.get(COLUMN_COUNT * capacity * 4 + day));
+			}
+			buffer = newBuffer;
+			capacity = newCapacity;
+			firstEpochDay = newFirstEpochDay;
+		}
+
+		private int offset(int column, int day) {
+			return (column * capacity + day) * 4;
+		}
+
+		@Override
+		public int getFirstEpochDay() {
+			return firstEpochDay;
+		}
+
+		@Override
+		public int getLastEpochDay() {
+			return lastEpochDay;
+		}
+
+		@Override
+		public boolean hasObservation(int epochDay, int slot) {
+			int day = epochDay - firstEpochDay;
+			if (day < 0 || day >= capacity)
+				return false;
+			return (buffer.get(COLUMN_COUNT * capacity * 4 + day) & (1 << slot)) != 0;
+		}
+
+		@Override
+		public float getTemp(int epochDay, int slot) {
+			return getValue(epochDay, slot * FIELDS_PER_SLOT);
+		}
+
+		@Override
+		public float getHumidity(int epochDay, int slot) {
+			return getValue(epochDay, slot * FIELDS_PER_SLOT + 1);
+		}
+
+		@Override
+		public float getPressure(int epochDay, int slot) {
+			return getValue(epochDay, slot * FIELDS_PER_SLOT + 2);
+		}
+
+		private float getValue(int epochDay, int column) {
+			int day = epochDay - firstEpochDay;
+			if (day < 0 || day >= capacity)
+				return Float.NaN;
+			return buffer.getFloat(offset(column, day));
+		}
+
+		@Override
+		public String toString() {
+			return station.getLocation() + " "
+					+ WeatherUtils.epochDayToString(firstEpochDay) + ".."
+					+ WeatherUtils.epochDayToString(lastEpochDay);
+		}
+	}
+
+}
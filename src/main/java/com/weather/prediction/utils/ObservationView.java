@@ -0,0 +1,60 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+package com.weather.prediction.utils;
+
+/**
+ * Interface for reading the observations of a single station by epoch day and
+ * forecast time without creating a bean per record. It is implemented by the
+ * weather archive, the binary archive and the off-heap observation store, so
+ * the prediction algorithm reads any of them in the same way.
+ *
+ * @author Irene Mathew
+ *
+ */
+public interface ObservationView {
+
+	/**
+	 * @return epoch day of the first day which may hold observations
+	 */
+	int getFirstEpochDay();
+
+	/**
+	 * @return epoch day of the last day which may hold observations
+	 */
+	int getLastEpochDay();
+
+	/**
+	 * This function checks whether an observation was made on a day at a
+	 * forecast time.
+	 *
+	 * @param epochDay
+	 *            epoch day of the observation
+	 * @param slot
+	 *            forecast time, MORNING_SLOT or NOON_SLOT
+	 * @return true if the observation is available
+	 */
+	boolean hasObservation(int epochDay, int slot);
+
+	/**
+	 * @return temperature of a day at a forecast time, NaN if not observed
+	 */
+	float getTemp(int epochDay, int slot);
+
+	/**
+	 * @return humidity of a day at a forecast time, NaN if not observed
+	 */
+	float getHumidity(int epochDay, int slot);
+
+	/**
+	 * @return pressure of a day at a forecast time, NaN if not observed
+	 */
+	float getPressure(int epochDay, int slot);
+
+}
@@ -0,0 +1,364 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+package com.weather.prediction.utils;
+
+/**
+ * Class which runs an in-process HTTP server replaying captured monthly
+ * station files in place of the real time API. Every response can be delayed
+ * by a fixed latency and sent at a limited rate, so that ingestion can be
+ * measured and load tested without the network. The last path segment of a
+ * request is the name of the file served, so the API URL template can be used
+ * as it is against {@link #getUrlTemplate()}. Responses carry an entity tag
+ * and answer conditional requests, are gzip compressed on request if enabled,
+ * and faults can be injected to test how clients handle failures. Run on its
+ * own, it replays a directory of captured files to the bulk ingestion
+ * scheduler and reports the throughput.
+ *
+ * @author Irene Mathew
+ *
+ */
+import static com.weather.prediction.constants.WeatherConstants.BULK_BURST_PER_HOST;
+import static com.weather.prediction.constants.WeatherConstants.BULK_MAX_CONCURRENCY;
+import static com.weather.prediction.constants.WeatherConstants.BULK_REQUESTS_PER_SECOND_PER_HOST;
+import static com.weather.prediction.constants.WeatherConstants.MONTHLY_FILE_EXTENSION;
+import static com.weather.prediction.constants.WeatherConstants.STORE_INITIAL_DAYS;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.log4j.Logger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.weather.prediction.bean.Station;
+import com.weather.prediction.exception.WeatherException;
+
+public class ReplayHttpServer {
+	/**
+	 * Faults which can be injected into responses.
+	 */
+	public enum Fault {
+		/** answers with status 503 */
+		SERVER_ERROR,
+		/** waits for the stall time before answering */
+		STALL,
+		/** sends only half of the body and closes the connection */
+		TRUNCATE
+	}
+
+	private static final int CHUNK_SIZE = 1024;
+	private static final String URL_PATH = "/climate/dwo/#MONYR#/text/#STATIONID#.#MONYR#.csv";
+
+	private final File directory;
+	private final long latencyMillis;
+	private final long bytesPerSecond;
+	private final AtomicInteger requestCount = new AtomicInteger();
+	private final AtomicInteger pendingFaults = new AtomicInteger();
+	private volatile Fault fault;
+	private volatile long stallMillis;
+	private volatile boolean compression;
+	private HttpServer server;
+	private ExecutorService executor;
+
+	private Logger logger = Logger.getLogger(ReplayHttpServer.class);
+
+	/**
+	 * @param directory
+	 *            directory of captured monthly files
+	 * @param latencyMillis
+	 *            delay before every response is sent
+	 * @param bytesPerSecond
+	 *            rate at which every response body is sent, 0 for no limit
+	 */
+	public ReplayHttpServer(File directory, long latencyMillis,
+			long bytesPerSecond) {
+		this.directory = directory;
+		this.latencyMillis = latencyMillis;
+		this.bytesPerSecond = bytesPerSecond;
+	}
+
+	/**
+	 * This function replays a directory of captured monthly files and
+	 * reports the throughput of ingesting them.
+	 *
+	 * @param args
+	 *            [0] directory of captured monthly files
+	 * @param args
+	 *            [1] delay before every response in milliseconds, 0 by
+	 *            default
+	 * @param args
+	 *            [2] rate at which every response body is sent in bytes per
+	 *            second, 0 for no limit by default
+	 * @param args
+	 *            [3] rate of requests sent to the server per second,
+	 *            BULK_REQUESTS_PER_SECOND_PER_HOST by default
+	 */
+	public static void main(String[] args) {
+		try {
+			replayArchive(new File(args[0]),
+					args.length > 1 ? Long.parseLong(args[1]) : 0,
+					args.length > 2 ? Long.parseLong(args[2]) : 0,
+					args.length > 3 ? Double.parseDouble(args[3])
+							: BULK_REQUESTS_PER_SECOND_PER_HOST);
+		} catch (Exception e) {
+			Logger.getLogger(ReplayHttpServer.class).error(e);
+		}
+	}
+
+	/**
+	 * This function ingests every captured month of the stations of the
+	 * lookup file found in a directory, through a replay server on the
+	 * directory, with the bulk ingestion scheduler. The files are named
+	 * after the station ID and the month, as in the API. The number of
+	 * requests, the wall time and the requests per second of the ingestion
+	 * are logged.
+	 *
+	 * @param directory
+	 *            directory of captured monthly files
+	 * @param latencyMillis
+	 *            delay before every response is sent
+	 * @param bytesPerSecond
+	 *            rate at which every response body is sent, 0 for no limit
+	 * @param requestsPerSecond
+	 *            average rate of requests sent to the server
+	 * @return locations whose months were all read
+	 * @throws IOException
+	 *             is thrown when the directory or the lookup file cannot be
+	 *             read, or the server cannot be started
+	 * @throws WeatherException
+	 *             is thrown when the ingestion is interrupted
+	 */
+	public static List<String> replayArchive(File directory,
+			long latencyMillis, long bytesPerSecond, double requestsPerSecond)
+			throws IOException, WeatherException {
+		File[] files = directory.listFiles();
+		if (files == null)
+			throw new IOException("Directory " + directory
+					+ " cannot be read");
+		Set<String> stationIds = new TreeSet<String>();
+		Set<String> months = new TreeSet<String>();
+		for (File file : files) {
+			String[] parts = file.getName().split("\\.");
+			if (parts.length == 3
+					&& file.getName().endsWith(MONTHLY_FILE_EXTENSION)) {
+				stationIds.add(parts[0]);
+				months.add(parts[1]);
+			}
+		}
+		List<Station> stations = new ArrayList<Station>();
+		for (Station station : WeatherHistoryDownloader.getStationCatalog()) {
+			if (stationIds.contains(station.getStationId()))
+				stations.add(station);
+		}
+		ReplayHttpServer server = new ReplayHttpServer(directory,
+				latencyMillis, bytesPerSecond);
+		server.start(BULK_MAX_CONCURRENCY);
+		try {
+			BulkIngestionScheduler scheduler = new BulkIngestionScheduler(
+					new HttpHistorySource(server.getUrlTemplate(), null),
+					BULK_MAX_CONCURRENCY, requestsPerSecond,
+					BULK_BURST_PER_HOST);
+			long startTime = System.nanoTime();
+			List<String> locations = scheduler.ingest(stations,
+					new ArrayList<String>(months), new ObservationStore(
+							STORE_INITIAL_DAYS));
+			long wallMillis = Math.max(1,
+					(System.nanoTime() - startTime) / 1000000);
+			Logger.getLogger(ReplayHttpServer.class).info(
+					"Replayed " + server.getRequestCount() + " requests for "
+							+ locations.size() + " of " + stations.size()
+							+ " locations in " + wallMillis + " ms, "
+							+ server.getRequestCount() * 1000L / wallMillis
+							+ " requests per second");
+			return locations;
+		} finally {
+			server.stop();
+		}
+	}
+
+	/**
+	 * This function starts the server on a free port of the loopback
+	 * interface.
+	 *
+	 * @param threadCount
+	 *            number of requests served at the same time
+	 * @throws IOException
+	 *             is thrown when the server cannot be started
+	 */
+	public void start(int threadCount) throws IOException {
+		server = HttpServer.create(new InetSocketAddress(
+				InetAddress.getLoopbackAddress(), 0), 0);
+		executor = Executors.newFixedThreadPool(threadCount);
+		server.setExecutor(executor);
+		server.createContext("/", exchange -> replay(exchange));
+		server.start();
+		logger.info("Replay server started at " + getUrlTemplate());
+	}
+
+	/**
+	 * This function stops the server.
+	 */
+	public void stop() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	/**
+	 * This function gives the URL template, in the same form as the API base
+	 * URL, under which the captured files are served.
+	 *
+	 * @return URL template for the HTTP history source
+	 */
+	public String getUrlTemplate() {
+		return "http://" + server.getAddress().getHostString() + ":"
+				+ server.getAddress().getPort() + URL_PATH;
+	}
+
+	/**
+	 * @return number of requests received since the server was started
+	 */
+	public int getRequestCount() {
+		return requestCount.get();
+	}
+
+	/**
+	 * This function makes the next requests fail with the given fault.
+	 *
+	 * @param fault
+	 *            fault to inject
+	 * @param count
+	 *            number of requests which fail
+	 * @param stallMillis
+	 *            time a stalled response waits before it is answered
+	 */
+	public void injectFaults(Fault fault, int count, long stallMillis) {
+		this.fault = fault;
+		this.stallMillis = stallMillis;
+		this.pendingFaults.set(count);
+	}
+
+	/**
+	 * This function enables gzip compression of responses for clients which
+	 * accept it.
+	 */
+	public void setCompression(boolean compression) {
+		this.compression = compression;
+	}
+
+	/**
+	 * This function gives the response of a request.
+	 *
+	 * @param exchange
+	 *            request and response
+	 * @throws IOException
+	 *             is thrown when the response cannot be sent
+	 */
+	protected void replay(HttpExchange exchange) throws IOException {
+		requestCount.incrementAndGet();
+		try {
+			String path = exchange.getRequestURI().getPath();
+			File file = new File(directory,
+					path.substring(path.lastIndexOf('/') + 1));
+			sleep(latencyMillis);
+			if (!file.getName().endsWith(MONTHLY_FILE_EXTENSION)
+					|| !file.isFile()) {
+				exchange.sendResponseHeaders(404, -1);
+				return;
+			}
+			byte[] body = Files.readAllBytes(file.toPath());
+			Fault currentFault = pendingFaults.getAndDecrement() > 0 ? fault
+					: null;
+			if (currentFault == Fault.SERVER_ERROR) {
+				exchange.sendResponseHeaders(503, -1);
+				return;
+			}
+			if (currentFault == Fault.STALL)
+				sleep(stallMillis);
+			if (currentFault == Fault.TRUNCATE) {
+				exchange.sendResponseHeaders(200, body.length);
+				exchange.getResponseBody().write(body, 0, body.length / 2);
+				exchange.getResponseBody().flush();
+				return;
+			}
+			String eTag = "\"" + file.length() + "-" + file.lastModified()
+					+ "\"";
+			exchange.getResponseHeaders().set("ETag", eTag);
+			if (eTag.equals(exchange.getRequestHeaders().getFirst(
+					"If-None-Match"))) {
+				exchange.sendResponseHeaders(304, -1);
+				return;
+			}
+			sendBody(exchange, body);
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * This function sends a successful response at the configured rate.
+	 *
+	 * @param exchange
+	 *            request and response
+	 * @param body
+	 *            response body
+	 * @throws IOException
+	 *             is thrown when the response cannot be sent
+	 */
+	protected void sendBody(HttpExchange exchange, byte[] body)
+			throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", "text/csv");
+		String acceptEncoding = exchange.getRequestHeaders().getFirst(
+				"Accept-Encoding");
+		if (compression && acceptEncoding != null
+				&& acceptEncoding.contains("gzip")) {
+			ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+			GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+			gzip.write(body);
+			gzip.close();
+			body = compressed.toByteArray();
+			exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+		}
+		exchange.sendResponseHeaders(200, body.length);
+		OutputStream out = exchange.getResponseBody();
+		for (int offset = 0; offset < body.length; offset += CHUNK_SIZE) {
+			int length = Math.min(CHUNK_SIZE, body.length - offset);
+			out.write(body, offset, length);
+			if (bytesPerSecond > 0) {
+				out.flush();
+				sleep(length * 1000L / bytesPerSecond);
+			}
+		}
+		out.close();
+	}
+
+	protected void sleep(long millis) {
+		if (millis <= 0)
+			return;
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
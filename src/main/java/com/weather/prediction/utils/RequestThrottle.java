@@ -0,0 +1,34 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+package com.weather.prediction.utils;
+
+/**
+ * Interface of the limits on requests sent over the network. A permit is
+ * taken before every attempt of a request, retries included, and never for a
+ * file which is served without a network call.
+ *
+ * @author Irene Mathew
+ *
+ */
+import java.io.InterruptedIOException;
+
+public interface RequestThrottle {
+
+	/**
+	 * This function waits until a request to the given URL may be sent.
+	 *
+	 * @param urlPath
+	 *            URL about to be requested
+	 * @throws InterruptedIOException
+	 *             is thrown when the thread is interrupted while waiting
+	 */
+	void acquire(String urlPath) throws InterruptedIOException;
+
+}
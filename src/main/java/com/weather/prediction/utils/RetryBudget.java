@@ -0,0 +1,91 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+package com.weather.prediction.utils;
+
+/**
+ * Class which limits the total number of retries made during a run, across
+ * all requests and threads. Once the budget is used up failures are reported
+ * straight away instead of being retried, which keeps the run time bounded
+ * when the API is down. A budget of a long running process may refill itself
+ * once per period, so an outage uses up only the retries of that period.
+ *
+ * @author Irene Mathew
+ *
+ */
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class RetryBudget {
+	private final int maxRetries;
+	private final long refillMillis;
+	private final AtomicInteger remainingRetries;
+	private final AtomicLong lastRefillMillis;
+
+	/**
+	 * @param maxRetries
+	 *            number of retries of the run
+	 */
+	public RetryBudget(int maxRetries) {
+		this(maxRetries, 0);
+	}
+
+	/**
+	 * @param maxRetries
+	 *            number of retries of a period
+	 * @param refillMillis
+	 *            length of the period after which the budget is full again, 0
+	 *            for a budget which is never refilled
+	 */
+	public RetryBudget(int maxRetries, long refillMillis) {
+		this.maxRetries = maxRetries;
+		this.refillMillis = refillMillis;
+		this.remainingRetries = new AtomicInteger(maxRetries);
+		this.lastRefillMillis = new AtomicLong(System.currentTimeMillis());
+	}
+
+	/**
+	 * This function takes one retry from the budget if any is left.
+	 *
+	 * @return true if a retry may be made
+	 */
+	public boolean tryAcquire() {
+		refill();
+		while (true) {
+			int remaining = remainingRetries.get();
+			if (remaining <= 0)
+				return false;
+			if (remainingRetries.compareAndSet(remaining, remaining - 1))
+				return true;
+		}
+	}
+
+	/**
+	 * @return number of retries left in the budget
+	 */
+	public int getRemainingRetries() {
+		refill();
+		return Math.max(0, remainingRetries.get());
+	}
+
+	/**
+	 * This function fills the budget again once its period has passed. Only
+	 * the thread which moves the start of the period refills it.
+	 */
+	private void refill() {
+		if (refillMillis <= 0)
+			return;
+		long lastRefill = lastRefillMillis.get();
+		long now = System.currentTimeMillis();
+		if (now - lastRefill >= refillMillis
+				&& lastRefillMillis.compareAndSet(lastRefill, now))
+			remainingRetries.set(maxRetries);
+	}
+
+}
@@ -0,0 +1,81 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+package com.weather.prediction.utils;
+
+/**
+ * Class which limits the rate of requests sent to a host. Tokens are added at
+ * a fixed rate up to the capacity of the bucket and every request takes one,
+ * so short bursts up to the capacity are allowed while the average rate never
+ * exceeds the configured one.
+ *
+ * @author Irene Mathew
+ *
+ */
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+public class TokenBucket {
+	private final double tokensPerNano;
+	private final double capacity;
+	private double tokens;
+	private long lastRefillNanos;
+
+	/**
+	 * @param tokensPerSecond
+	 *            rate at which tokens are added
+	 * @param capacity
+	 *            maximum number of tokens kept, which is the largest burst
+	 */
+	public TokenBucket(double tokensPerSecond, int capacity) {
+		this.tokensPerNano = tokensPerSecond / TimeUnit.SECONDS.toNanos(1);
+		this.capacity = capacity;
+		this.tokens = capacity;
+		this.lastRefillNanos = System.nanoTime();
+	}
+
+	/**
+	 * This function takes one token from the bucket, waiting until one is
+	 * available.
+	 *
+	 * @throws InterruptedIOException
+	 *             is thrown when the thread is interrupted while waiting
+	 */
+	public void acquire() throws InterruptedIOException {
+		long waitNanos;
+		while ((waitNanos = tryAcquire()) > 0) {
+			try {
+				TimeUnit.NANOSECONDS.sleep(waitNanos);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException(
+						"Interrupted while waiting for the rate limit");
+			}
+		}
+	}
+
+	/**
+	 * This function takes one token from the bucket if one is available.
+	 *
+	 * @return 0 if a token was taken, otherwise the time in nanoseconds until
+	 *         the next token is available
+	 */
+	private synchronized long tryAcquire() {
+		long now = System.nanoTime();
+		tokens = Math.min(capacity, tokens + (now - lastRefillNanos)
+				* tokensPerNano);
+		lastRefillNanos = now;
+		if (tokens >= 1) {
+			tokens--;
+			return 0;
+		}
+		return Math.max(1, (long) Math.ceil((1 - tokens) / tokensPerNano));
+	}
+
+}
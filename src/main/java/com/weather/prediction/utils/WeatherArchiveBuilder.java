@@ -0,0 +1,75 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+package com.weather.prediction.utils;
+
+/**
+ * Class which builds the weather archive directly from typed observations. It
+ * is the observation consumer used when history is downloaded to an archive.
+ * Date strings and date objects are created once per day and shared by the
+ * morning and noon records of that day. Observations may be added from
+ * several download threads.
+ *
+ * @author Irene Mathew
+ *
+ */
+import static com.weather.prediction.constants.WeatherConstants.DATE_TIME_DELIMITER;
+
+import java.util.Calendar;
+import java.util.Date;
+
+import com.weather.prediction.bean.Station;
+import com.weather.prediction.bean.WeatherData;
+import com.weather.prediction.bean.WeatherDataArchive;
+
+public class WeatherArchiveBuilder implements ObservationConsumer {
+	private final WeatherDataArchive weatherDataArchive = new WeatherDataArchive();
+	private final Calendar calendar = Calendar.getInstance();
+	private int lastEpochDay = Integer.MIN_VALUE;
+	private String lastDateKey;
+	private Date lastDate;
+
+	/**
+	 * This function adds a single observation to the archive.
+	 */
+	@Override
+	public synchronized void addObservation(Station station, int year,
+			int month, int day, String time, float temp, float humidity,
+			float pressure) {
+		int epochDay = WeatherUtils.toEpochDay(year, month, day);
+		if (epochDay != lastEpochDay) {
+			lastEpochDay = epochDay;
+			lastDateKey = WeatherUtils.toDateString(year, month, day);
+			calendar.clear();
+			calendar.set(year, month - 1, day);
+			lastDate = calendar.getTime();
+		}
+		WeatherData weatherData = new WeatherData();
+		weatherData.setLocation(station.getLocation());
+		weatherData.setLat(station.getLat());
+		weatherData.setLongt(station.getLongt());
+		weatherData.setElevtn(station.getElevtn());
+		weatherData.setDateTime(lastDateKey + DATE_TIME_DELIMITER + time);
+		weatherData.setDate(lastDate);
+		weatherData.setTemp(temp);
+		weatherData.setHumidity(humidity);
+		weatherData.setPressure(pressure);
+		weatherDataArchive.add(epochDay, weatherData);
+	}
+
+	/**
+	 * This function gives the archive of all observations added so far.
+	 *
+	 * @return weather archive
+	 */
+	public synchronized WeatherDataArchive build() {
+		return weatherDataArchive;
+	}
+
+}
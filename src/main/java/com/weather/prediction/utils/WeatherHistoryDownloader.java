@@ -20,43 +20,83 @@ import static com.weather.prediction.constants.WeatherConstants.COMMA_DELIMITER;
 import static com.weather.prediction.constants.WeatherConstants.DATE_FORMAT;
 import static com.weather.prediction.constants.WeatherConstants.DATE_KEYWORD;
 import static com.weather.prediction.constants.WeatherConstants.DATE_TIME_FORMAT;
+import static com.weather.prediction.constants.WeatherConstants.DOWNLOAD_THREAD_COUNT;
 import static com.weather.prediction.constants.WeatherConstants.INPUT_DATETIME_FORMAT;
 import static com.weather.prediction.constants.WeatherConstants.LOOKUP_PATH;
-import static com.weather.prediction.constants.WeatherConstants.MONTH_URL_CONSTANT;
 import static com.weather.prediction.constants.WeatherConstants.MORNING_FORECAST_TIME;
 import static com.weather.prediction.constants.WeatherConstants.NOON_FORECAST_TIME;
-import static com.weather.prediction.constants.WeatherConstants.STATION_URL_CONSTANT;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.net.URL;
-import java.net.URLConnection;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.log4j.Logger;
 
+import com.weather.prediction.bean.Station;
+import com.weather.prediction.bean.WeatherDataArchive;
 import com.weather.prediction.exception.WeatherException;
 
 public class WeatherHistoryDownloader {
 	private String location;
+	private HistorySource historySource;
+	private HttpTransport transport;
+	/**
+	 * @deprecated records are pushed to an {@link ObservationConsumer} by
+	 *             {@link #downloadHistory(List, int, ObservationConsumer)}
+	 */
+	@Deprecated
 	public List<String> dataLines;
 
 	private Logger logger = Logger.getLogger(WeatherHistoryDownloader.class);
 
 	public WeatherHistoryDownloader(String location) {
+		this(location, HttpTransport.createDefault());
+	}
+
+	private WeatherHistoryDownloader(String location, HttpTransport transport) {
+		this(location, new HttpHistorySource(BASE_URL,
+				HistoryCache.createDefault(), transport), transport);
+	}
+
+	public WeatherHistoryDownloader(String location,
+			HistorySource historySource) {
+		this(location, historySource, HttpTransport.createDefault());
+	}
+
+	/**
+	 * @param location
+	 *            location of which the history is downloaded
+	 * @param historySource
+	 *            source of the monthly files
+	 * @param transport
+	 *            transport used for the URLs requested directly, sharing its
+	 *            retry budget across all of them
+	 */
+	public WeatherHistoryDownloader(String location,
+			HistorySource historySource, HttpTransport transport) {
 		this.location = location;
+		this.historySource = historySource;
+		this.transport = transport;
 	}
 
 	/**
 	 * This function triggers many sub functions for API URL creation and data
-	 * download based on today's date.
+	 * download based on today's date. Months are downloaded concurrently using
+	 * the default number of download threads.
 	 * 
 	 * @return historical data returned as a list of string lines
 	 * @throws IOException
@@ -66,11 +106,40 @@ public class WeatherHistoryDownloader {
 	 * @throws WeatherException
 	 *             is thrown when given input location is invalid/ API URL is
 	 *             unavailable
-	 * 
+	 * @deprecated use {@link #downloadHistoryToArchive()}, which does not
+	 *             hold the history as lines of text
 	 */
-
+	@Deprecated
 	public List<String> downloadHistoryFromAPI() throws IOException,
 			ParseException, WeatherException {
+		return downloadHistoryFromAPI(DOWNLOAD_THREAD_COUNT);
+	}
+
+	/**
+	 * This function triggers many sub functions for API URL creation and data
+	 * download based on today's date. When more than one thread is requested,
+	 * months are downloaded on a bounded pool and each month is parsed as
+	 * soon as its response has been read, while later months are still being
+	 * downloaded. The records are always merged in the order of the month
+	 * list so that the result is the same as a serial download.
+	 * 
+	 * @param threadCount
+	 *            maximum number of months downloaded at the same time, 1 for a
+	 *            serial download
+	 * @return historical data returned as a list of string lines
+	 * @throws IOException
+	 *             is thrown when look up file is not found
+	 * @throws ParseException
+	 *             is thrown when date is not correctly parsed
+	 * @throws WeatherException
+	 *             is thrown when given input location is invalid/ API URL is
+	 *             unavailable
+	 * @deprecated use {@link #downloadHistoryToArchive(int)}, which does not
+	 *             hold the history as lines of text
+	 */
+	@Deprecated
+	public List<String> downloadHistoryFromAPI(int threadCount)
+			throws IOException, ParseException, WeatherException {
 		dataLines = new ArrayList<String>();
 		logger.debug("Location:" + location);
 		String locDetails = getLocationDetailsFromLookUp();
@@ -84,15 +153,254 @@ public class WeatherHistoryDownloader {
 		String stationId = locDetailsSplit[0];
 		String coordinates = locDetailsSplit[1] + COMMA_DELIMITER
 				+ locDetailsSplit[2] + COMMA_DELIMITER + locDetailsSplit[3];
+		List<Callable<List<String>>> monthTasks = new ArrayList<Callable<List<String>>>();
 		for (String monthYear : monthList) {
-			logger.info("Started historical data download from API");
-			String urlPath = createUrl(BASE_URL, stationId, monthYear);
-			callAPIUrl(urlPath, coordinates);
-			logger.info("Completed historical data download from API");
+			monthTasks.add(() -> {
+				List<String> monthLines = new ArrayList<String>();
+				downloadMonth(stationId, monthYear, coordinates, monthLines);
+				return monthLines;
+			});
+		}
+		for (List<String> monthLines : runMonthTasks(monthTasks, threadCount)) {
+			dataLines.addAll(monthLines);
 		}
 		return dataLines;
 	}
 
+	/**
+	 * This function downloads historical data in the same way as
+	 * {@link #downloadHistoryFromAPI()} but tokenizes every month directly
+	 * from its bytes into the weather archive, without creating intermediate
+	 * lines of text.
+	 * 
+	 * @return weather archive of the location
+	 * @throws IOException
+	 *             is thrown when look up file is not found
+	 * @throws WeatherException
+	 *             is thrown when given input location is invalid/ API URL is
+	 *             unavailable
+	 */
+	public WeatherDataArchive downloadHistoryToArchive() throws IOException,
+			WeatherException {
+		return downloadHistoryToArchive(DOWNLOAD_THREAD_COUNT);
+	}
+
+	/**
+	 * This function downloads historical data in the same way as
+	 * {@link #downloadHistoryFromAPI(int)} but tokenizes every month directly
+	 * from its bytes into the weather archive, without creating intermediate
+	 * lines of text.
+	 * 
+	 * @param threadCount
+	 *            maximum number of months downloaded at the same time, 1 for a
+	 *            serial download
+	 * @return weather archive of the location
+	 * @throws IOException
+	 *             is thrown when look up file is not found
+	 * @throws WeatherException
+	 *             is thrown when given input location is invalid/ API URL is
+	 *             unavailable
+	 */
+	public WeatherDataArchive downloadHistoryToArchive(int threadCount)
+			throws IOException, WeatherException {
+		return downloadHistoryToArchive(findHistoricalDataMonths(),
+				threadCount);
+	}
+
+	/**
+	 * This function tokenizes the given months of the location from the
+	 * history source into the weather archive.
+	 * 
+	 * @param monthList
+	 *            list of months in the format yyyyMM
+	 * @param threadCount
+	 *            maximum number of months downloaded at the same time, 1 for a
+	 *            serial download
+	 * @return weather archive of the location
+	 * @throws IOException
+	 *             is thrown when look up file is not found
+	 * @throws WeatherException
+	 *             is thrown when given input location is invalid/ a month is
+	 *             unavailable
+	 */
+	public WeatherDataArchive downloadHistoryToArchive(List<String> monthList,
+			int threadCount) throws IOException, WeatherException {
+		WeatherArchiveBuilder builder = new WeatherArchiveBuilder();
+		downloadHistory(monthList, threadCount, builder);
+		return builder.build();
+	}
+
+	/**
+	 * This function tokenizes the given months of the location from the
+	 * history source and pushes every observation to the consumer as soon as
+	 * it is parsed. Nothing but the month being tokenized is held in memory,
+	 * and with more than one thread a month is consumed while the next ones
+	 * are still being downloaded.
+	 * 
+	 * @param monthList
+	 *            list of months in the format yyyyMM
+	 * @param threadCount
+	 *            maximum number of months downloaded at the same time, 1 for a
+	 *            serial download
+	 * @param consumer
+	 *            thread safe consumer to which observations are pushed
+	 * @return number of days pushed to the consumer
+	 * @throws IOException
+	 *             is thrown when look up file is not found
+	 * @throws WeatherException
+	 *             is thrown when given input location is invalid/ a month is
+	 *             unavailable
+	 */
+	public int downloadHistory(List<String> monthList, int threadCount,
+			ObservationConsumer consumer) throws IOException,
+			WeatherException {
+		logger.debug("Location:" + location);
+		Station station = getStationFromLookUp();
+		if (station == null)
+			throw new WeatherException(
+					"Given input location is not valid. Please enter any one of these locations:{CANBERRA,SYDNEY,MELBOURNE,BRISBANE,PERTH,ADELAIDE,HOBART,DARWIN,GOLDCOAST}");
+		logger.debug("Number of months for historical download: "
+				+ monthList.size());
+		int todayEpochDay = WeatherUtils.getTodayEpochDay();
+		List<Callable<Integer>> monthTasks = new ArrayList<Callable<Integer>>();
+		for (String monthYear : monthList) {
+			monthTasks.add(() -> tokenizeMonth(station, monthYear,
+					todayEpochDay, consumer));
+		}
+		int dayCount = 0;
+		for (int monthDays : runMonthTasks(monthTasks, threadCount)) {
+			dayCount += monthDays;
+		}
+		return dayCount;
+	}
+
+	/**
+	 * This function gets the station details of the given location from the
+	 * lookup file.
+	 * 
+	 * @return station details or null if the location is not in the lookup
+	 *         file
+	 * @throws IOException
+	 *             is thrown when look up file is not found
+	 */
+	public Station getStationFromLookUp() throws IOException {
+		String locDetails = getLocationDetailsFromLookUp();
+		if (locDetails == null)
+			return null;
+		return createStation(location, locDetails);
+	}
+
+	/**
+	 * This function gets the station details of every location in the lookup
+	 * file.
+	 * 
+	 * @return stations sorted by location name
+	 * @throws IOException
+	 *             is thrown when look up file is not found
+	 */
+	public static List<Station> getStationCatalog() throws IOException {
+		Properties prop = new Properties();
+		try (InputStream stream = WeatherHistoryDownloader.class
+				.getResourceAsStream(LOOKUP_PATH)) {
+			prop.load(stream);
+		}
+		List<String> locations = new ArrayList<String>(
+				prop.stringPropertyNames());
+		Collections.sort(locations);
+		List<Station> stations = new ArrayList<Station>();
+		for (String location : locations) {
+			stations.add(createStation(location, prop.getProperty(location)));
+		}
+		return stations;
+	}
+
+	private static Station createStation(String location, String locDetails) {
+		String locDetailsSplit[] = locDetails.split(COMMA_DELIMITER, -1);
+		Station station = new Station();
+		station.setLocation(location);
+		station.setStationId(locDetailsSplit[0]);
+		station.setLat(locDetailsSplit[1]);
+		station.setLongt(locDetailsSplit[2]);
+		station.setElevtn(locDetailsSplit[3]);
+		return station;
+	}
+
+	/**
+	 * This function runs the download task of every month. When more than one
+	 * thread is requested the tasks run on a bounded pool, otherwise one after
+	 * another in the calling thread. Results are always returned in the order
+	 * of the given tasks.
+	 * 
+	 * @param monthTasks
+	 *            download task of each month
+	 * @param threadCount
+	 *            maximum number of months downloaded at the same time
+	 * @return result of each task in task order
+	 * @throws WeatherException
+	 *             is thrown when any of the months could not be downloaded
+	 */
+	private <T> List<T> runMonthTasks(List<Callable<T>> monthTasks,
+			int threadCount) throws WeatherException {
+		List<T> results = new ArrayList<T>();
+		if (threadCount <= 1 || monthTasks.size() <= 1) {
+			for (Callable<T> monthTask : monthTasks) {
+				logger.info("Started historical data download from API");
+				try {
+					results.add(monthTask.call());
+				} catch (WeatherException e) {
+					throw e;
+				} catch (Exception e) {
+					throw new WeatherException(e,
+							"Historical data download failed");
+				}
+				logger.info("Completed historical data download from API");
+			}
+			return results;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(
+				threadCount, monthTasks.size()));
+		try {
+			List<Future<T>> monthFutures = new ArrayList<Future<T>>();
+			for (Callable<T> monthTask : monthTasks) {
+				monthFutures.add(executor.submit(monthTask));
+			}
+			logger.info("Started concurrent historical data download from API");
+			for (Future<T> monthFuture : monthFutures) {
+				results.add(getMonthResult(monthFuture));
+			}
+			logger.info("Completed concurrent historical data download from API");
+			return results;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * This function waits for the download of a single month and unwraps the
+	 * failure of the download task, if any.
+	 * 
+	 * @param monthFuture
+	 *            pending download of a month
+	 * @return result of the month
+	 * @throws WeatherException
+	 *             is thrown when the month could not be downloaded
+	 */
+	private <T> T getMonthResult(Future<T> monthFuture)
+			throws WeatherException {
+		try {
+			return monthFuture.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new WeatherException(e,
+					"Historical data download was interrupted");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof WeatherException)
+				throw (WeatherException) e.getCause();
+			throw new WeatherException(e.getCause(),
+					"Historical data download failed");
+		}
+	}
+
 	/**
 	 * This function gets stationId, coordinates and altitude from lookup file
 	 * for the given location .
@@ -168,8 +476,7 @@ public class WeatherHistoryDownloader {
 	 */
 
 	public String createUrl(String baseUrl, String stationId, String monthYear) {
-		baseUrl = baseUrl.replaceAll(STATION_URL_CONSTANT, stationId);
-		baseUrl = baseUrl.replaceAll(MONTH_URL_CONSTANT, monthYear);
+		baseUrl = HttpHistorySource.createUrl(baseUrl, stationId, monthYear);
 		logger.debug("API URL to hit: " + baseUrl);
 		return baseUrl;
 	}
@@ -188,10 +495,34 @@ public class WeatherHistoryDownloader {
 	 * 
 	 * @throws WeatherException
 	 *             is thrown when API Date format is changed
+	 * @deprecated lines are tokenized by {@link BomCsvTokenizer}
 	 */
-
+	@Deprecated
 	public void callDataParser(String line, String todayDate, String coordinates)
 			throws WeatherException {
+		callDataParser(line, todayDate, coordinates, dataLines);
+	}
+
+	/**
+	 * This function parses each line in the same way as
+	 * {@link #callDataParser(String, String, String)} but adds the records to
+	 * the given list so that months can be parsed independently.
+	 * 
+	 * @param line
+	 *            each line from API
+	 * @param todayDate
+	 *            today's date
+	 * @param coordinates
+	 *            geo-coordinates of location
+	 * @param targetLines
+	 *            list to which parsed records are added
+	 * 
+	 * @throws WeatherException
+	 *             is thrown when API Date format is changed
+	 */
+	private void callDataParser(String line, String todayDate,
+			String coordinates, List<String> targetLines)
+			throws WeatherException {
 		try {
 			if (line.startsWith(COMMA_DELIMITER)) {
 				String lineSplit[] = line.split(COMMA_DELIMITER, -1);
@@ -206,12 +537,12 @@ public class WeatherHistoryDownloader {
 					String forecastNoonTimestamp = WeatherUtils.formatDate(
 							INPUT_DATETIME_FORMAT, DATE_TIME_FORMAT, (lineDate
 									+ " " + NOON_FORECAST_TIME));
-					dataLines.add(location + COMMA_DELIMITER + coordinates
+					targetLines.add(location + COMMA_DELIMITER + coordinates
 							+ COMMA_DELIMITER + forecastMorningTimestamp
 							+ COMMA_DELIMITER + lineSplit[10] + COMMA_DELIMITER
 							+ lineSplit[11] + COMMA_DELIMITER + lineSplit[15]);
 
-					dataLines.add(location + COMMA_DELIMITER + coordinates
+					targetLines.add(location + COMMA_DELIMITER + coordinates
 							+ COMMA_DELIMITER + forecastNoonTimestamp
 							+ COMMA_DELIMITER + lineSplit[16] + COMMA_DELIMITER
 							+ lineSplit[17] + COMMA_DELIMITER + lineSplit[21]);
@@ -239,24 +570,132 @@ public class WeatherHistoryDownloader {
 	 *             is thrown when date is not correctly parsed
 	 * @throws WeatherException
 	 *             is thrown when requested API URL is unavailable
+	 * @deprecated monthly files are read through the {@link HistorySource}
 	 */
+	@Deprecated
 	public void callAPIUrl(String urlPath, String coordinates)
 			throws ParseException, WeatherException {
+		callAPIUrl(urlPath, coordinates, dataLines);
+	}
+
+	/**
+	 * This function gets the records of one month of a station as lines of
+	 * text.
+	 * 
+	 * @param stationId
+	 *            station ID
+	 * @param monthYear
+	 *            month in the format yyyyMM
+	 * @param coordinates
+	 *            coordinates of the location
+	 * @param targetLines
+	 *            list to which parsed records are added
+	 * 
+	 * @throws WeatherException
+	 *             is thrown when requested API URL is unavailable
+	 */
+	private void downloadMonth(String stationId, String monthYear,
+			String coordinates, List<String> targetLines)
+			throws WeatherException {
+		String todayDate = WeatherUtils.dateToString(Calendar.getInstance()
+				.getTime(), DATE_FORMAT);
 		try {
-			URL url = new URL(urlPath);
-			Date date = Calendar.getInstance().getTime();
-			String todayDate = WeatherUtils.dateToString(date, DATE_FORMAT);
-			String line = null;
-			URLConnection urlConnection = url.openConnection();
-			InputStream in = urlConnection.getInputStream();
-			BufferedReader reader = new BufferedReader(
-					new InputStreamReader(in));
+			BufferedReader reader = new BufferedReader(new InputStreamReader(
+					historySource.openMonth(stationId, monthYear)));
+			parseLines(reader, todayDate, coordinates, targetLines);
+		} catch (IOException e) {
+			throw new WeatherException(e, "Requested API Url:"
+					+ historySource.describe(stationId, monthYear)
+					+ " is currently unavailable");
+		}
+	}
+
+	/**
+	 * This function tokenizes one month of a station directly to the
+	 * observation consumer.
+	 * 
+	 * @param station
+	 *            station details
+	 * @param monthYear
+	 *            month in the format yyyyMM
+	 * @param todayEpochDay
+	 *            epoch day of today's date
+	 * @param consumer
+	 *            consumer to which observations are pushed
+	 * @return number of days pushed to the consumer
+	 * @throws WeatherException
+	 *             is thrown when requested API URL is unavailable or its
+	 *             format has changed
+	 */
+	private int tokenizeMonth(Station station, String monthYear,
+			int todayEpochDay, ObservationConsumer consumer)
+			throws WeatherException {
+		try (InputStream in = historySource.openMonth(station.getStationId(),
+				monthYear)) {
+			return new BomCsvTokenizer().tokenize(in, todayEpochDay, station,
+					consumer);
+		} catch (IOException e) {
+			throw new WeatherException(e, "Requested API Url:"
+					+ historySource.describe(station.getStationId(), monthYear)
+					+ " is currently unavailable");
+		}
+	}
 
+	/**
+	 * This function parses every line of a monthly file.
+	 * 
+	 * @param reader
+	 *            reader of the monthly file
+	 * @param todayDate
+	 *            today's date
+	 * @param coordinates
+	 *            coordinates of the location
+	 * @param targetLines
+	 *            list to which parsed records are added
+	 * @throws IOException
+	 *             is thrown when the file cannot be read
+	 * @throws WeatherException
+	 *             is thrown when API Date format is changed
+	 */
+	private void parseLines(BufferedReader reader, String todayDate,
+			String coordinates, List<String> targetLines) throws IOException,
+			WeatherException {
+		try {
+			String line = null;
 			while ((line = reader.readLine()) != null) {
-				callDataParser(line, todayDate, coordinates);
+				callDataParser(line, todayDate, coordinates, targetLines);
 			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * This function calls API URL through the transport, which applies its
+	 * timeouts, deadline and retries, and parses every line of the response,
+	 * adding the records to the given list.
+	 * 
+	 * @param urlPath
+	 *            API URL to hit
+	 * @param coordinates
+	 *            coordinates of the location
+	 * @param targetLines
+	 *            list to which parsed records are added
+	 * 
+	 * @throws WeatherException
+	 *             is thrown when requested API URL is unavailable
+	 */
+	private void callAPIUrl(String urlPath, String coordinates,
+			List<String> targetLines) throws WeatherException {
+		try {
+			Date date = Calendar.getInstance().getTime();
+			String todayDate = WeatherUtils.dateToString(date, DATE_FORMAT);
+			byte[] body = transport.get(urlPath, null).getBody();
+			BufferedReader reader = new BufferedReader(new InputStreamReader(
+					new ByteArrayInputStream(body)));
+			parseLines(reader, todayDate, coordinates, targetLines);
 		} catch (IOException e) {
-			throw new WeatherException("Requested API Url:" + urlPath
+			throw new WeatherException(e, "Requested API Url:" + urlPath
 					+ " is currently unavailable");
 		}
 	}
@@ -21,6 +21,7 @@ import java.io.File;
 import java.math.BigDecimal;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.Calendar;
 import java.util.Date;
 
 import com.weather.prediction.exception.WeatherException;
@@ -102,6 +103,137 @@ public class WeatherUtils {
 		return outformat.format(date);
 	}
 
+	/**
+	 * This function converts a calendar date to the number of days since
+	 * 1970-01-01 without creating any date object.
+	 * 
+	 * @param year
+	 *            year of the date
+	 * @param month
+	 *            month of the date, 1 for January
+	 * @param day
+	 *            day of the month
+	 * @return epoch day of the date
+	 * 
+	 */
+	public static int toEpochDay(int year, int month, int day) {
+		int shiftedYear = month <= 2 ? year - 1 : year;
+		int era = (shiftedYear >= 0 ? shiftedYear : shiftedYear - 399) / 400;
+		int yearOfEra = shiftedYear - era * 400;
+		int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day
+				- 1;
+		int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100
+				+ dayOfYear;
+		return era * 146097 + dayOfEra - 719468;
+	}
+
+	/**
+	 * This function finds the number of days since 1970-01-01 of a date in the
+	 * format yyyy-MM-dd, where month and day may or may not be padded with
+	 * zero.
+	 * 
+	 * @param date
+	 *            date in the format yyyy-MM-dd
+	 * @return epoch day of the date
+	 * @throws ParseException
+	 *             is thrown when the date is not in the expected format
+	 * 
+	 */
+	public static int dateStringToEpochDay(String date) throws ParseException {
+		String dateSplit[] = date.split("-", -1);
+		try {
+			if (dateSplit.length == 3) {
+				int month = Integer.parseInt(dateSplit[1]);
+				int day = Integer.parseInt(dateSplit[2]);
+				if (month >= 1 && month <= 12 && day >= 1 && day <= 31)
+					return toEpochDay(Integer.parseInt(dateSplit[0]), month,
+							day);
+			}
+		} catch (NumberFormatException e) {
+			// reported below
+		}
+		throw new ParseException("Unparseable date: \"" + date + "\"", 0);
+	}
+
+	/**
+	 * This function finds the epoch day of today's date in the default time
+	 * zone.
+	 * 
+	 * @return epoch day of today
+	 * 
+	 */
+	public static int getTodayEpochDay() {
+		Calendar calendar = Calendar.getInstance();
+		return toEpochDay(calendar.get(Calendar.YEAR),
+				calendar.get(Calendar.MONTH) + 1,
+				calendar.get(Calendar.DAY_OF_MONTH));
+	}
+
+	/**
+	 * This function converts the number of days since 1970-01-01 back to a
+	 * date in the format yyyy-MM-dd.
+	 * 
+	 * @param epochDay
+	 *            epoch day of the date
+	 * @return date in the format yyyy-MM-dd
+	 * 
+	 */
+	public static String epochDayToString(int epochDay) {
+		int[] date = epochDayToYearMonthDay(epochDay);
+		return toDateString(date[0], date[1], date[2]);
+	}
+
+	/**
+	 * This function converts the number of days since 1970-01-01 back to a
+	 * calendar date.
+	 * 
+	 * @param epochDay
+	 *            epoch day of the date
+	 * @return year, month (1 for January) and day of the month of the date
+	 * 
+	 */
+	public static int[] epochDayToYearMonthDay(int epochDay) {
+		int shiftedDay = epochDay + 719468;
+		int era = (shiftedDay >= 0 ? shiftedDay : shiftedDay - 146096) / 146097;
+		int dayOfEra = shiftedDay - era * 146097;
+		int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra
+				/ 146096) / 365;
+		int dayOfYear = dayOfEra
+				- (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		int shiftedMonth = (5 * dayOfYear + 2) / 153;
+		int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+		int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+		int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+		return new int[] { year, month, day };
+	}
+
+	/**
+	 * This function formats a calendar date in the format yyyy-MM-dd.
+	 * 
+	 * @param year
+	 *            year of the date
+	 * @param month
+	 *            month of the date, 1 for January
+	 * @param day
+	 *            day of the month
+	 * @return date in the format yyyy-MM-dd
+	 * 
+	 */
+	public static String toDateString(int year, int month, int day) {
+		char[] date = new char[10];
+		date[0] = (char) ('0' + year / 1000 % 10);
+		date[1] = (char) ('0' + year / 100 % 10);
+		date[2] = (char) ('0' + year / 10 % 10);
+		date[3] = (char) ('0' + year % 10);
+		date[4] = '-';
+		date[5] = (char) ('0' + month / 10);
+		date[6] = (char) ('0' + month % 10);
+		date[7] = '-';
+		date[8] = (char) ('0' + day / 10);
+		date[9] = (char) ('0' + day % 10);
+		return new String(date);
+	}
+
 	/**
 	 * This function rounds off float values to the given decimal places
 	 * 
@@ -0,0 +1,160 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+package com.weather.prediction.logic;
+
+/**
+ * Class which runs the kernels of the algorithm with the Vector API of Java
+ * 17. A batch of windows is measured with one window in each lane of the
+ * widest double vector of the processor, so each lane adds the days of its
+ * window in the same order as the scalar kernel and gives the same sum.
+ * Daily averages are gathered as floats and subtracted in float before they
+ * are widened to double, as in the scalar kernel.
+ *
+ * @author Irene Mathew
+ *
+ */
+import static com.weather.prediction.logic.DayFeatureMatrix.FEATURES_PER_DAY;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+final class VectorForecastKernel implements ForecastKernel {
+	private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+	// floats of one window per lane, widened to DOUBLES
+	private static final VectorSpecies<Float> WINDOW_FLOATS = VectorSpecies
+			.of(float.class,
+					VectorShape.forBitSize(DOUBLES.vectorBitSize() / 2));
+	private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+
+	VectorForecastKernel() {
+		if (DOUBLES.length() < 2)
+			throw new UnsupportedOperationException("Vector of "
+					+ DOUBLES.vectorBitSize() + " bits holds a single double");
+	}
+
+	@Override
+	public double squaredDistance(DayFeatureMatrix history, int fromDay,
+			DayFeatureMatrix present, double limit) {
+		// three features a day are too few to fill a vector
+		return DayFeatureMatrix.squaredDistance(history, fromDay, present, 0,
+				present.getDays(), limit);
+	}
+
+	@Override
+	public void squaredDistances(DayFeatureMatrix history, int[] windows,
+			int count, DayFeatureMatrix present, double limit, double[] sumOut,
+			int[] offsetScratch) {
+		float[] a = history.getFeatures();
+		float[] b = present.getFeatures();
+		int length = present.getDays();
+		int lanes = DOUBLES.length();
+		for (int window = 0; window < count; window++) {
+			offsetScratch[window] = windows[window] * FEATURES_PER_DAY;
+		}
+		int window = 0;
+		for (; window + lanes <= count; window += lanes) {
+			DoubleVector sum = DoubleVector.zero(DOUBLES);
+			int j = 0;
+			for (int day = 0; day < length; day++) {
+				DoubleVector humidity = difference(a, j, offsetScratch, window,
+						b[j]);
+				DoubleVector pressure = difference(a, j + 1, offsetScratch,
+						window, b[j + 1]);
+				DoubleVector temp = difference(a, j + 2, offsetScratch, window,
+						b[j + 2]);
+				sum = sum.add(humidity.mul(humidity).add(pressure.mul(pressure))
+						.add(temp.mul(temp)));
+				// a sum above the limit only grows, so the batch stops once
+				// every window is above it
+				if (sum.compare(VectorOperators.GT, limit).allTrue())
+					break;
+				j += FEATURES_PER_DAY;
+			}
+			sum.intoArray(sumOut, window);
+		}
+		for (; window < count; window++) {
+			sumOut[window] = DayFeatureMatrix.squaredDistance(history,
+					windows[window], present, 0, length, limit);
+		}
+	}
+
+	/**
+	 * @return difference between a feature of a day of each window and the
+	 *         same feature of the present period, widened to double
+	 */
+	private static DoubleVector difference(float[] features, int offset,
+			int[] windowOffsets, int window, float present) {
+		return (DoubleVector) FloatVector
+				.fromArray(WINDOW_FLOATS, features, offset, windowOffsets,
+						window)
+				.sub(present).convertShape(VectorOperators.F2D, DOUBLES, 0);
+	}
+
+	@Override
+	public void pairedSquaredDistances(float[] first, int[] firstOffsets,
+			float[] second, int[] secondOffsets, int count, int days,
+			double[] sumOut) {
+		int lanes = DOUBLES.length();
+		int pair = 0;
+		for (; pair + lanes <= count; pair += lanes) {
+			DoubleVector sum = DoubleVector.zero(DOUBLES);
+			int j = 0;
+			for (int day = 0; day < days; day++) {
+				DoubleVector humidity = difference(first, firstOffsets,
+						second, secondOffsets, pair, j);
+				DoubleVector pressure = difference(first, firstOffsets,
+						second, secondOffsets, pair, j + 1);
+				DoubleVector temp = difference(first, firstOffsets, second,
+						secondOffsets, pair, j + 2);
+				sum = sum.add(humidity.mul(humidity).add(pressure.mul(pressure))
+						.add(temp.mul(temp)));
+				j += FEATURES_PER_DAY;
+			}
+			sum.intoArray(sumOut, pair);
+		}
+		for (; pair < count; pair++) {
+			sumOut[pair] = DayFeatureMatrix.squaredDistance(first,
+					firstOffsets[pair], second, secondOffsets[pair], days,
+					Double.MAX_VALUE);
+		}
+	}
+
+	/**
+	 * @return difference between a feature of a day of the first range of
+	 *         each pair and the same feature of its second range, widened to
+	 *         double
+	 */
+	private static DoubleVector difference(float[] first, int[] firstOffsets,
+			float[] second, int[] secondOffsets, int pair, int offset) {
+		return (DoubleVector) FloatVector
+				.fromArray(WINDOW_FLOATS, first, offset, firstOffsets, pair)
+				.sub(FloatVector.fromArray(WINDOW_FLOATS, second, offset,
+						secondOffsets, pair))
+				.convertShape(VectorOperators.F2D, DOUBLES, 0);
+	}
+
+	@Override
+	public void differences(float[] values, int count, float[] differenceOut) {
+		int lanes = FLOATS.length();
+		int index = 0;
+		for (; index + lanes < count; index += lanes) {
+			FloatVector.fromArray(FLOATS, values, index + 1)
+					.sub(FloatVector.fromArray(FLOATS, values, index))
+					.intoArray(differenceOut, index);
+		}
+		for (; index < count - 1; index++) {
+			differenceOut[index] = values[index + 1] - values[index];
+		}
+	}
+
+}
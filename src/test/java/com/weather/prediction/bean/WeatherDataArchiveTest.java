@@ -0,0 +1,49 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+/**
+ *
+ */
+package com.weather.prediction.bean;
+
+import static com.weather.prediction.constants.WeatherConstants.DATE_TIME_DELIMITER;
+import static com.weather.prediction.constants.WeatherConstants.MORNING_FORECAST_TIMESTAMP;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+import com.weather.prediction.utils.WeatherUtils;
+
+/**
+ * @author Irene Mathew
+ *
+ */
+public class WeatherDataArchiveTest {
+
+	@Test
+	public void testSetWeatherArchiveFromOwnView_Pass() {
+		WeatherDataArchive weatherDataArchive = new WeatherDataArchive();
+		for (int epochDay = 17500; epochDay < 17510; epochDay++) {
+			WeatherData weatherData = new WeatherData();
+			weatherData.setDateTime(WeatherUtils.epochDayToString(epochDay)
+					+ DATE_TIME_DELIMITER + MORNING_FORECAST_TIMESTAMP);
+			weatherData.setTemp(epochDay - 17500);
+			weatherDataArchive.put(epochDay,
+					Collections.singletonList(weatherData));
+		}
+		weatherDataArchive.setWeatherArchive(weatherDataArchive
+				.getWeatherArchive());
+		assertEquals(10, weatherDataArchive.getWeatherArchive().size());
+		assertEquals(17509, weatherDataArchive.getLatestEpochDay());
+		assertEquals(9f, weatherDataArchive.get(17509).get(0).getTemp(), 0f);
+	}
+
+}
@@ -0,0 +1,110 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+/**
+ *
+ */
+package com.weather.prediction.logic;
+
+import static com.weather.prediction.constants.WeatherConstants.MORNING_SLOT;
+import static com.weather.prediction.constants.WeatherConstants.NOON_SLOT;
+import static com.weather.prediction.logic.VariationEngine.HUMIDITY;
+import static com.weather.prediction.logic.VariationEngine.PRESSURE;
+import static com.weather.prediction.logic.VariationEngine.TEMPERATURE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.weather.prediction.bean.Station;
+import com.weather.prediction.bean.VariationVector;
+import com.weather.prediction.utils.ObservationStore;
+import com.weather.prediction.utils.ObservationView;
+import com.weather.prediction.utils.WeatherUtils;
+
+/**
+ * @author Irene Mathew
+ *
+ */
+public class BatchForecastEngineTest {
+	private ObservationStore store;
+
+	@Before
+	public void setUp() {
+		store = new ObservationStore(900);
+		Random random = new Random(23);
+		for (String location : new String[] { "CANBERRA", "SYDNEY" }) {
+			TestObservations.putRandomDays(store,
+					TestObservations.station(location), 0, 900, random);
+		}
+	}
+
+	@Test
+	public void testSameVariationAsSlidingWindow_Pass() throws Exception {
+		BatchForecastEngine engine = new BatchForecastEngine();
+		for (int issueDay = 400; issueDay < 900; issueDay += 13) {
+			engine.addJob(store.getView("CANBERRA"), issueDay);
+			engine.addJob(store.getView("SYDNEY"), issueDay);
+		}
+		engine.run();
+		for (int job = 0; job < engine.getJobCount(); job++) {
+			ObservationView view = store.getView(job % 2 == 0 ? "CANBERRA"
+					: "SYDNEY");
+			int issueDay = 400 + job / 2 * 13;
+			assertTrue(engine.hasForecast(job));
+			List<VariationVector> expected = new SlidingWindowImplementation(
+					view, issueDay - 6, 7, view, issueDay - 371, 14)
+					.implementSlidingWindow();
+			for (int slot = MORNING_SLOT; slot <= NOON_SLOT; slot++) {
+				VariationVector vector = expected.get(slot);
+				assertEquals(vector.getTemperature(),
+						engine.getVariation(job, slot, TEMPERATURE), 0f);
+				assertEquals(vector.getHumidity(),
+						engine.getVariation(job, slot, HUMIDITY), 0f);
+				assertEquals(vector.getPressure(),
+						engine.getVariation(job, slot, PRESSURE), 0f);
+				assertEquals(WeatherUtils.roundDecimalPlaces(
+						view.getTemp(issueDay, slot) + vector.getTemperature(),
+						2), engine.getForecast(job, slot, TEMPERATURE), 0f);
+			}
+			int windowDay = engine.getWindowDay(job);
+			assertTrue(windowDay >= issueDay - 371 && windowDay <= issueDay - 364);
+		}
+		assertTrue(engine.getForecastsPerSecondPerCore() > 0);
+	}
+
+	@Test
+	public void testIncompleteJobWithoutForecast_Pass() {
+		Station station = new Station();
+		station.setLocation("CANBERRA");
+		// the morning of a day of last year's period is missing
+		ObservationStore gaps = new ObservationStore(900);
+		for (int day = 0; day < 900; day++) {
+			if (day != 500)
+				gaps.putObservation(station, day, MORNING_SLOT, 20, 50, 1010);
+			gaps.putObservation(station, day, NOON_SLOT, 25, 40, 1008);
+		}
+		BatchForecastEngine engine = new BatchForecastEngine();
+		int incomplete = engine.addJob(gaps.getView("CANBERRA"), 866);
+		int complete = engine.addJob(gaps.getView("CANBERRA"), 890);
+		engine.run();
+		assertFalse(engine.hasForecast(incomplete));
+		assertTrue(Float.isNaN(engine.getForecast(incomplete, NOON_SLOT,
+				TEMPERATURE)));
+		assertTrue(engine.hasForecast(complete));
+		assertEquals(25f, engine.getForecast(complete, NOON_SLOT, TEMPERATURE),
+				0f);
+	}
+
+}
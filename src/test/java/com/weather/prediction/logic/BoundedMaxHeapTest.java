@@ -0,0 +1,96 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+/**
+ *
+ */
+package com.weather.prediction.logic;
+
+import static com.weather.prediction.constants.WeatherConstants.MORNING_SLOT;
+import static com.weather.prediction.constants.WeatherConstants.NOON_SLOT;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.weather.prediction.bean.VariationVector;
+import com.weather.prediction.utils.ObservationView;
+
+/**
+ * @author Irene Mathew
+ *
+ */
+public class BoundedMaxHeapTest {
+
+	@Test
+	public void testKeepClosestWindows_Pass() {
+		Random random = new Random(11);
+		BoundedMaxHeap heap = new BoundedMaxHeap(5);
+		List<double[]> offered = new ArrayList<double[]>();
+		for (int window = 0; window < 2000; window++) {
+			// few distinct distances, so that many windows tie
+			double distance = random.nextInt(50) / 4.0;
+			heap.offer(distance, window);
+			offered.add(new double[] { distance, window });
+		}
+		Collections.sort(offered, (first, second) -> first[0] != second[0] ? Double
+				.compare(first[0], second[0]) : Double.compare(second[1],
+				first[1]));
+		double[] distances = new double[5];
+		int[] windows = new int[5];
+		assertEquals(5, heap.drainAscending(distances, windows));
+		for (int index = 0; index < 5; index++) {
+			assertEquals(offered.get(index)[0], distances[index], 0d);
+			assertEquals((int) offered.get(index)[1], windows[index]);
+		}
+		assertEquals(0, heap.size());
+	}
+
+	@Test
+	public void testLaterWindowWinsTie_Pass() {
+		BoundedMaxHeap heap = new BoundedMaxHeap(1);
+		heap.offer(2.5, 3);
+		heap.offer(2.5, 7);
+		assertFalse(heap.offer(2.5, 5));
+		int[] windows = new int[1];
+		heap.drainAscending(new double[1], windows);
+		assertArrayEquals(new int[] { 7 }, windows);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testZeroCapacity_Fail() {
+		new BoundedMaxHeap(0);
+	}
+
+	@Test
+	public void testExactWindowTakesAllWeight_Pass() throws Exception {
+		ObservationView view = TestObservations.randomStore(28, 5).getView(
+				"CANBERRA");
+		List<VariationVector> single = new VariationCalculator(view, 21, 7,
+				view, 3, 7).findVariationFactor();
+		List<VariationVector> weighted = new VariationCalculator(view, 21, 7,
+				view, new int[] { 3, 9, 12 }, new double[] { 0, 0.5, 1.5 }, 3)
+				.findVariationFactor();
+		for (int slot = MORNING_SLOT; slot <= NOON_SLOT; slot++) {
+			assertEquals(single.get(slot).getTime(), weighted.get(slot)
+					.getTime());
+			assertEquals(single.get(slot).getTemperature(), weighted.get(slot)
+					.getTemperature(), 1e-5f);
+			assertEquals(single.get(slot).getPressure(), weighted.get(slot)
+					.getPressure(), 1e-5f);
+		}
+	}
+
+}
@@ -0,0 +1,75 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+/**
+ *
+ */
+package com.weather.prediction.logic;
+
+import static com.weather.prediction.constants.WeatherConstants.MORNING_SLOT;
+import static com.weather.prediction.constants.WeatherConstants.NOON_SLOT;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.weather.prediction.bean.Station;
+import com.weather.prediction.utils.ObservationStore;
+import com.weather.prediction.utils.ObservationView;
+
+/**
+ * @author Irene Mathew
+ *
+ */
+public class DayFeatureMatrixTest {
+
+	@Test
+	public void testSquaredDistanceSameAsMathPow_Pass() {
+		ObservationView view = TestObservations.randomStore(28, 42).getView(
+				"CANBERRA");
+		DayFeatureMatrix present = DayFeatureMatrix.of(view, 21, 7);
+		DayFeatureMatrix lastYear = DayFeatureMatrix.of(view, 0, 21);
+		for (int window = 0; window < 15; window++) {
+			double sum = 0;
+			for (int day = 0; day < 7; day++) {
+				float[] windowDay = average(view, window + day);
+				float[] presentDay = average(view, 21 + day);
+				sum += Math.pow((windowDay[0] - presentDay[0]), 2)
+						+ Math.pow((windowDay[1] - presentDay[1]), 2)
+						+ Math.pow((windowDay[2] - presentDay[2]), 2);
+			}
+			assertEquals(sum, DayFeatureMatrix.squaredDistance(lastYear,
+					window, present, 0, 7), 0d);
+		}
+	}
+
+	@Test
+	public void testCountCompleteDays_Pass() {
+		ObservationStore store = new ObservationStore(4);
+		Station station = new Station();
+		station.setLocation("CANBERRA");
+		store.putObservation(station, 100, MORNING_SLOT, 20f, 40f, 1010f);
+		store.putObservation(station, 100, NOON_SLOT, 24f, 30f, 1008f);
+		store.putObservation(station, 101, MORNING_SLOT, 21f, 41f, 1011f);
+		DayFeatureMatrix matrix = DayFeatureMatrix.of(
+				store.getView("CANBERRA"), 99, 4);
+		assertEquals(1, matrix.countCompleteDays(0, 4));
+		assertEquals(0, matrix.countCompleteDays(2, 4));
+		assertEquals(35f, matrix.getFeatures()[3], 0f);
+	}
+
+	private static float[] average(ObservationView view, int day) {
+		return new float[] {
+				(view.getHumidity(day, MORNING_SLOT) + view.getHumidity(day,
+						NOON_SLOT)) / 2,
+				(view.getPressure(day, MORNING_SLOT) + view.getPressure(day,
+						NOON_SLOT)) / 2,
+				(view.getTemp(day, MORNING_SLOT) + view.getTemp(day, NOON_SLOT)) / 2 };
+	}
+
+}
@@ -0,0 +1,31 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+/**
+ *
+ */
+package com.weather.prediction.logic;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * @author Irene Mathew
+ *
+ */
+public class ForecastKernelIT extends ForecastKernelTest {
+
+	@Test
+	public void testVectorKernelLoadedFromJar_Pass() {
+		assertEquals("VectorForecastKernel", ForecastKernels.get().getClass()
+				.getSimpleName());
+	}
+
+}
@@ -0,0 +1,98 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+/**
+ *
+ */
+package com.weather.prediction.logic;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.weather.prediction.utils.ObservationStore;
+
+/**
+ * @author Irene Mathew
+ *
+ */
+public class ForecastKernelTest {
+	private final ForecastKernel kernel = ForecastKernels.get();
+	private final ForecastKernel scalar = ForecastKernels.scalar();
+
+	@Test
+	public void testSameDistancesAsScalarKernel_Pass() {
+		ObservationStore store = TestObservations.randomStore(600, 11);
+		Random random = new Random(11);
+		DayFeatureMatrix history = DayFeatureMatrix.of(
+				store.getView("CANBERRA"), 0, 590);
+		DayFeatureMatrix present = DayFeatureMatrix.of(
+				store.getView("CANBERRA"), 590, 7);
+		int[] windows = new int[37];
+		for (int index = 0; index < windows.length; index++) {
+			windows[index] = random.nextInt(590 - 7 + 1);
+		}
+		double[] sums = new double[windows.length];
+		double[] expectedSums = new double[windows.length];
+		int[] offsets = new int[windows.length];
+		kernel.squaredDistances(history, windows, windows.length, present,
+				Double.MAX_VALUE, sums, offsets);
+		scalar.squaredDistances(history, windows, windows.length, present,
+				Double.MAX_VALUE, expectedSums, offsets);
+		assertArrayEquals(expectedSums, sums, 0d);
+
+		// a sum may stop early only above the limit
+		double limit = expectedSums[0];
+		kernel.squaredDistances(history, windows, windows.length, present,
+				limit, sums, offsets);
+		for (int index = 0; index < windows.length; index++) {
+			if (expectedSums[index] <= limit)
+				assertEquals(expectedSums[index], sums[index], 0d);
+			else
+				assertTrue(sums[index] > limit);
+			assertEquals(expectedSums[index], kernel.squaredDistance(history,
+					windows[index], present, Double.MAX_VALUE), 0d);
+		}
+
+		// the same windows as pairs of ranges of the history
+		int[] windowOffsets = new int[windows.length];
+		int[] presentOffsets = new int[windows.length];
+		for (int index = 0; index < windows.length; index++) {
+			windowOffsets[index] = windows[index] * 3;
+			presentOffsets[index] = (windows.length - index) * 3;
+		}
+		kernel.pairedSquaredDistances(history.getFeatures(), windowOffsets,
+				history.getFeatures(), presentOffsets, windows.length, 7, sums);
+		scalar.pairedSquaredDistances(history.getFeatures(), windowOffsets,
+				history.getFeatures(), presentOffsets, windows.length, 7,
+				expectedSums);
+		assertArrayEquals(expectedSums, sums, 0d);
+	}
+
+	@Test
+	public void testSameDifferencesAsScalarKernel_Pass() {
+		Random random = new Random(5);
+		for (int count = 0; count < 70; count++) {
+			float[] values = new float[count];
+			for (int index = 0; index < count; index++) {
+				values[index] = 990 + random.nextFloat() * 40;
+			}
+			float[] differences = new float[count];
+			float[] expectedDifferences = new float[count];
+			kernel.differences(values, count, differences);
+			scalar.differences(values, count, expectedDifferences);
+			assertArrayEquals(expectedDifferences, differences, 0f);
+		}
+	}
+
+}
@@ -0,0 +1,98 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+/**
+ *
+ */
+package com.weather.prediction.logic;
+
+import static com.weather.prediction.constants.WeatherConstants.MORNING_SLOT;
+import static com.weather.prediction.constants.WeatherConstants.NOON_SLOT;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.weather.prediction.bean.Station;
+import com.weather.prediction.exception.WeatherException;
+import com.weather.prediction.utils.ObservationStore;
+import com.weather.prediction.utils.ObservationView;
+import com.weather.prediction.utils.WeatherUtils;
+
+/**
+ * @author Irene Mathew
+ *
+ */
+public class MultiYearAnalogIndexTest {
+	private Station station;
+	private ObservationStore store;
+	private int firstDay;
+	private int presentFirstDay;
+
+	@Before
+	public void setUp() {
+		station = TestObservations.station("CANBERRA");
+		store = new ObservationStore(2048);
+		firstDay = WeatherUtils.toEpochDay(2012, 1, 1);
+		presentFirstDay = WeatherUtils.toEpochDay(2017, 6, 10);
+		TestObservations.putRandomDays(store, station, firstDay,
+				presentFirstDay + 7 - firstDay, new Random(3));
+	}
+
+	@Test
+	public void testFindPlantedWindow_Pass() throws Exception {
+		// the present period is copied 20 days after its date in 2014
+		int plantedDay = WeatherUtils.toEpochDay(2014, 6, 30);
+		ObservationView view = store.getView("CANBERRA");
+		for (int day = 0; day < 7; day++) {
+			for (int slot = MORNING_SLOT; slot <= NOON_SLOT; slot++) {
+				store.putObservation(station, plantedDay + day, slot,
+						view.getTemp(presentFirstDay + day, slot),
+						view.getHumidity(presentFirstDay + day, slot),
+						view.getPressure(presentFirstDay + day, slot));
+			}
+		}
+		MultiYearAnalogIndex index = new MultiYearAnalogIndex(view, 60);
+		assertEquals(plantedDay, index.findAnalogWindow(view, presentFirstDay, 7));
+	}
+
+	@Test
+	public void testSameWindowAsExhaustiveSearch_Pass() throws Exception {
+		ObservationView view = store.getView("CANBERRA");
+		MultiYearAnalogIndex index = new MultiYearAnalogIndex(view, 30);
+		DayFeatureMatrix present = DayFeatureMatrix.of(view, presentFirstDay,
+				7);
+		double minDistance = Double.MAX_VALUE;
+		int minWindowDay = -1;
+		for (int year = 2012; year < 2017; year++) {
+			int sameDay = WeatherUtils.toEpochDay(year, 6, 10);
+			for (int day = Math.max(sameDay - 30, firstDay); day <= sameDay + 30; day++) {
+				DayFeatureMatrix window = DayFeatureMatrix.of(view, day, 7);
+				double distance = DayFeatureMatrix.roundDistance(DayFeatureMatrix
+						.squaredDistance(window, 0, present, 0, 7));
+				if (distance <= minDistance) {
+					minDistance = distance;
+					minWindowDay = day;
+				}
+			}
+		}
+		assertEquals(minWindowDay,
+				index.findAnalogWindow(view, presentFirstDay, 7));
+	}
+
+	@Test(expected = WeatherException.class)
+	public void testNoEarlierYear_Fail() throws Exception {
+		ObservationView view = store.getView("CANBERRA");
+		new MultiYearAnalogIndex(view, 60).findAnalogWindow(view,
+				firstDay + 10, 7);
+	}
+
+}
@@ -0,0 +1,129 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+/**
+ *
+ */
+package com.weather.prediction.logic;
+
+import static com.weather.prediction.constants.WeatherConstants.COMMA_DELIMITER;
+import static com.weather.prediction.constants.WeatherConstants.DATE_FORMAT;
+import static com.weather.prediction.constants.WeatherConstants.OUTPUT_FILE_NAME;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.weather.prediction.bean.Station;
+import com.weather.prediction.bean.WeatherData;
+import com.weather.prediction.bean.WeatherDataArchive;
+import com.weather.prediction.utils.ObservationStore;
+import com.weather.prediction.utils.WeatherUtils;
+
+/**
+ * @author Irene Mathew
+ *
+ */
+public class ParallelForecastRunnerTest {
+
+	@Test
+	public void testSameOutputAsSequential_Pass() throws Exception {
+		File sequentialDir = Files.createTempDirectory("sequential").toFile();
+		new WeatherPredictor(loadWeatherHistory())
+				.predictWeatherforFiveDays(sequentialDir.getPath());
+		List<String> expected = Files.readAllLines(new File(sequentialDir
+				+ OUTPUT_FILE_NAME).toPath());
+
+		ObservationStore observationStore = new ObservationStore(400);
+		loadWeatherHistory(observationStore, "Canbera");
+		loadWeatherHistory(observationStore, "MELBOURNE");
+		File outputDir = Files.createTempDirectory("parallel").toFile();
+		ParallelForecastRunner runner = new ParallelForecastRunner(2);
+		Map<String, Long> latencies = runner.predictAll(observationStore,
+				Arrays.asList("Canbera", "MELBOURNE", "EMPTY"),
+				outputDir.getPath());
+		assertEquals(2, latencies.size());
+		for (String location : new String[] { "Canbera", "MELBOURNE" }) {
+			assertTrue(latencies.get(location) >= 0);
+			List<String> expectedLines = new ArrayList<String>();
+			for (String line : expected) {
+				expectedLines.add(line.replace("Canbera|", location + "|"));
+			}
+			assertEquals(expectedLines, Files.readAllLines(new File(outputDir
+					+ File.separator + location + OUTPUT_FILE_NAME).toPath()));
+		}
+		assertTrue(runner.getWallMillis() >= 0);
+		// the forecasts leave the resident history unchanged
+		assertEquals(WeatherUtils.dateStringToEpochDay("2017-11-14"),
+				observationStore.getView("Canbera").getLastEpochDay());
+	}
+
+	/**
+	 * This function adds the records of the input data set to an observation
+	 * store as the history of the given location.
+	 */
+	private void loadWeatherHistory(ObservationStore observationStore,
+			String location) throws Exception {
+		WeatherDataArchive weatherDataArchive = loadWeatherHistory();
+		for (WeatherData weatherData : weatherDataArchive.getRecords(
+				weatherDataArchive.getFirstEpochDay(),
+				weatherDataArchive.getLatestEpochDay() + 1)) {
+			Station station = new Station();
+			station.setLocation(location);
+			station.setLat(weatherData.getLat());
+			station.setLongt(weatherData.getLongt());
+			station.setElevtn(weatherData.getElevtn());
+			String[] date = WeatherUtils.extractDatefromDateTime(
+					weatherData.getDateTime()).split("-");
+			observationStore.addObservation(station, Integer.parseInt(date[0]),
+					Integer.parseInt(date[1]), Integer.parseInt(date[2]),
+					WeatherUtils.extractTimefromDateTime(weatherData
+							.getDateTime()), weatherData.getTemp(),
+					weatherData.getHumidity(), weatherData.getPressure());
+		}
+	}
+
+	private WeatherDataArchive loadWeatherHistory() throws Exception {
+		File file = new File(this.getClass().getResource("/InputDataSet.csv")
+				.getFile());
+		Map<String, List<WeatherData>> weatherArchiveMap = new HashMap<String, List<WeatherData>>();
+		for (String line : Files.readAllLines(file.toPath())) {
+			WeatherData weatherData = new WeatherData();
+			String lineSplit[] = line.split(COMMA_DELIMITER, -1);
+			weatherData.setLocation(lineSplit[0]);
+			weatherData.setLat(lineSplit[1]);
+			weatherData.setLongt(lineSplit[2]);
+			weatherData.setElevtn(lineSplit[3]);
+			String date = WeatherUtils.extractDatefromDateTime(lineSplit[4]);
+			weatherData.setDateTime(lineSplit[4]);
+			weatherData.setDate(WeatherUtils.stringToDate(date, DATE_FORMAT));
+			weatherData.setTemp(Float.parseFloat(lineSplit[5]));
+			weatherData.setHumidity(Float.parseFloat(lineSplit[6]));
+			weatherData.setPressure(Float.parseFloat(lineSplit[7]));
+			List<WeatherData> list = weatherArchiveMap.get(date);
+			if (list == null) {
+				list = new ArrayList<WeatherData>();
+				weatherArchiveMap.put(date, list);
+			}
+			list.add(weatherData);
+		}
+		WeatherDataArchive weatherDataArchive = new WeatherDataArchive();
+		weatherDataArchive.setWeatherArchive(weatherArchiveMap);
+		return weatherDataArchive;
+	}
+
+}
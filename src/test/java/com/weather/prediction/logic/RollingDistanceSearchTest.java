@@ -0,0 +1,124 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+/**
+ *
+ */
+package com.weather.prediction.logic;
+
+import static com.weather.prediction.constants.WeatherConstants.MORNING_SLOT;
+import static com.weather.prediction.constants.WeatherConstants.NOON_SLOT;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.weather.prediction.bean.Station;
+import com.weather.prediction.exception.WeatherException;
+import com.weather.prediction.utils.ObservationStore;
+
+/**
+ * @author Irene Mathew
+ *
+ */
+public class RollingDistanceSearchTest {
+	private static final int HISTORY_DAYS = 127;
+	private Station station;
+	private ObservationStore store;
+	private Random random;
+
+	@Before
+	public void setUp() {
+		station = TestObservations.station("CANBERRA");
+		store = new ObservationStore(HISTORY_DAYS + 7);
+		random = new Random(7);
+	}
+
+	@Test
+	public void testSameWindowAsExhaustiveSearch_Pass() throws Exception {
+		for (int run = 0; run < 20; run++) {
+			for (int day = 0; day < HISTORY_DAYS + 7; day++) {
+				// a few days of the history miss their afternoon record
+				putDay(day, day < HISTORY_DAYS && random.nextInt(40) == 0);
+			}
+			DayFeatureMatrix history = DayFeatureMatrix.of(
+					store.getView("CANBERRA"), 0, HISTORY_DAYS);
+			DayFeatureMatrix present = DayFeatureMatrix.of(
+					store.getView("CANBERRA"), HISTORY_DAYS, 7);
+			assertEquals(findExhaustively(present, history),
+					RollingDistanceSearch.findMinimumWindow(present, history));
+			store = new ObservationStore(HISTORY_DAYS + 7);
+		}
+	}
+
+	@Test
+	public void testLaterWindowWinsTie_Pass() throws Exception {
+		for (int day = 0; day < HISTORY_DAYS; day++) {
+			putDay(day, false);
+		}
+		// the present period appears twice in the history
+		for (int day = 0; day < 7; day++) {
+			copyDay(20 + day, 90 + day);
+			copyDay(20 + day, HISTORY_DAYS + day);
+		}
+		DayFeatureMatrix history = DayFeatureMatrix.of(
+				store.getView("CANBERRA"), 0, HISTORY_DAYS);
+		DayFeatureMatrix present = DayFeatureMatrix.of(
+				store.getView("CANBERRA"), HISTORY_DAYS, 7);
+		assertEquals(90,
+				RollingDistanceSearch.findMinimumWindow(present, history));
+	}
+
+	@Test(expected = WeatherException.class)
+	public void testShortHistory_Fail() throws Exception {
+		for (int day = 0; day < 10; day++) {
+			putDay(day, false);
+		}
+		RollingDistanceSearch.findMinimumWindow(
+				DayFeatureMatrix.of(store.getView("CANBERRA"), 3, 7),
+				DayFeatureMatrix.of(store.getView("CANBERRA"), 0, 5));
+	}
+
+	private void putDay(int day, boolean morningOnly) {
+		TestObservations.putRandomObservation(store, station, day,
+				MORNING_SLOT, random);
+		if (!morningOnly)
+			TestObservations.putRandomObservation(store, station, day,
+					NOON_SLOT, random);
+	}
+
+	private void copyDay(int fromDay, int toDay) {
+		for (int slot = MORNING_SLOT; slot <= NOON_SLOT; slot++) {
+			store.putObservation(station, toDay, slot, store.getView("CANBERRA")
+					.getTemp(fromDay, slot),
+					store.getView("CANBERRA").getHumidity(fromDay, slot), store
+							.getView("CANBERRA").getPressure(fromDay, slot));
+		}
+	}
+
+	private static int findExhaustively(DayFeatureMatrix present,
+			DayFeatureMatrix history) {
+		double minDistance = Double.MAX_VALUE;
+		int minWindow = -1;
+		for (int window = 0; window + 7 <= history.getDays(); window++) {
+			if (history.countCompleteDays(window, 7) != 7)
+				continue;
+			double distance = DayFeatureMatrix.roundDistance(DayFeatureMatrix
+					.squaredDistance(history, window, present, 0, 7));
+			if (distance <= minDistance) {
+				minDistance = distance;
+				minWindow = window;
+			}
+		}
+		return minWindow;
+	}
+
+}
@@ -0,0 +1,154 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+/**
+ *
+ */
+package com.weather.prediction.logic;
+
+import static com.weather.prediction.constants.WeatherConstants.MORNING_SLOT;
+import static com.weather.prediction.constants.WeatherConstants.NOON_SLOT;
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.weather.prediction.bean.ForecastConfig;
+import com.weather.prediction.bean.Station;
+import com.weather.prediction.bean.VariationVector;
+import com.weather.prediction.exception.WeatherException;
+import com.weather.prediction.utils.DailyAggregateCache;
+import com.weather.prediction.utils.ObservationStore;
+import com.weather.prediction.utils.ObservationView;
+
+/**
+ * @author Irene Mathew
+ *
+ */
+public class RolloutEngineTest {
+
+	@Test
+	public void testSameVariationAsSlidingWindow_Pass() throws Exception {
+		Random random = new Random(29);
+		Station station = new Station();
+		station.setLocation("CANBERRA");
+		ObservationStore store = new ObservationStore(900);
+		for (int day = 0; day < 800; day++) {
+			TestObservations.putRandomDay(store, station, day, random);
+		}
+		ObservationView view = store.getView("CANBERRA");
+		DailyAggregateCache aggregates = new DailyAggregateCache(view);
+		RolloutEngine rollout = new RolloutEngine(aggregates);
+		rollout.start(799);
+		for (int issueDay = 799; issueDay < 820; issueDay++) {
+			assertEquals(issueDay, rollout.getIssueDay());
+			List<VariationVector> expected = new SlidingWindowImplementation(
+					view, issueDay - 6, 7, view, issueDay - 371, 14)
+					.implementSlidingWindow();
+			List<VariationVector> variations = rollout.findVariationFactor();
+			for (int slot = MORNING_SLOT; slot <= NOON_SLOT; slot++) {
+				assertEquals(expected.get(slot).getTime(), variations.get(slot)
+						.getTime());
+				assertEquals(expected.get(slot).getTemperature(), variations
+						.get(slot).getTemperature(), 0f);
+				assertEquals(expected.get(slot).getHumidity(), variations
+						.get(slot).getHumidity(), 0f);
+				assertEquals(expected.get(slot).getPressure(), variations
+						.get(slot).getPressure(), 0f);
+			}
+			// the forecast day is added before the rollout moves on
+			TestObservations.putRandomDay(store, station, issueDay + 1, random);
+			aggregates.invalidate(issueDay + 1);
+			rollout.advance();
+		}
+	}
+
+	@Test
+	public void testLongHorizonWithConfiguredWindows_Pass() throws Exception {
+		Random random = new Random(31);
+		Station station = new Station();
+		station.setLocation("SYDNEY");
+		ObservationStore store = new ObservationStore(900);
+		for (int day = 0; day < 800; day++) {
+			TestObservations.putRandomDay(store, station, day, random);
+		}
+		ForecastConfig config = new ForecastConfig();
+		config.setHorizonDays(30);
+		config.setWindowSize(10);
+		config.setWindowCount(5);
+		config.validate();
+		assertEquals(374, config.getLastYearLagDays());
+		ObservationView view = store.getView("SYDNEY");
+		DailyAggregateCache aggregates = new DailyAggregateCache(view);
+		RolloutEngine rollout = new RolloutEngine(aggregates, config);
+		rollout.start(799);
+		for (int step = 0; step < config.getHorizonDays(); step++) {
+			int issueDay = rollout.getIssueDay();
+			SlidingWindowImplementation search = new SlidingWindowImplementation(
+					view, issueDay - 9, 10, view, issueDay
+							- config.getLastYearLagDays(),
+					config.getLastYearDays());
+			search.setExpectedWindows(10, 5);
+			List<VariationVector> expected = search.implementSlidingWindow();
+			List<VariationVector> variations = rollout.findVariationFactor();
+			for (int slot = MORNING_SLOT; slot <= NOON_SLOT; slot++) {
+				assertEquals(expected.get(slot).getTemperature(), variations
+						.get(slot).getTemperature(), 0f);
+				assertEquals(expected.get(slot).getPressure(), variations
+						.get(slot).getPressure(), 0f);
+			}
+			TestObservations.putRandomDay(store, station, issueDay + 1, random);
+			aggregates.invalidate(issueDay + 1);
+			rollout.advance();
+		}
+	}
+
+	@Test(expected = WeatherException.class)
+	public void testWindowsReachPresentPeriod_Fail() throws Exception {
+		ForecastConfig config = new ForecastConfig();
+		config.setWindowSize(10);
+		config.setWindowCount(400);
+		config.validate();
+	}
+
+	@Test
+	public void testSearchSpanLimit_Pass() throws Exception {
+		ForecastConfig config = new ForecastConfig();
+		config.setWindowSize(10);
+		// the last window of the span ends the day before the present period
+		config.setSpanDays(365 - 10);
+		config.validate();
+		int dayBeforePrediction = 799;
+		int lastSearchedDay = dayBeforePrediction
+				- config.getLastYearLagDays() - config.getSpanDays() + 10 + 2
+				* config.getSpanDays() - 1;
+		assertEquals(dayBeforePrediction - 10, lastSearchedDay);
+	}
+
+	@Test(expected = WeatherException.class)
+	public void testSearchSpanReachesPresentPeriod_Fail() throws Exception {
+		ForecastConfig config = new ForecastConfig();
+		config.setWindowSize(10);
+		config.setSpanDays(366 - 10);
+		config.validate();
+	}
+
+	@Test(expected = WeatherException.class)
+	public void testAdvanceBeforeStart_Fail() throws Exception {
+		Station station = new Station();
+		station.setLocation("CANBERRA");
+		ObservationStore store = new ObservationStore(4);
+		TestObservations.putRandomDay(store, station, 0, new Random(3));
+		new RolloutEngine(new DailyAggregateCache(store.getView("CANBERRA")))
+				.advance();
+	}
+
+}
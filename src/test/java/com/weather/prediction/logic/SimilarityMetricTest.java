@@ -0,0 +1,204 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+/**
+ *
+ */
+package com.weather.prediction.logic;
+
+import static com.weather.prediction.constants.WeatherConstants.MORNING_SLOT;
+import static com.weather.prediction.constants.WeatherConstants.NOON_SLOT;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.weather.prediction.bean.Station;
+import com.weather.prediction.bean.VariationVector;
+import com.weather.prediction.exception.WeatherException;
+import com.weather.prediction.utils.ObservationStore;
+import com.weather.prediction.utils.ObservationView;
+
+/**
+ * @author Irene Mathew
+ *
+ */
+public class SimilarityMetricTest {
+	private static final int DAYS = 400;
+	private ObservationStore store;
+	private DayFeatureMatrix history;
+	private DayFeatureMatrix present;
+
+	@Before
+	public void setUp() {
+		store = TestObservations.randomStore(DAYS, 17);
+		history = DayFeatureMatrix.of(store.getView("CANBERRA"), 0, DAYS - 7);
+		present = DayFeatureMatrix.of(store.getView("CANBERRA"), DAYS - 7, 7);
+	}
+
+	@Test
+	public void testBandZeroSameAsEuclidean_Pass() {
+		SimilarityMetric euclidean = new EuclideanMetric();
+		SimilarityMetric dtw = new BandedDtwMetric(0);
+		for (int window = 0; window + 7 <= history.getDays(); window++) {
+			assertEquals(DayFeatureMatrix.squaredDistance(history, window,
+					present, 0, 7), euclidean.squaredDistance(history, window,
+					present, Double.MAX_VALUE), 0d);
+			assertEquals(euclidean.squaredDistance(history, window, present,
+					Double.MAX_VALUE), dtw.squaredDistance(history, window,
+					present, Double.MAX_VALUE), 0d);
+		}
+	}
+
+	@Test
+	public void testMetricTypeCreatesMetric_Pass() {
+		ObservationView view = store.getView("CANBERRA");
+		assertTrue(SimilarityMetricType.EUCLIDEAN.create(view)
+				instanceof EuclideanMetric);
+		assertTrue(SimilarityMetricType.BANDED_DTW.create(view)
+				instanceof BandedDtwMetric);
+		// the z-score metric is scaled by the whole history of the station
+		assertEquals(new ZScoreEuclideanMetric(StationStatistics.of(view))
+				.toString(), SimilarityMetricType.ZSCORE_EUCLIDEAN.create(view)
+				.toString());
+	}
+
+	@Test
+	public void testBandedDtwSameAsFullTable_Pass() {
+		BandedDtwMetric dtw = new BandedDtwMetric(2);
+		double limit = findWarpedDistance(history, 0, present, 2);
+		for (int window = 0; window + 7 <= history.getDays(); window++) {
+			double expected = findWarpedDistance(history, window, present, 2);
+			assertEquals(expected, dtw.squaredDistance(history, window,
+					present, Double.MAX_VALUE), 1e-9);
+			assertTrue(expected <= DayFeatureMatrix.squaredDistance(history,
+					window, present, 0, 7));
+			// a window may be ruled out early only above the limit
+			double sum = dtw.squaredDistance(history, window, present, limit);
+			if (expected <= limit)
+				assertEquals(expected, sum, 1e-9);
+			else
+				assertTrue(sum > limit);
+		}
+	}
+
+	@Test
+	public void testZScoreScalesFeatures_Pass() {
+		Station station = new Station();
+		station.setLocation("SYDNEY");
+		ObservationStore scaled = new ObservationStore(4);
+		// pressure varies ten times as much as humidity and temperature
+		float[][] days = { { 20, 50, 1000 }, { 22, 52, 1020 },
+				{ 20, 52, 1000 }, { 22, 50, 1020 } };
+		for (int day = 0; day < days.length; day++) {
+			scaled.putObservation(station, day, MORNING_SLOT, days[day][0],
+					days[day][1], days[day][2]);
+			scaled.putObservation(station, day, NOON_SLOT, days[day][0],
+					days[day][1], days[day][2]);
+		}
+		ObservationView view = scaled.getView("SYDNEY");
+		StationStatistics statistics = StationStatistics.of(view);
+		assertEquals(4, statistics.getDays());
+		assertEquals(51, statistics.getMean(0), 1e-9);
+		assertEquals(1010, statistics.getMean(1), 1e-9);
+		assertEquals(21, statistics.getMean(2), 1e-9);
+		assertEquals(1, statistics.getDeviation(0), 1e-9);
+		assertEquals(10, statistics.getDeviation(1), 1e-9);
+		assertEquals(1, statistics.getDeviation(2), 1e-9);
+
+		DayFeatureMatrix matrix = DayFeatureMatrix.of(view, 0, 4);
+		DayFeatureMatrix first = DayFeatureMatrix.of(view, 0, 1);
+		SimilarityMetric zScore = new ZScoreEuclideanMetric(statistics);
+		// two degrees weigh as much as 20 hPa
+		assertEquals(4 + 4 + 4, zScore.squaredDistance(matrix, 1, first,
+				Double.MAX_VALUE), 1e-9);
+		assertEquals(4 + 4, zScore.squaredDistance(matrix, 3, first,
+				Double.MAX_VALUE), 1e-9);
+		assertEquals(4 + 400, new EuclideanMetric().squaredDistance(matrix,
+				3, first, Double.MAX_VALUE), 0d);
+	}
+
+	@Test
+	public void testSearchSameWithoutEarlyAbandoning_Pass() throws Exception {
+		final BandedDtwMetric dtw = new BandedDtwMetric(2);
+		SimilarityMetric exhaustive = new SimilarityMetric() {
+			@Override
+			public double squaredDistance(DayFeatureMatrix history,
+					int fromDay, DayFeatureMatrix present, double limit) {
+				return dtw.squaredDistance(history, fromDay, present,
+						Double.MAX_VALUE);
+			}
+		};
+		SlidingWindowImplementation pruned = createSearch(dtw);
+		SlidingWindowImplementation full = createSearch(exhaustive);
+		List<VariationVector> expected = full.implementSlidingWindow();
+		List<VariationVector> variations = pruned.implementSlidingWindow();
+		for (int slot = MORNING_SLOT; slot <= NOON_SLOT; slot++) {
+			assertEquals(expected.get(slot).getTemperature(),
+					variations.get(slot).getTemperature(), 0f);
+			assertEquals(expected.get(slot).getHumidity(),
+					variations.get(slot).getHumidity(), 0f);
+			assertEquals(expected.get(slot).getPressure(),
+					variations.get(slot).getPressure(), 0f);
+		}
+		PruningStats stats = pruned.getPruningStats();
+		assertEquals(DAYS - 7 - 7 + 1, stats.getCandidates());
+		assertEquals(stats.getCandidates(),
+				stats.getAbandoned() + stats.getEvaluated());
+		assertTrue(stats.getAbandoned() > 0);
+	}
+
+	@Test(expected = WeatherException.class)
+	public void testMultiYearWithDtw_Fail() throws Exception {
+		SlidingWindowImplementation search = new SlidingWindowImplementation(
+				store.getView("CANBERRA"), DAYS - 7, 7,
+				new MultiYearAnalogIndex(store.getView("CANBERRA"), 30));
+		search.setSimilarityMetric(new BandedDtwMetric());
+		search.implementSlidingWindow();
+	}
+
+	private SlidingWindowImplementation createSearch(SimilarityMetric metric) {
+		ObservationView view = store.getView("CANBERRA");
+		SlidingWindowImplementation search = new SlidingWindowImplementation(
+				view, DAYS - 7, 7, view, 0, DAYS - 7);
+		search.setSearchMode(SearchMode.ROLLING_SPAN);
+		search.setAnalogCount(3);
+		search.setSimilarityMetric(metric);
+		return search;
+	}
+
+	/**
+	 * @return squared distance of dynamic time warping within a band, from
+	 *         the whole table
+	 */
+	private static double findWarpedDistance(DayFeatureMatrix history,
+			int fromDay, DayFeatureMatrix present, int band) {
+		int length = present.getDays();
+		double[][] table = new double[length + 1][length + 1];
+		for (double[] row : table) {
+			Arrays.fill(row, Double.POSITIVE_INFINITY);
+		}
+		table[0][0] = 0;
+		for (int i = 1; i <= length; i++) {
+			for (int j = Math.max(1, i - band); j <= Math.min(length, i + band); j++) {
+				double cost = DayFeatureMatrix.squaredDistance(history, fromDay
+						+ i - 1, present, j - 1, 1);
+				table[i][j] = cost
+						+ Math.min(table[i - 1][j - 1],
+								Math.min(table[i - 1][j], table[i][j - 1]));
+			}
+		}
+		return table[length][length];
+	}
+
+}
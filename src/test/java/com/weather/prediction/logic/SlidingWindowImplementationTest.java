@@ -14,6 +14,7 @@ package com.weather.prediction.logic;
 
 import static com.weather.prediction.constants.WeatherConstants.COMMA_DELIMITER;
 import static com.weather.prediction.constants.WeatherConstants.DATE_FORMAT;
+import static org.junit.Assert.assertSame;
 
 import java.io.File;
 import java.io.IOException;
@@ -21,6 +22,7 @@ import java.nio.file.Files;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -75,6 +77,25 @@ public class SlidingWindowImplementationTest {
 		algorithm.validateWindowSize(algorithm.slidingWindowList.get(0).getSlidingWindowMap().size());
 	}
 
+	@Test
+	public void testFindWindowWithMinimumEuclideanDistance_Pass()
+			throws Exception {
+		// the fourth window of last year's records is the present period
+		algorithm = new SlidingWindowImplementation(
+				this.previousYearList.subList(6, 20), this.previousYearList);
+		algorithm.divideIntoWindows(this.previousYearList);
+		Map<String, List<WeatherData>> window = algorithm
+				.findWindowWithMinimumEuclideanDistance();
+		assertSame(algorithm.slidingWindowList.get(3).getSlidingWindowMap(),
+				window);
+	}
+
+	@Test(expected = WeatherException.class)
+	public void testFindWindowWithMinimumEuclideanDistance_Fail()
+			throws Exception {
+		algorithm.findWindowWithMinimumEuclideanDistance();
+	}
+
 	/**
 	 * @throws IOException
 	 * @throws ParseException
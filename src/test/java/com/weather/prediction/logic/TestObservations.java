@@ -0,0 +1,94 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+/**
+ *
+ */
+package com.weather.prediction.logic;
+
+import static com.weather.prediction.constants.WeatherConstants.MORNING_SLOT;
+import static com.weather.prediction.constants.WeatherConstants.NOON_SLOT;
+
+import java.util.Random;
+
+import com.weather.prediction.bean.Station;
+import com.weather.prediction.utils.ObservationStore;
+
+/**
+ * Class which fills observation stores with random observations for the
+ * tests. Every record has its own temperature, humidity and pressure drawn
+ * from a seeded random, so a test sees the same history on every run.
+ *
+ * @author Irene Mathew
+ *
+ */
+final class TestObservations {
+	static final String LOCATION = "CANBERRA";
+
+	private TestObservations() {
+	}
+
+	/**
+	 * @return store holding random days of CANBERRA from day 0
+	 */
+	static ObservationStore randomStore(int days, long seed) {
+		ObservationStore store = new ObservationStore(days);
+		putRandomDays(store, station(LOCATION), 0, days, new Random(seed));
+		return store;
+	}
+
+	/**
+	 * @return store holding days of CANBERRA from day 0 whose temperature
+	 *         follows the seasons, so many windows are far from any present
+	 *         period
+	 */
+	static ObservationStore seasonalStore(int days, long seed) {
+		ObservationStore store = new ObservationStore(days);
+		Station station = station(LOCATION);
+		Random random = new Random(seed);
+		for (int day = 0; day < days; day++) {
+			float temp = (float) (18 + 10 * Math.sin(day * 2 * Math.PI / 365))
+					+ random.nextFloat() * 4;
+			float humidity = 40 + random.nextFloat() * 40;
+			float pressure = 1000 + random.nextFloat() * 25;
+			store.putObservation(station, day, MORNING_SLOT, temp, humidity,
+					pressure);
+			store.putObservation(station, day, NOON_SLOT, temp + 5,
+					humidity - 10, pressure - 2);
+		}
+		return store;
+	}
+
+	static Station station(String location) {
+		Station station = new Station();
+		station.setLocation(location);
+		return station;
+	}
+
+	static void putRandomDays(ObservationStore store, Station station,
+			int firstDay, int days, Random random) {
+		for (int day = firstDay; day < firstDay + days; day++) {
+			putRandomDay(store, station, day, random);
+		}
+	}
+
+	static void putRandomDay(ObservationStore store, Station station,
+			int day, Random random) {
+		for (int slot = MORNING_SLOT; slot <= NOON_SLOT; slot++) {
+			putRandomObservation(store, station, day, slot, random);
+		}
+	}
+
+	static void putRandomObservation(ObservationStore store, Station station,
+			int day, int slot, Random random) {
+		store.putObservation(station, day, slot, 10 + random.nextFloat() * 20,
+				30 + random.nextFloat() * 60, 995 + random.nextFloat() * 30);
+	}
+
+}
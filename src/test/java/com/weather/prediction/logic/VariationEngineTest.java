@@ -0,0 +1,133 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+/**
+ *
+ */
+package com.weather.prediction.logic;
+
+import static com.weather.prediction.constants.WeatherConstants.MORNING_SLOT;
+import static com.weather.prediction.constants.WeatherConstants.NOON_SLOT;
+import static com.weather.prediction.logic.VariationEngine.HUMIDITY;
+import static com.weather.prediction.logic.VariationEngine.PRESSURE;
+import static com.weather.prediction.logic.VariationEngine.RESULT_SIZE;
+import static com.weather.prediction.logic.VariationEngine.TEMPERATURE;
+import static com.weather.prediction.logic.VariationEngine.VALUES_PER_SLOT;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.weather.prediction.bean.VariationVector;
+import com.weather.prediction.utils.ObservationView;
+
+/**
+ * @author Irene Mathew
+ *
+ */
+public class VariationEngineTest {
+	private ObservationView view;
+
+	@Before
+	public void setUp() {
+		view = TestObservations.randomStore(400, 13).getView("CANBERRA");
+	}
+
+	@Test
+	public void testSameMeansAsVariationVectors_Pass() {
+		VariationEngine engine = new VariationEngine();
+		float[] result = new float[RESULT_SIZE];
+		for (int firstDay = 1; firstDay < 380; firstDay += 7) {
+			int days = 2 + firstDay % 19;
+			engine.findMeanVariation(view, firstDay, days, result);
+			for (int slot = MORNING_SLOT; slot <= NOON_SLOT; slot++) {
+				VariationVector expected = findMeanVariation(firstDay, days,
+						slot);
+				int offset = slot * VALUES_PER_SLOT;
+				assertEquals(expected.getTemperature(), result[offset
+						+ TEMPERATURE], 0f);
+				assertEquals(expected.getHumidity(),
+						result[offset + HUMIDITY], 0f);
+				assertEquals(expected.getPressure(),
+						result[offset + PRESSURE], 0f);
+			}
+		}
+	}
+
+	@Test
+	public void testNoAllocationOnceWarm_Pass() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory
+				.getThreadMXBean();
+		assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+		assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+		threadBean.setThreadAllocatedMemoryEnabled(true);
+		// the kernel used in production, which is the vector kernel when
+		// run from the multi-release jar, and the scalar kernel
+		assertEquals(0, measureAllocation(threadBean, ForecastKernels.get()));
+		assertEquals(0,
+				measureAllocation(threadBean, ForecastKernels.scalar()));
+	}
+
+	/**
+	 * This function finds the bytes allocated by mean variations of a warm
+	 * engine using the given kernel.
+	 */
+	private long measureAllocation(
+			com.sun.management.ThreadMXBean threadBean, ForecastKernel kernel) {
+		long threadId = Thread.currentThread().getId();
+		VariationEngine engine = new VariationEngine(kernel);
+		float[] result = new float[RESULT_SIZE];
+		for (int run = 0; run < 20000; run++) {
+			engine.findMeanVariation(view, run % 380, 14, result);
+		}
+		// bytes allocated by reading the counter itself
+		long overhead = threadBean.getThreadAllocatedBytes(threadId);
+		overhead = threadBean.getThreadAllocatedBytes(threadId) - overhead;
+		long before = threadBean.getThreadAllocatedBytes(threadId);
+		for (int run = 0; run < 1000; run++) {
+			engine.findMeanVariation(view, run % 380, 14, result);
+		}
+		return threadBean.getThreadAllocatedBytes(threadId) - before
+				- overhead;
+	}
+
+	/**
+	 * This function calculates a mean variation one vector at a time.
+	 */
+	private VariationVector findMeanVariation(int firstDay, int days, int slot) {
+		List<VariationVector> vectorList = new ArrayList<VariationVector>();
+		for (int day = firstDay + 1; day < firstDay + days; day++) {
+			VariationVector vector = new VariationVector();
+			vector.setTemperature(view.getTemp(day, slot)
+					- view.getTemp(day - 1, slot));
+			vector.setHumidity(view.getHumidity(day, slot)
+					- view.getHumidity(day - 1, slot));
+			vector.setPressure(view.getPressure(day, slot)
+					- view.getPressure(day - 1, slot));
+			vectorList.add(vector);
+		}
+		VariationVector mean = new VariationVector();
+		for (VariationVector vector : vectorList) {
+			mean.setTemperature(mean.getTemperature() + vector.getTemperature());
+			mean.setHumidity(mean.getHumidity() + vector.getHumidity());
+			mean.setPressure(mean.getPressure() + vector.getPressure());
+		}
+		mean.setTemperature(mean.getTemperature() / vectorList.size());
+		mean.setHumidity(mean.getHumidity() / vectorList.size());
+		mean.setPressure(mean.getPressure() / vectorList.size());
+		return mean;
+	}
+
+}
@@ -0,0 +1,89 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+/**
+ *
+ */
+package com.weather.prediction.logic;
+
+import static com.weather.prediction.constants.WeatherConstants.MORNING_SLOT;
+import static com.weather.prediction.constants.WeatherConstants.NOON_SLOT;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.weather.prediction.bean.Station;
+import com.weather.prediction.utils.ObservationStore;
+import com.weather.prediction.utils.ObservationView;
+
+/**
+ * @author Irene Mathew
+ *
+ */
+public class WindowEvaluatorTest {
+
+	@Test
+	public void testSameWindowsAsWithoutPruning_Pass() {
+		// seasonal temperature keeps many windows far from the present
+		ObservationView view = TestObservations.seasonalStore(4000, 17)
+				.getView("CANBERRA");
+		DayFeatureMatrix history = DayFeatureMatrix.of(view, 0, 3993);
+		DayFeatureMatrix present = DayFeatureMatrix.of(view, 3993, 7);
+
+		BoundedMaxHeap expectedHeap = new BoundedMaxHeap(5);
+		for (int day = 0; day + 7 <= 3993; day++) {
+			expectedHeap.offer(DayFeatureMatrix.roundDistance(DayFeatureMatrix
+					.squaredDistance(history, day, present, 0, 7)), day);
+		}
+		PruningStats stats = new PruningStats();
+		WindowEvaluator evaluator = new WindowEvaluator(present, stats);
+		BoundedMaxHeap heap = new BoundedMaxHeap(5);
+		for (int day = 0; day + 7 <= 3993; day++) {
+			evaluator.offer(history, day, heap);
+		}
+
+		double[] expectedDistances = new double[5];
+		int[] expectedWindows = new int[5];
+		expectedHeap.drainAscending(expectedDistances, expectedWindows);
+		double[] distances = new double[5];
+		int[] windows = new int[5];
+		heap.drainAscending(distances, windows);
+		assertArrayEquals(expectedDistances, distances, 0d);
+		assertArrayEquals(expectedWindows, windows);
+
+		assertEquals(3987, stats.getCandidates());
+		assertEquals(stats.getCandidates(), stats.getPrunedByMeanBound()
+				+ stats.getPrunedByShapeBound() + stats.getAbandoned()
+				+ stats.getEvaluated());
+		assertTrue(stats.getPrunedByMeanBound() > 0);
+		assertTrue(stats.getEvaluated() < stats.getCandidates() / 2);
+	}
+
+	@Test
+	public void testMeanAndDeviation_Pass() {
+		ObservationStore store = new ObservationStore(8);
+		Station station = new Station();
+		station.setLocation("CANBERRA");
+		float[] temps = { 10, 12, 14, 16 };
+		for (int day = 0; day < temps.length; day++) {
+			store.putObservation(station, day, MORNING_SLOT, temps[day], 50,
+					1010);
+			store.putObservation(station, day, NOON_SLOT, temps[day], 50, 1010);
+		}
+		DayFeatureMatrix matrix = DayFeatureMatrix.of(
+				store.getView("CANBERRA"), 0, 4);
+		assertEquals(13, matrix.mean(2, 0, 4), 1e-9);
+		assertEquals(Math.sqrt(5), matrix.deviation(2, 0, 4), 1e-9);
+		assertEquals(15, matrix.mean(2, 2, 2), 1e-9);
+		assertEquals(0, matrix.deviation(1, 0, 4), 1e-9);
+	}
+
+}
@@ -0,0 +1,163 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+/**
+ *
+ */
+package com.weather.prediction.service;
+
+import static com.weather.prediction.constants.WeatherConstants.DATE_TIME_DELIMITER;
+import static com.weather.prediction.constants.WeatherConstants.MORNING_FORECAST_TIMESTAMP;
+import static com.weather.prediction.constants.WeatherConstants.NOON_FORECAST_TIMESTAMP;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.weather.prediction.bean.ForecastConfig;
+import com.weather.prediction.bean.Station;
+import com.weather.prediction.bean.WeatherData;
+import com.weather.prediction.bean.WeatherDataArchive;
+import com.weather.prediction.logic.BandedDtwMetric;
+import com.weather.prediction.logic.EuclideanMetric;
+import com.weather.prediction.logic.SearchMode;
+import com.weather.prediction.utils.WeatherUtils;
+
+/**
+ * @author Irene Mathew
+ *
+ */
+public class ForecastResultCacheTest {
+	private static final int ISSUE_DAY = 17500;
+	private static final Station STATION = new Station();
+
+	@Test
+	public void testLeastRecentlyUsedEvicted_Pass() {
+		ForecastResultCache cache = new ForecastResultCache(2);
+		cache.put("SYDNEY", ISSUE_DAY, 1, "first");
+		cache.put("SYDNEY", ISSUE_DAY + 1, 2, "second");
+		assertEquals("first", cache.get("SYDNEY", ISSUE_DAY, 1));
+		cache.put("PERTH", ISSUE_DAY, 1, "third");
+		assertNull(cache.get("SYDNEY", ISSUE_DAY + 1, 2));
+		assertEquals("first", cache.get("SYDNEY", ISSUE_DAY, 1));
+		assertEquals("third", cache.get("PERTH", ISSUE_DAY, 1));
+		assertEquals(2, cache.size());
+		assertEquals(3, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, cache.getEvictions());
+	}
+
+	@Test
+	public void testSupersededResultReplaced_Pass() {
+		ForecastResultCache cache = new ForecastResultCache(2);
+		cache.put("SYDNEY", ISSUE_DAY, 1, "first");
+		cache.put("SYDNEY", ISSUE_DAY, 2, "second");
+		assertEquals(1, cache.size());
+		assertNull(cache.get("SYDNEY", ISSUE_DAY, 1));
+		assertEquals("second", cache.get("SYDNEY", ISSUE_DAY, 2));
+		assertEquals(0, cache.getEvictions());
+	}
+
+	@Test
+	public void testFingerprintOfSettings_Pass() throws Exception {
+		WeatherDataArchive weatherDataArchive = createArchive();
+		long fingerprint = fingerprint(weatherDataArchive, new ForecastConfig());
+		ForecastConfig config = new ForecastConfig();
+		config.setHorizonDays(config.getHorizonDays() + 1);
+		assertNotEquals(fingerprint, fingerprint(weatherDataArchive, config));
+		config = new ForecastConfig();
+		config.setSpanDays(config.getSpanDays() + 1);
+		assertNotEquals(fingerprint, fingerprint(weatherDataArchive, config));
+		config = new ForecastConfig();
+		assertNotEquals(fingerprint, ForecastResultCache.fingerprint(
+				weatherDataArchive, STATION, ISSUE_DAY, config,
+				SearchMode.ROLLING_SPAN, 1, new EuclideanMetric()));
+		assertNotEquals(fingerprint, ForecastResultCache.fingerprint(
+				weatherDataArchive, STATION, ISSUE_DAY, config,
+				SearchMode.FIXED_WINDOWS, 3, new EuclideanMetric()));
+		assertNotEquals(fingerprint, ForecastResultCache.fingerprint(
+				weatherDataArchive, STATION, ISSUE_DAY, config,
+				SearchMode.FIXED_WINDOWS, 1, new BandedDtwMetric()));
+	}
+
+	@Test
+	public void testFingerprintOfSearchedRecords_Pass() throws Exception {
+		ForecastConfig config = new ForecastConfig();
+		WeatherDataArchive weatherDataArchive = createArchive();
+		long fingerprint = ForecastResultCache.fingerprint(weatherDataArchive,
+				STATION, ISSUE_DAY, config, SearchMode.MULTI_YEAR, 1,
+				new EuclideanMetric());
+		// a day before last year's period is searched by the other modes
+		putDay(weatherDataArchive, ISSUE_DAY - 390, 30f);
+		assertNotEquals(fingerprint, ForecastResultCache.fingerprint(
+				weatherDataArchive, STATION, ISSUE_DAY, config,
+				SearchMode.MULTI_YEAR, 1, new EuclideanMetric()));
+	}
+
+	@Test
+	public void testFingerprintOfReadRecords_Pass() throws Exception {
+		ForecastConfig config = new ForecastConfig();
+		WeatherDataArchive weatherDataArchive = createArchive();
+		long fingerprint = fingerprint(weatherDataArchive, config);
+		// days between last year's period and the present period are not
+		// read, nor days after the issue day
+		putDay(weatherDataArchive, ISSUE_DAY - 200, 30f);
+		putDay(weatherDataArchive, ISSUE_DAY + 1, 30f);
+		assertEquals(fingerprint, fingerprint(weatherDataArchive, config));
+		// the last day of last year's period read on the fifth forecast
+		putDay(weatherDataArchive, ISSUE_DAY - 371 + 17, 30f);
+		long lastYearChanged = fingerprint(weatherDataArchive, config);
+		assertNotEquals(fingerprint, lastYearChanged);
+		putDay(weatherDataArchive, ISSUE_DAY - 6, 30f);
+		assertNotEquals(lastYearChanged,
+				fingerprint(weatherDataArchive, config));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNoEntries_Fail() {
+		new ForecastResultCache(0);
+	}
+
+	private static long fingerprint(WeatherDataArchive weatherDataArchive,
+			ForecastConfig config) {
+		return ForecastResultCache.fingerprint(weatherDataArchive, STATION,
+				ISSUE_DAY, config, SearchMode.FIXED_WINDOWS, 1,
+				new EuclideanMetric());
+	}
+
+	private static WeatherDataArchive createArchive() throws Exception {
+		WeatherDataArchive weatherDataArchive = new WeatherDataArchive();
+		for (int epochDay = ISSUE_DAY - 400; epochDay <= ISSUE_DAY; epochDay++) {
+			putDay(weatherDataArchive, epochDay, 20f);
+		}
+		return weatherDataArchive;
+	}
+
+	private static void putDay(WeatherDataArchive weatherDataArchive,
+			int epochDay, float temp) throws Exception {
+		List<WeatherData> dayList = new ArrayList<WeatherData>();
+		for (String time : new String[] { MORNING_FORECAST_TIMESTAMP,
+				NOON_FORECAST_TIMESTAMP }) {
+			WeatherData weatherData = new WeatherData();
+			weatherData.setLocation("SYDNEY");
+			weatherData.setDateTime(WeatherUtils.epochDayToString(epochDay)
+					+ DATE_TIME_DELIMITER + time);
+			weatherData.setTemp(temp);
+			weatherData.setHumidity(60f);
+			weatherData.setPressure(1015f);
+			dayList.add(weatherData);
+		}
+		weatherDataArchive.put(epochDay, dayList);
+	}
+
+}
@@ -0,0 +1,234 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+/**
+ *
+ */
+package com.weather.prediction.service;
+
+import static com.weather.prediction.constants.WeatherConstants.OUTPUT_FILE_NAME;
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.weather.prediction.bean.ForecastConfig;
+import com.weather.prediction.bean.WeatherDataArchive;
+import com.weather.prediction.logic.WeatherPredictor;
+import com.weather.prediction.utils.HistorySource;
+import com.weather.prediction.utils.HttpHistorySource;
+import com.weather.prediction.utils.HttpTransport;
+import com.weather.prediction.utils.ReplayHttpServer;
+import com.weather.prediction.utils.RetryBudget;
+import com.weather.prediction.utils.WeatherHistoryDownloader;
+import com.weather.prediction.utils.WeatherUtils;
+
+/**
+ * @author Irene Mathew
+ *
+ */
+public class ForecastServiceTest {
+	private static final String ISSUE_DATE = "2017-10-20";
+	private static final long REFILL_MILLIS = 50;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	private final HistorySource historySource = new GeneratedHistorySource();
+	private ForecastService service;
+
+	@After
+	public void tearDown() {
+		if (service != null)
+			service.stop();
+	}
+
+	@Test
+	public void testForecastOverHttp_Pass() throws Exception {
+		service = new ForecastService(historySource, new ForecastConfig());
+		service.load("CANBERRA", findMonths("201609", "201710"));
+		service.start(0, 2, 0);
+		List<String> expected = predictFromFile(findMonths("201609", "201710"));
+		assertEquals(10, expected.size());
+		for (int request = 0; request < 2; request++) {
+			HttpURLConnection connection = get("location=canberra&date="
+					+ ISSUE_DATE);
+			assertEquals(200, connection.getResponseCode());
+			assertEquals(expected, readLines(connection.getInputStream()));
+		}
+		// the second request is answered from the result cache
+		assertEquals(1, service.getResultCache().getMisses());
+		assertEquals(1, service.getResultCache().getHits());
+		// the resident archive is not changed by the forecasts
+		assertEquals(WeatherUtils.dateStringToEpochDay("2017-10-31"),
+				service.getLatestEpochDay("CANBERRA"));
+	}
+
+	@Test
+	public void testRefreshAddsMonth_Pass() throws Exception {
+		service = new ForecastService(historySource, new ForecastConfig());
+		service.load("CANBERRA", findMonths("201609", "201709"));
+		service.start(0, 1, 0);
+		assertEquals(WeatherUtils.dateStringToEpochDay("2017-09-30"),
+				service.getLatestEpochDay("CANBERRA"));
+		service.refresh("CANBERRA", Collections.singletonList("201710"));
+		assertEquals(WeatherUtils.dateStringToEpochDay("2017-10-31"),
+				service.getLatestEpochDay("CANBERRA"));
+		List<String> expected = predictFromFile(findMonths("201609", "201710"));
+		assertEquals(expected, readLines(get("location=CANBERRA&date="
+				+ ISSUE_DATE).getInputStream()));
+		// a refresh which reads the same records keeps the cached result
+		service.refresh("CANBERRA", Collections.singletonList("201710"));
+		assertEquals(expected, readLines(get("location=CANBERRA&date="
+				+ ISSUE_DATE).getInputStream()));
+		assertEquals(1, service.getResultCache().getHits());
+		// months which left the historical period are not kept across
+		// refreshes
+		assertEquals(Collections.singletonList("201710"),
+				service.getMonths("CANBERRA"));
+	}
+
+	@Test
+	public void testRefreshAfterRetryBudgetUsed_Pass() throws Exception {
+		ReplayHttpServer server = new ReplayHttpServer(new File(this
+				.getClass().getResource("/history").getFile()), 0, 0);
+		server.start(1);
+		try {
+			HttpTransport transport = new HttpTransport(1000, 1000, 10000, 2,
+					new RetryBudget(1, REFILL_MILLIS));
+			service = new ForecastService(new HttpHistorySource(
+					server.getUrlTemplate(), null, transport),
+					new ForecastConfig());
+			service.load("CANBERRA", Collections.singletonList("201710"));
+			// every refresh retries once, using up the retries of a period
+			for (int refresh = 0; refresh < 3; refresh++) {
+				Thread.sleep(REFILL_MILLIS * 2);
+				server.injectFaults(ReplayHttpServer.Fault.SERVER_ERROR, 1, 0);
+				service.refresh("CANBERRA", Collections.singletonList("201710"));
+			}
+			assertEquals(7, server.getRequestCount());
+			assertEquals(WeatherUtils.dateStringToEpochDay("2017-10-31"),
+					service.getLatestEpochDay("CANBERRA"));
+		} finally {
+			server.stop();
+		}
+	}
+
+	@Test
+	public void testInvalidRequest_Fail() throws Exception {
+		service = new ForecastService(historySource, new ForecastConfig());
+		service.load("CANBERRA", findMonths("201609", "201710"));
+		service.start(0, 1, 0);
+		assertEquals(404, get("location=PERTH").getResponseCode());
+		assertEquals(400, get("date=" + ISSUE_DATE).getResponseCode());
+		assertEquals(400, get("location=CANBERRA&date=20-10-2017")
+				.getResponseCode());
+		// a year of records before the issue date is not loaded
+		assertEquals(422, get("location=CANBERRA&date=2017-01-10")
+				.getResponseCode());
+	}
+
+	private HttpURLConnection get(String query) throws Exception {
+		return (HttpURLConnection) new URL("http://localhost:"
+				+ service.getPort() + "/forecast?" + query).openConnection();
+	}
+
+	/**
+	 * This function forecasts the issue date from an archive downloaded
+	 * without the service and written to an output file.
+	 */
+	private List<String> predictFromFile(List<String> monthList)
+			throws Exception {
+		WeatherDataArchive weatherDataArchive = new WeatherHistoryDownloader(
+				"CANBERRA", historySource).downloadHistoryToArchive(monthList,
+				1).copy(WeatherUtils.dateStringToEpochDay(ISSUE_DATE));
+		File outputDir = folder.newFolder();
+		new WeatherPredictor(weatherDataArchive)
+				.predictWeatherforFiveDays(outputDir.getPath());
+		return Files.readAllLines(new File(outputDir + OUTPUT_FILE_NAME)
+				.toPath());
+	}
+
+	private static List<String> readLines(InputStream in) throws Exception {
+		List<String> lines = new ArrayList<String>();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+				in, StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lines.add(line);
+			}
+		}
+		return lines;
+	}
+
+	private static List<String> findMonths(String fromMonth, String toMonth) {
+		List<String> monthList = new ArrayList<String>();
+		YearMonth month = YearMonth.of(Integer.parseInt(fromMonth.substring(0,
+				4)), Integer.parseInt(fromMonth.substring(4)));
+		YearMonth lastMonth = YearMonth.of(Integer.parseInt(toMonth
+				.substring(0, 4)), Integer.parseInt(toMonth.substring(4)));
+		while (!month.isAfter(lastMonth)) {
+			monthList.add(String.format("%d%02d", month.getYear(),
+					month.getMonthValue()));
+			month = month.plusMonths(1);
+		}
+		return monthList;
+	}
+
+	/**
+	 * History source generating monthly files in the format of the API, the
+	 * same for the same month.
+	 */
+	private static final class GeneratedHistorySource implements
+			HistorySource {
+
+		@Override
+		public InputStream openMonth(String stationId, String monthYear) {
+			int year = Integer.parseInt(monthYear.substring(0, 4));
+			int month = Integer.parseInt(monthYear.substring(4));
+			Random random = new Random(year * 100 + month);
+			StringBuilder file = new StringBuilder(
+					",\"Date\",\"Minimum temperature (C)\"\n");
+			for (int day = 1; day <= YearMonth.of(year, month).lengthOfMonth(); day++) {
+				file.append(String.format(Locale.ROOT,
+						",%d-%d-%d,3.4,21.0,0,,,NW,48,13:20,%.1f,%d,,W,13,%.1f,"
+								+ "%.1f,%d,,WNW,28,%.1f\n", year, month, day,
+						8 + random.nextFloat() * 10, 40 + random.nextInt(55),
+						1005 + random.nextFloat() * 20,
+						15 + random.nextFloat() * 12, 20 + random.nextInt(60),
+						1003 + random.nextFloat() * 20));
+			}
+			return new ByteArrayInputStream(file.toString().getBytes(
+					StandardCharsets.UTF_8));
+		}
+
+		@Override
+		public String describe(String stationId, String monthYear) {
+			return stationId + "." + monthYear;
+		}
+	}
+
+}
@@ -0,0 +1,157 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+/**
+ *
+ */
+package com.weather.prediction.utils;
+
+import static com.weather.prediction.constants.WeatherConstants.MORNING_FORECAST_TIMESTAMP;
+import static com.weather.prediction.constants.WeatherConstants.MORNING_SLOT;
+import static com.weather.prediction.constants.WeatherConstants.NOON_SLOT;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.weather.prediction.bean.Station;
+import com.weather.prediction.bean.WeatherData;
+import com.weather.prediction.exception.WeatherException;
+
+/**
+ * @author Irene Mathew
+ *
+ */
+public class BinaryArchiveTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	private Station station;
+	private File archiveFile;
+
+	@Before
+	public void setUp() {
+		station = new Station();
+		station.setLocation("CANBERRA");
+		station.setStationId("IDCJDW2801");
+		station.setLat("-35.28");
+		station.setLongt("149.13");
+		station.setElevtn("57.5");
+		archiveFile = new File(folder.getRoot(), "CANBERRA.wxa");
+	}
+
+	@Test
+	public void testConvertMonthlyFile_Pass() throws Exception {
+		WeatherArchiveBuilder builder = new WeatherArchiveBuilder();
+		BinaryArchiveWriter writer = new BinaryArchiveWriter(station);
+		int todayEpochDay = WeatherUtils.toEpochDay(2020, 1, 1);
+		try (InputStream in = openMonthlyFile()) {
+			new BomCsvTokenizer().tokenize(in, todayEpochDay, station, builder);
+		}
+		try (InputStream in = openMonthlyFile()) {
+			new BomCsvTokenizer().tokenize(in, todayEpochDay, station, writer);
+		}
+		writer.write(archiveFile);
+
+		BinaryArchiveReader reader = BinaryArchiveReader.open(archiveFile);
+		assertEquals("IDCJDW2801", reader.getStation().getStationId());
+		assertEquals("57.5", reader.getStation().getElevtn());
+		assertEquals(WeatherUtils.toEpochDay(2017, 10, 1),
+				reader.getFirstEpochDay());
+		assertEquals(31, reader.getDayCount());
+		Map<String, List<WeatherData>> expected = builder.build()
+				.getWeatherArchive();
+		Map<String, List<WeatherData>> actual = reader.toWeatherDataArchive()
+				.getWeatherArchive();
+		assertEquals(expected.keySet(), actual.keySet());
+		for (String date : expected.keySet()) {
+			assertEquals(expected.get(date).toString(), actual.get(date)
+					.toString());
+			assertEquals(expected.get(date).get(0).getDate(), actual.get(date)
+					.get(0).getDate());
+		}
+	}
+
+	@Test
+	public void testMissingDaysAndSlots_Pass() throws Exception {
+		BinaryArchiveWriter writer = new BinaryArchiveWriter(station);
+		writer.addObservation(station, 2017, 12, 30,
+				MORNING_FORECAST_TIMESTAMP, 20.5f, 40f, 1012.3f);
+		writer.addObservation(station, 2018, 1, 2, MORNING_FORECAST_TIMESTAMP,
+				22f, 45f, 1010f);
+		writer.write(archiveFile);
+
+		BinaryArchiveReader reader = BinaryArchiveReader.open(archiveFile);
+		int firstDay = WeatherUtils.toEpochDay(2017, 12, 30);
+		assertEquals(4, reader.getDayCount());
+		assertTrue(reader.hasObservation(firstDay, MORNING_SLOT));
+		assertFalse(reader.hasObservation(firstDay, NOON_SLOT));
+		assertFalse(reader.hasObservation(firstDay + 1, MORNING_SLOT));
+		assertTrue(Float.isNaN(reader.getTemp(firstDay + 1, MORNING_SLOT)));
+		assertTrue(Float.isNaN(reader.getTemp(firstDay + 10, MORNING_SLOT)));
+		assertEquals(1012.3f, reader.getPressure(firstDay, MORNING_SLOT), 0f);
+		assertEquals(45f, reader.getHumidity(firstDay + 3, MORNING_SLOT), 0f);
+		assertEquals(2, reader.toWeatherDataArchive().getWeatherArchive()
+				.size());
+	}
+
+	@Test
+	public void testAppendMissingMonths_Pass() throws Exception {
+		BinaryArchiveWriter writer = new BinaryArchiveWriter(station);
+		int todayEpochDay = WeatherUtils.toEpochDay(2020, 1, 1);
+		try (InputStream in = openMonthlyFile()) {
+			new BomCsvTokenizer().tokenize(in, todayEpochDay, station, writer);
+		}
+		writer.write(archiveFile);
+
+		BinaryArchiveReader reader = BinaryArchiveReader.open(archiveFile);
+		assertEquals(Arrays.asList("201709", "201711"),
+				reader.findMonthsToUpdate(Arrays.asList("201709", "201710",
+						"201711")));
+		BinaryArchiveWriter appender = new BinaryArchiveWriter(station);
+		reader.replay(appender);
+		appender.addObservation(station, 2017, 11, 1,
+				MORNING_FORECAST_TIMESTAMP, 22f, 45f, 1010f);
+		appender.write(archiveFile);
+
+		BinaryArchiveReader appended = BinaryArchiveReader.open(archiveFile);
+		assertEquals(32, appended.getDayCount());
+		int firstDay = WeatherUtils.toEpochDay(2017, 10, 1);
+		assertEquals(reader.getTemp(firstDay, NOON_SLOT),
+				appended.getTemp(firstDay, NOON_SLOT), 0f);
+		assertEquals(22f, appended.getTemp(firstDay + 31, MORNING_SLOT), 0f);
+		assertEquals(Arrays.asList("201711"), appended.findMonthsToUpdate(Arrays
+				.asList("201710", "201711")));
+	}
+
+	@Test(expected = WeatherException.class)
+	public void testOpenCsvFile_Fail() throws Exception {
+		Files.copy(new File(this.getClass()
+				.getResource("/history/IDCJDW2801.201710.csv").getFile())
+				.toPath(), archiveFile.toPath());
+		BinaryArchiveReader.open(archiveFile);
+	}
+
+	private InputStream openMonthlyFile() throws Exception {
+		return new FileInputStream(new File(this.getClass()
+				.getResource("/history/IDCJDW2801.201710.csv").getFile()));
+	}
+
+}
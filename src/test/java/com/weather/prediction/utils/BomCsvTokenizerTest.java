@@ -0,0 +1,186 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+/**
+ *
+ */
+package com.weather.prediction.utils;
+
+import static com.weather.prediction.constants.WeatherConstants.COMMA_DELIMITER;
+import static com.weather.prediction.constants.WeatherConstants.DATE_FORMAT;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.weather.prediction.bean.Station;
+import com.weather.prediction.bean.WeatherData;
+import com.weather.prediction.exception.WeatherException;
+
+/**
+ * @author Irene Mathew
+ *
+ */
+public class BomCsvTokenizerTest {
+	private Station station;
+	private BomCsvTokenizer tokenizer;
+
+	@Before
+	public void setUp() {
+		station = new Station();
+		station.setLocation("CANBERA");
+		station.setStationId("IDCJDW2801");
+		station.setLat("-33.86");
+		station.setLongt("151.21");
+		station.setElevtn("39");
+		tokenizer = new BomCsvTokenizer();
+	}
+
+	@Test
+	public void testTokenizeMonthlyFile_Pass() throws Exception {
+		WeatherArchiveBuilder builder = new WeatherArchiveBuilder();
+		int dayCount = tokenizer.tokenize(openMonthlyFile(),
+				WeatherUtils.toEpochDay(2020, 1, 1), station, builder);
+		Map<String, List<WeatherData>> archive = builder.build()
+				.getWeatherArchive();
+		File file = new File(this.getClass().getResource("/testOutput")
+				.getFile());
+		List<String> expectedList = Files.readAllLines(file.toPath());
+		assertEquals(expectedList.size() / 2, dayCount);
+		for (String line : expectedList) {
+			String lineSplit[] = line.split(COMMA_DELIMITER, -1);
+			String date = WeatherUtils.extractDatefromDateTime(lineSplit[4]);
+			WeatherData weatherData = findRecord(archive.get(date),
+					lineSplit[4]);
+			assertEquals(lineSplit[0] + COMMA_DELIMITER + lineSplit[1]
+					+ COMMA_DELIMITER + lineSplit[2] + COMMA_DELIMITER
+					+ lineSplit[3], weatherData.getLocation()
+					+ COMMA_DELIMITER + weatherData.getLat() + COMMA_DELIMITER
+					+ weatherData.getLongt() + COMMA_DELIMITER
+					+ weatherData.getElevtn());
+			assertEquals(date,
+					WeatherUtils.dateToString(weatherData.getDate(),
+							DATE_FORMAT));
+			assertEquals(Float.parseFloat(lineSplit[5]), weatherData.getTemp(),
+					0.0f);
+			assertEquals(Float.parseFloat(lineSplit[6]),
+					weatherData.getHumidity(), 0.0f);
+			assertEquals(Float.parseFloat(lineSplit[7]),
+					weatherData.getPressure(), 0.0f);
+		}
+	}
+
+	@Test
+	public void testTokenizeSkipsTodayAndFuture_Pass() throws Exception {
+		WeatherArchiveBuilder builder = new WeatherArchiveBuilder();
+		int dayCount = tokenizer.tokenize(openMonthlyFile(),
+				WeatherUtils.toEpochDay(2017, 10, 15), station, builder);
+		assertEquals(14, dayCount);
+		assertEquals(14, builder.build().getWeatherArchive().size());
+	}
+
+	@Test
+	public void testObservationsPushedInFileOrder_Pass() throws Exception {
+		List<String> observations = new ArrayList<String>();
+		tokenizer.tokenize(openMonthlyFile(), WeatherUtils.toEpochDay(2017,
+				10, 3), station, (observedStation, year, month, day, time,
+				temp, humidity, pressure) -> observations.add(WeatherUtils
+				.toDateString(year, month, day) + "T" + time));
+		assertEquals(4, observations.size());
+		assertEquals("2017-10-01T09:00:00Z", observations.get(0));
+		assertEquals("2017-10-01T15:00:00Z", observations.get(1));
+		assertEquals("2017-10-02T15:00:00Z", observations.get(3));
+	}
+
+	@Test
+	public void testParsedValuesMatchParseFloat_Pass() throws Exception {
+		StringBuilder csv = new StringBuilder();
+		List<String> values = new ArrayList<String>();
+		for (int i = -500; i < 11000; i++) {
+			values.add((i < 0 ? "-" : "") + Math.abs(i) / 10 + "."
+					+ Math.abs(i) % 10);
+		}
+		int dayCount = 0;
+		for (int i = 0; i + 6 <= values.size(); i += 6) {
+			int epochDay = WeatherUtils.toEpochDay(2000, 1, 1) + dayCount++;
+			csv.append(",").append(WeatherUtils.epochDayToString(epochDay))
+					.append(",,,,,,,,,").append(values.get(i)).append(",")
+					.append(values.get(i + 1)).append(",,,,")
+					.append(values.get(i + 2)).append(",")
+					.append(values.get(i + 3)).append(",")
+					.append(values.get(i + 4)).append(",,,,")
+					.append(values.get(i + 5)).append("\n");
+		}
+		WeatherArchiveBuilder builder = new WeatherArchiveBuilder();
+		tokenizer.tokenize(new ByteArrayInputStream(csv.toString().getBytes(
+				StandardCharsets.US_ASCII)), Integer.MAX_VALUE, station,
+				builder);
+		Map<String, List<WeatherData>> archive = builder.build()
+				.getWeatherArchive();
+		for (int day = 0; day < dayCount; day++) {
+			List<WeatherData> dayList = archive.get(WeatherUtils
+					.epochDayToString(WeatherUtils.toEpochDay(2000, 1, 1)
+							+ day));
+			int i = day * 6;
+			assertEquals(Float.parseFloat(values.get(i)), dayList.get(0)
+					.getTemp(), 0.0f);
+			assertEquals(Float.parseFloat(values.get(i + 1)), dayList.get(0)
+					.getHumidity(), 0.0f);
+			assertEquals(Float.parseFloat(values.get(i + 2)), dayList.get(0)
+					.getPressure(), 0.0f);
+			assertEquals(Float.parseFloat(values.get(i + 3)), dayList.get(1)
+					.getTemp(), 0.0f);
+			assertEquals(Float.parseFloat(values.get(i + 4)), dayList.get(1)
+					.getHumidity(), 0.0f);
+			assertEquals(Float.parseFloat(values.get(i + 5)), dayList.get(1)
+					.getPressure(), 0.0f);
+		}
+	}
+
+	@Test(expected = WeatherException.class)
+	public void testTokenizeChangedDateFormat_Fail() throws Exception {
+		byte[] csv = ",01/10/2017,,,,,,,,,10.6,58,,,,1022.2,18.4,38,,,,1018.6\n"
+				.getBytes(StandardCharsets.US_ASCII);
+		tokenizer.tokenize(new ByteArrayInputStream(csv), Integer.MAX_VALUE,
+				station, new WeatherArchiveBuilder());
+	}
+
+	@Test(expected = WeatherException.class)
+	public void testTokenizeMissingValue_Fail() throws Exception {
+		byte[] csv = ",2017-10-1,,,,,,,,,10.6,58,,,,,18.4,38,,,,1018.6\n"
+				.getBytes(StandardCharsets.US_ASCII);
+		tokenizer.tokenize(new ByteArrayInputStream(csv), Integer.MAX_VALUE,
+				station, new WeatherArchiveBuilder());
+	}
+
+	private InputStream openMonthlyFile() throws IOException {
+		return new FileInputStream(this.getClass()
+				.getResource("/history/IDCJDW2801.201710.csv").getFile());
+	}
+
+	private WeatherData findRecord(List<WeatherData> dayList, String dateTime) {
+		for (WeatherData weatherData : dayList) {
+			if (weatherData.getDateTime().equals(dateTime))
+				return weatherData;
+		}
+		throw new AssertionError("No record for " + dateTime);
+	}
+
+}
@@ -0,0 +1,153 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+/**
+ *
+ */
+package com.weather.prediction.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.weather.prediction.bean.Station;
+import com.weather.prediction.bean.WeatherDataArchive;
+
+/**
+ * @author Irene Mathew
+ *
+ */
+public class BulkIngestionSchedulerTest {
+	private static final List<String> MONTH_LIST = Collections
+			.singletonList("201710");
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	private ReplayHttpServer server;
+
+	@Before
+	public void setUp() throws Exception {
+		File monthFile = new File(this.getClass()
+				.getResource("/history/IDCJDW2801.201710.csv").getFile());
+		// the captured month of Canberra stands in for the shared station
+		Files.copy(monthFile.toPath(), new File(folder.getRoot(),
+				"IDCJDW2801.201710.csv").toPath());
+		Files.copy(monthFile.toPath(), new File(folder.getRoot(),
+				"IDCJDW4050.201710.csv").toPath());
+		server = new ReplayHttpServer(folder.getRoot(), 0, 0);
+		server.start(2);
+	}
+
+	@After
+	public void tearDown() {
+		server.stop();
+	}
+
+	@Test
+	public void testGroupByStationId_Pass() throws Exception {
+		Map<String, List<Station>> stationGroups = BulkIngestionScheduler
+				.groupByStationId(WeatherHistoryDownloader.getStationCatalog());
+		assertEquals(8, stationGroups.size());
+		assertEquals(2, stationGroups.get("IDCJDW4050").size());
+	}
+
+	@Test
+	public void testSharedStationFetchedOnce_Pass() throws Exception {
+		List<Station> plannedStations = new ArrayList<Station>();
+		for (Station station : WeatherHistoryDownloader.getStationCatalog()) {
+			if (station.getStationId().equals("IDCJDW2801")
+					|| station.getStationId().equals("IDCJDW4050"))
+				plannedStations.add(station);
+		}
+		BulkIngestionScheduler scheduler = new BulkIngestionScheduler(
+				new HttpHistorySource(server.getUrlTemplate(), null), 4, 100,
+				4);
+		Map<String, WeatherDataArchive> archives = scheduler.ingest(
+				plannedStations, MONTH_LIST);
+		assertEquals(2, server.getRequestCount());
+		assertEquals(3, archives.size());
+		assertEquals(31, archives.get("DARWIN").getWeatherArchive().size());
+		assertEquals(31, archives.get("GOLDCOAST").getWeatherArchive().size());
+		assertEquals("-12.462", archives.get("DARWIN").getWeatherArchive()
+				.get("2017-10-01").get(0).getLat());
+	}
+
+	@Test
+	public void testIngestIntoStore_Pass() throws Exception {
+		List<Station> plannedStations = new ArrayList<Station>();
+		for (Station station : WeatherHistoryDownloader.getStationCatalog()) {
+			if (station.getStationId().equals("IDCJDW4050")
+					|| station.getLocation().equals("SYDNEY"))
+				plannedStations.add(station);
+		}
+		BulkIngestionScheduler scheduler = new BulkIngestionScheduler(
+				new LocalDirectoryHistorySource(folder.getRoot()), 2, 100, 4);
+		ObservationStore observationStore = new ObservationStore(31);
+		List<String> locations = scheduler.ingest(plannedStations,
+				MONTH_LIST, observationStore);
+		assertEquals(2, locations.size());
+		assertFalse(locations.contains("SYDNEY"));
+		ObservationView darwin = observationStore.getView("DARWIN");
+		assertEquals(WeatherUtils.dateStringToEpochDay("2017-10-31"),
+				darwin.getLastEpochDay());
+		assertEquals("-12.462", observationStore.getStation("DARWIN")
+				.getLat());
+	}
+
+	@Test
+	public void testFailedStationLeftOut_Pass() throws Exception {
+		List<Station> plannedStations = new ArrayList<Station>();
+		for (Station station : WeatherHistoryDownloader.getStationCatalog()) {
+			if (station.getLocation().equals("CANBERRA")
+					|| station.getLocation().equals("SYDNEY"))
+				plannedStations.add(station);
+		}
+		BulkIngestionScheduler scheduler = new BulkIngestionScheduler(
+				new LocalDirectoryHistorySource(folder.getRoot()), 2, 100, 4);
+		Map<String, WeatherDataArchive> archives = scheduler.ingest(
+				plannedStations, MONTH_LIST);
+		assertTrue(archives.containsKey("CANBERRA"));
+		assertFalse(archives.containsKey("SYDNEY"));
+	}
+
+	@Test
+	public void testReplayArchive_Pass() throws Exception {
+		List<String> locations = ReplayHttpServer.replayArchive(
+				folder.getRoot(), 0, 0, 100);
+		assertEquals(3, locations.size());
+		assertTrue(locations.contains("CANBERRA"));
+		assertTrue(locations.contains("DARWIN"));
+		assertTrue(locations.contains("GOLDCOAST"));
+	}
+
+	@Test
+	public void testTokenBucketRate_Pass() throws Exception {
+		TokenBucket bucket = new TokenBucket(20, 1);
+		long start = System.nanoTime();
+		for (int i = 0; i < 5; i++) {
+			bucket.acquire();
+		}
+		// the first token is in the bucket, the other four wait 50 ms each
+		assertTrue((System.nanoTime() - start) / 1000000 >= 180);
+	}
+
+}
@@ -0,0 +1,125 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+/**
+ *
+ */
+package com.weather.prediction.utils;
+
+import static com.weather.prediction.constants.WeatherConstants.MORNING_SLOT;
+import static com.weather.prediction.constants.WeatherConstants.NOON_SLOT;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.weather.prediction.bean.Station;
+
+/**
+ * @author Irene Mathew
+ *
+ */
+public class DailyAggregateCacheTest {
+	private ObservationStore store;
+	private Station station;
+	private CountingView view;
+
+	@Before
+	public void setUp() {
+		store = new ObservationStore(64);
+		station = new Station();
+		station.setLocation("CANBERRA");
+		for (int day = 100; day < 130; day++) {
+			store.putObservation(station, day, MORNING_SLOT, day, 50, 1010);
+			store.putObservation(station, day, NOON_SLOT, day + 3, 40, 1008);
+		}
+		store.putObservation(station, 130, MORNING_SLOT, 25, 60, 1000);
+		view = new CountingView(store.getView("CANBERRA"));
+	}
+
+	@Test
+	public void testDayReadOnce_Pass() {
+		DailyAggregateCache cache = new DailyAggregateCache(view);
+		for (int pass = 0; pass < 3; pass++) {
+			for (int day = 110; day < 124; day++) {
+				assertEquals(day + 1.5f, cache.getTemp(day), 0f);
+				assertEquals(45f, cache.getHumidity(day), 0f);
+				assertEquals(1009f, cache.getPressure(day), 0f);
+				assertTrue(cache.isComplete(day));
+			}
+		}
+		assertEquals(14, cache.getCachedDays());
+		assertEquals(14, view.reads);
+		assertFalse(cache.isComplete(130));
+		assertTrue(Float.isNaN(cache.getTemp(130)));
+		// days before the first day of the view are kept as well
+		assertFalse(cache.isComplete(40));
+		assertEquals(16, view.reads);
+	}
+
+	@Test
+	public void testInvalidatedDayReadAgain_Pass() {
+		DailyAggregateCache cache = new DailyAggregateCache(view);
+		assertFalse(cache.isComplete(130));
+		store.putObservation(station, 130, NOON_SLOT, 27, 50, 1002);
+		assertFalse(cache.isComplete(130));
+		cache.invalidate(130);
+		assertTrue(cache.isComplete(130));
+		assertEquals(26f, cache.getTemp(130), 0f);
+		assertEquals(1001f, cache.getPressure(130), 0f);
+		assertEquals(2, view.reads);
+	}
+
+	/**
+	 * Class which counts the days whose temperature is read.
+	 */
+	private static class CountingView implements ObservationView {
+		private final ObservationView view;
+		private int reads;
+
+		CountingView(ObservationView view) {
+			this.view = view;
+		}
+
+		@Override
+		public int getFirstEpochDay() {
+			return view.getFirstEpochDay();
+		}
+
+		@Override
+		public int getLastEpochDay() {
+			return view.getLastEpochDay();
+		}
+
+		@Override
+		public boolean hasObservation(int epochDay, int slot) {
+			return view.hasObservation(epochDay, slot);
+		}
+
+		@Override
+		public float getTemp(int epochDay, int slot) {
+			if (slot == MORNING_SLOT)
+				reads++;
+			return view.getTemp(epochDay, slot);
+		}
+
+		@Override
+		public float getHumidity(int epochDay, int slot) {
+			return view.getHumidity(epochDay, slot);
+		}
+
+		@Override
+		public float getPressure(int epochDay, int slot) {
+			return view.getPressure(epochDay, slot);
+		}
+	}
+
+}
@@ -0,0 +1,107 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+/**
+ *
+ */
+package com.weather.prediction.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author Irene Mathew
+ *
+ */
+public class HistoryCacheTest {
+	private static final String STATION_ID = "IDCJDW2801";
+	private static final String CLOSED_MONTH = "201710";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testIsClosedMonth_Pass() {
+		HistoryCache cache = new HistoryCache(folder.getRoot(), 1024, 0);
+		assertTrue(cache.isClosedMonth(CLOSED_MONTH));
+		assertFalse(cache.isClosedMonth(WeatherHistoryDownloader.getYearMonth(
+				0, 0)));
+	}
+
+	@Test
+	public void testClosedMonthIsFreshAfterCommit_Pass() throws IOException {
+		HistoryCache cache = new HistoryCache(folder.getRoot(), 1024, 0);
+		assertFalse(cache.isFresh(STATION_ID, CLOSED_MONTH));
+		commit(cache, CLOSED_MONTH, "\"abc\"");
+		assertTrue(cache.isFresh(STATION_ID, CLOSED_MONTH));
+		assertEquals("\"abc\"", cache.getETag(STATION_ID, CLOSED_MONTH));
+	}
+
+	@Test
+	public void testCurrentMonthExpires_Pass() throws IOException {
+		String currentMonth = WeatherHistoryDownloader.getYearMonth(0, 0);
+		HistoryCache cache = new HistoryCache(folder.getRoot(), 1024, 0);
+		commit(cache, currentMonth, null);
+		assertFalse(cache.isFresh(STATION_ID, currentMonth));
+		HistoryCache longLivedCache = new HistoryCache(folder.getRoot(), 1024,
+				60000);
+		assertTrue(longLivedCache.isFresh(STATION_ID, currentMonth));
+	}
+
+	@Test
+	public void testEvictLeastRecentlyUsed_Pass() throws IOException {
+		HistoryCache cache = new HistoryCache(folder.getRoot(), 160, 0);
+		commit(cache, "201708", null);
+		cache.getCacheFile(STATION_ID, "201708").setLastModified(1000);
+		commit(cache, "201709", null);
+		commit(cache, CLOSED_MONTH, null);
+		assertFalse(cache.getCacheFile(STATION_ID, "201708").exists());
+		assertTrue(cache.getCacheFile(STATION_ID, "201709").exists());
+		assertTrue(cache.getCacheFile(STATION_ID, CLOSED_MONTH).exists());
+	}
+
+	@Test
+	public void testOpenSurvivesEviction_Pass() throws IOException {
+		HistoryCache cache = new HistoryCache(folder.getRoot(), 80, 0);
+		commit(cache, "201709", null);
+		InputStream in = cache.open(STATION_ID, "201709");
+		cache.getCacheFile(STATION_ID, "201709").setLastModified(1000);
+		commit(cache, CLOSED_MONTH, null);
+		assertFalse(cache.getCacheFile(STATION_ID, "201709").exists());
+		assertNull(cache.open(STATION_ID, "201709"));
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in));
+		assertEquals(",2017-10-1,,,,,,,,", reader.readLine());
+		reader.close();
+	}
+
+	private void commit(HistoryCache cache, String monthYear, String eTag)
+			throws IOException {
+		File tempFile = cache.createTempFile(STATION_ID, monthYear);
+		FileWriter writer = new FileWriter(tempFile);
+		for (int i = 0; i < 4; i++) {
+			writer.write(",2017-10-1,,,,,,,,\n");
+		}
+		writer.close();
+		cache.commit(tempFile, STATION_ID, monthYear, eTag, 0);
+	}
+
+}
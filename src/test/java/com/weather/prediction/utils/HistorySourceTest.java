@@ -0,0 +1,109 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+/**
+ *
+ */
+package com.weather.prediction.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.weather.prediction.bean.WeatherDataArchive;
+import com.weather.prediction.exception.WeatherException;
+
+/**
+ * @author Irene Mathew
+ *
+ */
+public class HistorySourceTest {
+	private static final String LOCATION = "CANBERRA";
+	private static final List<String> MONTH_LIST = Collections
+			.singletonList("201710");
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	private File historyDir;
+	private ReplayHttpServer server;
+
+	@Before
+	public void setUp() throws Exception {
+		historyDir = new File(this.getClass().getResource("/history")
+				.getFile());
+		server = new ReplayHttpServer(historyDir, 0, 0);
+		server.start(2);
+	}
+
+	@After
+	public void tearDown() {
+		server.stop();
+	}
+
+	@Test
+	public void testLocalDirectorySource_Pass() throws Exception {
+		WeatherHistoryDownloader downloader = new WeatherHistoryDownloader(
+				LOCATION, new LocalDirectoryHistorySource(historyDir));
+		WeatherDataArchive archive = downloader.downloadHistoryToArchive(
+				MONTH_LIST, 1);
+		assertEquals(31, archive.getWeatherArchive().size());
+	}
+
+	@Test
+	public void testReplayServerWithCache_Pass() throws Exception {
+		HistoryCache cache = new HistoryCache(folder.getRoot(),
+				1024 * 1024, 0);
+		WeatherHistoryDownloader downloader = new WeatherHistoryDownloader(
+				LOCATION, new HttpHistorySource(server.getUrlTemplate(), cache));
+		assertEquals(31, downloader.downloadHistoryToArchive(MONTH_LIST, 1)
+				.getWeatherArchive().size());
+		// closed month is served from the cache the second time
+		assertEquals(31, downloader.downloadHistoryToArchive(MONTH_LIST, 1)
+				.getWeatherArchive().size());
+		assertEquals(1, server.getRequestCount());
+		assertTrue(cache.getCacheFile("IDCJDW2801", "201710").exists());
+	}
+
+	@Test
+	public void testThrottlePerNetworkAttempt_Pass() throws Exception {
+		HistoryCache cache = new HistoryCache(folder.getRoot(),
+				1024 * 1024, 0);
+		HttpHistorySource historySource = new HttpHistorySource(
+				server.getUrlTemplate(), cache);
+		AtomicInteger permits = new AtomicInteger();
+		RequestThrottle throttle = urlPath -> permits.incrementAndGet();
+		// the failed first attempt and its retry both take a permit
+		server.injectFaults(ReplayHttpServer.Fault.SERVER_ERROR, 1, 0);
+		historySource.openMonth("IDCJDW2801", "201710", throttle).close();
+		assertEquals(2, permits.get());
+		// the closed month is then served from the cache without a permit
+		historySource.openMonth("IDCJDW2801", "201710", throttle).close();
+		assertEquals(2, permits.get());
+		assertEquals(2, server.getRequestCount());
+	}
+
+	@Test(expected = WeatherException.class)
+	public void testReplayServerMissingMonth_Fail() throws Exception {
+		WeatherHistoryDownloader downloader = new WeatherHistoryDownloader(
+				LOCATION, new HttpHistorySource(server.getUrlTemplate(), null));
+		downloader.downloadHistoryToArchive(Arrays.asList("201001"), 1);
+	}
+
+}
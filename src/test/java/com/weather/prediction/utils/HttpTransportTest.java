@@ -0,0 +1,142 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+/**
+ *
+ */
+package com.weather.prediction.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Irene Mathew
+ *
+ */
+public class HttpTransportTest {
+	private static final String STATION_ID = "IDCJDW2801";
+	private static final String MONTH = "201710";
+
+	private File monthFile;
+	private ReplayHttpServer server;
+	private String urlPath;
+
+	@Before
+	public void setUp() throws Exception {
+		File historyDir = new File(this.getClass().getResource("/history")
+				.getFile());
+		monthFile = new File(historyDir, STATION_ID + "." + MONTH + ".csv");
+		server = new ReplayHttpServer(historyDir, 0, 0);
+		server.start(2);
+		urlPath = HttpHistorySource.createUrl(server.getUrlTemplate(),
+				STATION_ID, MONTH);
+	}
+
+	@After
+	public void tearDown() {
+		server.stop();
+	}
+
+	@Test
+	public void testRetryAfterServerError_Pass() throws Exception {
+		RetryBudget budget = new RetryBudget(5);
+		HttpTransport transport = new HttpTransport(1000, 1000, 10000, 3,
+				budget);
+		server.injectFaults(ReplayHttpServer.Fault.SERVER_ERROR, 2, 0);
+		HttpTransport.Response response = transport.get(urlPath, null);
+		assertEquals(200, response.getStatus());
+		assertArrayEquals(Files.readAllBytes(monthFile.toPath()),
+				response.getBody());
+		assertEquals(3, server.getRequestCount());
+		assertEquals(3, budget.getRemainingRetries());
+	}
+
+	@Test
+	public void testRetryAfterTruncatedBody_Pass() throws Exception {
+		HttpTransport transport = new HttpTransport(1000, 1000, 10000, 3,
+				new RetryBudget(5));
+		server.injectFaults(ReplayHttpServer.Fault.TRUNCATE, 1, 0);
+		assertArrayEquals(Files.readAllBytes(monthFile.toPath()), transport
+				.get(urlPath, null).getBody());
+	}
+
+	@Test
+	public void testCompressedBody_Pass() throws Exception {
+		server.setCompression(true);
+		HttpTransport transport = HttpTransport.createDefault();
+		assertArrayEquals(Files.readAllBytes(monthFile.toPath()), transport
+				.get(urlPath, null).getBody());
+	}
+
+	@Test
+	public void testStalledServerDeadline_Fail() throws Exception {
+		HttpTransport transport = new HttpTransport(1000, 5000, 500, 3,
+				new RetryBudget(5));
+		server.injectFaults(ReplayHttpServer.Fault.STALL, 3, 3000);
+		long start = System.currentTimeMillis();
+		try {
+			transport.get(urlPath, null);
+			fail("Stalled request should fail at its deadline");
+		} catch (IOException e) {
+			assertTrue(System.currentTimeMillis() - start < 2000);
+		}
+	}
+
+	@Test
+	public void testRetryBudgetExhausted_Fail() throws Exception {
+		HttpTransport transport = new HttpTransport(1000, 1000, 10000, 3,
+				new RetryBudget(0));
+		server.injectFaults(ReplayHttpServer.Fault.SERVER_ERROR, 3, 0);
+		try {
+			transport.get(urlPath, null);
+			fail("Request should not be retried without budget");
+		} catch (IOException e) {
+			assertEquals(1, server.getRequestCount());
+		}
+	}
+
+	@Test
+	public void testRetryBudgetRefilled_Pass() throws Exception {
+		RetryBudget budget = new RetryBudget(1, 1000);
+		HttpTransport transport = new HttpTransport(1000, 1000, 10000, 2,
+				budget);
+		server.injectFaults(ReplayHttpServer.Fault.SERVER_ERROR, 1, 0);
+		transport.get(urlPath, null);
+		assertEquals(0, budget.getRemainingRetries());
+		Thread.sleep(1100);
+		assertEquals(1, budget.getRemainingRetries());
+		server.injectFaults(ReplayHttpServer.Fault.SERVER_ERROR, 1, 0);
+		assertEquals(200, transport.get(urlPath, null).getStatus());
+		assertEquals(4, server.getRequestCount());
+	}
+
+	@Test
+	public void testMissingFileNotRetried_Fail() throws Exception {
+		HttpTransport transport = new HttpTransport(1000, 1000, 10000, 3,
+				new RetryBudget(5));
+		try {
+			transport.get(HttpHistorySource.createUrl(
+					server.getUrlTemplate(), STATION_ID, "201001"), null);
+			fail("Missing file should fail");
+		} catch (IOException e) {
+			assertEquals(1, server.getRequestCount());
+		}
+	}
+
+}
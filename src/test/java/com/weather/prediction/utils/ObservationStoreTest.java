@@ -0,0 +1,143 @@
+/******************************************************
+ * Copyright (c) November 2017, Irene Mathew.
+ * All Rights Reserved
+ *
+ * This file can be redistributed and/or modified,
+ * under the terms of the GNU General Public License
+ * as published by the Free Software Foundation,
+ * either version 3 of the License, or any later version.
+ *******************************************************/
+/**
+ *
+ */
+package com.weather.prediction.utils;
+
+import static com.weather.prediction.constants.WeatherConstants.MORNING_FORECAST_TIMESTAMP;
+import static com.weather.prediction.constants.WeatherConstants.MORNING_SLOT;
+import static com.weather.prediction.constants.WeatherConstants.NOON_FORECAST_TIMESTAMP;
+import static com.weather.prediction.constants.WeatherConstants.NOON_SLOT;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.weather.prediction.bean.Station;
+import com.weather.prediction.bean.VariationVector;
+import com.weather.prediction.bean.WeatherData;
+import com.weather.prediction.bean.WeatherDataArchive;
+import com.weather.prediction.logic.SlidingWindowImplementation;
+
+/**
+ * @author Irene Mathew
+ *
+ */
+public class ObservationStoreTest {
+	private Station station;
+	private ObservationStore store;
+
+	@Before
+	public void setUp() {
+		station = createStation("CANBERRA");
+		store = new ObservationStore(4);
+	}
+
+	@Test
+	public void testGrowInBothDirections_Pass() {
+		int firstDay = WeatherUtils.toEpochDay(2017, 10, 10);
+		store.putObservation(station, firstDay, MORNING_SLOT, 20f, 40f, 1010f);
+		store.putObservation(station, firstDay + 30, NOON_SLOT, 25f, 30f,
+				1015f);
+		store.putObservation(station, firstDay - 400, MORNING_SLOT, 10f, 60f,
+				1005f);
+
+		ObservationView view = store.getView("CANBERRA");
+		assertTrue(view.getFirstEpochDay() <= firstDay - 400);
+		assertEquals(firstDay + 30, view.getLastEpochDay());
+		assertEquals(20f, view.getTemp(firstDay, MORNING_SLOT), 0f);
+		assertEquals(1015f, view.getPressure(firstDay + 30, NOON_SLOT), 0f);
+		assertEquals(60f, view.getHumidity(firstDay - 400, MORNING_SLOT), 0f);
+		assertFalse(view.hasObservation(firstDay, NOON_SLOT));
+		assertTrue(Float.isNaN(view.getTemp(firstDay, NOON_SLOT)));
+		assertTrue(Float.isNaN(view.getTemp(firstDay + 1000, MORNING_SLOT)));
+		assertTrue(store.getOffHeapBytes() >= 431 * 25);
+		assertNull(store.getView("SYDNEY"));
+	}
+
+	@Test
+	public void testSharedStation_Pass() {
+		store.addObservation(station, 2017, 10, 1, MORNING_FORECAST_TIMESTAMP,
+				20f, 40f, 1010f);
+		store.addObservation(createStation("CANBERRA"), 2017, 10, 2,
+				NOON_FORECAST_TIMESTAMP, 21f, 41f, 1011f);
+		store.addObservation(station, 2017, 10, 3, "12:00:00Z", 22f, 42f,
+				1012f);
+
+		assertSame(station, store.getStation("CANBERRA"));
+		assertEquals(1, store.getStations().size());
+		assertEquals(WeatherUtils.toEpochDay(2017, 10, 2), store
+				.getView("CANBERRA").getLastEpochDay());
+	}
+
+	@Test
+	public void testAlgorithmOverStore_Pass() throws Exception {
+		int firstDay = WeatherUtils.toEpochDay(2017, 1, 1);
+		WeatherArchiveBuilder builder = new WeatherArchiveBuilder();
+		for (int day = 0; day < 21; day++) {
+			int[] date = WeatherUtils.epochDayToYearMonthDay(firstDay + day);
+			float temp = 15f + (day * 7 % 5);
+			float humidity = 50f + (day * 3 % 11);
+			float pressure = 1010f + (day % 4);
+			store.addObservation(station, date[0], date[1], date[2],
+					MORNING_FORECAST_TIMESTAMP, temp, humidity, pressure);
+			store.addObservation(station, date[0], date[1], date[2],
+					NOON_FORECAST_TIMESTAMP, temp + 4, humidity - 10,
+					pressure - 2);
+			builder.addObservation(station, date[0], date[1], date[2],
+					MORNING_FORECAST_TIMESTAMP, temp, humidity, pressure);
+			builder.addObservation(station, date[0], date[1], date[2],
+					NOON_FORECAST_TIMESTAMP, temp + 4, humidity - 10,
+					pressure - 2);
+		}
+		WeatherDataArchive archive = builder.build();
+		List<WeatherData> lastYearList = archive.getRecords(firstDay,
+				firstDay + 14);
+		List<WeatherData> presentYearList = archive.getRecords(firstDay + 14,
+				firstDay + 21);
+
+		List<VariationVector> expected = new SlidingWindowImplementation(
+				presentYearList, lastYearList).implementSlidingWindow();
+		List<VariationVector> actual = new SlidingWindowImplementation(
+				store.getView("CANBERRA"), firstDay + 14, 7,
+				store.getView("CANBERRA"), firstDay, 14)
+				.implementSlidingWindow();
+		assertEquals(2, actual.size());
+		for (int slot = 0; slot < 2; slot++) {
+			assertEquals(expected.get(slot).getTime(), actual.get(slot)
+					.getTime());
+			assertEquals(expected.get(slot).getTemperature(), actual.get(slot)
+					.getTemperature(), 0f);
+			assertEquals(expected.get(slot).getHumidity(), actual.get(slot)
+					.getHumidity(), 0f);
+			assertEquals(expected.get(slot).getPressure(), actual.get(slot)
+					.getPressure(), 0f);
+		}
+		assertEquals(NOON_FORECAST_TIMESTAMP, actual.get(NOON_SLOT).getTime());
+	}
+
+	private static Station createStation(String location) {
+		Station station = new Station();
+		station.setLocation(location);
+		station.setStationId("IDCJDW2801");
+		station.setLat("-35.28");
+		station.setLongt("149.13");
+		station.setElevtn("57.5");
+		return station;
+	}
+
+}
@@ -13,19 +13,33 @@
 package com.weather.prediction.utils;
 
 import static com.weather.prediction.constants.WeatherConstants.BASE_URL;
+import static com.weather.prediction.constants.WeatherConstants.HISTORY_CACHE_DIR_PROPERTY;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.text.ParseException;
+import java.time.YearMonth;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.BeforeClass;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import com.sun.net.httpserver.HttpExchange;
+import com.weather.prediction.bean.WeatherDataArchive;
 import com.weather.prediction.exception.WeatherException;
 
 /**
@@ -41,6 +55,9 @@ public class WeatherHistoryDownloaderTest {
 	private static String monthYear;
 	WeatherHistoryDownloader downloader;
 	private static List<String> expectedList;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
 	
 	@BeforeClass
 	public static void setUpOnce() throws ParseException, IOException {
@@ -54,11 +71,18 @@ public class WeatherHistoryDownloaderTest {
 	
 	 @Before
 	   public void initialize() {
+		System.setProperty(HISTORY_CACHE_DIR_PROPERTY, folder.getRoot()
+				.getPath());
 		downloader = new WeatherHistoryDownloader(
 					location);
 		downloader.dataLines= new ArrayList<String>();
 	 }
 
+	@After
+	public void tearDown() {
+		System.clearProperty(HISTORY_CACHE_DIR_PROPERTY);
+	}
+
 	@Test(expected = WeatherException.class)
 	public void testCallAPIUrl_Fail() throws ParseException, WeatherException {
 		String inCorrectUrl = "http://www.bom.gov.au/climate/dwo/201708/text/ID7892.201708.csv";
@@ -82,4 +106,115 @@ public class WeatherHistoryDownloaderTest {
 		assertEquals(expectedList.size(),downloader.dataLines.size());
 	}
 
+	@Test
+	public void testConcurrentDownloadInMonthOrder_Pass() throws Exception {
+		List<String> monthList = downloader.findHistoricalDataMonths();
+		File historyDir = folder.newFolder();
+		for (String month : monthList) {
+			writeMonth(new File(historyDir, stationId + "." + month + ".csv"),
+					month);
+		}
+		// later months are answered sooner, so they finish first
+		ReplayHttpServer server = new ReplayHttpServer(historyDir, 0, 0) {
+			@Override
+			protected void replay(HttpExchange exchange) throws IOException {
+				String path = exchange.getRequestURI().getPath();
+				String month = path.substring(path.lastIndexOf('.') - 6,
+						path.lastIndexOf('.'));
+				try {
+					Thread.sleep(10L * (monthList.size() - monthList
+							.indexOf(month)));
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				super.replay(exchange);
+			}
+		};
+		server.start(monthList.size());
+		try {
+			WeatherHistoryDownloader replayDownloader = new WeatherHistoryDownloader(
+					location, new HttpHistorySource(server.getUrlTemplate(),
+							null));
+			byte[] serial = String.join("\n",
+					replayDownloader.downloadHistoryFromAPI(1)).getBytes(
+					StandardCharsets.UTF_8);
+			byte[] concurrent = String.join("\n",
+					replayDownloader.downloadHistoryFromAPI(4)).getBytes(
+					StandardCharsets.UTF_8);
+			assertTrue(serial.length > 0);
+			assertArrayEquals(serial, concurrent);
+			assertEquals(describe(replayDownloader.downloadHistoryToArchive(
+					monthList, 1)), describe(replayDownloader
+					.downloadHistoryToArchive(monthList, 4)));
+		} finally {
+			server.stop();
+		}
+	}
+
+	@Test
+	public void testCallAPIUrlThroughTransport_Pass() throws Exception {
+		String month = downloader.findHistoricalDataMonths().get(0);
+		File historyDir = folder.newFolder();
+		writeMonth(new File(historyDir, stationId + "." + month + ".csv"),
+				month);
+		ReplayHttpServer server = new ReplayHttpServer(historyDir, 0, 0);
+		server.start(1);
+		try {
+			AtomicInteger requestCount = new AtomicInteger();
+			HttpTransport transport = new HttpTransport(new RetryBudget(1)) {
+				@Override
+				public Response get(String urlPath,
+						Map<String, String> requestHeaders,
+						RequestThrottle throttle) throws IOException {
+					requestCount.incrementAndGet();
+					return super.get(urlPath, requestHeaders, throttle);
+				}
+			};
+			WeatherHistoryDownloader replayDownloader = new WeatherHistoryDownloader(
+					location, new HttpHistorySource(server.getUrlTemplate(),
+							null), transport);
+			replayDownloader.dataLines = new ArrayList<String>();
+			String monthUrl = HttpHistorySource.createUrl(
+					server.getUrlTemplate(), stationId, month);
+			replayDownloader.callAPIUrl(monthUrl, coordinates);
+			replayDownloader.callAPIUrl(monthUrl, coordinates);
+			assertEquals(2, requestCount.get());
+			assertTrue(replayDownloader.dataLines.size() > 0);
+		} finally {
+			server.stop();
+		}
+	}
+
+	/**
+	 * This function writes a month in the format of the API, with a record
+	 * for every day of the month.
+	 */
+	private static void writeMonth(File file, String month) throws IOException {
+		int year = Integer.parseInt(month.substring(0, 4));
+		int monthValue = Integer.parseInt(month.substring(4));
+		Random random = new Random(year * 100 + monthValue);
+		StringBuilder content = new StringBuilder(
+				",\"Date\",\"Minimum temperature (C)\"\n");
+		for (int day = 1; day <= YearMonth.of(year, monthValue).lengthOfMonth(); day++) {
+			content.append(String.format(Locale.ROOT,
+					",%d-%d-%d,3.4,21.0,0,,,NW,48,13:20,%.1f,%d,,W,13,%.1f,"
+							+ "%.1f,%d,,WNW,28,%.1f\n", year, monthValue, day,
+					8 + random.nextFloat() * 10, 40 + random.nextInt(55),
+					1005 + random.nextFloat() * 20,
+					15 + random.nextFloat() * 12, 20 + random.nextInt(60),
+					1003 + random.nextFloat() * 20));
+		}
+		Files.write(file.toPath(), content.toString().getBytes(
+				StandardCharsets.UTF_8));
+	}
+
+	private static String describe(WeatherDataArchive weatherDataArchive) {
+		StringBuilder description = new StringBuilder();
+		for (int epochDay = weatherDataArchive.getFirstEpochDay(); epochDay <= weatherDataArchive
+				.getLastEpochDay(); epochDay++) {
+			description.append(weatherDataArchive.get(epochDay)).append('\n');
+		}
+		return description.toString();
+	}
+
 }
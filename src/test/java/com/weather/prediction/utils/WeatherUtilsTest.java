@@ -76,6 +76,19 @@ public class WeatherUtilsTest {
 		assertEquals(expected,input,0.0f);
 	}
 	
+	@Test
+	public void testDateStringToEpochDay_Pass() throws ParseException {
+		int epochDay = WeatherUtils.dateStringToEpochDay(inputDateString);
+		assertEquals(WeatherUtils.toEpochDay(2016, 10, 3), epochDay);
+		assertEquals(epochDay, WeatherUtils.dateStringToEpochDay("2016-10-3"));
+		assertEquals(inputDateString, WeatherUtils.epochDayToString(epochDay));
+	}
+
+	@Test(expected=ParseException.class)
+	public void testDateStringToEpochDay_Fail() throws ParseException {
+		WeatherUtils.dateStringToEpochDay(inputDateTimeString);
+	}
+
 	@Test
 	public void testCreateOutputPathIfNotExists_Pass() throws WeatherException{
 		WeatherUtils.createOutputPath(outputPath);